@@ -28,6 +28,9 @@ public class PropertyConfigService implements ConfigService {
 	
 	private String resourceFileName;
 
+	private URL resourceUrl;
+
+	// 配置打包在jar里时为null，只在启动时读取一次，不检查修改
 	private File resourceFile;
 
 	private List<PropertyChangeListener> listeners = new CopyOnWriteArrayList<PropertyChangeListener>();
@@ -45,11 +48,11 @@ public class PropertyConfigService implements ConfigService {
 		this.listeners.add(listener);
 	}
 
-	private File getFile() {
+	private URL getResource() {
 		URL propUrl = getClass().getClassLoader().getResource(this.resourceFileName);
 
 		if (propUrl != null) {
-			return FileUtils.toFile(propUrl);
+			return propUrl;
 		} else {
 			throw new ZebraConfigException(String.format("config file[%s] doesn't exist.", this.resourceFileName));
 		}
@@ -72,8 +75,16 @@ public class PropertyConfigService implements ConfigService {
 	@Override
 	public void init() {
 		try {
-			this.resourceFile = getFile();
+			this.resourceUrl = getResource();
+			this.resourceFile = FileUtils.toFile(this.resourceUrl);
 			this.props.set(loadConfig());
+
+			if (this.resourceFile == null) {
+				logger.info(String.format("config file[%s] is not a local file, reloading is disabled.",
+						this.resourceFileName));
+				return;
+			}
+
 			this.lastModifiedTime.set(getLastModifiedTime());
 
 			Thread updateTask = new Thread(new ConfigPeroidCheckerTask());
@@ -90,7 +101,8 @@ public class PropertyConfigService implements ConfigService {
 		Properties prop = new Properties();
 		InputStream inputStream = null;
 		try {
-			inputStream = new FileInputStream(this.resourceFile);
+			inputStream = this.resourceFile != null ? new FileInputStream(this.resourceFile) : this.resourceUrl
+					.openStream();
 			prop.load(inputStream);
 		} catch (Exception e) {
 			throw new ZebraConfigException(String.format("fail to read properties file[%s]", this.resourceFileName),
@@ -0,0 +1,212 @@
+package com.dianping.zebra.filter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.dianping.zebra.group.datasources.FailOverDataSource;
+import com.dianping.zebra.group.jdbc.GroupConnection;
+import com.dianping.zebra.group.jdbc.GroupDataSource;
+import com.dianping.zebra.single.jdbc.SingleConnection;
+import com.dianping.zebra.single.jdbc.SingleDataSource;
+import com.dianping.zebra.single.jdbc.SingleStatement;
+
+/**
+ * <p>
+ * 预先编译好的不可变filter链，每个datasource编译一次，调用时不再创建chain对象。
+ * </p>
+ * 第index个节点调用第index个filter，并把下一个节点作为chain传给它，filter里调用chain时参数中的chain会被忽略；
+ * 最后一个节点执行原始操作。执行SQL时每次的操作不同，操作记在statement上，最后一个节点从
+ * {@link SingleStatement#getCurrentOperation()}取出执行。<br>
+ * 为每次SQL都会经过的方法编译，初始化、刷新、关闭datasource等不频繁的操作仍然使用{@link DefaultJdbcFilterChain}；
+ * 如果filter把这个链传给了这些操作，同样依次经过剩下的filter，最后按datasource的当前状态执行原始操作。
+ */
+public final class JdbcFilterChain implements JdbcFilter {
+
+	private final List<JdbcFilter> source;
+
+	private final JdbcFilter[] filters;
+
+	private final int index;
+
+	private final JdbcFilterChain next;
+
+	private JdbcFilterChain(List<JdbcFilter> source, JdbcFilter[] filters, int index) {
+		this.source = source;
+		this.filters = filters;
+		this.index = index;
+		this.next = index < filters.length ? new JdbcFilterChain(source, filters, index + 1) : null;
+	}
+
+	/**
+	 * @param filters
+	 *           已经排好序的filter，可以为null
+	 * @return 链的第一个节点，没有filter时返回一个空链，可以用{@link #isEmpty()}判断后直接执行原始操作
+	 */
+	public static JdbcFilterChain compile(List<JdbcFilter> filters) {
+		JdbcFilter[] array = filters == null ? new JdbcFilter[0] : filters.toArray(new JdbcFilter[filters.size()]);
+
+		return new JdbcFilterChain(filters, array, 0);
+	}
+
+	/**
+	 * 从同一个filter列表编译的链可以复用，filters被替换时需要重新编译
+	 */
+	public boolean isCompiledFrom(List<JdbcFilter> filters) {
+		return source == filters && (filters == null ? 0 : filters.size()) == this.filters.length;
+	}
+
+	public boolean isEmpty() {
+		return index >= filters.length;
+	}
+
+	@Override
+	public GroupConnection getGroupConnection(GroupDataSource source, JdbcFilter chain) throws SQLException {
+		if (index < filters.length) {
+			return filters[index].getGroupConnection(source, next);
+		} else {
+			return source.getConnectionOrigin();
+		}
+	}
+
+	@Override
+	public void closeGroupConnection(GroupConnection source, JdbcFilter chain) throws SQLException {
+		if (index < filters.length) {
+			filters[index].closeGroupConnection(source, next);
+		} else {
+			source.closeOrigin();
+		}
+	}
+
+	@Override
+	public SingleConnection getSingleConnection(SingleDataSource source, JdbcFilter chain) throws SQLException {
+		if (index < filters.length) {
+			return filters[index].getSingleConnection(source, next);
+		} else {
+			return source.getConnectionOrigin();
+		}
+	}
+
+	@Override
+	public String processSQL(String dsId, String sql, boolean isPreparedStmt, JdbcFilter chain) throws SQLException {
+		if (index < filters.length) {
+			return filters[index].processSQL(dsId, sql, isPreparedStmt, next);
+		} else {
+			return sql;
+		}
+	}
+
+	/**
+	 * 最后一个节点执行source上的当前操作，filter需要把收到的source原样传下去
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T executeSingleStatement(SingleStatement source, Connection conn, String sql, List<String> batchedSql,
+			boolean isBatched, boolean autoCommit, Object params, JdbcFilter chain) throws SQLException {
+		if (index < filters.length) {
+			return filters[index].executeSingleStatement(source, conn, sql, batchedSql, isBatched, autoCommit, params,
+					next);
+		}
+
+		JdbcOperationCallback<T> operation = (JdbcOperationCallback<T>) source.getCurrentOperation();
+		if (operation == null) {
+			throw new SQLException("no operation to execute");
+		}
+
+		return operation.doAction(conn);
+	}
+
+	@Override
+	public void closeSingleConnection(SingleConnection source, JdbcFilter chain) throws SQLException {
+		if (index < filters.length) {
+			filters[index].closeSingleConnection(source, next);
+		} else {
+			source.closeOrigin();
+		}
+	}
+
+	@Override
+	public void closeGroupDataSource(GroupDataSource source, JdbcFilter chain) throws SQLException {
+		if (index < filters.length) {
+			filters[index].closeGroupDataSource(source, next);
+		} else {
+			source.closeOrigin();
+		}
+	}
+
+	@Override
+	public void closeSingleDataSource(SingleDataSource source, JdbcFilter chain) throws SQLException {
+		if (index < filters.length) {
+			filters[index].closeSingleDataSource(source, next);
+		} else {
+			source.closeOrigin();
+		}
+	}
+
+	@Override
+	public FailOverDataSource.FindMasterDataSourceResult findMasterFailOverDataSource(
+			FailOverDataSource.MasterDataSourceMonitor source, JdbcFilter chain) {
+		if (index < filters.length) {
+			return filters[index].findMasterFailOverDataSource(source, next);
+		} else {
+			return source.findMasterDataSourceOrigin();
+		}
+	}
+
+	/**
+	 * 链本身不参与排序，返回当前节点filter的顺序
+	 */
+	@Override
+	public int getOrder() {
+		return index < filters.length ? filters[index].getOrder() : DEFAULT_ORDER;
+	}
+
+	/**
+	 * 依次初始化当前节点之后的所有filter
+	 */
+	@Override
+	public void init() {
+		if (index < filters.length) {
+			filters[index].init();
+			next.init();
+		}
+	}
+
+	@Override
+	public void initGroupDataSource(GroupDataSource source, JdbcFilter chain) {
+		if (index < filters.length) {
+			filters[index].initGroupDataSource(source, next);
+		} else {
+			source.initOrigin();
+		}
+	}
+
+	@Override
+	public DataSource initSingleDataSource(SingleDataSource source, JdbcFilter chain) {
+		if (index < filters.length) {
+			return filters[index].initSingleDataSource(source, next);
+		} else {
+			return source.initDataSourceOrigin();
+		}
+	}
+
+	@Override
+	public void refreshGroupDataSource(GroupDataSource source, String propertiesName, JdbcFilter chain) {
+		if (index < filters.length) {
+			filters[index].refreshGroupDataSource(source, propertiesName, next);
+		} else {
+			source.refreshOrigin();
+		}
+	}
+
+	@Override
+	public void switchFailOverDataSource(FailOverDataSource source, JdbcFilter chain) {
+		if (index < filters.length) {
+			filters[index].switchFailOverDataSource(source, next);
+		} else {
+			source.switchFailOverDataSourceOrigin();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.dianping.zebra.filter.histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dianping.zebra.util.SqlUtils;
+
+/**
+ * <p>
+ * 一个SingleDataSource上按SQL区分的耗时统计。
+ * </p>
+ * SQL先归一化再作为key，不同的key超过maxSqlCount之后都记到{@link #OTHER_SQL}里；原始SQL到统计的映射另外缓存，
+ * 重复执行的SQL不需要每次归一化。
+ */
+public class DataSourceLatency implements SqlLatencyMXBean {
+
+	public static final String OTHER_SQL = "OTHERS";
+
+	private static final int MAX_SQL_LENGTH = 256;
+
+	// 原始SQL的缓存数量是归一化SQL的几倍，同一条SQL可能有不同的写法
+	private static final int ALIAS_FACTOR = 8;
+
+	private final String dsId;
+
+	private final int maxSqlCount;
+
+	private final long intervalMillis;
+
+	private final ConcurrentMap<String, SqlLatency> latencies = new ConcurrentHashMap<String, SqlLatency>();
+
+	private final ConcurrentMap<String, SqlLatency> aliases = new ConcurrentHashMap<String, SqlLatency>();
+
+	private final AtomicInteger sqlCount = new AtomicInteger();
+
+	private final AtomicInteger aliasCount = new AtomicInteger();
+
+	private final SqlLatency others;
+
+	public DataSourceLatency(String dsId, int maxSqlCount, long intervalMillis) {
+		this.dsId = dsId;
+		this.maxSqlCount = maxSqlCount;
+		this.intervalMillis = intervalMillis;
+		this.others = new SqlLatency(OTHER_SQL, intervalMillis);
+	}
+
+	public SqlLatency getOrCreate(String sql) {
+		SqlLatency latency = aliases.get(sql);
+		if (latency != null) {
+			return latency;
+		}
+
+		String key = SqlUtils.normalizeSql(sql, MAX_SQL_LENGTH);
+		latency = latencies.get(key);
+
+		if (latency == null) {
+			if (sqlCount.get() >= maxSqlCount) {
+				latency = others;
+			} else {
+				latency = new SqlLatency(key, intervalMillis);
+				SqlLatency existing = latencies.putIfAbsent(key, latency);
+				if (existing != null) {
+					latency = existing;
+				} else {
+					sqlCount.incrementAndGet();
+				}
+			}
+		}
+
+		if (aliasCount.get() < maxSqlCount * ALIAS_FACTOR && aliases.putIfAbsent(sql, latency) == null) {
+			aliasCount.incrementAndGet();
+		}
+
+		return latency;
+	}
+
+	@Override
+	public String getDataSourceId() {
+		return dsId;
+	}
+
+	@Override
+	public int getSqlCount() {
+		return sqlCount.get();
+	}
+
+	@Override
+	public List<SqlLatencyStats> getSqlLatencies() {
+		List<SqlLatencyStats> result = new ArrayList<SqlLatencyStats>(latencies.size() + 1);
+
+		for (SqlLatency latency : latencies.values()) {
+			result.add(latency.getStats());
+		}
+		result.add(others.getStats());
+
+		return result;
+	}
+
+	@Override
+	public SqlLatencyStats getSqlLatency(String sql) {
+		SqlLatency latency = aliases.get(sql);
+
+		if (latency == null) {
+			latency = OTHER_SQL.equals(sql) ? others : latencies.get(SqlUtils.normalizeSql(sql, MAX_SQL_LENGTH));
+		}
+
+		return latency == null ? null : latency.getStats();
+	}
+
+	@Override
+	public String toString() {
+		return "DataSourceLatency [dsId=" + dsId + ", sqlCount=" + sqlCount + "]";
+	}
+}
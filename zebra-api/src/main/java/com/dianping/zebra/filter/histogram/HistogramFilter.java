@@ -0,0 +1,174 @@
+package com.dianping.zebra.filter.histogram;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.Logger;
+
+import com.dianping.zebra.filter.DefaultJdbcFilter;
+import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.group.jdbc.GroupDataSource;
+import com.dianping.zebra.group.util.DaoContextHolder;
+import com.dianping.zebra.log.LoggerLoader;
+import com.dianping.zebra.single.jdbc.SingleStatement;
+import com.dianping.zebra.util.StringUtils;
+
+/**
+ * <p>
+ * 按(datasource id, SQL)统计执行语句和读取结果集的耗时直方图，每个datasource注册一个{@link SqlLatencyMXBean}。
+ * </p>
+ * 有DAO中的SQL名字（WallFilter生成sql id用的名字）时按名字区分，否则按归一化之后的SQL区分。<br>
+ * 放在filter链的最内层，只统计数据库本身的耗时。
+ */
+public class HistogramFilter extends DefaultJdbcFilter {
+
+	private static final Logger logger = LoggerLoader.getLogger(HistogramFilter.class);
+
+	private static final String BATCHED_SQL = "batched";
+
+	private final ConcurrentMap<String, DataSourceLatency> dataSources = new ConcurrentHashMap<String, DataSourceLatency>();
+
+	private volatile int maxSqlCount = Integer.getInteger("zebra.histogram.maxSqlCount", 64);
+
+	private volatile long intervalMillis = Long.getLong("zebra.histogram.intervalMillis", 30000L);
+
+	private volatile boolean registerMBean = true;
+
+	@Override
+	public int getOrder() {
+		return JdbcFilter.MIN_ORDER;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T executeSingleStatement(SingleStatement source, Connection conn, String sql, List<String> batchedSql,
+			boolean isBatched, boolean autoCommit, Object params, JdbcFilter chain) throws SQLException {
+		SqlLatency latency = getSqlLatency(source.getDataSourceId(), sql, isBatched);
+		long start = System.nanoTime();
+		T result = null;
+
+		try {
+			result = chain.executeSingleStatement(source, conn, sql, batchedSql, isBatched, autoCommit, params, chain);
+		} finally {
+			long end = System.nanoTime();
+			latency.recordExecute(end - start, end);
+		}
+
+		if (result instanceof ResultSet) {
+			return (T) new HistogramResultSet((ResultSet) result, latency);
+		}
+
+		return result;
+	}
+
+	/**
+	 * GroupDataSource关闭后不再统计它的datasource，注销对应的MBean；刷新时关闭旧的datasource不注销
+	 */
+	@Override
+	public void closeGroupDataSource(GroupDataSource source, JdbcFilter chain) throws SQLException {
+		try {
+			chain.closeGroupDataSource(source, chain);
+		} finally {
+			if (source.isClosed() && source.getConfig() != null) {
+				for (String dsId : source.getConfig().getDataSourceConfigs().keySet()) {
+					removeDataSourceLatency(dsId);
+				}
+			}
+		}
+	}
+
+	private SqlLatency getSqlLatency(String dsId, String sql, boolean isBatched) {
+		String sqlName = DaoContextHolder.getSqlName();
+		String key;
+
+		if (StringUtils.isNotBlank(sqlName)) {
+			key = sqlName;
+		} else if (sql != null) {
+			key = sql;
+		} else {
+			key = isBatched ? BATCHED_SQL : DataSourceLatency.OTHER_SQL;
+		}
+
+		return getDataSourceLatency(dsId).getOrCreate(key);
+	}
+
+	public DataSourceLatency getDataSourceLatency(String dsId) {
+		DataSourceLatency latency = dataSources.get(dsId);
+
+		if (latency == null) {
+			latency = new DataSourceLatency(dsId, maxSqlCount, intervalMillis);
+			DataSourceLatency existing = dataSources.putIfAbsent(dsId, latency);
+
+			if (existing != null) {
+				latency = existing;
+			} else if (registerMBean) {
+				registerMBean(latency);
+			}
+		}
+
+		return latency;
+	}
+
+	public void removeDataSourceLatency(String dsId) {
+		if (dataSources.remove(dsId) == null) {
+			return;
+		}
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = getObjectName(dsId);
+
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch (Exception e) {
+			logger.warn("fail to unregister SqlLatency MBean for " + dsId, e);
+		}
+	}
+
+	private ObjectName getObjectName(String dsId) throws Exception {
+		return new ObjectName("com.dianping.zebra:type=SqlLatency,name=" + ObjectName.quote(dsId));
+	}
+
+	private void registerMBean(DataSourceLatency latency) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = getObjectName(latency.getDataSourceId());
+
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(latency, name);
+		} catch (Exception e) {
+			logger.warn("fail to register SqlLatency MBean for " + latency.getDataSourceId(), e);
+		}
+	}
+
+	/**
+	 * @param maxSqlCount
+	 *           每个datasource最多统计的SQL数量，只对之后新建的datasource生效
+	 */
+	public void setMaxSqlCount(int maxSqlCount) {
+		this.maxSqlCount = maxSqlCount;
+	}
+
+	/**
+	 * @param intervalMillis
+	 *           滚动窗口的长度，统计结果包含上一个完整的窗口和当前窗口，只对之后新建的datasource生效
+	 */
+	public void setIntervalMillis(long intervalMillis) {
+		this.intervalMillis = intervalMillis;
+	}
+
+	public void setRegisterMBean(boolean registerMBean) {
+		this.registerMBean = registerMBean;
+	}
+}
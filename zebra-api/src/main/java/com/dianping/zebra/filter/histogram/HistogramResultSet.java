@@ -0,0 +1,60 @@
+package com.dianping.zebra.filter.histogram;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.dianping.zebra.group.jdbc.GroupResultSet;
+
+/**
+ * 累计next()的耗时，读完或者关闭时记为读取结果集的耗时
+ */
+public class HistogramResultSet extends GroupResultSet {
+
+	private final ResultSet resultSet;
+
+	private final SqlLatency latency;
+
+	private long fetchNanos;
+
+	private boolean recorded;
+
+	public HistogramResultSet(ResultSet resultSet, SqlLatency latency) {
+		super(resultSet);
+		this.resultSet = resultSet;
+		this.latency = latency;
+	}
+
+	@Override
+	public boolean next() throws SQLException {
+		long start = System.nanoTime();
+		boolean hasNext = false;
+
+		try {
+			hasNext = resultSet.next();
+			return hasNext;
+		} finally {
+			long end = System.nanoTime();
+			fetchNanos += end - start;
+
+			if (!hasNext) {
+				record(end);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		try {
+			resultSet.close();
+		} finally {
+			record(System.nanoTime());
+		}
+	}
+
+	private void record(long nowNanos) {
+		if (!recorded) {
+			recorded = true;
+			latency.recordFetch(fetchNanos, nowNanos);
+		}
+	}
+}
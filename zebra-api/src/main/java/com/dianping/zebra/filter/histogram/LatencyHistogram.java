@@ -0,0 +1,197 @@
+package com.dianping.zebra.filter.histogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * 无锁的定长对数线性直方图，单位微秒，每个2的幂区间分成16个桶，相对误差不超过1/16。
+ * </p>
+ * 按时间分成两个窗口轮流使用，统计结果包含上一个完整的窗口和当前窗口；每个窗口按线程分成几个条带，减少多线程写同一个缓存行的竞争。<br>
+ * 每次记录只有一次原子操作，平均值按桶的中点估算；切换窗口时由一个线程清空旧数据，和它同时写入的少量样本可能丢失。
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	// 超过2^30微秒（约18分钟）的记在最后一个桶
+	static final long MAX_VALUE = (1L << 30) - 1;
+
+	static final int BUCKET_COUNT = getBucketIndex(MAX_VALUE) + 1;
+
+	private static final int STRIPES = 4;
+
+	private static final int WINDOWS = 2;
+
+	private final long intervalNanos;
+
+	private final Window[] windows = new Window[WINDOWS];
+
+	// 当前时间所在的窗口，时间还在这个窗口内时不需要做除法
+	private volatile Window current;
+
+	/**
+	 * @param intervalMillis
+	 *           每个窗口的时间长度
+	 */
+	public LatencyHistogram(long intervalMillis) {
+		this.intervalNanos = intervalMillis * 1000000L;
+
+		for (int i = 0; i < WINDOWS; i++) {
+			windows[i] = new Window();
+		}
+		current = windows[0];
+	}
+
+	/**
+	 * @param nanos
+	 *           耗时
+	 * @param nowNanos
+	 *           结束时的System.nanoTime()，用来选择窗口，避免再取一次时间
+	 */
+	public void record(long nanos, long nowNanos) {
+		Window window = current;
+		long elapsed = nowNanos - window.start;
+
+		if (elapsed < 0 || elapsed >= intervalNanos) {
+			window = getWindow(nowNanos);
+		}
+
+		long micros = nanos <= 0 ? 0 : Math.min(nanos / 1000, MAX_VALUE);
+		int offset = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * BUCKET_COUNT;
+
+		window.counts.getAndIncrement(offset + getBucketIndex(micros));
+	}
+
+	private Window getWindow(long nowNanos) {
+		long epoch = getEpoch(nowNanos);
+		Window window = windows[(int) (epoch & (WINDOWS - 1))];
+
+		long windowEpoch = window.epoch.get();
+		if (windowEpoch < epoch && window.epoch.compareAndSet(windowEpoch, epoch)) {
+			window.start = epoch * intervalNanos;
+			window.clear();
+			current = window;
+		}
+
+		return window;
+	}
+
+	private long getEpoch(long nowNanos) {
+		return nowNanos >= 0 ? nowNanos / intervalNanos : (nowNanos + 1) / intervalNanos - 1;
+	}
+
+	public LatencySnapshot getSnapshot() {
+		return getSnapshot(System.nanoTime());
+	}
+
+	/**
+	 * @param nowNanos
+	 *           当前的System.nanoTime()
+	 */
+	public LatencySnapshot getSnapshot(long nowNanos) {
+		long epoch = getEpoch(nowNanos);
+		long[] counts = new long[BUCKET_COUNT];
+		long count = 0;
+		double sum = 0;
+
+		for (Window window : windows) {
+			long windowEpoch = window.epoch.get();
+			if (windowEpoch != epoch && windowEpoch != epoch - 1) {
+				continue;
+			}
+
+			for (int stripe = 0; stripe < STRIPES; stripe++) {
+				int offset = stripe * BUCKET_COUNT;
+
+				for (int i = 0; i < BUCKET_COUNT; i++) {
+					long value = window.counts.get(offset + i);
+					counts[i] += value;
+					count += value;
+				}
+			}
+		}
+
+		if (count == 0) {
+			return new LatencySnapshot(0, 0, 0, 0, 0, 0, 0);
+		}
+
+		int max = BUCKET_COUNT - 1;
+		while (counts[max] == 0) {
+			max--;
+		}
+
+		for (int i = 0; i <= max; i++) {
+			sum += counts[i] * (getBucketLowerBound(i) + getBucketUpperBound(i)) / 2.0;
+		}
+
+		return new LatencySnapshot(count, sum / count, getValueAtPercentile(counts, count, 50),
+				getValueAtPercentile(counts, count, 90), getValueAtPercentile(counts, count, 99),
+				getValueAtPercentile(counts, count, 99.9), getBucketUpperBound(max));
+	}
+
+	private static long getValueAtPercentile(long[] counts, long count, double percentile) {
+		long target = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long total = 0;
+
+		for (int i = 0; i < counts.length; i++) {
+			total += counts[i];
+			if (total >= target) {
+				return getBucketUpperBound(i);
+			}
+		}
+
+		return MAX_VALUE;
+	}
+
+	static int getBucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+
+	static long getBucketLowerBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+
+		return (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+	}
+
+	/**
+	 * 桶里能放的最大值，分位数按这个值返回，不会低估
+	 */
+	static long getBucketUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+
+		return Math.min(getBucketLowerBound(index) + (1L << shift) - 1, MAX_VALUE);
+	}
+
+	private static class Window {
+
+		private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+
+		// 窗口开始的时间，还没有使用过时任何时间都不在窗口内
+		private volatile long start = Long.MIN_VALUE;
+
+		private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKET_COUNT);
+
+		void clear() {
+			for (int i = 0; i < counts.length(); i++) {
+				counts.set(i, 0);
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.dianping.zebra.filter.histogram;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * 直方图在某个时刻的统计结果，单位微秒
+ */
+public class LatencySnapshot {
+
+	private final long count;
+
+	private final double mean;
+
+	private final long p50;
+
+	private final long p90;
+
+	private final long p99;
+
+	private final long p999;
+
+	private final long max;
+
+	@ConstructorProperties({ "count", "mean", "p50", "p90", "p99", "p999", "max" })
+	public LatencySnapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[count=%d, mean=%.1fus, p50=%dus, p90=%dus, p99=%dus, p999=%dus, max=%dus]", count,
+				mean, p50, p90, p99, p999, max);
+	}
+}
@@ -0,0 +1,54 @@
+package com.dianping.zebra.filter.histogram;
+
+/**
+ * 一条SQL的执行耗时和读取结果集耗时
+ */
+public class SqlLatency {
+
+	private final String sql;
+
+	private final long intervalMillis;
+
+	private final LatencyHistogram execute;
+
+	// 只有查询才会创建
+	private volatile LatencyHistogram fetch;
+
+	public SqlLatency(String sql, long intervalMillis) {
+		this.sql = sql;
+		this.intervalMillis = intervalMillis;
+		this.execute = new LatencyHistogram(intervalMillis);
+	}
+
+	public void recordExecute(long nanos, long nowNanos) {
+		execute.record(nanos, nowNanos);
+	}
+
+	public void recordFetch(long nanos, long nowNanos) {
+		LatencyHistogram histogram = fetch;
+
+		if (histogram == null) {
+			synchronized (this) {
+				histogram = fetch;
+				if (histogram == null) {
+					histogram = new LatencyHistogram(intervalMillis);
+					fetch = histogram;
+				}
+			}
+		}
+
+		histogram.record(nanos, nowNanos);
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public SqlLatencyStats getStats() {
+		long now = System.nanoTime();
+		LatencyHistogram histogram = fetch;
+
+		return new SqlLatencyStats(sql, execute.getSnapshot(now), histogram == null ? new LatencySnapshot(0, 0, 0, 0,
+				0, 0, 0) : histogram.getSnapshot(now));
+	}
+}
@@ -0,0 +1,21 @@
+package com.dianping.zebra.filter.histogram;
+
+import java.util.List;
+
+/**
+ * 一个SingleDataSource上按SQL统计的耗时，注册的名字是com.dianping.zebra:type=SqlLatency,name=datasource id
+ */
+public interface SqlLatencyMXBean {
+
+	public String getDataSourceId();
+
+	public int getSqlCount();
+
+	public List<SqlLatencyStats> getSqlLatencies();
+
+	/**
+	 * @param sql
+	 *           SQL、归一化之后的SQL或者DAO中的SQL名字，没有统计时返回null
+	 */
+	public SqlLatencyStats getSqlLatency(String sql);
+}
@@ -0,0 +1,36 @@
+package com.dianping.zebra.filter.histogram;
+
+import java.beans.ConstructorProperties;
+
+public class SqlLatencyStats {
+
+	private final String sql;
+
+	private final LatencySnapshot execute;
+
+	private final LatencySnapshot fetch;
+
+	@ConstructorProperties({ "sql", "execute", "fetch" })
+	public SqlLatencyStats(String sql, LatencySnapshot execute, LatencySnapshot fetch) {
+		this.sql = sql;
+		this.execute = execute;
+		this.fetch = fetch;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public LatencySnapshot getExecute() {
+		return execute;
+	}
+
+	public LatencySnapshot getFetch() {
+		return fetch;
+	}
+
+	@Override
+	public String toString() {
+		return "SqlLatencyStats [sql=" + sql + ", execute=" + execute + ", fetch=" + fetch + "]";
+	}
+}
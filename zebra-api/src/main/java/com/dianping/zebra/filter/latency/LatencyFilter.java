@@ -0,0 +1,156 @@
+package com.dianping.zebra.filter.latency;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dianping.zebra.filter.DefaultJdbcFilter;
+import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.single.jdbc.SingleConnection;
+import com.dianping.zebra.single.jdbc.SingleDataSource;
+import com.dianping.zebra.single.jdbc.SingleStatement;
+
+/**
+ * 按SingleDataSource统计获取连接和执行语句耗时的EWMA，供按延迟选择从库使用。<br>
+ * 放在filter链的最内层，只统计数据库本身的耗时。
+ */
+public class LatencyFilter extends DefaultJdbcFilter {
+
+	public static final double DEFAULT_ALPHA = 0.2;
+
+	private final double alpha;
+
+	private final ConcurrentMap<String, Latency> latencies = new ConcurrentHashMap<String, Latency>();
+
+	public LatencyFilter() {
+		this(DEFAULT_ALPHA);
+	}
+
+	/**
+	 * @param alpha
+	 *           新样本的权重，越大对延迟变化越敏感
+	 */
+	public LatencyFilter(double alpha) {
+		this.alpha = alpha;
+	}
+
+	@Override
+	public int getOrder() {
+		return JdbcFilter.MIN_ORDER;
+	}
+
+	@Override
+	public SingleConnection getSingleConnection(SingleDataSource source, JdbcFilter chain) throws SQLException {
+		long start = System.nanoTime();
+
+		try {
+			return chain.getSingleConnection(source, chain);
+		} finally {
+			getLatency(source.getId()).connect.update(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public <T> T executeSingleStatement(SingleStatement source, Connection conn, String sql, List<String> batchedSql,
+			boolean isBatched, boolean autoCommit, Object params, JdbcFilter chain) throws SQLException {
+		long start = System.nanoTime();
+
+		try {
+			return chain.executeSingleStatement(source, conn, sql, batchedSql, isBatched, autoCommit, params, chain);
+		} finally {
+			getLatency(source.getDataSourceId()).statement.update(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @return 获取连接和执行语句的平均耗时之和，单位纳秒，还没有样本时返回0
+	 */
+	public double getLatencyNanos(String dsId) {
+		Latency latency = latencies.get(dsId);
+
+		return latency == null ? 0 : latency.connect.get() + latency.statement.get();
+	}
+
+	/**
+	 * @return 获取连接和执行语句的平均耗时之和，单位纳秒，还没有样本时返回defaultNanos
+	 */
+	public double getLatencyNanos(String dsId, double defaultNanos) {
+		Latency latency = latencies.get(dsId);
+
+		return latency == null || !latency.hasSample() ? defaultNanos : latency.connect.get() + latency.statement.get();
+	}
+
+	public Latency getLatency(String dsId) {
+		Latency latency = latencies.get(dsId);
+
+		if (latency == null) {
+			latency = new Latency();
+			Latency existing = latencies.putIfAbsent(dsId, latency);
+			if (existing != null) {
+				latency = existing;
+			}
+		}
+
+		return latency;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyFilter " + latencies;
+	}
+
+	public class Latency {
+
+		private final Ewma connect = new Ewma();
+
+		private final Ewma statement = new Ewma();
+
+		public double getConnectNanos() {
+			return connect.get();
+		}
+
+		public double getStatementNanos() {
+			return statement.get();
+		}
+
+		public boolean hasSample() {
+			return connect.hasSample() || statement.hasSample();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("[connect=%.3fms, statement=%.3fms]", connect.get() / 1000000, statement.get() / 1000000);
+		}
+	}
+
+	private class Ewma {
+
+		// double的二进制表示，NaN表示还没有样本
+		private final AtomicLong value = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+
+		void update(double sample) {
+			for (;;) {
+				long current = value.get();
+				double old = Double.longBitsToDouble(current);
+				double updated = Double.isNaN(old) ? sample : old + alpha * (sample - old);
+
+				if (value.compareAndSet(current, Double.doubleToLongBits(updated))) {
+					return;
+				}
+			}
+		}
+
+		boolean hasSample() {
+			return !Double.isNaN(Double.longBitsToDouble(value.get()));
+		}
+
+		double get() {
+			double current = Double.longBitsToDouble(value.get());
+
+			return Double.isNaN(current) ? 0 : current;
+		}
+	}
+}
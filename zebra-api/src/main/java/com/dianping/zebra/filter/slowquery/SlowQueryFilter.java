@@ -0,0 +1,241 @@
+package com.dianping.zebra.filter.slowquery;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.Logger;
+
+import com.dianping.zebra.filter.DefaultJdbcFilter;
+import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.log.LoggerLoader;
+import com.dianping.zebra.single.jdbc.SingleStatement;
+
+/**
+ * <p>
+ * 客户端的慢SQL日志：超过阈值的SQL放进一个定长的环形缓冲区，同时按(datasource id, 指纹)累计次数、总耗时、最大耗时和最后出现的时间。
+ * </p>
+ * 结果通过{@link SlowQueryMXBean}查看，打开logToFile后同时写到按天滚动的zebra-slow-query.log。<br>
+ * 没有超过阈值的SQL只多两次取时间，指纹只在慢SQL上计算。
+ */
+public class SlowQueryFilter extends DefaultJdbcFilter implements SlowQueryMXBean {
+
+	public static final String OBJECT_NAME = "com.dianping.zebra:type=SlowQuery";
+
+	public static final String OTHER_FINGERPRINT = "OTHERS";
+
+	private static final Logger logger = LoggerLoader.getLogger(SlowQueryFilter.class);
+
+	private static final String FILE_LOGGER_NAME = "zebra.slowquery";
+
+	private static final String FILE_NAME = "zebra-slow-query.log";
+
+	private static final String BATCHED_SQL = "batched";
+
+	private static final int MAX_SQL_LENGTH = 2048;
+
+	private volatile long thresholdNanos = Long.getLong("zebra.slowquery.thresholdMillis", 1000L) * 1000000L;
+
+	private volatile int maxFingerprints = Integer.getInteger("zebra.slowquery.maxFingerprints", 1000);
+
+	private volatile boolean logToFile = Boolean.getBoolean("zebra.slowquery.logToFile");
+
+	private volatile AtomicReferenceArray<SlowQueryRecord> records = new AtomicReferenceArray<SlowQueryRecord>(
+			Integer.getInteger("zebra.slowquery.bufferSize", 256));
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final ConcurrentMap<String, SlowQueryStats> stats = new ConcurrentHashMap<String, SlowQueryStats>();
+
+	private final AtomicInteger fingerprintCount = new AtomicInteger();
+
+	@Override
+	public int getOrder() {
+		return JdbcFilter.MIN_ORDER;
+	}
+
+	@Override
+	public void init() {
+		super.init();
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (Exception e) {
+			logger.warn("fail to register SlowQuery MBean", e);
+		}
+	}
+
+	@Override
+	public <T> T executeSingleStatement(SingleStatement source, Connection conn, String sql, List<String> batchedSql,
+			boolean isBatched, boolean autoCommit, Object params, JdbcFilter chain) throws SQLException {
+		long start = System.nanoTime();
+		boolean success = false;
+
+		try {
+			T result = chain.executeSingleStatement(source, conn, sql, batchedSql, isBatched, autoCommit, params, chain);
+			success = true;
+
+			return result;
+		} finally {
+			long elapsed = System.nanoTime() - start;
+
+			if (elapsed >= thresholdNanos) {
+				record(source.getDataSourceId(), getSql(sql, batchedSql), elapsed / 1000000, success);
+			}
+		}
+	}
+
+	private String getSql(String sql, List<String> batchedSql) {
+		if (sql != null) {
+			return sql;
+		} else if (batchedSql != null && !batchedSql.isEmpty()) {
+			return batchedSql.get(0);
+		} else {
+			return BATCHED_SQL;
+		}
+	}
+
+	private void record(String dsId, String sql, long elapsedMillis, boolean success) {
+		try {
+			String fingerprint = SqlFingerprint.fingerprint(sql);
+			String fingerprintId = SqlFingerprint.id(fingerprint);
+			String captured = sql.length() > MAX_SQL_LENGTH ? sql.substring(0, MAX_SQL_LENGTH) + "..." : sql;
+			long now = System.currentTimeMillis();
+
+			getStats(dsId, fingerprintId, fingerprint).record(elapsedMillis, captured, now);
+
+			SlowQueryRecord record = new SlowQueryRecord(new Date(now), dsId, fingerprintId, captured, elapsedMillis,
+					success);
+			AtomicReferenceArray<SlowQueryRecord> buffer = this.records;
+			buffer.set((int) (sequence.getAndIncrement() % buffer.length()), record);
+
+			if (logToFile) {
+				LoggerLoader.getFileLogger(FILE_LOGGER_NAME, FILE_NAME).info(record.toString());
+			}
+		} catch (RuntimeException e) {
+			logger.warn("fail to record slow query", e);
+		}
+	}
+
+	private SlowQueryStats getStats(String dsId, String fingerprintId, String fingerprint) {
+		String key = dsId + "|" + fingerprintId;
+		SlowQueryStats result = stats.get(key);
+
+		if (result == null) {
+			if (fingerprintCount.get() >= maxFingerprints) {
+				key = dsId + "|" + OTHER_FINGERPRINT;
+				fingerprintId = OTHER_FINGERPRINT;
+				fingerprint = OTHER_FINGERPRINT;
+
+				result = stats.get(key);
+				if (result != null) {
+					return result;
+				}
+			}
+
+			result = new SlowQueryStats(dsId, fingerprintId, fingerprint);
+			SlowQueryStats existing = stats.putIfAbsent(key, result);
+
+			if (existing != null) {
+				result = existing;
+			} else if (!OTHER_FINGERPRINT.equals(fingerprintId)) {
+				fingerprintCount.incrementAndGet();
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public long getThresholdMillis() {
+		return thresholdNanos / 1000000L;
+	}
+
+	@Override
+	public void setThresholdMillis(long thresholdMillis) {
+		this.thresholdNanos = thresholdMillis * 1000000L;
+	}
+
+	@Override
+	public List<SlowQuerySummary> getSummaries() {
+		List<SlowQueryStats> values = new ArrayList<SlowQueryStats>(stats.values());
+
+		Collections.sort(values, new Comparator<SlowQueryStats>() {
+			@Override
+			public int compare(SlowQueryStats o1, SlowQueryStats o2) {
+				long x = o1.getSumMillis();
+				long y = o2.getSumMillis();
+				return (x > y) ? -1 : ((x == y) ? 0 : 1);
+			}
+		});
+
+		List<SlowQuerySummary> result = new ArrayList<SlowQuerySummary>(values.size());
+		for (SlowQueryStats value : values) {
+			result.add(value.toSummary());
+		}
+
+		return result;
+	}
+
+	@Override
+	public List<SlowQueryRecord> getRecentQueries() {
+		AtomicReferenceArray<SlowQueryRecord> buffer = this.records;
+		long end = sequence.get();
+		List<SlowQueryRecord> result = new ArrayList<SlowQueryRecord>();
+
+		for (long i = end - 1; i >= 0 && i >= end - buffer.length(); i--) {
+			SlowQueryRecord record = buffer.get((int) (i % buffer.length()));
+			if (record != null) {
+				result.add(record);
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public void reset() {
+		stats.clear();
+		fingerprintCount.set(0);
+		records = new AtomicReferenceArray<SlowQueryRecord>(records.length());
+	}
+
+	/**
+	 * @param bufferSize
+	 *           保留最近的慢SQL的条数，修改时清空已有的记录
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.records = new AtomicReferenceArray<SlowQueryRecord>(bufferSize);
+	}
+
+	/**
+	 * @param maxFingerprints
+	 *           最多统计的指纹数量，超过之后都记到{@link #OTHER_FINGERPRINT}里
+	 */
+	public void setMaxFingerprints(int maxFingerprints) {
+		this.maxFingerprints = maxFingerprints;
+	}
+
+	public void setLogToFile(boolean logToFile) {
+		this.logToFile = logToFile;
+	}
+}
@@ -0,0 +1,25 @@
+package com.dianping.zebra.filter.slowquery;
+
+import java.util.List;
+
+/**
+ * 注册的名字是com.dianping.zebra:type=SlowQuery
+ */
+public interface SlowQueryMXBean {
+
+	public long getThresholdMillis();
+
+	public void setThresholdMillis(long thresholdMillis);
+
+	/**
+	 * @return 按总耗时从大到小排序
+	 */
+	public List<SlowQuerySummary> getSummaries();
+
+	/**
+	 * @return 最近的慢SQL，新的在前面
+	 */
+	public List<SlowQueryRecord> getRecentQueries();
+
+	public void reset();
+}
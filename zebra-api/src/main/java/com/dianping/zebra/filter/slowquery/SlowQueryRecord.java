@@ -0,0 +1,63 @@
+package com.dianping.zebra.filter.slowquery;
+
+import java.beans.ConstructorProperties;
+import java.util.Date;
+
+/**
+ * 一条慢SQL
+ */
+public class SlowQueryRecord {
+
+	private final Date time;
+
+	private final String dataSourceId;
+
+	private final String fingerprintId;
+
+	private final String sql;
+
+	private final long elapsedMillis;
+
+	private final boolean success;
+
+	@ConstructorProperties({ "time", "dataSourceId", "fingerprintId", "sql", "elapsedMillis", "success" })
+	public SlowQueryRecord(Date time, String dataSourceId, String fingerprintId, String sql, long elapsedMillis,
+			boolean success) {
+		this.time = time;
+		this.dataSourceId = dataSourceId;
+		this.fingerprintId = fingerprintId;
+		this.sql = sql;
+		this.elapsedMillis = elapsedMillis;
+		this.success = success;
+	}
+
+	public Date getTime() {
+		return time;
+	}
+
+	public String getDataSourceId() {
+		return dataSourceId;
+	}
+
+	public String getFingerprintId() {
+		return fingerprintId;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public boolean isSuccess() {
+		return success;
+	}
+
+	@Override
+	public String toString() {
+		return dataSourceId + "|" + fingerprintId + "|" + elapsedMillis + "ms|" + (success ? "success" : "fail") + "|"
+				+ sql;
+	}
+}
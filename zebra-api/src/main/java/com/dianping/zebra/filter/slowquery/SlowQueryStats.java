@@ -0,0 +1,59 @@
+package com.dianping.zebra.filter.slowquery;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按指纹累计的慢SQL次数、总耗时、最大耗时和最后一次出现的时间
+ */
+public class SlowQueryStats {
+
+	private final String dataSourceId;
+
+	private final String fingerprintId;
+
+	private final String fingerprint;
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sumMillis = new AtomicLong();
+
+	private final AtomicLong maxMillis = new AtomicLong();
+
+	private volatile long lastSeen;
+
+	private volatile String lastSql;
+
+	public SlowQueryStats(String dataSourceId, String fingerprintId, String fingerprint) {
+		this.dataSourceId = dataSourceId;
+		this.fingerprintId = fingerprintId;
+		this.fingerprint = fingerprint;
+	}
+
+	public void record(long elapsedMillis, String sql, long now) {
+		count.incrementAndGet();
+		sumMillis.addAndGet(elapsedMillis);
+
+		for (long max = maxMillis.get(); elapsedMillis > max; max = maxMillis.get()) {
+			if (maxMillis.compareAndSet(max, elapsedMillis)) {
+				break;
+			}
+		}
+
+		lastSeen = now;
+		lastSql = sql;
+	}
+
+	public String getFingerprintId() {
+		return fingerprintId;
+	}
+
+	public long getSumMillis() {
+		return sumMillis.get();
+	}
+
+	public SlowQuerySummary toSummary() {
+		return new SlowQuerySummary(dataSourceId, fingerprintId, fingerprint, count.get(), sumMillis.get(),
+				maxMillis.get(), new Date(lastSeen), lastSql);
+	}
+}
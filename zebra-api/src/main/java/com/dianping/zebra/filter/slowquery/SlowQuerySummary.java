@@ -0,0 +1,78 @@
+package com.dianping.zebra.filter.slowquery;
+
+import java.beans.ConstructorProperties;
+import java.util.Date;
+
+/**
+ * 同一个datasource上相同指纹的慢SQL的汇总
+ */
+public class SlowQuerySummary {
+
+	private final String dataSourceId;
+
+	private final String fingerprintId;
+
+	private final String fingerprint;
+
+	private final long count;
+
+	private final long sumMillis;
+
+	private final long maxMillis;
+
+	private final Date lastSeen;
+
+	private final String lastSql;
+
+	@ConstructorProperties({ "dataSourceId", "fingerprintId", "fingerprint", "count", "sumMillis", "maxMillis",
+			"lastSeen", "lastSql" })
+	public SlowQuerySummary(String dataSourceId, String fingerprintId, String fingerprint, long count, long sumMillis,
+			long maxMillis, Date lastSeen, String lastSql) {
+		this.dataSourceId = dataSourceId;
+		this.fingerprintId = fingerprintId;
+		this.fingerprint = fingerprint;
+		this.count = count;
+		this.sumMillis = sumMillis;
+		this.maxMillis = maxMillis;
+		this.lastSeen = lastSeen;
+		this.lastSql = lastSql;
+	}
+
+	public String getDataSourceId() {
+		return dataSourceId;
+	}
+
+	public String getFingerprintId() {
+		return fingerprintId;
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getSumMillis() {
+		return sumMillis;
+	}
+
+	public long getMaxMillis() {
+		return maxMillis;
+	}
+
+	public Date getLastSeen() {
+		return lastSeen;
+	}
+
+	public String getLastSql() {
+		return lastSql;
+	}
+
+	@Override
+	public String toString() {
+		return "SlowQuerySummary [dataSourceId=" + dataSourceId + ", fingerprintId=" + fingerprintId + ", count="
+				+ count + ", sumMillis=" + sumMillis + ", maxMillis=" + maxMillis + ", fingerprint=" + fingerprint + "]";
+	}
+}
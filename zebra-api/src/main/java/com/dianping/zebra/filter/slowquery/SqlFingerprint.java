@@ -0,0 +1,165 @@
+package com.dianping.zebra.filter.slowquery;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlLexer;
+import com.alibaba.druid.sql.parser.Token;
+import com.dianping.zebra.util.SqlUtils;
+import com.dianping.zebra.util.StringUtils;
+
+/**
+ * <p>
+ * 用druid的词法分析把SQL转换成稳定的指纹：常量替换成?，IN列表合并成(?+)，多行VALUES只保留第一行，关键字大写、标识符小写、注释去掉。
+ * </p>
+ * 词法分析失败时退化为{@link SqlUtils#normalizeSql(String, int)}。
+ */
+public final class SqlFingerprint {
+
+	public static final int MAX_LENGTH = 1024;
+
+	private static final int ID_LENGTH = 8;
+
+	private SqlFingerprint() {
+	}
+
+	public static String fingerprint(String sql) {
+		List<String> tokens;
+
+		try {
+			tokens = tokenize(sql);
+		} catch (RuntimeException e) {
+			return SqlUtils.normalizeSql(sql, MAX_LENGTH);
+		}
+
+		if (tokens == null) {
+			return SqlUtils.normalizeSql(sql, MAX_LENGTH);
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < tokens.size() && sb.length() < MAX_LENGTH; i++) {
+			String token = tokens.get(i);
+
+			if ("IN".equals(token) && isLiteralList(tokens, i + 1)) {
+				append(sb, "IN (?+)");
+				i = findRightParen(tokens, i + 1);
+			} else if ("VALUES".equals(token) && i + 1 < tokens.size() && "(".equals(tokens.get(i + 1))) {
+				int end = findRightParen(tokens, i + 1);
+				List<String> firstRow = tokens.subList(i + 1, end + 1);
+
+				append(sb, "VALUES");
+				for (String value : firstRow) {
+					append(sb, value);
+				}
+
+				// 跳过和第一行相同的其他行
+				i = end;
+				while (i + 2 < tokens.size() && ",".equals(tokens.get(i + 1)) && "(".equals(tokens.get(i + 2))) {
+					int next = findRightParen(tokens, i + 2);
+					if (!tokens.subList(i + 2, next + 1).equals(firstRow)) {
+						break;
+					}
+					i = next;
+				}
+			} else {
+				append(sb, token);
+			}
+		}
+
+		return sb.length() > MAX_LENGTH ? sb.substring(0, MAX_LENGTH) : sb.toString();
+	}
+
+	/**
+	 * 指纹的md5前8位，方便在日志里查找
+	 */
+	public static String id(String fingerprint) {
+		try {
+			return StringUtils.md5(fingerprint).substring(0, ID_LENGTH);
+		} catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(fingerprint.hashCode());
+		}
+	}
+
+	// 返回null表示词法分析出错
+	private static List<String> tokenize(String sql) {
+		List<String> tokens = new ArrayList<String>();
+		MySqlLexer lexer = new MySqlLexer(sql);
+
+		for (lexer.nextToken(); lexer.token() != Token.EOF; lexer.nextToken()) {
+			Token token = lexer.token();
+
+			switch (token) {
+			case ERROR:
+				return null;
+			case LINE_COMMENT:
+			case MULTI_LINE_COMMENT:
+				break;
+			case LITERAL_INT:
+			case LITERAL_FLOAT:
+			case LITERAL_CHARS:
+			case LITERAL_NCHARS:
+			case LITERAL_HEX:
+			case LITERAL_ALIAS:
+			case QUES:
+				tokens.add("?");
+				break;
+			case IDENTIFIER:
+			case VARIANT:
+				tokens.add(lexer.stringVal().toLowerCase());
+				break;
+			default:
+				tokens.add(token.name != null ? token.name : lexer.stringVal());
+			}
+		}
+
+		return tokens;
+	}
+
+	// start位置是左括号，括号里只有常量和逗号
+	private static boolean isLiteralList(List<String> tokens, int start) {
+		if (start >= tokens.size() || !"(".equals(tokens.get(start))) {
+			return false;
+		}
+
+		for (int i = start + 1; i < tokens.size(); i++) {
+			String token = tokens.get(i);
+
+			if (")".equals(token)) {
+				return i > start + 1;
+			} else if (!"?".equals(token) && !",".equals(token)) {
+				return false;
+			}
+		}
+
+		return false;
+	}
+
+	private static int findRightParen(List<String> tokens, int start) {
+		int depth = 0;
+
+		for (int i = start; i < tokens.size(); i++) {
+			String token = tokens.get(i);
+
+			if ("(".equals(token)) {
+				depth++;
+			} else if (")".equals(token) && --depth == 0) {
+				return i;
+			}
+		}
+
+		return tokens.size() - 1;
+	}
+
+	// 括号、逗号和点的两边不加空格
+	private static void append(StringBuilder sb, String token) {
+		int length = sb.length();
+
+		if (length > 0 && !")".equals(token) && !",".equals(token) && !".".equals(token)
+				&& sb.charAt(length - 1) != '(' && sb.charAt(length - 1) != '.') {
+			sb.append(' ');
+		}
+		sb.append(token);
+	}
+}
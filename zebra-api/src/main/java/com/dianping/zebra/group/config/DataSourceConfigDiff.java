@@ -0,0 +1,122 @@
+package com.dianping.zebra.group.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.dianping.zebra.group.config.datasource.entity.Any;
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+
+/**
+ * <p>
+ * 两组DataSourceConfig之间的差异，用于配置变化时只重建受影响的连接池。
+ * </p>
+ * added和removed是新增和删除的datasource；changed是连接池相关配置（url、用户名、密码、连接池参数等）变化的datasource，需要重建连接池；<br>
+ * routeChanged是只有权重或者机房标签变化的datasource，只需要替换router。
+ */
+public class DataSourceConfigDiff {
+
+	private final Set<String> added = new LinkedHashSet<String>();
+
+	private final Set<String> removed = new LinkedHashSet<String>();
+
+	private final Set<String> changed = new LinkedHashSet<String>();
+
+	private final Set<String> routeChanged = new LinkedHashSet<String>();
+
+	public DataSourceConfigDiff(Map<String, DataSourceConfig> oldConfigs, Map<String, DataSourceConfig> newConfigs) {
+		for (Entry<String, DataSourceConfig> entry : newConfigs.entrySet()) {
+			DataSourceConfig oldConfig = oldConfigs.get(entry.getKey());
+
+			if (oldConfig == null) {
+				added.add(entry.getKey());
+			} else if (!isSamePool(oldConfig, entry.getValue())) {
+				changed.add(entry.getKey());
+			} else if (!isSameRoute(oldConfig, entry.getValue())) {
+				routeChanged.add(entry.getKey());
+			}
+		}
+
+		for (String id : oldConfigs.keySet()) {
+			if (!newConfigs.containsKey(id)) {
+				removed.add(id);
+			}
+		}
+	}
+
+	/**
+	 * 连接池相关的配置是否相同，相同时可以继续使用原来的连接池
+	 */
+	public static boolean isSamePool(DataSourceConfig oldConfig, DataSourceConfig newConfig) {
+		return equals(oldConfig.getType(), newConfig.getType()) && equals(oldConfig.getJdbcUrl(), newConfig.getJdbcUrl())
+				&& equals(oldConfig.getUsername(), newConfig.getUsername())
+				&& equals(oldConfig.getPassword(), newConfig.getPassword())
+				&& equals(oldConfig.getDriverClass(), newConfig.getDriverClass())
+				&& equals(oldConfig.getTestReadOnlySql(), newConfig.getTestReadOnlySql())
+				&& oldConfig.getTimeWindow() == newConfig.getTimeWindow()
+				&& oldConfig.getPunishLimit() == newConfig.getPunishLimit()
+				&& oldConfig.getWarmupTime() == newConfig.getWarmupTime()
+				&& getProperties(oldConfig).equals(getProperties(newConfig));
+	}
+
+	private static boolean isSameRoute(DataSourceConfig oldConfig, DataSourceConfig newConfig) {
+		return oldConfig.getWeight() == newConfig.getWeight() && equals(oldConfig.getTag(), newConfig.getTag())
+				&& oldConfig.isActive() == newConfig.isActive() && oldConfig.isCanRead() == newConfig.isCanRead()
+				&& oldConfig.isCanWrite() == newConfig.isCanWrite();
+	}
+
+	private static List<String> getProperties(DataSourceConfig config) {
+		if (config.getProperties() == null || config.getProperties().isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<String> properties = new ArrayList<String>();
+		for (Any any : config.getProperties()) {
+			properties.add(any.getName() + "=" + any.getValue());
+		}
+		Collections.sort(properties);
+
+		return properties;
+	}
+
+	private static boolean equals(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	public Set<String> getAdded() {
+		return added;
+	}
+
+	public Set<String> getRemoved() {
+		return removed;
+	}
+
+	public Set<String> getChanged() {
+		return changed;
+	}
+
+	public Set<String> getRouteChanged() {
+		return routeChanged;
+	}
+
+	/**
+	 * 是否需要创建或者销毁连接池
+	 */
+	public boolean isPoolChanged() {
+		return !added.isEmpty() || !removed.isEmpty() || !changed.isEmpty();
+	}
+
+	public boolean isEmpty() {
+		return !isPoolChanged() && routeChanged.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "DataSourceConfigDiff [added=" + added + ", removed=" + removed + ", changed=" + changed
+				+ ", routeChanged=" + routeChanged + "]";
+	}
+}
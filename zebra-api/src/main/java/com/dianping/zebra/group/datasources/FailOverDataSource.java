@@ -2,12 +2,22 @@ package com.dianping.zebra.group.datasources;
 
 import java.lang.ref.WeakReference;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.Logger;
 
@@ -22,6 +32,7 @@ import com.dianping.zebra.log.LoggerLoader;
 import com.dianping.zebra.single.jdbc.AbstractDataSource;
 import com.dianping.zebra.single.jdbc.SingleDataSource;
 import com.dianping.zebra.single.manager.SingleDataSourceManagerFactory;
+import com.dianping.zebra.single.pool.ZebraPoolManager;
 import com.dianping.zebra.util.JdbcDriverClassHelper;
 import com.dianping.zebra.util.StringUtils;
 
@@ -29,14 +40,59 @@ import com.dianping.zebra.util.StringUtils;
  * features: 1. auto-detect master database by select @@read_only</br>
  * 2. auto check the master database.</br>
  * 3. if cannot find any master database in the initial phase, fail fast.</br>
+ * 4. re-detect the master database in background, switch when read_only flips.</br>
  */
 public class FailOverDataSource extends AbstractDataSource {
 	private static final Logger logger = LoggerLoader.getLogger(FailOverDataSource.class);
 
+	public static final long DEFAULT_CHECK_MASTER_INTERVAL = 5000;
+
+	public static final long DEFAULT_CHECK_MASTER_TIMEOUT = 3000;
+
+	public static final long DEFAULT_MIN_SWITCH_INTERVAL = 30000;
+
+	private static final int CHECK_MASTER_THREADS = 8;
+
+	private static final int CHECK_MASTER_QUEUE_SIZE = 256;
+
+	// 并行检测各个写库，检测超时的线程不会阻塞监控线程；线程数和队列都有上限，探测连接本身也有超时
+	private static final ThreadPoolExecutor CHECK_MASTER_EXECUTOR = new ThreadPoolExecutor(CHECK_MASTER_THREADS,
+			CHECK_MASTER_THREADS, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(CHECK_MASTER_QUEUE_SIZE),
+			new ThreadFactory() {
+				private final AtomicInteger index = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r);
+					t.setDaemon(true);
+					t.setName("Dal-CheckMasterDataSource-" + index.incrementAndGet());
+					return t;
+				}
+			});
+
+	static {
+		CHECK_MASTER_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
 	private Map<String, DataSourceConfig> configs;
 
 	private volatile SingleDataSource master;
 
+	private volatile boolean closed;
+
+	private long checkMasterInterval = DEFAULT_CHECK_MASTER_INTERVAL;
+
+	private long checkMasterTimeout = DEFAULT_CHECK_MASTER_TIMEOUT;
+
+	private long minSwitchInterval = DEFAULT_MIN_SWITCH_INTERVAL;
+
+	private volatile long lastSwitchTime;
+
+	// 小于等于0时不预热
+	private long warmUpTimeout;
+
+	private Thread masterMonitor;
+
 	public FailOverDataSource(Map<String, DataSourceConfig> configs, List<JdbcFilter> filters) {
 		this.configs = configs;
 		this.filters = filters;
@@ -44,6 +100,14 @@ public class FailOverDataSource extends AbstractDataSource {
 
 	@Override
 	public void close() throws SQLException {
+		synchronized (this) {
+			closed = true;
+
+			if (masterMonitor != null) {
+				masterMonitor.interrupt();
+			}
+		}
+
 		if (master != null) {
 			SingleDataSourceManagerFactory.getDataSourceManager().destoryDataSource(master);
 		}
@@ -78,14 +142,6 @@ public class FailOverDataSource extends AbstractDataSource {
 		return master;
 	}
 
-	private SingleDataSource getDataSource(DataSourceConfig config) {
-		if (master != null) {
-			SingleDataSourceManagerFactory.getDataSourceManager().destoryDataSource(master);
-		}
-
-		return SingleDataSourceManagerFactory.getDataSourceManager().createDataSource(config, this.filters);
-	}
-
 	@Override
 	public void init() {
 		init(true);
@@ -118,37 +174,168 @@ public class FailOverDataSource extends AbstractDataSource {
 		} catch (WeakReferenceGCException e) {
 			logger.error("should never be here!", e);
 		}
+
+		if (checkMasterInterval > 0) {
+			startMasterMonitor(monitor);
+		}
 	}
 
-	private boolean setMasterDb(DataSourceConfig config) {
-		if (master == null || !master.getId().equals(config.getId())) {
-			master = getDataSource(config);
-			return true;
+	private synchronized void startMasterMonitor(MasterDataSourceMonitor monitor) {
+		if (closed || masterMonitor != null) {
+			return;
 		}
-		return false;
+
+		masterMonitor = new Thread(monitor);
+		masterMonitor.setDaemon(true);
+		masterMonitor.setName("Dal-" + MasterDataSourceMonitor.class.getSimpleName() + "-" + configs.keySet());
+		masterMonitor.start();
 	}
 
-	static enum CheckMasterDataSourceResult {
-		READ_WRITE(1), READ_ONLY(2), ERROR(3);
+	// 先创建并在锁外预热新的主库，再在锁内替换，旧的主库交给SingleDataSourceManager延迟关闭
+	private boolean setMasterDb(DataSourceConfig config) {
+		if (!needSwitchMaster(config)) {
+			return false;
+		}
 
-		private int value;
+		SingleDataSource newMaster = SingleDataSourceManagerFactory.getDataSourceManager().createDataSource(config,
+				this.filters);
+		ZebraPoolManager.warmUp(newMaster, warmUpTimeout);
 
-		private Exception exception;
+		SingleDataSource oldMaster;
+		synchronized (this) {
+			// 预热期间已经关闭或者被其他线程切换过
+			if (!needSwitchMaster(config)) {
+				SingleDataSourceManagerFactory.getDataSourceManager().destoryDataSource(newMaster);
+				return false;
+			}
 
-		private CheckMasterDataSourceResult(int value) {
-			this.value = value;
+			oldMaster = master;
+			master = newMaster;
 		}
 
-		public Exception getException() {
-			return exception;
+		if (oldMaster != null) {
+			SingleDataSourceManagerFactory.getDataSourceManager().destoryDataSource(oldMaster);
 		}
+		return true;
+	}
 
-		public void setException(Exception exception) {
+	private synchronized boolean needSwitchMaster(DataSourceConfig config) {
+		return !closed && (master == null || !master.getId().equals(config.getId()));
+	}
+
+	private void switchFailOverDataSource(final DataSourceConfig config) {
+		if (filters != null && filters.size() > 0) {
+			JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
+				@Override
+				public void switchFailOverDataSource(FailOverDataSource source, JdbcFilter chain) {
+					if (index < filters.size()) {
+						filters.get(index++).switchFailOverDataSource(source, chain);
+					} else {
+						source.switchFailOverDataSourceOrigin(config);
+					}
+				}
+			};
+			chain.switchFailOverDataSource(this, chain);
+		} else {
+			switchFailOverDataSourceOrigin(config);
+		}
+	}
+
+	/**
+	 * 不经过filter，重新检测主库，主库变化时切换
+	 */
+	public void switchFailOverDataSourceOrigin() {
+		try {
+			DataSourceConfig config = new MasterDataSourceMonitor(this)
+					.detectMasterDataSource(new FindMasterDataSourceResult());
+			if (config != null) {
+				switchFailOverDataSourceOrigin(config);
+			}
+		} catch (WeakReferenceGCException e) {
+			logger.error("should never be here!", e);
+		}
+	}
+
+	private void switchFailOverDataSourceOrigin(DataSourceConfig config) {
+		String oldMasterId = master == null ? null : master.getId();
+
+		if (setMasterDb(config)) {
+			lastSwitchTime = System.currentTimeMillis();
+			logger.warn(String.format("master dataSource switched from %s to %s", oldMasterId, config.getId()));
+		}
+	}
+
+	public long getCheckMasterInterval() {
+		return checkMasterInterval;
+	}
+
+	/**
+	 * 后台检测主库的间隔，小于等于0时不启动后台检测，需要在init之前设置
+	 */
+	public void setCheckMasterInterval(long checkMasterInterval) {
+		this.checkMasterInterval = checkMasterInterval;
+	}
+
+	public long getCheckMasterTimeout() {
+		return checkMasterTimeout;
+	}
+
+	/**
+	 * 每次检测所有写库的超时时间
+	 */
+	public void setCheckMasterTimeout(long checkMasterTimeout) {
+		this.checkMasterTimeout = checkMasterTimeout;
+	}
+
+	public long getMinSwitchInterval() {
+		return minSwitchInterval;
+	}
+
+	/**
+	 * 两次切换主库的最小间隔，避免read_only来回变化时频繁切换
+	 */
+	public void setMinSwitchInterval(long minSwitchInterval) {
+		this.minSwitchInterval = minSwitchInterval;
+	}
+
+	/**
+	 * 新的主库在切换之前预热的最长时间，单位毫秒，小于等于0时不预热
+	 */
+	public void setWarmUpTimeout(long warmUpTimeout) {
+		this.warmUpTimeout = warmUpTimeout;
+	}
+
+	/**
+	 * 单次检测的结果，每次检测出错时都是新的对象，并发检测之间不共享异常
+	 */
+	static final class CheckMasterDataSourceResult {
+		static final CheckMasterDataSourceResult READ_WRITE = new CheckMasterDataSourceResult(State.READ_WRITE, null);
+
+		static final CheckMasterDataSourceResult READ_ONLY = new CheckMasterDataSourceResult(State.READ_ONLY, null);
+
+		private final State state;
+
+		private final Exception exception;
+
+		private CheckMasterDataSourceResult(State state, Exception exception) {
+			this.state = state;
 			this.exception = exception;
 		}
 
-		public int getValue() {
-			return value;
+		static CheckMasterDataSourceResult error(Exception exception) {
+			return new CheckMasterDataSourceResult(State.ERROR, exception);
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		public Exception getException() {
+			return exception;
+		}
+
+		static enum State {
+			READ_WRITE, READ_ONLY, ERROR;
 		}
 	}
 
@@ -194,14 +381,14 @@ public class FailOverDataSource extends AbstractDataSource {
 		}
 	}
 
-	public static class MasterDataSourceMonitor {
+	public static class MasterDataSourceMonitor implements Runnable {
 		private WeakReference<FailOverDataSource> ref;
 
 		public MasterDataSourceMonitor(FailOverDataSource dsRef) {
 			this.ref = new WeakReference<FailOverDataSource>(dsRef);
 		}
 
-		private FindMasterDataSourceResult findMasterDataSourceOrigin() throws WeakReferenceGCException {
+		public FindMasterDataSourceResult findMasterDataSourceOrigin() throws WeakReferenceGCException {
 			FindMasterDataSourceResult result = new FindMasterDataSourceResult();
 
 			if (getWeakFailOverDataSource().configs.values().size() == 0) {
@@ -209,24 +396,116 @@ public class FailOverDataSource extends AbstractDataSource {
 				logger.warn(exp.getMessage(), exp);
 			}
 
-			for (DataSourceConfig config : getWeakFailOverDataSource().configs.values()) {
-				CheckMasterDataSourceResult checkResult = isMasterDataSource(config);
-				if (checkResult == CheckMasterDataSourceResult.READ_WRITE) {
-					result.setChangedMaster(getWeakFailOverDataSource().setMasterDb(config));
-					result.setMasterExist(true);
-					result.setDsId(config.getId());
+			DataSourceConfig config = detectMasterDataSource(result);
+			if (config != null) {
+				result.setChangedMaster(getWeakFailOverDataSource().setMasterDb(config));
+			}
+
+			return result;
+		}
+
+		/**
+		 * 并行检测所有写库，当前主库仍然可写时优先保留，否则按配置顺序选择第一个可写的库
+		 */
+		private DataSourceConfig detectMasterDataSource(FindMasterDataSourceResult result)
+				throws WeakReferenceGCException {
+			FailOverDataSource ds = getWeakFailOverDataSource();
+			List<DataSourceConfig> configs = new ArrayList<DataSourceConfig>(ds.configs.values());
+			List<Future<CheckMasterDataSourceResult>> futures = new ArrayList<Future<CheckMasterDataSourceResult>>();
+			String currentMasterId = ds.master == null ? null : ds.master.getId();
+
+			for (final DataSourceConfig config : configs) {
+				try {
+					futures.add(CHECK_MASTER_EXECUTOR.submit(new Callable<CheckMasterDataSourceResult>() {
+						@Override
+						public CheckMasterDataSourceResult call() throws Exception {
+							return isMasterDataSource(config);
+						}
+					}));
+				} catch (RejectedExecutionException e) {
+					// 检测线程都被占满时这一轮跳过该库
+					futures.add(null);
+				}
+			}
+
+			long deadline = System.currentTimeMillis() + ds.checkMasterTimeout;
+			DataSourceConfig master = null;
+
+			for (int i = 0; i < configs.size(); i++) {
+				DataSourceConfig config = configs.get(i);
+				CheckMasterDataSourceResult checkResult;
+
+				if (futures.get(i) == null) {
+					result.setException(new SQLException("too many pending master checks, skip: " + config.getId()));
+					continue;
+				}
+
+				try {
+					checkResult = futures.get(i).get(Math.max(0, deadline - System.currentTimeMillis()),
+							TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					futures.get(i).cancel(true);
+					result.setException(new SQLException("check master dataSource timeout: " + config.getId()));
+					continue;
+				} catch (ExecutionException e) {
+					result.setException(e);
+					continue;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					result.setException(e);
 					break;
-				} else if (checkResult == CheckMasterDataSourceResult.ERROR) {
+				}
+
+				if (checkResult.getState() == CheckMasterDataSourceResult.State.READ_WRITE) {
+					if (master == null || config.getId().equals(currentMasterId)) {
+						master = config;
+					}
+				} else if (checkResult.getState() == CheckMasterDataSourceResult.State.ERROR) {
 					result.setException(checkResult.getException());
 				}
 			}
 
-			if (result.isMasterExist()) {
+			if (master != null) {
+				result.setMasterExist(true);
+				result.setDsId(master.getId());
 				// reset the exception if has any
 				result.setException(null);
 			}
 
-			return result;
+			return master;
+		}
+
+		@Override
+		public void run() {
+			while (!Thread.currentThread().isInterrupted()) {
+				try {
+					FailOverDataSource ds = getWeakFailOverDataSource();
+					long interval = ds.checkMasterInterval;
+					ds = null;
+
+					TimeUnit.MILLISECONDS.sleep(interval);
+					checkMaster();
+				} catch (InterruptedException e) {
+					break;
+				} catch (WeakReferenceGCException e) {
+					break;
+				} catch (Exception e) {
+					logger.warn("fail to check master dataSource", e);
+				}
+			}
+		}
+
+		void checkMaster() throws WeakReferenceGCException {
+			FailOverDataSource ds = getWeakFailOverDataSource();
+
+			if (ds.closed || System.currentTimeMillis() - ds.lastSwitchTime < ds.minSwitchInterval) {
+				return;
+			}
+
+			DataSourceConfig config = detectMasterDataSource(new FindMasterDataSourceResult());
+			if (config != null && (ds.master == null || !ds.master.getId().equals(config.getId()))) {
+				ds.switchFailOverDataSource(config);
+			}
 		}
 
 		public FindMasterDataSourceResult findMasterDataSource() throws WeakReferenceGCException {
@@ -250,10 +529,17 @@ public class FailOverDataSource extends AbstractDataSource {
 			}
 		}
 
+		/**
+		 * 探测用的连接带上连接和读超时，避免宕机的库让检测线程一直阻塞
+		 */
 		protected Connection getConnection(DataSourceConfig config) throws SQLException {
-			JdbcDriverClassHelper.loadDriverClass(config.getDriverClass(), config.getJdbcUrl());
+			return JdbcDriverClassHelper.getConnection(config.getDriverClass(), config.getJdbcUrl(),
+					config.getUsername(), config.getPassword(), getCheckMasterTimeout());
+		}
 
-			return DriverManager.getConnection(config.getJdbcUrl(), config.getUsername(), config.getPassword());
+		private long getCheckMasterTimeout() {
+			FailOverDataSource ds = ref.get();
+			return ds == null ? DEFAULT_CHECK_MASTER_TIMEOUT : ds.checkMasterTimeout;
 		}
 
 		private FailOverDataSource getWeakFailOverDataSource() throws WeakReferenceGCException {
@@ -280,6 +566,7 @@ public class FailOverDataSource extends AbstractDataSource {
 			try {
 				conn = getConnection(config);
 				stmt = conn.createStatement();
+				stmt.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(getCheckMasterTimeout())));
 				rs = stmt.executeQuery(config.getTestReadOnlySql());
 
 				if (isMaster(rs)) {
@@ -290,10 +577,7 @@ public class FailOverDataSource extends AbstractDataSource {
 			} catch (SQLException e) {
 				logger.error(e.getMessage(), e);
 
-				CheckMasterDataSourceResult result = CheckMasterDataSourceResult.ERROR;
-				result.setException(e);
-
-				return result;
+				return CheckMasterDataSourceResult.error(e);
 			} finally {
 				if (rs != null) {
 					try {
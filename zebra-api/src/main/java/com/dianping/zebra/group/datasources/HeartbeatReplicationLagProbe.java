@@ -0,0 +1,60 @@
+package com.dianping.zebra.group.datasources;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * 通过心跳表检测复制延迟：主库定时更新心跳表的时间戳（例如pt-heartbeat），从库上读到的时间戳和当前时间的差就是延迟。<br>
+ * 依赖主从机器和应用机器的时钟同步。
+ */
+public class HeartbeatReplicationLagProbe implements ReplicationLagProbe {
+
+	public static final String DEFAULT_HEARTBEAT_SQL = "select max(ts) from heartbeat";
+
+	public static final int DEFAULT_QUERY_TIMEOUT = 1;
+
+	private final String heartbeatSql;
+
+	private int queryTimeout = DEFAULT_QUERY_TIMEOUT;
+
+	public HeartbeatReplicationLagProbe() {
+		this(DEFAULT_HEARTBEAT_SQL);
+	}
+
+	/**
+	 * @param heartbeatSql
+	 *           查询最新心跳时间的sql，返回一列timestamp
+	 */
+	public HeartbeatReplicationLagProbe(String heartbeatSql) {
+		this.heartbeatSql = heartbeatSql;
+	}
+
+	@Override
+	public long getReplicationLag(Connection conn) throws SQLException {
+		Statement stmt = conn.createStatement();
+
+		try {
+			stmt.setQueryTimeout(queryTimeout);
+			ResultSet rs = stmt.executeQuery(heartbeatSql);
+			Timestamp heartbeat = rs.next() ? rs.getTimestamp(1) : null;
+
+			if (heartbeat == null) {
+				throw new SQLException("no heartbeat found by sql: " + heartbeatSql);
+			}
+
+			return Math.max(0, System.currentTimeMillis() - heartbeat.getTime());
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * 查询心跳的超时时间，单位秒
+	 */
+	public void setQueryTimeout(int queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+}
@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -11,19 +12,24 @@ import java.util.Map;
 import java.util.Set;
 
 import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.latency.LatencyFilter;
+import com.dianping.zebra.group.config.DataSourceConfigDiff;
 import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
 import com.dianping.zebra.group.config.system.entity.SystemConfig;
 import com.dianping.zebra.group.exception.SlaveDsDisConnectedException;
 import com.dianping.zebra.group.monitor.SingleDataSourceMBean;
 import com.dianping.zebra.group.router.DataSourceRouter;
+import com.dianping.zebra.group.router.LatencyAwareDataSourceRouter;
 import com.dianping.zebra.group.router.RetryConnectDataSourceRouter;
 import com.dianping.zebra.group.router.RouterContext;
 import com.dianping.zebra.group.router.RouterTarget;
+import com.dianping.zebra.group.router.RouterType;
 import com.dianping.zebra.group.util.SqlAliasManager;
 import com.dianping.zebra.single.jdbc.AbstractDataSource;
 import com.dianping.zebra.single.jdbc.SingleDataSource;
 import com.dianping.zebra.single.manager.SingleDataSourceManager;
 import com.dianping.zebra.single.manager.SingleDataSourceManagerFactory;
+import com.dianping.zebra.single.pool.ZebraPoolManager;
 import com.dianping.zebra.util.JDBCUtils;
 import com.dianping.zebra.util.JdbcDriverClassHelper;
 
@@ -31,23 +37,54 @@ public class LoadBalancedDataSource extends AbstractDataSource {
 
 	private SingleDataSourceManager dataSourceManager;
 
-	private Map<String, SingleDataSource> dataSources;
+	// 配置变化时整体替换，正在获取连接的线程继续使用旧的
+	private volatile Map<String, SingleDataSource> dataSources;
 
-	private Map<String, DataSourceConfig> loadBalancedConfigMap;
+	private volatile Map<String, DataSourceConfig> loadBalancedConfigMap;
 
-	private DataSourceRouter router;
+	private volatile DataSourceRouter router;
+
+	private List<JdbcFilter> singleDataSourceFilters;
 
 	private SystemConfig systemConfig;
 
+	private RouterType routerType;
+
+	private LatencyFilter latencyFilter;
+
+	// 小于等于0时不检测复制延迟
+	private long maxReplicationLag;
+
+	private long recoverReplicationLag = -1;
+
+	private long replicationLagCheckInterval = ReplicationLagMonitor.DEFAULT_CHECK_INTERVAL;
+
+	private ReplicationLagProbe replicationLagProbe;
+
+	private volatile ReplicationLagMonitor replicationLagMonitor;
+
+	// 小于等于0时不预热
+	private long warmUpTimeout;
+
 	public LoadBalancedDataSource(Map<String, DataSourceConfig> loadBalancedConfigMap, List<JdbcFilter> filters,
 			SystemConfig systemConfig) {
+		this(loadBalancedConfigMap, filters, systemConfig, RouterType.ROUND_ROBIN);
+	}
+
+	public LoadBalancedDataSource(Map<String, DataSourceConfig> loadBalancedConfigMap, List<JdbcFilter> filters,
+			SystemConfig systemConfig, RouterType routerType) {
 		this.dataSources = new HashMap<String, SingleDataSource>();
 		this.loadBalancedConfigMap = loadBalancedConfigMap;
 		this.filters = filters;
 		this.systemConfig = systemConfig;
+		this.routerType = routerType;
 	}
 
-	public void close() throws SQLException {
+	public synchronized void close() throws SQLException {
+		if (replicationLagMonitor != null) {
+			replicationLagMonitor.close();
+		}
+
 		for (SingleDataSource ds : dataSources.values()) {
 			dataSourceManager.destoryDataSource(ds);
 		}
@@ -61,10 +98,23 @@ public class LoadBalancedDataSource extends AbstractDataSource {
 	@Override
 	public Connection getConnection(String username, String password) throws SQLException {
 		RouterContext context = new RouterContext();
+		Set<String> laggingDataSources = replicationLagMonitor == null ? null : replicationLagMonitor
+				.getLaggingDataSources();
+		boolean excludeLagging = false;
 
 		for (SingleDataSource dataSource : this.dataSources.values()) {
 			if (dataSource.isDown() || dataSource.isClosed()) {
 				context.addExcludeTarget(dataSource.getId());
+			} else if (laggingDataSources != null && !laggingDataSources.isEmpty()
+					&& !laggingDataSources.contains(dataSource.getId())) {
+				excludeLagging = true;
+			}
+		}
+
+		// 所有可用的从库延迟都过大时不摘除，避免读请求全部失败
+		if (excludeLagging) {
+			for (String dsId : laggingDataSources) {
+				context.addExcludeTarget(dsId);
 			}
 		}
 
@@ -81,7 +131,13 @@ public class LoadBalancedDataSource extends AbstractDataSource {
 						SqlAliasManager.setRetrySqlAlias();
 					}
 
-					return this.dataSources.get(target.getId()).getConnection();
+					SingleDataSource dataSource = this.dataSources.get(target.getId());
+					if (dataSource == null) {
+						// 刷新配置时已经被删除的从库
+						throw new SQLException("dataSource(" + target.getId() + ") has been removed");
+					}
+
+					return dataSource.getConnection();
 				} catch (SQLException e) {
 					exceptions.add(e);
 					excludeTargets.add(target);
@@ -110,30 +166,202 @@ public class LoadBalancedDataSource extends AbstractDataSource {
 		return beans;
 	}
 
-	public void init() {
+	/**
+	 * @return 按延迟选择从库时统计延迟的filter，其他路由方式返回null
+	 */
+	public LatencyFilter getLatencyFilter() {
+		return latencyFilter;
+	}
+
+	/**
+	 * @return 最近一次检测到的每个从库的复制延迟，单位毫秒，没有开启检测时为空
+	 */
+	public Map<String, Long> getReplicationLags() {
+		if (replicationLagMonitor == null) {
+			return Collections.emptyMap();
+		}
+
+		return replicationLagMonitor.getReplicationLags();
+	}
+
+	public ReplicationLagMonitor getReplicationLagMonitor() {
+		return replicationLagMonitor;
+	}
+
+	/**
+	 * 复制延迟超过这个值的从库暂时不参与读，单位毫秒，小于等于0时不检测，需要在init之前设置
+	 */
+	public void setMaxReplicationLag(long maxReplicationLag) {
+		this.maxReplicationLag = maxReplicationLag;
+	}
+
+	/**
+	 * 被摘除的从库延迟降到这个值以下才恢复，单位毫秒，默认为maxReplicationLag的一半
+	 */
+	public void setRecoverReplicationLag(long recoverReplicationLag) {
+		this.recoverReplicationLag = recoverReplicationLag;
+	}
+
+	public void setReplicationLagCheckInterval(long replicationLagCheckInterval) {
+		this.replicationLagCheckInterval = replicationLagCheckInterval;
+	}
+
+	/**
+	 * 新建的连接池在开始使用之前预热的最长时间，单位毫秒，小于等于0时不预热
+	 */
+	public void setWarmUpTimeout(long warmUpTimeout) {
+		this.warmUpTimeout = warmUpTimeout;
+	}
+
+	/**
+	 * 默认使用HeartbeatReplicationLagProbe
+	 */
+	public void setReplicationLagProbe(ReplicationLagProbe replicationLagProbe) {
+		this.replicationLagProbe = replicationLagProbe;
+	}
+
+	public synchronized void init() {
 		this.dataSourceManager = SingleDataSourceManagerFactory.getDataSourceManager();
 
 		for (DataSourceConfig config : loadBalancedConfigMap.values()) {
-			try {
-				JdbcDriverClassHelper.loadDriverClass(config.getDriverClass(), config.getJdbcUrl());
-				Connection conn = DriverManager.getConnection(config.getJdbcUrl(), config.getUsername(),
-						config.getPassword());
+			checkConnection(config);
+		}
 
-				if (conn != null) {
-					conn.close();
-				}
-			} catch (SQLException e) {
-				throw new SlaveDsDisConnectedException(
-						"Cannot connect slave datasource(" + config.getJdbcUrl() + ":" + config.getUsername() + ").",
-						e);
+		this.singleDataSourceFilters = this.filters;
+		if (routerType == RouterType.LATENCY_AWARE) {
+			this.latencyFilter = new LatencyFilter();
+
+			// 延迟统计放在最内层
+			this.singleDataSourceFilters = new ArrayList<JdbcFilter>();
+			if (this.filters != null) {
+				this.singleDataSourceFilters.addAll(this.filters);
 			}
+			this.singleDataSourceFilters.add(latencyFilter);
 		}
 
 		for (DataSourceConfig config : loadBalancedConfigMap.values()) {
-			SingleDataSource dataSource = dataSourceManager.createDataSource(config, this.filters);
+			SingleDataSource dataSource = dataSourceManager.createDataSource(config, singleDataSourceFilters);
 			this.dataSources.put(config.getId(), dataSource);
 		}
+		ZebraPoolManager.warmUp(this.dataSources.values(), warmUpTimeout);
+
+		this.router = createRouter(loadBalancedConfigMap);
+		this.replicationLagMonitor = createReplicationLagMonitor(loadBalancedConfigMap);
+	}
+
+	/**
+	 * <p>
+	 * 按新的配置增量刷新，没有变化的从库继续使用原来的连接池和连接。
+	 * </p>
+	 * 只有权重变化时只替换router；新增的从库只创建它自己的连接池；删除的从库只销毁它自己的连接池，等正在使用的连接归还后再关闭。<br>
+	 * 新增的从库连不上时抛出异常，不做任何变更。
+	 */
+	public synchronized void refresh(Map<String, DataSourceConfig> newConfigMap) {
+		DataSourceConfigDiff diff = new DataSourceConfigDiff(this.loadBalancedConfigMap, newConfigMap);
+
+		if (diff.isEmpty()) {
+			this.loadBalancedConfigMap = newConfigMap;
+			return;
+		}
+
+		Map<String, SingleDataSource> created = new HashMap<String, SingleDataSource>();
+		try {
+			for (String id : diff.getAdded()) {
+				checkConnection(newConfigMap.get(id));
+			}
+			for (String id : diff.getChanged()) {
+				checkConnection(newConfigMap.get(id));
+			}
+
+			for (String id : diff.getAdded()) {
+				created.put(id, dataSourceManager.createDataSource(newConfigMap.get(id), singleDataSourceFilters));
+			}
+			for (String id : diff.getChanged()) {
+				created.put(id, dataSourceManager.createDataSource(newConfigMap.get(id), singleDataSourceFilters));
+			}
+
+			// 预热完成后再加入router
+			ZebraPoolManager.warmUp(created.values(), warmUpTimeout);
+		} catch (RuntimeException e) {
+			for (SingleDataSource dataSource : created.values()) {
+				dataSourceManager.destoryDataSource(dataSource);
+			}
+
+			throw e;
+		}
+
+		Map<String, SingleDataSource> oldDataSources = this.dataSources;
+		List<SingleDataSource> toBeClosed = new ArrayList<SingleDataSource>();
+
+		// 先加入新的从库再替换router，router选中的从库一定存在
+		Map<String, SingleDataSource> newDataSources = new HashMap<String, SingleDataSource>(oldDataSources);
+		newDataSources.putAll(created);
+		this.dataSources = newDataSources;
+		this.router = createRouter(newConfigMap);
+		this.loadBalancedConfigMap = newConfigMap;
+
+		if (!diff.getRemoved().isEmpty()) {
+			newDataSources = new HashMap<String, SingleDataSource>(newDataSources);
+			for (String id : diff.getRemoved()) {
+				toBeClosed.add(newDataSources.remove(id));
+			}
+			this.dataSources = newDataSources;
+		}
+
+		for (String id : diff.getChanged()) {
+			toBeClosed.add(oldDataSources.get(id));
+		}
+
+		for (SingleDataSource dataSource : toBeClosed) {
+			dataSourceManager.destoryDataSource(dataSource);
+		}
+
+		if (diff.isPoolChanged() && replicationLagMonitor != null) {
+			replicationLagMonitor.close();
+			this.replicationLagMonitor = createReplicationLagMonitor(newConfigMap);
+		}
+	}
+
+	/**
+	 * @return 当前使用的SingleDataSource，key为datasource id
+	 */
+	public Map<String, SingleDataSource> getDataSources() {
+		return Collections.unmodifiableMap(dataSources);
+	}
+
+	private void checkConnection(DataSourceConfig config) {
+		try {
+			JdbcDriverClassHelper.loadDriverClass(config.getDriverClass(), config.getJdbcUrl());
+			Connection conn = DriverManager.getConnection(config.getJdbcUrl(), config.getUsername(),
+					config.getPassword());
+
+			if (conn != null) {
+				conn.close();
+			}
+		} catch (SQLException e) {
+			throw new SlaveDsDisConnectedException(
+					"Cannot connect slave datasource(" + config.getJdbcUrl() + ":" + config.getUsername() + ").", e);
+		}
+	}
+
+	private DataSourceRouter createRouter(Map<String, DataSourceConfig> configs) {
+		if (latencyFilter != null) {
+			return new LatencyAwareDataSourceRouter(configs, latencyFilter);
+		} else {
+			return new RetryConnectDataSourceRouter(configs, systemConfig.getDataCenters());
+		}
+	}
+
+	private ReplicationLagMonitor createReplicationLagMonitor(Map<String, DataSourceConfig> configs) {
+		if (maxReplicationLag <= 0) {
+			return null;
+		}
+
+		ReplicationLagMonitor monitor = new ReplicationLagMonitor(configs,
+				replicationLagProbe != null ? replicationLagProbe : new HeartbeatReplicationLagProbe(), maxReplicationLag,
+				recoverReplicationLag >= 0 ? recoverReplicationLag : maxReplicationLag / 2, replicationLagCheckInterval);
+		monitor.start();
 
-		this.router = new RetryConnectDataSourceRouter(loadBalancedConfigMap, systemConfig.getDataCenters());
+		return monitor;
 	}
 }
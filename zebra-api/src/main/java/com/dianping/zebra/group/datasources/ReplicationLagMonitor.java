@@ -0,0 +1,243 @@
+package com.dianping.zebra.group.datasources;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+import com.dianping.zebra.log.LoggerLoader;
+import com.dianping.zebra.util.JdbcDriverClassHelper;
+
+/**
+ * 定时检测每个从库的复制延迟。<br>
+ * 延迟超过maxLag的从库被标记为延迟过大，降到recoverLag以下才恢复，避免延迟在阈值附近时反复摘除和恢复。<br>
+ * 检测失败或超时时保持原来的状态，从库不可用由SingleDataSource自己处理。<br>
+ * 所有从库并行检测，每次检测的连接、查询和等待都受probeTimeout限制。
+ */
+public class ReplicationLagMonitor implements Runnable {
+	private static final Logger logger = LoggerLoader.getLogger(ReplicationLagMonitor.class);
+
+	public static final long DEFAULT_CHECK_INTERVAL = 1000;
+
+	public static final long DEFAULT_PROBE_TIMEOUT = 1000;
+
+	public static final long UNKNOWN_LAG = -1;
+
+	private static final int PROBE_THREADS = 4;
+
+	private static final int PROBE_QUEUE_SIZE = 256;
+
+	// 所有monitor共享，线程数和队列都有上限
+	private static final ThreadPoolExecutor PROBE_EXECUTOR = new ThreadPoolExecutor(PROBE_THREADS, PROBE_THREADS, 60,
+			TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(PROBE_QUEUE_SIZE), new ThreadFactory() {
+				private final AtomicInteger index = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r);
+					t.setDaemon(true);
+					t.setName("Dal-ReplicationLagProbe-" + index.incrementAndGet());
+					return t;
+				}
+			});
+
+	static {
+		PROBE_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
+	private final Map<String, DataSourceConfig> configs;
+
+	private final ReplicationLagProbe probe;
+
+	private final long maxLag;
+
+	private final long recoverLag;
+
+	private final long checkInterval;
+
+	private volatile long probeTimeout = DEFAULT_PROBE_TIMEOUT;
+
+	private volatile Map<String, Long> replicationLags = Collections.emptyMap();
+
+	private volatile Set<String> laggingDataSources = Collections.emptySet();
+
+	private volatile boolean closed;
+
+	private Thread thread;
+
+	/**
+	 * @param maxLag
+	 *           允许的最大延迟，单位毫秒
+	 * @param recoverLag
+	 *           延迟过大的从库降到这个延迟以下才恢复，单位毫秒
+	 * @param checkInterval
+	 *           检测间隔，单位毫秒，小于等于0时不启动后台线程
+	 */
+	public ReplicationLagMonitor(Map<String, DataSourceConfig> configs, ReplicationLagProbe probe, long maxLag,
+			long recoverLag, long checkInterval) {
+		this.configs = configs;
+		this.probe = probe;
+		this.maxLag = maxLag;
+		this.recoverLag = Math.min(recoverLag, maxLag);
+		this.checkInterval = checkInterval;
+	}
+
+	public synchronized void start() {
+		if (closed || thread != null || checkInterval <= 0) {
+			return;
+		}
+
+		thread = new Thread(this);
+		thread.setDaemon(true);
+		thread.setName("Dal-" + ReplicationLagMonitor.class.getSimpleName() + "-" + configs.keySet());
+		thread.start();
+	}
+
+	public synchronized void close() {
+		closed = true;
+
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (!closed && !Thread.currentThread().isInterrupted()) {
+			try {
+				checkLag();
+				TimeUnit.MILLISECONDS.sleep(checkInterval);
+			} catch (InterruptedException e) {
+				break;
+			} catch (Exception e) {
+				logger.warn("fail to check replication lag", e);
+			}
+		}
+	}
+
+	void checkLag() {
+		Map<String, Long> lags = new LinkedHashMap<String, Long>();
+		Set<String> lagging = new HashSet<String>(laggingDataSources);
+
+		List<DataSourceConfig> configList = new ArrayList<DataSourceConfig>(configs.values());
+		List<Future<Long>> futures = new ArrayList<Future<Long>>(configList.size());
+		for (final DataSourceConfig config : configList) {
+			try {
+				futures.add(PROBE_EXECUTOR.submit(new Callable<Long>() {
+					@Override
+					public Long call() throws Exception {
+						return getReplicationLag(config);
+					}
+				}));
+			} catch (RejectedExecutionException e) {
+				futures.add(null);
+			}
+		}
+
+		long deadline = System.currentTimeMillis() + probeTimeout;
+		for (int i = 0; i < configList.size(); i++) {
+			DataSourceConfig config = configList.get(i);
+			long lag = waitReplicationLag(config, futures.get(i), deadline);
+			lags.put(config.getId(), lag);
+
+			if (lag == UNKNOWN_LAG) {
+				continue;
+			}
+
+			if (lag > maxLag) {
+				if (lagging.add(config.getId())) {
+					logger.warn(String.format("replication lag of dataSource(%s) is %dms, exclude it", config.getId(), lag));
+				}
+			} else if (lag <= recoverLag) {
+				if (lagging.remove(config.getId())) {
+					logger.info(String.format("replication lag of dataSource(%s) is %dms, recover it", config.getId(), lag));
+				}
+			}
+		}
+
+		this.replicationLags = Collections.unmodifiableMap(lags);
+		this.laggingDataSources = Collections.unmodifiableSet(lagging);
+	}
+
+	private long waitReplicationLag(DataSourceConfig config, Future<Long> future, long deadline) {
+		if (future == null) {
+			logger.warn(String.format("too many pending replication lag checks, skip dataSource(%s)", config.getId()));
+			return UNKNOWN_LAG;
+		}
+
+		try {
+			return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			logger.warn(String.format("check replication lag of dataSource(%s) timeout", config.getId()));
+		} catch (ExecutionException e) {
+			logger.warn(String.format("fail to check replication lag of dataSource(%s)", config.getId()), e.getCause());
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+		}
+
+		return UNKNOWN_LAG;
+	}
+
+	private long getReplicationLag(DataSourceConfig config) {
+		Connection conn = null;
+
+		try {
+			conn = JdbcDriverClassHelper.getConnection(config.getDriverClass(), config.getJdbcUrl(),
+					config.getUsername(), config.getPassword(), probeTimeout);
+
+			return probe.getReplicationLag(conn);
+		} catch (SQLException e) {
+			logger.warn(String.format("fail to check replication lag of dataSource(%s)", config.getId()), e);
+
+			return UNKNOWN_LAG;
+		} finally {
+			if (conn != null) {
+				try {
+					conn.close();
+				} catch (SQLException ignore) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * 单次检测的超时时间，单位毫秒，同时用作探测连接的连接和读超时
+	 */
+	public void setProbeTimeout(long probeTimeout) {
+		this.probeTimeout = probeTimeout;
+	}
+
+	/**
+	 * @return 延迟过大需要摘除的从库
+	 */
+	public Set<String> getLaggingDataSources() {
+		return laggingDataSources;
+	}
+
+	/**
+	 * @return 最近一次检测到的每个从库的延迟，单位毫秒，检测失败时为-1
+	 */
+	public Map<String, Long> getReplicationLags() {
+		return replicationLags;
+	}
+}
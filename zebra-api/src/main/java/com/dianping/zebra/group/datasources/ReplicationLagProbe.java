@@ -0,0 +1,17 @@
+package com.dianping.zebra.group.datasources;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 检测从库的复制延迟
+ */
+public interface ReplicationLagProbe {
+
+	/**
+	 * @param conn
+	 *           从库的连接，由调用方负责关闭
+	 * @return 复制延迟，单位毫秒
+	 */
+	long getReplicationLag(Connection conn) throws SQLException;
+}
@@ -1,14 +1,14 @@
 package com.dianping.zebra.group.jdbc;
 
-import com.dianping.zebra.Constants;
-import com.dianping.zebra.filter.DefaultJdbcFilterChain;
+import com.dianping.zebra.annotation.Internal;
 import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.JdbcFilterChain;
 import com.dianping.zebra.group.router.ReadWriteStrategy;
 import com.dianping.zebra.group.router.RouterType;
+import com.dianping.zebra.group.router.SessionConsistency;
 import com.dianping.zebra.util.JDBCUtils;
 import com.dianping.zebra.util.SqlType;
 import com.dianping.zebra.util.SqlUtils;
-import com.dianping.zebra.util.StringUtils;
 
 import javax.sql.DataSource;
 
@@ -29,8 +29,18 @@ public class GroupConnection implements Connection {
 
 	private ReadWriteStrategy readWriteStrategy;
 
+	private SessionConsistency sessionConsistency;
+
+	// 事务中记录的写SQL超过这个数量时，提交后整个会话走写库
+	private static final int MAX_UNCOMMITTED_WRITES = 16;
+
+	// 事务中的写操作，提交时重新开始读走写库的时间窗口；包含null时表示整个会话
+	private Set<String> uncommittedWrites;
+
 	private List<JdbcFilter> filters;
 
+	private JdbcFilterChain filterChain;
+
 	private RouterType routerType;
 
 	private volatile Connection rConnection;
@@ -54,6 +64,19 @@ public class GroupConnection implements Connection {
 		this.routerType = routerType;
 	}
 
+	public GroupConnection(DataSource readDataSource, DataSource writeDataSource, ReadWriteStrategy readWriteStrategy,
+			SessionConsistency sessionConsistency, RouterType routerType, List<JdbcFilter> filters) {
+		this(readDataSource, writeDataSource, readWriteStrategy, routerType, filters);
+		this.sessionConsistency = sessionConsistency;
+	}
+
+	public GroupConnection(DataSource readDataSource, DataSource writeDataSource, ReadWriteStrategy readWriteStrategy,
+			SessionConsistency sessionConsistency, RouterType routerType, List<JdbcFilter> filters,
+			JdbcFilterChain filterChain) {
+		this(readDataSource, writeDataSource, readWriteStrategy, sessionConsistency, routerType, filters);
+		this.filterChain = filterChain;
+	}
+
 	private void checkClosed() throws SQLException {
 		if (closed) {
 			throw new SQLException("No operations allowed after connection closed.");
@@ -71,7 +94,8 @@ public class GroupConnection implements Connection {
 		}
 	}
 
-	private void closeOrigin() throws SQLException {
+	@Internal
+	public void closeOrigin() throws SQLException {
 		if (closed) {
 			return;
 		}
@@ -112,20 +136,14 @@ public class GroupConnection implements Connection {
 
 	@Override
 	public void close() throws SQLException {
-		if (filters != null && filters.size() > 0) {
-			JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
-				@Override
-				public void closeGroupConnection(GroupConnection source, JdbcFilter chain) throws SQLException {
-					if (index < filters.size()) {
-						filters.get(index++).closeGroupConnection(source, chain);
-					} else {
-						source.closeOrigin();
-					}
-				}
-			};
-			chain.closeGroupConnection(this, chain);
-		} else {
+		if (filterChain == null) {
+			filterChain = JdbcFilterChain.compile(filters);
+		}
+
+		if (filterChain.isEmpty()) {
 			closeOrigin();
+		} else {
+			filterChain.closeGroupConnection(this, filterChain);
 		}
 	}
 
@@ -139,6 +157,17 @@ public class GroupConnection implements Connection {
 		if (wConnection != null) {
 			wConnection.commit();
 		}
+
+		recordUncommittedWrites();
+	}
+
+	private void recordUncommittedWrites() {
+		if (uncommittedWrites != null) {
+			for (String sql : uncommittedWrites) {
+				sessionConsistency.recordWrite(sql);
+			}
+			uncommittedWrites = null;
+		}
 	}
 
 	@Override
@@ -178,9 +207,17 @@ public class GroupConnection implements Connection {
 	}
 
 	Connection getRealConnection(String sql, boolean forceWriter) throws SQLException {
+		if (sessionConsistency != null) {
+			if (forceWriter || sql == null || !SqlUtils.getSqlType(sql).isRead()) {
+				recordWrite(sql);
+			} else if (autoCommit && sessionConsistency.shouldReadFromMaster(sql)) {
+				return getWriteConnection();
+			}
+		}
+
 		if (forceWriter) {
 			return getWriteConnection();
-		} else if (!autoCommit || StringUtils.trimToEmpty(sql).contains(Constants.SQL_FORCE_WRITE_HINT)) {
+		} else if (!autoCommit || (sql != null && SqlUtils.getSqlInfo(sql).isForceWrite())) {
 			return getWriteConnection();
 		} else if (readWriteStrategy != null && readWriteStrategy.shouldReadFromMaster()) {
 			return getWriteConnection();
@@ -200,6 +237,28 @@ public class GroupConnection implements Connection {
 		}
 	}
 	
+	private void recordWrite(String sql) {
+		sessionConsistency.recordWrite(sql);
+
+		if (!autoCommit) {
+			if (uncommittedWrites == null) {
+				uncommittedWrites = new HashSet<String>();
+			}
+
+			if (uncommittedWrites.contains(null)) {
+				return;
+			}
+
+			if (sql == null
+					|| (uncommittedWrites.size() >= MAX_UNCOMMITTED_WRITES && !uncommittedWrites.contains(sql))) {
+				uncommittedWrites.clear();
+				uncommittedWrites.add(null);
+			} else {
+				uncommittedWrites.add(sql);
+			}
+		}
+	}
+
 	@Override
 	public boolean getAutoCommit() throws SQLException {
 		checkClosed();
@@ -216,6 +275,11 @@ public class GroupConnection implements Connection {
 		if (this.wConnection != null) {
 			this.wConnection.setAutoCommit(autoCommit);
 		}
+
+		// 事务中切换为自动提交时会提交事务
+		if (autoCommit) {
+			recordUncommittedWrites();
+		}
 	}
 
 	private CallableStatement getCallableStatement(Connection conn, String sql, int resultSetType,
@@ -484,6 +548,8 @@ public class GroupConnection implements Connection {
 		if (wConnection != null) {
 			wConnection.rollback();
 		}
+
+		uncommittedWrites = null;
 	}
 
 	@Override
@@ -24,6 +24,8 @@ import com.dianping.zebra.exception.ZebraException;
 import com.dianping.zebra.filter.DefaultJdbcFilterChain;
 import com.dianping.zebra.filter.FilterManagerFactory;
 import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.JdbcFilterChain;
+import com.dianping.zebra.group.config.DataSourceConfigDiff;
 import com.dianping.zebra.group.config.DataSourceConfigManager;
 import com.dianping.zebra.group.config.DataSourceConfigManagerFactory;
 import com.dianping.zebra.group.config.SystemConfigManager;
@@ -33,11 +35,13 @@ import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
 import com.dianping.zebra.group.config.datasource.entity.GroupDataSourceConfig;
 import com.dianping.zebra.group.datasources.FailOverDataSource;
 import com.dianping.zebra.group.datasources.LoadBalancedDataSource;
+import com.dianping.zebra.group.datasources.ReplicationLagProbe;
 import com.dianping.zebra.group.monitor.GroupDataSourceMBean;
 import com.dianping.zebra.group.monitor.SingleDataSourceMBean;
 import com.dianping.zebra.group.router.ReadWriteStrategy;
 import com.dianping.zebra.group.router.ReadWriteStrategyWrapper;
 import com.dianping.zebra.group.router.RouterType;
+import com.dianping.zebra.group.router.SessionConsistency;
 import com.dianping.zebra.group.util.SmoothReload;
 import com.dianping.zebra.log.LoggerLoader;
 import com.dianping.zebra.single.jdbc.C3P0StyleDataSource;
@@ -66,6 +70,16 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 
 	protected RouterType routerType = RouterType.ROUND_ROBIN;
 
+	protected long maxReplicationLag;
+
+	protected ReplicationLagProbe replicationLagProbe;
+
+	protected long warmUpTimeout;
+
+	protected long readYourWritesWindow;
+
+	protected boolean readYourWritesPerTable;
+
 	protected Map<String, Object> springProperties = new HashMap<String, Object>();
 
 	protected GroupDataSourceConfig groupConfig = new GroupDataSourceConfig();
@@ -77,11 +91,16 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 	// other
 	protected volatile boolean init = false;
 
+	private volatile boolean closed = false;
+
 	protected ReadWriteStrategy readWriteStrategy;
 
-	protected LoadBalancedDataSource readDataSource;
+	protected SessionConsistency sessionConsistency;
 
-	protected FailOverDataSource writeDataSource;
+	// 刷新时整体替换，getConnection不加锁读取
+	protected volatile LoadBalancedDataSource readDataSource;
+
+	protected volatile FailOverDataSource writeDataSource;
 
 	public GroupDataSource() {
 	}
@@ -207,11 +226,19 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 	}
 
 	public void close() throws SQLException {
+		closed = true;
 		dataSourceConfigManager.close();
 
 		this.close(this.readDataSource, this.writeDataSource);
 	}
 
+	/**
+	 * filter在closeGroupDataSource中用来区分关闭整个GroupDataSource和刷新时关闭旧的datasource
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
 	private void close(final LoadBalancedDataSource read, final FailOverDataSource write) throws SQLException {
 		if (filters != null && filters.size() > 0) {
 			JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
@@ -230,6 +257,13 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 		}
 	}
 
+	/**
+	 * 不经过filter，关闭当前的读写datasource
+	 */
+	public void closeOrigin() throws SQLException {
+		closeInternal(this.readDataSource, this.writeDataSource);
+	}
+
 	private void closeInternal(final LoadBalancedDataSource read, final FailOverDataSource write) throws SQLException {
 		List<SQLException> exps = new ArrayList<SQLException>();
 
@@ -274,26 +308,19 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 
 	@Override
 	public Connection getConnection(final String username, final String password) throws SQLException {
-		if (filters != null && filters.size() > 0) {
-			JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
-				@Override
-				public GroupConnection getGroupConnection(GroupDataSource source, JdbcFilter chain)
-						throws SQLException {
-					if (index < filters.size()) {
-						return filters.get(index++).getGroupConnection(source, chain);
-					} else {
-						return source.getConnectionInternal(username, password);
-					}
-				}
-			};
-			return chain.getGroupConnection(this, chain);
-		} else {
-			return getConnectionInternal(username, password);
+		JdbcFilterChain chain = getFilterChain();
+
+		if (chain.isEmpty()) {
+			return getConnectionOrigin();
 		}
+
+		return chain.getGroupConnection(this, chain);
 	}
 
-	private GroupConnection getConnectionInternal(String username, String password) {
-		return new GroupConnection(readDataSource, writeDataSource, readWriteStrategy, routerType, filters);
+	@Internal
+	public GroupConnection getConnectionOrigin() {
+		return new GroupConnection(readDataSource, writeDataSource, readWriteStrategy, sessionConsistency, routerType,
+				filters, getFilterChain());
 	}
 
 	private Map<String, DataSourceConfig> getFailoverConfig(Map<String, DataSourceConfig> configs) {
@@ -346,6 +373,11 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 		return this.readDataSource.getCurrentDataSourceMBean();
 	}
 
+	@Override
+	public synchronized Map<String, Long> getReaderReplicationLag() {
+		return this.readDataSource.getReplicationLags();
+	}
+
 	@Override
 	public synchronized SingleDataSourceMBean getWriteSingleDataSourceMBean() {
 		return this.writeDataSource.getCurrentDataSourceMBean();
@@ -417,10 +449,14 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 	private void initDataSources() {
 		try {
 			this.readDataSource = new LoadBalancedDataSource(getLoadBalancedConfig(groupConfig.getDataSourceConfigs()),
-					this.filters, systemConfigManager.getSystemConfig());
+					this.filters, systemConfigManager.getSystemConfig(), routerType);
+			this.readDataSource.setMaxReplicationLag(maxReplicationLag);
+			this.readDataSource.setReplicationLagProbe(replicationLagProbe);
+			this.readDataSource.setWarmUpTimeout(warmUpTimeout);
 			this.readDataSource.init();
 			this.writeDataSource = new FailOverDataSource(getFailoverConfig(groupConfig.getDataSourceConfigs()),
 					this.filters);
+			this.writeDataSource.setWarmUpTimeout(warmUpTimeout);
 			this.writeDataSource.init();
 		} catch (RuntimeException e) {
 			try {
@@ -436,6 +472,13 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 		this.filters = FilterManagerFactory.getFilterManager().loadFilters(this.groupConfig.getFilters());
 	}
 
+	/**
+	 * 不经过filter初始化
+	 */
+	public void initOrigin() {
+		initInternal();
+	}
+
 	private void initInternal() {
 		SingleDataSourceManagerFactory.getDataSourceManager().init();
 		initDataSources();
@@ -458,6 +501,10 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 
 		readWriteStrategy = wraper;
 
+		if (readYourWritesWindow > 0) {
+			sessionConsistency = new SessionConsistency(readYourWritesWindow, readYourWritesPerTable);
+		}
+
 		refreshReadWriteStrategyConfig();
 	}
 
@@ -493,19 +540,43 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 		}
 	}
 
+	/**
+	 * 不经过filter，按当前配置刷新
+	 */
+	public void refreshOrigin() {
+		refreshIntenal(buildGroupConfig());
+	}
+
 	private void refreshIntenal(GroupDataSourceConfig groupDataSourceConfig) {
 		logger.info(String.format("start to refresh the dataSources(%s)...", jdbcRef));
 
+		// filter会传给每个连接池，filter变化时需要全部重建
+		if (StringUtils.equals(groupConfig.getFilters(), groupDataSourceConfig.getFilters())) {
+			try {
+				refreshIncrementally(groupDataSourceConfig);
+
+				logger.info(String.format("refresh the dataSources(%s) incrementally successfully!", jdbcRef));
+				return;
+			} catch (Exception e) {
+				logger.warn(String.format("fail to refresh the dataSources(%s) incrementally, rebuild all of them", jdbcRef),
+						e);
+			}
+		}
+
 		LoadBalancedDataSource newReadDataSource = null;
 		FailOverDataSource newWriteDataSource = null;
 		boolean preparedSwitch = false;
 		try {
 			newReadDataSource = new LoadBalancedDataSource(
 					getLoadBalancedConfig(groupDataSourceConfig.getDataSourceConfigs()), this.filters,
-					systemConfigManager.getSystemConfig());
+					systemConfigManager.getSystemConfig(), routerType);
+			newReadDataSource.setMaxReplicationLag(maxReplicationLag);
+			newReadDataSource.setReplicationLagProbe(replicationLagProbe);
+			newReadDataSource.setWarmUpTimeout(warmUpTimeout);
 			newReadDataSource.init();
 			newWriteDataSource = new FailOverDataSource(getFailoverConfig(groupDataSourceConfig.getDataSourceConfigs()),
 					this.filters);
+			newWriteDataSource.setWarmUpTimeout(warmUpTimeout);
 			newWriteDataSource.init();
 
 			preparedSwitch = true;
@@ -547,6 +618,50 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 
 	}
 
+	private synchronized void refreshIncrementally(GroupDataSourceConfig groupDataSourceConfig) throws SQLException {
+		Map<String, DataSourceConfig> newFailoverConfig = getFailoverConfig(groupDataSourceConfig.getDataSourceConfigs());
+		DataSourceConfigDiff writeDiff = new DataSourceConfigDiff(getFailoverConfig(groupConfig.getDataSourceConfigs()),
+				newFailoverConfig);
+		DataSourceConfigDiff readDiff = new DataSourceConfigDiff(getLoadBalancedConfig(groupConfig.getDataSourceConfigs()),
+				getLoadBalancedConfig(groupDataSourceConfig.getDataSourceConfigs()));
+
+		logger.info(String.format("dataSources(%s) changed, read %s, write %s", jdbcRef, readDiff, writeDiff));
+
+		// 写库只有连接池变化时才重建，先创建新的写库，从库刷新失败时不做任何变更
+		FailOverDataSource newWriteDataSource = null;
+		if (writeDiff.isPoolChanged()) {
+			newWriteDataSource = new FailOverDataSource(newFailoverConfig, this.filters);
+			newWriteDataSource.setWarmUpTimeout(warmUpTimeout);
+			try {
+				newWriteDataSource.init();
+			} catch (RuntimeException e) {
+				close(null, newWriteDataSource);
+				throw e;
+			}
+		}
+
+		try {
+			this.readDataSource.refresh(getLoadBalancedConfig(groupDataSourceConfig.getDataSourceConfigs()));
+		} catch (RuntimeException e) {
+			close(null, newWriteDataSource);
+			throw e;
+		}
+
+		if (newWriteDataSource != null) {
+			FailOverDataSource tmpWriteDataSource = this.writeDataSource;
+			this.writeDataSource = newWriteDataSource;
+
+			try {
+				close(null, tmpWriteDataSource);
+			} catch (Exception e) {
+				logger.error(e.getMessage(), e);
+			}
+		}
+
+		groupConfig = groupDataSourceConfig;
+		refreshReadWriteStrategyConfig();
+	}
+
 	private void refreshReadWriteStrategyConfig() {
 		if (readWriteStrategy != null) {
 			readWriteStrategy.setGroupDataSourceConfig(this.groupConfig);
@@ -585,6 +700,38 @@ public class GroupDataSource extends C3P0StyleDataSource implements GroupDataSou
 		this.routerType = RouterType.getRouterType(routerType);
 	}
 
+	/**
+	 * 复制延迟超过这个值(毫秒)的从库暂时不参与读，默认不检测
+	 */
+	public synchronized void setMaxReplicationLag(long maxReplicationLag) {
+		this.maxReplicationLag = maxReplicationLag;
+	}
+
+	public synchronized void setReplicationLagProbe(ReplicationLagProbe replicationLagProbe) {
+		this.replicationLagProbe = replicationLagProbe;
+	}
+
+	/**
+	 * 新建的连接池在切换流量之前预热的最长时间(毫秒)，超时后直接切换，默认不预热
+	 */
+	public synchronized void setWarmUpTimeout(long warmUpTimeout) {
+		this.warmUpTimeout = warmUpTimeout;
+	}
+
+	/**
+	 * 通过GroupConnection写之后这段时间(毫秒)内，同一个线程或者同一个会话key的读走写库，默认不开启
+	 */
+	public synchronized void setReadYourWritesWindow(long readYourWritesWindow) {
+		this.readYourWritesWindow = readYourWritesWindow;
+	}
+
+	/**
+	 * 只有读到写过的表才走写库
+	 */
+	public synchronized void setReadYourWritesPerTable(boolean readYourWritesPerTable) {
+		this.readYourWritesPerTable = readYourWritesPerTable;
+	}
+
 	@Override
 	public synchronized void setCheckoutTimeout(int checkoutTimeout) {
 		// do nothing
@@ -83,6 +83,11 @@ public class GroupPreparedStatement extends GroupStatement implements PreparedSt
 
 	private String sql;
 
+	// 上一次执行时创建的PreparedStatement和所在的物理连接，路由到同一个连接时复用，不再重复prepare
+	private PreparedStatement preparedStatement;
+
+	private Connection preparedConnection;
+
 	public GroupPreparedStatement(GroupConnection connection, String sql, List<JdbcFilter> filters) {
 		super(connection, filters);
 		this.sql = sql;
@@ -132,6 +137,21 @@ public class GroupPreparedStatement extends GroupStatement implements PreparedSt
 		return pstmt;
 	}
 
+	private PreparedStatement getPreparedStatement(Connection conn) throws SQLException {
+		if (preparedStatement != null && preparedStatement == innerStatement && preparedConnection == conn) {
+			preparedStatement.setQueryTimeout(queryTimeout);
+			preparedStatement.setFetchSize(fetchSize);
+			preparedStatement.setMaxRows(maxRows);
+
+			return preparedStatement;
+		}
+
+		preparedStatement = createPreparedStatementInternal(conn, sql);
+		preparedConnection = conn;
+
+		return preparedStatement;
+	}
+
 	@Override
 	public boolean execute() throws SQLException {
 		SqlType sqlType = SqlUtils.getSqlType(sql);
@@ -164,7 +184,7 @@ public class GroupPreparedStatement extends GroupStatement implements PreparedSt
 	}
 
 	private int[] executeBatchOnConnection(Connection conn) throws SQLException {
-		PreparedStatement pstmt = createPreparedStatementInternal(conn, sql);
+		PreparedStatement pstmt = getPreparedStatement(conn);
 
 		for (List<ParamContext> tmpParams : pstBatchedArgs) {
 			setBatchParams(pstmt, tmpParams);
@@ -185,7 +205,7 @@ public class GroupPreparedStatement extends GroupStatement implements PreparedSt
 	}
 
 	private ResultSet executeQueryOnConnection(Connection conn, String sql) throws SQLException {
-		PreparedStatement pstmt = createPreparedStatementInternal(conn, sql);
+		PreparedStatement pstmt = getPreparedStatement(conn);
 		setParams(pstmt);
 		this.currentResultSet = new GroupResultSet(pstmt.executeQuery());
 
@@ -211,7 +231,7 @@ public class GroupPreparedStatement extends GroupStatement implements PreparedSt
 	}
 
 	private int executeUpdateOnConnection(final Connection conn) throws SQLException {
-		PreparedStatement pstmt = createPreparedStatementInternal(conn, sql);
+		PreparedStatement pstmt = getPreparedStatement(conn);
 		setParams(pstmt);
 
 		return pstmt.executeUpdate();
@@ -189,7 +189,11 @@ public class GroupStatement implements Statement {
 				return new int[0];
 			}
 
-			Connection conn = this.groupConnection.getRealConnection(null, true);
+			// 逐条记录写操作，读自己写只针对批量中实际写过的表
+			Connection conn = null;
+			for (String sql : batchedSqls) {
+				conn = this.groupConnection.getRealConnection(sql, true);
+			}
 			return executeBatchOnConnection(conn, batchedSqls);
 		} finally {
 			if (batchedSqls != null) {
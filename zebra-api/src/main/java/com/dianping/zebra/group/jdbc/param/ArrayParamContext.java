@@ -36,6 +36,11 @@ public class ArrayParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new ArrayParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -36,6 +36,11 @@ public class AsciiParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new AsciiParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
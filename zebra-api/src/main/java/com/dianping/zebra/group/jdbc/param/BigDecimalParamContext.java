@@ -36,6 +36,11 @@ public class BigDecimalParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new BigDecimalParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -36,6 +36,11 @@ public class BinaryStreamParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new BinaryStreamParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -37,6 +37,11 @@ public class BlobParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new BlobParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
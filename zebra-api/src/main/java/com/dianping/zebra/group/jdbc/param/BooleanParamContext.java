@@ -35,6 +35,11 @@ public class BooleanParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new BooleanParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
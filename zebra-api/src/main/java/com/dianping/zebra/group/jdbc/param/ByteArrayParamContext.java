@@ -35,6 +35,11 @@ public class ByteArrayParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new ByteArrayParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
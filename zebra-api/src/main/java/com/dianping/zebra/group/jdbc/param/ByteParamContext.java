@@ -35,6 +35,11 @@ public class ByteParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new ByteParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
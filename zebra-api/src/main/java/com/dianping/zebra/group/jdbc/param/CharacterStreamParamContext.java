@@ -36,6 +36,11 @@ public class CharacterStreamParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new CharacterStreamParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
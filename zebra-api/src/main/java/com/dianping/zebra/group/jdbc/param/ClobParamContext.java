@@ -37,6 +37,11 @@ public class ClobParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new ClobParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -37,6 +37,11 @@ public class DateParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new DateParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
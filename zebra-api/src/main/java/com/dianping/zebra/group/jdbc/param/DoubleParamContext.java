@@ -35,6 +35,11 @@ public class DoubleParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new DoubleParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
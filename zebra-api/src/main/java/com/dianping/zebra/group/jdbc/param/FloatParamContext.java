@@ -35,6 +35,11 @@ public class FloatParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new FloatParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -35,6 +35,11 @@ public class IntParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new IntParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
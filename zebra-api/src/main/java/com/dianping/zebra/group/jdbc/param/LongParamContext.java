@@ -35,6 +35,11 @@ public class LongParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new LongParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -36,6 +36,11 @@ public class NCharacterStreamParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new NCharacterStreamParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
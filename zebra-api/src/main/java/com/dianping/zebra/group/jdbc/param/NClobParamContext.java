@@ -37,6 +37,11 @@ public class NClobParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new NClobParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
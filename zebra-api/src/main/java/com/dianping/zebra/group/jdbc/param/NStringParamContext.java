@@ -35,6 +35,11 @@ public class NStringParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new NStringParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -35,6 +35,11 @@ public class NullParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new NullParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
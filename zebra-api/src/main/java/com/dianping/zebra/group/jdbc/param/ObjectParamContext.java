@@ -35,6 +35,11 @@ public class ObjectParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new ObjectParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -67,6 +67,11 @@ public abstract class ParamContext implements Serializable {
 
 	public abstract void setParam(PreparedStatement stmt) throws SQLException;
 
+	/**
+	 * 复制一份相同的参数，只改变下标
+	 */
+	public abstract ParamContext copy(int index);
+
 	/*
 	 * (non-Javadoc)
 	 * 
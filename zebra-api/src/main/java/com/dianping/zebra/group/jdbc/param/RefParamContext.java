@@ -36,6 +36,11 @@ public class RefParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new RefParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -36,6 +36,11 @@ public class RowIdParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new RowIdParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
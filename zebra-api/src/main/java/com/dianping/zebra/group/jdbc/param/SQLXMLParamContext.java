@@ -36,6 +36,11 @@ public class SQLXMLParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new SQLXMLParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -35,6 +35,11 @@ public class ShortParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new ShortParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -35,6 +35,11 @@ public class StringParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new StringParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -37,6 +37,11 @@ public class TimeParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new TimeParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -37,6 +37,11 @@ public class TimestampParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new TimestampParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -36,6 +36,11 @@ public class URLParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new URLParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -36,6 +36,11 @@ public class UnicodeStreamParamContext extends ParamContext {
 		super(index, values);
 	}
 
+	@Override
+	public ParamContext copy(int index) {
+		return new UnicodeStreamParamContext(index, values);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
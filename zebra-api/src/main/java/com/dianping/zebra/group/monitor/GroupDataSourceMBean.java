@@ -10,5 +10,10 @@ public interface GroupDataSourceMBean {
 
 	public SingleDataSourceMBean getWriteSingleDataSourceMBean();
 
+	/**
+	 * @return 每个从库的复制延迟，单位毫秒，没有开启检测时为空
+	 */
+	public Map<String, Long> getReaderReplicationLag();
+
 	public GroupDataSourceConfig getConfig();
 }
@@ -0,0 +1,80 @@
+package com.dianping.zebra.group.router;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.dianping.zebra.filter.latency.LatencyFilter;
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+import com.dianping.zebra.group.router.WeightDataSourceRouter.AliasTable;
+
+/**
+ * <p>
+ * 按延迟自适应的DataSource选择器，不区分机房。
+ * </p>
+ * 按静态权重抽取两个候选，选择延迟EWMA较小的一个（power of two choices）。<br>
+ * 延迟相同时流量仍然按权重分配；变慢的从库只有两次都抽中自己时才会被选中，保留少量流量用于发现恢复。<br>
+ * 两个候选中有一个还没有样本（新加入或者刚恢复）时不比较延迟，直接选第一个候选，这时流量按权重分配，不会因为延迟是0而抢走所有流量。
+ */
+public class LatencyAwareDataSourceRouter implements DataSourceRouter {
+
+	private final Map<String, DataSourceConfig> dataSourceConfigs;
+
+	private final AliasTable aliasTable;
+
+	private final LatencyFilter latencyFilter;
+
+	public LatencyAwareDataSourceRouter(Map<String, DataSourceConfig> dataSourceConfigs, LatencyFilter latencyFilter) {
+		this.dataSourceConfigs = dataSourceConfigs;
+		this.aliasTable = new AliasTable(dataSourceConfigs);
+		this.latencyFilter = latencyFilter;
+	}
+
+	@Override
+	public String getName() {
+		return "latency-aware";
+	}
+
+	@Override
+	public RouterTarget select(RouterContext routerContext) {
+		Random random = WeightDataSourceRouter.RANDOM.get();
+		Set<RouterTarget> excludeTargets = routerContext.getExcludeTargets();
+
+		RouterTarget first = aliasTable.select(excludeTargets, random);
+		if (first == null) {
+			return selectZeroWeight(excludeTargets);
+		}
+
+		RouterTarget second = aliasTable.select(excludeTargets, random);
+		if (second == null || second.equals(first)) {
+			return first;
+		}
+
+		double firstLatency = latencyFilter.getLatencyNanos(first.getId(), Double.NaN);
+		double secondLatency = latencyFilter.getLatencyNanos(second.getId(), Double.NaN);
+		if (Double.isNaN(firstLatency) || Double.isNaN(secondLatency)) {
+			return first;
+		}
+
+		if (secondLatency < firstLatency) {
+			return second;
+		} else {
+			return first;
+		}
+	}
+
+	// 和RetryConnectDataSourceRouter一样，没有可用的从库时使用权重为0的从库
+	private RouterTarget selectZeroWeight(Set<RouterTarget> excludeTargets) {
+		for (DataSourceConfig config : dataSourceConfigs.values()) {
+			if (config.getActive() && config.getCanRead() && config.getWeight() == 0) {
+				RouterTarget target = new RouterTarget(config.getId());
+
+				if (excludeTargets == null || !excludeTargets.contains(target)) {
+					return target;
+				}
+			}
+		}
+
+		return null;
+	}
+}
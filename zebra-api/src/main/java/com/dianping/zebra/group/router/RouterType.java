@@ -6,13 +6,18 @@ public enum RouterType {
 
 	LOAD_BALANCE("load-balance"),
 
-	FAIL_OVER("fail-over");
+	FAIL_OVER("fail-over"),
+
+	// 读写分离和ROUND_ROBIN相同，从库按延迟自适应选择
+	LATENCY_AWARE("latency-aware");
 
 	public static RouterType getRouterType(String type) {
 		if (type.equalsIgnoreCase("load-balance")) {
 			return LOAD_BALANCE;
 		} else if (type.equalsIgnoreCase("fail-over")) {
 			return FAIL_OVER;
+		} else if (type.equalsIgnoreCase("latency-aware")) {
+			return LATENCY_AWARE;
 		} else {
 			return ROUND_ROBIN;
 		}
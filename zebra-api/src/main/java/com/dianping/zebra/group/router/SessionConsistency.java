@@ -0,0 +1,158 @@
+package com.dianping.zebra.group.router;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.dianping.zebra.util.ConcurrentLRUCache;
+import com.dianping.zebra.util.SqlUtils;
+
+/**
+ * <p>
+ * 读自己写的一致性：通过GroupConnection写过之后的一段时间内，同一个会话的读走写库，避免从库延迟导致读不到刚写的数据。
+ * </p>
+ * 会话默认是当前线程（一个请求通常在一个线程内处理），调用{@link #setSessionKey(String)}后按key区分。<br>
+ * key不会被子线程或线程池继承，跨线程时通过{@link #getSessionKey()}取出并在其他线程中显式设置，或者直接传入key。<br>
+ * 按表区分时只有读到写过的表才走写库，SQL解析失败时退化为整个会话走写库。<br>
+ * 按key区分的会话最多保留{@link #MAX_KEY_SESSIONS}个，超过时淘汰最近没有访问的，被淘汰的会话之后的读按普通规则路由。
+ */
+public class SessionConsistency {
+
+	public static final int MAX_KEY_SESSIONS = 10000;
+
+	private static final ThreadLocal<String> sessionKey = new ThreadLocal<String>();
+
+	private final long window;
+
+	private final boolean perTable;
+
+	private final ThreadLocal<Session> threadSession = new ThreadLocal<Session>();
+
+	private final ConcurrentLRUCache<String, Session> keySessions = new ConcurrentLRUCache<String, Session>(
+			MAX_KEY_SESSIONS);
+
+	/**
+	 * @param window
+	 *           写之后读走写库的时间，单位毫秒
+	 * @param perTable
+	 *           是否按表区分
+	 */
+	public SessionConsistency(long window, boolean perTable) {
+		this.window = window;
+		this.perTable = perTable;
+	}
+
+	/**
+	 * 设置当前线程的会话key，例如用户id，相同key的请求共享写之后读走写库的时间窗口。
+	 */
+	public static void setSessionKey(String key) {
+		sessionKey.set(key);
+	}
+
+	public static String getSessionKey() {
+		return sessionKey.get();
+	}
+
+	public static void clearSessionKey() {
+		sessionKey.remove();
+	}
+
+	/**
+	 * @param sql
+	 *           写操作的SQL，为null时整个会话走写库
+	 */
+	public void recordWrite(String sql) {
+		recordWrite(sessionKey.get(), sql);
+	}
+
+	/**
+	 * @param key
+	 *           会话key，为null时按当前线程区分
+	 * @param sql
+	 *           写操作的SQL，为null时整个会话走写库
+	 */
+	public void recordWrite(String key, String sql) {
+		long expireAt = System.currentTimeMillis() + window;
+		Session session = getSession(key, true);
+
+		Set<String> tables = (perTable && sql != null) ? SqlUtils.getSqlInfo(sql).getTables() : null;
+		if (tables == null || tables.isEmpty()) {
+			session.expireAt = Math.max(session.expireAt, expireAt);
+		} else {
+			for (String table : tables) {
+				session.tableExpireAt.put(table, expireAt);
+			}
+		}
+	}
+
+	public boolean shouldReadFromMaster(String sql) {
+		return shouldReadFromMaster(sessionKey.get(), sql);
+	}
+
+	/**
+	 * @param key
+	 *           会话key，为null时按当前线程区分
+	 */
+	public boolean shouldReadFromMaster(String key, String sql) {
+		Session session = getSession(key, false);
+		if (session == null) {
+			return false;
+		}
+
+		long now = System.currentTimeMillis();
+		if (now < session.expireAt) {
+			return true;
+		}
+
+		if (session.tableExpireAt.isEmpty()) {
+			return false;
+		}
+
+		Set<String> tables = sql != null ? SqlUtils.getSqlInfo(sql).getTables() : null;
+		for (Iterator<Entry<String, Long>> it = session.tableExpireAt.entrySet().iterator(); it.hasNext();) {
+			Entry<String, Long> entry = it.next();
+
+			if (now >= entry.getValue()) {
+				it.remove();
+			} else if (tables == null || tables.contains(entry.getKey())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private Session getSession(String key, boolean create) {
+		if (key == null) {
+			Session session = threadSession.get();
+			if (session == null && create) {
+				session = new Session();
+				threadSession.set(session);
+			}
+			return session;
+		}
+
+		Session session = keySessions.get(key);
+		if (session == null && create) {
+			session = new Session();
+			Session existing = keySessions.putIfAbsent(key, session);
+			if (existing != null) {
+				session = existing;
+			}
+		}
+		return session;
+	}
+
+	int getKeySessionCount() {
+		return keySessions.size();
+	}
+
+	private static class Session {
+
+		private volatile long expireAt;
+
+		private final ConcurrentMap<String, Long> tableExpireAt = new ConcurrentHashMap<String, Long>();
+	}
+}
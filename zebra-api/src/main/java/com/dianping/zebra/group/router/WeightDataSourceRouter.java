@@ -1 +1 @@
-package com.dianping.zebra.group.router;import java.util.Map;import java.util.Random;import java.util.Set;import java.util.TreeSet;import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;/** * 按权重做路由的DataSource选择器 */public class WeightDataSourceRouter implements DataSourceRouter {	private WeightRandom weightRandom;	public WeightDataSourceRouter(Map<String, DataSourceConfig> dataSourceConfigs) {		this.weightRandom = new WeightRandom(dataSourceConfigs);	}	@Override	public RouterTarget select(RouterContext routerInfo) {		return weightRandom.select(routerInfo.getExcludeTargets());	}	private static class WeightRandom {		private int groupDataSourceTargetSize = 0;		private TreeSet<RouterTarget> targets = new TreeSet<RouterTarget>();		private Random random = new Random();		public WeightRandom(Map<String, DataSourceConfig> configs) {			for (DataSourceConfig config : configs.values()) {				int weight = config.getWeight();				groupDataSourceTargetSize += weight;				RouterTarget groupDataSourceTarget = new RouterTarget(config.getId(), weight,						groupDataSourceTargetSize - 1);				targets.add(groupDataSourceTarget);			}		}		public RouterTarget select(Set<RouterTarget> excludeTargets) {			TreeSet<RouterTarget> weights = this.targets;			int tmpGroupDataSourceTargetSize = this.groupDataSourceTargetSize;			if (excludeTargets != null && !excludeTargets.isEmpty()) {				// 需要排除某些GroupDataSourceTarget的话，就重新copy一个weights				TreeSet<RouterTarget> copyWeights = new TreeSet<RouterTarget>(weights);				for (RouterTarget target : excludeTargets) {					if (copyWeights.remove(target)) {						tmpGroupDataSourceTargetSize -= target.getWeight();					}				}				weights = copyWeights;			}			if (weights.isEmpty() || tmpGroupDataSourceTargetSize <= 0) {				return null;			}			int randomNum = random.nextInt(tmpGroupDataSourceTargetSize);			RouterTarget tempForSearch = new RouterTarget(null, -1, randomNum);			return weights.ceiling(tempForSearch);		}	}	@Override	public String getName() {		return "weight-random";	}}
\ No newline at end of file
+package com.dianping.zebra.group.router;import java.util.ArrayList;import java.util.List;import java.util.Map;import java.util.Random;import java.util.Set;import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;/** * 按权重做路由的DataSource选择器 */public class WeightDataSourceRouter implements DataSourceRouter {	// 每个线程一个Random，避免多线程竞争同一个seed	static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {		@Override		protected Random initialValue() {			return new Random();		}	};	private volatile AliasTable aliasTable;	public WeightDataSourceRouter(Map<String, DataSourceConfig> dataSourceConfigs) {		refresh(dataSourceConfigs);	}	/**	 * 配置变化时重新构建别名表并整体替换，正在选择的线程继续使用旧的表	 */	public void refresh(Map<String, DataSourceConfig> dataSourceConfigs) {		this.aliasTable = new AliasTable(dataSourceConfigs);	}	@Override	public RouterTarget select(RouterContext routerInfo) {		return aliasTable.select(routerInfo.getExcludeTargets(), RANDOM.get());	}	/**	 * <p>	 * Vose's alias method，构建后不可变。	 * </p>	 * 每个槽位保存一个target和一个alias，选择时随机一个槽位，再按槽位的概率决定返回target还是alias，选择的时间和target的数量无关。<br>	 * 概率用整数表示，以总权重为单位，不存在浮点误差。	 */	static class AliasTable {		// 排除的target较多时，重新抽样的最大次数，超过后在剩下的target中按权重选择		private static final int MAX_RESAMPLE_TIMES = 8;		private final RouterTarget[] targets;		private final int[] probabilities;		private final int[] aliases;		private final int totalWeight;		public AliasTable(Map<String, DataSourceConfig> configs) {			List<RouterTarget> targetList = new ArrayList<RouterTarget>();			int totalWeight = 0;			for (DataSourceConfig config : configs.values()) {				int weight = config.getWeight();				// 权重为0的不参与按权重选择				if (weight > 0) {					totalWeight += weight;					targetList.add(new RouterTarget(config.getId(), weight, totalWeight - 1));				}			}			int size = targetList.size();			this.targets = targetList.toArray(new RouterTarget[size]);			this.probabilities = new int[size];			this.aliases = new int[size];			this.totalWeight = totalWeight;			// 每个权重乘以target数量，平均值正好是总权重			long[] scaled = new long[size];			int[] small = new int[size];			int[] large = new int[size];			int smallSize = 0;			int largeSize = 0;			for (int i = 0; i < size; i++) {				scaled[i] = (long) targets[i].getWeight() * size;				if (scaled[i] < totalWeight) {					small[smallSize++] = i;				} else {					large[largeSize++] = i;				}			}			while (smallSize > 0 && largeSize > 0) {				int less = small[--smallSize];				int more = large[--largeSize];				probabilities[less] = (int) scaled[less];				aliases[less] = more;				scaled[more] = scaled[more] + scaled[less] - totalWeight;				if (scaled[more] < totalWeight) {					small[smallSize++] = more;				} else {					large[largeSize++] = more;				}			}			while (largeSize > 0) {				probabilities[large[--largeSize]] = totalWeight;			}			while (smallSize > 0) {				probabilities[small[--smallSize]] = totalWeight;			}		}		public RouterTarget select(Set<RouterTarget> excludeTargets, Random random) {			if (targets.length == 0) {				return null;			}			if (excludeTargets == null || excludeTargets.isEmpty()) {				return sample(random);			}			// 排除的target不多时，重新抽样即可保持剩下target之间的权重比例			for (int i = 0; i < MAX_RESAMPLE_TIMES; i++) {				RouterTarget target = sample(random);				if (!excludeTargets.contains(target)) {					return target;				}			}			int remainingWeight = 0;			for (RouterTarget target : targets) {				if (!excludeTargets.contains(target)) {					remainingWeight += target.getWeight();				}			}			if (remainingWeight <= 0) {				return null;			}			int randomNum = random.nextInt(remainingWeight);			for (RouterTarget target : targets) {				if (!excludeTargets.contains(target)) {					if (randomNum < target.getWeight()) {						return target;					}					randomNum -= target.getWeight();				}			}			return null;		}		private RouterTarget sample(Random random) {			int slot = random.nextInt(targets.length);			if (random.nextInt(totalWeight) < probabilities[slot]) {				return targets[slot];			} else {				return targets[aliases[slot]];			}		}	}	@Override	public String getName() {		return "weight-random";	}}
\ No newline at end of file
@@ -26,4 +26,16 @@ public class ZebraForceMasterHelper {
 	public static void clearLocalContext() {
 		LocalContextReadWriteStrategy.clearContext();
 	}
+
+	/**
+	 * 开启读自己写的一致性后，设置当前线程的会话key，相同key的请求写之后一段时间内的读都走主库。
+	 * 不设置时按线程区分，请求的末尾调用clearSessionKey进行清理。
+	 */
+	public static void setSessionKey(String key) {
+		SessionConsistency.setSessionKey(key);
+	}
+
+	public static void clearSessionKey() {
+		SessionConsistency.clearSessionKey();
+	}
 }
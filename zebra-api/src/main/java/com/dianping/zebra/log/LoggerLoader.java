@@ -84,6 +84,41 @@ public class LoggerLoader {
 		context = ctx;
 	}
 
+	/**
+	 * 按天滚动的单独日志文件，只输出到这个文件，不输出到zebra.log和控制台
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static synchronized Logger getFileLogger(String name, String fileName) {
+		if (context == null) {
+			init();
+		}
+
+		final Configuration config = context.getConfiguration();
+		if (config.getLoggers().containsKey(name)) {
+			return context.getLogger(name);
+		}
+
+		Layout layout = PatternLayout.createLayout("%d{yyyy-MM-dd HH:mm:ss} %m%n", config, null, null, true, false,
+				null, null);
+		Appender appender = RollingFileAppender.createAppender(LOG_ROOT + "/" + fileName, LOG_ROOT + "/" + fileName
+				+ ".%d{yyyy-MM-dd}.gz", "true", name, "true", "4000", "true",
+				TimeBasedTriggeringPolicy.createPolicy("1", "true"),
+				DefaultRolloverStrategy.createStrategy("7", "1", null, Deflater.DEFAULT_COMPRESSION + "", config),
+				layout, null, "false", null, null, config);
+		config.addAppender(appender);
+		appender.start();
+
+		AppenderRef ref = AppenderRef.createAppenderRef(name, null, null);
+		LoggerConfig loggerConfig = LoggerConfig.createLogger("false", Level.INFO, name, "true",
+				new AppenderRef[] { ref }, null, config, null);
+		loggerConfig.addAppender(appender, Level.INFO, null);
+		config.addLogger(name, loggerConfig);
+
+		context.updateLoggers();
+
+		return context.getLogger(name);
+	}
+
 	public static Logger getLogger(Class<?> className) {
 		return getLogger(className.getName());
 	}
@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.dianping.zebra.shard.jdbc.parallel.DBConcurrencyMonitor;
+import com.dianping.zebra.shard.jdbc.parallel.SQLThreadPoolExecutor;
 import com.dianping.zebra.shard.jdbc.unsupport.UnsupportedShardConnection;
 import com.dianping.zebra.shard.router.ShardRouter;
 import com.dianping.zebra.util.JDBCUtils;
@@ -41,6 +43,17 @@ public class ShardConnection extends UnsupportedShardConnection implements Conne
 
 	private Map<String, Connection> actualConnections = new HashMap<String, Connection>();
 
+	// 自动提交的读请求在同一个库上额外借用的连接
+	private Map<String, List<Connection>> parallelConnections = new HashMap<String, List<Connection>>();
+
+	// 自动提交的读请求每个库最多使用的连接数，小于等于1时同一个库的分表共用一个连接
+	private int parallelConnectionsPerDb = 1;
+
+	private DBConcurrencyMonitor concurrencyMonitor = new DBConcurrencyMonitor();
+
+	// 所属ShardDataSource的线程池，为null时使用全局线程池
+	private SQLThreadPoolExecutor executor;
+
 	private Set<Statement> attachedStatements = new HashSet<Statement>();
 
 	private boolean closed = false;
@@ -87,10 +100,21 @@ public class ShardConnection extends UnsupportedShardConnection implements Conne
 					innerExceptions.add(e);
 				}
 			}
+
+			for (List<Connection> conns : parallelConnections.values()) {
+				for (Connection conn : conns) {
+					try {
+						conn.close();
+					} catch (SQLException e) {
+						innerExceptions.add(e);
+					}
+				}
+			}
 		} finally {
 			closed = true;
 			attachedStatements.clear();
 			actualConnections.clear();
+			parallelConnections.clear();
 		}
 
 		JDBCUtils.throwSQLExceptionIfNeeded(innerExceptions);
@@ -164,6 +188,34 @@ public class ShardConnection extends UnsupportedShardConnection implements Conne
 		return conn;
 	}
 
+	/**
+	 * 同一个库上第index个分表的查询使用的连接。<br>
+	 * 自动提交时按index轮流使用最多parallelConnectionsPerDb个连接，使同一个库上的分表能真正并行执行；否则都使用同一个连接。
+	 */
+	Connection getReadConnection(String jdbcRef, boolean autoCommit, int index) throws SQLException {
+		int slot = autoCommit && parallelConnectionsPerDb > 1 ? index % parallelConnectionsPerDb : 0;
+
+		if (slot == 0) {
+			return getRealConnection(jdbcRef, autoCommit);
+		}
+
+		List<Connection> conns = parallelConnections.get(jdbcRef);
+		if (conns == null) {
+			conns = new ArrayList<Connection>();
+			parallelConnections.put(jdbcRef, conns);
+		}
+
+		while (conns.size() < slot) {
+			Connection conn = dataSourceRepository.getDataSource(jdbcRef).getConnection();
+			conn.setAutoCommit(true);
+			conns.add(conn);
+
+			concurrencyMonitor.borrowConnection(jdbcRef);
+		}
+
+		return conns.get(slot - 1);
+	}
+
 	public Set<Statement> getAttachedStatements() {
 		return attachedStatements;
 	}
@@ -295,6 +347,30 @@ public class ShardConnection extends UnsupportedShardConnection implements Conne
 		this.readOnly = readOnly;
 	}
 
+	public int getParallelConnectionsPerDb() {
+		return parallelConnectionsPerDb;
+	}
+
+	public void setParallelConnectionsPerDb(int parallelConnectionsPerDb) {
+		this.parallelConnectionsPerDb = parallelConnectionsPerDb;
+	}
+
+	public DBConcurrencyMonitor getConcurrencyMonitor() {
+		return concurrencyMonitor;
+	}
+
+	public void setConcurrencyMonitor(DBConcurrencyMonitor concurrencyMonitor) {
+		this.concurrencyMonitor = concurrencyMonitor;
+	}
+
+	public SQLThreadPoolExecutor getExecutor() {
+		return executor != null ? executor : SQLThreadPoolExecutor.getInstance();
+	}
+
+	public void setExecutor(SQLThreadPoolExecutor executor) {
+		this.executor = executor;
+	}
+
 	public void setRouter(ShardRouter router) {
 		this.router = router;
 	}
@@ -23,7 +23,12 @@ import org.apache.logging.log4j.Logger;
 import com.dianping.zebra.config.ConfigService;
 import com.dianping.zebra.config.ConfigServiceFactory;
 import com.dianping.zebra.log.LoggerLoader;
+import com.dianping.zebra.shard.jdbc.parallel.DBConcurrencyMonitor;
+import com.dianping.zebra.shard.jdbc.parallel.DefaultSQLExecutorFactory;
+import com.dianping.zebra.shard.jdbc.parallel.SQLExecutorFactory;
 import com.dianping.zebra.shard.jdbc.parallel.SQLThreadPoolExecutor;
+import com.dianping.zebra.shard.parser.SQLParser;
+import com.dianping.zebra.shard.router.DefaultShardRouter;
 import com.dianping.zebra.shard.router.RouterBuilder;
 import com.dianping.zebra.shard.router.ShardRouter;
 import com.dianping.zebra.shard.router.builder.LionRouterBuilder;
@@ -56,6 +61,30 @@ public class ShardDataSource extends AbstractDataSource {
 
 	private volatile boolean closed = false;
 
+	// 小于等于0时使用全局共享的解析缓存
+	private int parseCacheSize = 0;
+
+	// 小于0时使用默认值，等于0时不按范围条件路由
+	private int rangeShardLimit = -1;
+
+	// 自动提交的读请求每个库最多使用的连接数，默认同一个库的分表共用一个连接
+	private int parallelConnectionsPerDb = 1;
+
+	private final DBConcurrencyMonitor concurrencyMonitor = new DBConcurrencyMonitor();
+
+	private SQLExecutorFactory executorFactory = new DefaultSQLExecutorFactory();
+
+	// 每个ShardDataSource独立的线程池，避免互相占满队列
+	private SQLThreadPoolExecutor executor;
+
+	private int parallelCorePoolSize = SQLThreadPoolExecutor.corePoolSize;
+
+	private int parallelMaxPoolSize = SQLThreadPoolExecutor.maxPoolSize;
+
+	private int parallelWorkQueueSize = SQLThreadPoolExecutor.workQueueSize;
+
+	private long parallelExecuteTimeOut = SQLThreadPoolExecutor.executeTimeOut;
+
 	public void init() {
 		if (StringUtils.isNotBlank(ruleName)) {
 			if (configService == null) {
@@ -77,6 +106,18 @@ public class ShardDataSource extends AbstractDataSource {
 
 		this.router = routerFactory.build();
 
+		if (parseCacheSize > 0 && this.router instanceof DefaultShardRouter) {
+			((DefaultShardRouter) this.router).setSqlParser(new SQLParser(parseCacheSize));
+		}
+
+		if (rangeShardLimit >= 0 && this.router instanceof DefaultShardRouter) {
+			((DefaultShardRouter) this.router).setRangeShardLimit(rangeShardLimit);
+		}
+
+		this.executor = executorFactory.create(ruleName, parallelCorePoolSize, parallelMaxPoolSize,
+				parallelWorkQueueSize, parallelExecuteTimeOut);
+		this.executor.registerMBean();
+
 		if (dataSourceRepository == null) {
 			dataSourceRepository = DataSourceRepository.getInstance();
 		}
@@ -104,6 +145,9 @@ public class ShardDataSource extends AbstractDataSource {
 		ShardConnection connection = new ShardConnection(username, password);
 		connection.setRouter(router);
 		connection.setDataSourceRepository(dataSourceRepository);
+		connection.setParallelConnectionsPerDb(parallelConnectionsPerDb);
+		connection.setConcurrencyMonitor(concurrencyMonitor);
+		connection.setExecutor(executor);
 
 		return connection;
 	}
@@ -118,6 +162,10 @@ public class ShardDataSource extends AbstractDataSource {
 			dataSourceRepository.close();
 		}
 
+		if (executor != null) {
+			executor.shutdown();
+		}
+
 		closed = true;
 
 		logger.info(String.format("ShardDataSource(%s) successfully closed.", ruleName));
@@ -147,19 +195,54 @@ public class ShardDataSource extends AbstractDataSource {
 		this.ruleName = ruleName;
 	}
 
+	public void setParseCacheSize(int parseCacheSize) {
+		this.parseCacheSize = parseCacheSize;
+	}
+
+	public void setRangeShardLimit(int rangeShardLimit) {
+		this.rangeShardLimit = rangeShardLimit;
+	}
+
+	public void setParallelConnectionsPerDb(int parallelConnectionsPerDb) {
+		this.parallelConnectionsPerDb = parallelConnectionsPerDb;
+	}
+
+	public DBConcurrencyMonitor getConcurrencyMonitor() {
+		return concurrencyMonitor;
+	}
+
+	public SQLParser getSqlParser() {
+		if (router instanceof DefaultShardRouter) {
+			return ((DefaultShardRouter) router).getSqlParser();
+		}
+
+		return null;
+	}
+
 	public void setParallelCorePoolSize(int parallelCorePoolSize) {
-		SQLThreadPoolExecutor.corePoolSize = parallelCorePoolSize;
+		this.parallelCorePoolSize = parallelCorePoolSize;
 	}
 
 	public void setParallelMaxPoolSize(int parallelMaxPoolSize) {
-		SQLThreadPoolExecutor.maxPoolSize = parallelMaxPoolSize;
+		this.parallelMaxPoolSize = parallelMaxPoolSize;
 	}
 
 	public void setParallelWorkQueueSize(int parallelWorkQueueSize) {
-		SQLThreadPoolExecutor.workQueueSize = parallelWorkQueueSize;
+		this.parallelWorkQueueSize = parallelWorkQueueSize;
 	}
 
 	public void setParallelExecuteTimeOut(int parallelExecuteTimeOut) {
-		SQLThreadPoolExecutor.executeTimeOut = parallelExecuteTimeOut;
+		this.parallelExecuteTimeOut = parallelExecuteTimeOut;
+	}
+
+	public void setExecutorFactory(SQLExecutorFactory executorFactory) {
+		this.executorFactory = executorFactory;
+	}
+
+	/**
+	 * @return 这个ShardDataSource的线程池，可以查看队列长度、活跃线程数和被拒绝的任务数
+	 */
+	public SQLThreadPoolExecutor getExecutor() {
+		return executor;
 	}
 }
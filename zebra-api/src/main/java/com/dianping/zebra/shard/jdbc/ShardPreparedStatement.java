@@ -35,7 +35,10 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
@@ -70,9 +73,11 @@ import com.dianping.zebra.group.jdbc.param.TimestampParamContext;
 import com.dianping.zebra.group.jdbc.param.URLParamContext;
 import com.dianping.zebra.group.jdbc.param.UnicodeStreamParamContext;
 import com.dianping.zebra.group.util.DaoContextHolder;
+import com.dianping.zebra.shard.jdbc.parallel.BatchUpdateResult;
+import com.dianping.zebra.shard.jdbc.parallel.DBConcurrencyMonitor;
+import com.dianping.zebra.shard.jdbc.parallel.PreparedStatementExecuteBatchCallable;
 import com.dianping.zebra.shard.jdbc.parallel.PreparedStatementExecuteQueryCallable;
 import com.dianping.zebra.shard.jdbc.parallel.PreparedStatementExecuteUpdateCallable;
-import com.dianping.zebra.shard.jdbc.parallel.SQLThreadPoolExecutor;
 import com.dianping.zebra.shard.jdbc.parallel.UpdateResult;
 import com.dianping.zebra.shard.jdbc.unsupport.UnsupportedShardPreparedStatement;
 import com.dianping.zebra.shard.router.RouterResult;
@@ -95,6 +100,8 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 
 	private List<ParamContext> params = new ArrayList<ParamContext>();
 
+	private List<List<ParamContext>> batchedParams;
+
 	protected PreparedStatement createPrepareStatement(Connection connection, String targetSql) throws SQLException {
 		PreparedStatement stmt = null;
 		if (getResultSetType() != -1 && getResultSetConcurrency() != -1 && getResultSetHoldability() != -1) {
@@ -115,6 +122,31 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 		return stmt;
 	}
 
+	@Override
+	public void addBatch() throws SQLException {
+		checkClosed();
+
+		if (batchedParams == null) {
+			batchedParams = new ArrayList<List<ParamContext>>();
+		}
+		// 参数保留到clearParameters为止，批次里存一份拷贝，执行时改写参数不影响当前参数
+		List<ParamContext> newParams = new ArrayList<ParamContext>(params.size());
+		for (ParamContext param : params) {
+			newParams.add(param.copy(param.getIndex()));
+		}
+
+		batchedParams.add(newParams);
+	}
+
+	@Override
+	public void clearBatch() throws SQLException {
+		super.clearBatch();
+
+		if (batchedParams != null) {
+			batchedParams.clear();
+		}
+	}
+
 	@Override
 	public void clearParameters() throws SQLException {
 		params.clear();
@@ -161,18 +193,24 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 		attachedResultSets.add(rs);
 
 		List<Callable<ResultSet>> callables = new ArrayList<Callable<ResultSet>>();
+		DBConcurrencyMonitor monitor = connection.getConcurrencyMonitor();
+
 		for (RouterTarget targetedSql : routerTarget.getSqls()) {
-			for (String executableSql : targetedSql.getSqls()) {
-				Connection conn = connection.getRealConnection(targetedSql.getDatabaseName(), autoCommit);
-				PreparedStatement stmt = createPrepareStatement(conn, executableSql);
+			String dbName = targetedSql.getDatabaseName();
+			List<String> executableSqls = targetedSql.getSqls();
+
+			for (int i = 0; i < executableSqls.size(); i++) {
+				Connection conn = connection.getReadConnection(dbName, autoCommit, i);
+				PreparedStatement stmt = createPrepareStatement(conn, executableSqls.get(i));
 				actualStatements.add(stmt);
 				setParams(stmt);
 
-				callables.add(new PreparedStatementExecuteQueryCallable(stmt, DaoContextHolder.getSqlName()));
+				callables.add(monitor.monitor(dbName,
+						new PreparedStatementExecuteQueryCallable(stmt, DaoContextHolder.getSqlName())));
 			}
 		}
 
-		List<Future<ResultSet>> futures = SQLThreadPoolExecutor.getInstance().invokeSQLs(callables);
+		List<Future<ResultSet>> futures = connection.getExecutor().invokeSQLs(callables);
 
 		for (Future<ResultSet> f : futures) {
 			try {
@@ -203,18 +241,19 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 		List<Callable<UpdateResult>> tasks = new ArrayList<Callable<UpdateResult>>();
 
 		for (RouterTarget targetedSql : routerTarget.getSqls()) {
-			for (String executableSql : targetedSql.getSqls()) {
+			for (int i = 0; i < targetedSql.getSqls().size(); i++) {
+				String executableSql = targetedSql.getSqls().get(i);
 				Connection conn = connection.getRealConnection(targetedSql.getDatabaseName(), autoCommit);
 				PreparedStatement stmt = createPrepareStatement(conn, executableSql);
 				actualStatements.add(stmt);
-				setParams(stmt);
+				setParams(stmt, selectParams(params, targetedSql.getParamIndexes(i)));
 
 				tasks.add(
 						new PreparedStatementExecuteUpdateCallable(stmt, DaoContextHolder.getSqlName(), executableSql));
 			}
 		}
 
-		List<Future<UpdateResult>> futures = SQLThreadPoolExecutor.getInstance().invokeSQLs(tasks);
+		List<Future<UpdateResult>> futures = connection.getExecutor().invokeSQLs(tasks);
 
 		for (Future<UpdateResult> f : futures) {
 			try {
@@ -237,6 +276,71 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 		return affectedRows;
 	}
 
+	@Override
+	public int[] executeBatch() throws SQLException {
+		checkClosed();
+
+		try {
+			if (batchedParams == null || batchedParams.isEmpty()) {
+				return new int[0];
+			}
+
+			checkBatchSqlType(sql);
+
+			// 路由到同一个库、同一张物理表的参数放在同一个PreparedStatement里批量执行
+			Map<String, Map<String, BatchTarget>> dbTargets = new LinkedHashMap<String, Map<String, BatchTarget>>();
+			List<BatchTarget> targets = new ArrayList<BatchTarget>();
+
+			for (int i = 0; i < batchedParams.size(); i++) {
+				List<ParamContext> batchParams = batchedParams.get(i);
+
+				RouterResult routerTarget = routingAndCheck(sql, getParams(batchParams));
+
+				rewriteAndMergeParms(batchParams, routerTarget.getParams());
+
+				for (RouterTarget targetedSql : routerTarget.getSqls()) {
+					Map<String, BatchTarget> sqlTargets = dbTargets.get(targetedSql.getDatabaseName());
+					if (sqlTargets == null) {
+						sqlTargets = new LinkedHashMap<String, BatchTarget>();
+						dbTargets.put(targetedSql.getDatabaseName(), sqlTargets);
+					}
+
+					for (int j = 0; j < targetedSql.getSqls().size(); j++) {
+						String executableSql = targetedSql.getSqls().get(j);
+						BatchTarget target = sqlTargets.get(executableSql);
+						if (target == null) {
+							target = new BatchTarget(targetedSql.getDatabaseName(), executableSql);
+							sqlTargets.put(executableSql, target);
+							targets.add(target);
+						}
+
+						target.batchIndexes.add(i);
+						target.batchParams.add(selectParams(batchParams, targetedSql.getParamIndexes(j)));
+					}
+				}
+			}
+
+			List<Callable<BatchUpdateResult>> tasks = new ArrayList<Callable<BatchUpdateResult>>();
+			List<List<Integer>> batchIndexes = new ArrayList<List<Integer>>();
+
+			for (BatchTarget target : targets) {
+				Connection conn = connection.getRealConnection(target.dbName, autoCommit);
+				PreparedStatement stmt = createPrepareStatement(conn, target.sql);
+				actualStatements.add(stmt);
+
+				tasks.add(new PreparedStatementExecuteBatchCallable(stmt, DaoContextHolder.getSqlName(),
+						target.batchParams));
+				batchIndexes.add(target.batchIndexes);
+			}
+
+			return executeBatchTasks(batchedParams.size(), tasks, batchIndexes);
+		} finally {
+			if (batchedParams != null) {
+				batchedParams.clear();
+			}
+		}
+	}
+
 	public int getAutoGeneratedKeys() {
 		return autoGeneratedKeys;
 	}
@@ -249,8 +353,12 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 		return columnNames;
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	protected List<Object> getParams() {
+		return getParams(params);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected List<Object> getParams(List<ParamContext> params) {
 		Collections.sort(params, new Comparator() {
 
 			@Override
@@ -277,6 +385,10 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 	}
 
 	protected void rewriteAndMergeParms(List<Object> newParams) {
+		rewriteAndMergeParms(params, newParams);
+	}
+
+	protected void rewriteAndMergeParms(List<ParamContext> params, List<Object> newParams) {
 		if (newParams == null) {
 			return;
 		}
@@ -289,22 +401,22 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 
 	@Override
 	public void setArray(int parameterIndex, Array x) throws SQLException {
-		params.add(new ArrayParamContext(parameterIndex, new Object[] { x }));
+		setParam(new ArrayParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
-		params.add(new AsciiParamContext(parameterIndex, new Object[] { x }));
+		setParam(new AsciiParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
-		params.add(new AsciiParamContext(parameterIndex, new Object[] { x, length }));
+		setParam(new AsciiParamContext(parameterIndex, new Object[] { x, length }));
 	}
 
 	@Override
 	public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
-		params.add(new AsciiParamContext(parameterIndex, new Object[] { x, length }));
+		setParam(new AsciiParamContext(parameterIndex, new Object[] { x, length }));
 	}
 
 	public void setAutoGeneratedKeys(int autoGeneratedKeys) {
@@ -313,82 +425,82 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 
 	@Override
 	public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
-		params.add(new BigDecimalParamContext(parameterIndex, new Object[] { x }));
+		setParam(new BigDecimalParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
-		params.add(new BinaryStreamParamContext(parameterIndex, new Object[] { x }));
+		setParam(new BinaryStreamParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
-		params.add(new BinaryStreamParamContext(parameterIndex, new Object[] { x, length }));
+		setParam(new BinaryStreamParamContext(parameterIndex, new Object[] { x, length }));
 	}
 
 	@Override
 	public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
-		params.add(new BinaryStreamParamContext(parameterIndex, new Object[] { x, length }));
+		setParam(new BinaryStreamParamContext(parameterIndex, new Object[] { x, length }));
 	}
 
 	@Override
 	public void setBlob(int parameterIndex, Blob x) throws SQLException {
-		params.add(new BlobParamContext(parameterIndex, new Object[] { x }));
+		setParam(new BlobParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
-		params.add(new BlobParamContext(parameterIndex, new Object[] { inputStream }));
+		setParam(new BlobParamContext(parameterIndex, new Object[] { inputStream }));
 	}
 
 	@Override
 	public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
-		params.add(new BlobParamContext(parameterIndex, new Object[] { inputStream, length }));
+		setParam(new BlobParamContext(parameterIndex, new Object[] { inputStream, length }));
 	}
 
 	@Override
 	public void setBoolean(int parameterIndex, boolean x) throws SQLException {
-		params.add(new BooleanParamContext(parameterIndex, new Object[] { x }));
+		setParam(new BooleanParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setByte(int parameterIndex, byte x) throws SQLException {
-		params.add(new ByteParamContext(parameterIndex, new Object[] { x }));
+		setParam(new ByteParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setBytes(int parameterIndex, byte[] x) throws SQLException {
-		params.add(new ByteArrayParamContext(parameterIndex, new Object[] { x }));
+		setParam(new ByteArrayParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
-		params.add(new CharacterStreamParamContext(parameterIndex, new Object[] { reader }));
+		setParam(new CharacterStreamParamContext(parameterIndex, new Object[] { reader }));
 	}
 
 	@Override
 	public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
-		params.add(new CharacterStreamParamContext(parameterIndex, new Object[] { reader, length }));
+		setParam(new CharacterStreamParamContext(parameterIndex, new Object[] { reader, length }));
 	}
 
 	@Override
 	public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
-		params.add(new CharacterStreamParamContext(parameterIndex, new Object[] { reader, length }));
+		setParam(new CharacterStreamParamContext(parameterIndex, new Object[] { reader, length }));
 	}
 
 	@Override
 	public void setClob(int parameterIndex, Clob x) throws SQLException {
-		params.add(new ClobParamContext(parameterIndex, new Object[] { x }));
+		setParam(new ClobParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setClob(int parameterIndex, Reader reader) throws SQLException {
-		params.add(new ClobParamContext(parameterIndex, new Object[] { reader }));
+		setParam(new ClobParamContext(parameterIndex, new Object[] { reader }));
 	}
 
 	@Override
 	public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
-		params.add(new ClobParamContext(parameterIndex, new Object[] { reader, length }));
+		setParam(new ClobParamContext(parameterIndex, new Object[] { reader, length }));
 	}
 
 	public void setColumnIndexes(int[] columnIndexes) {
@@ -411,108 +523,156 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 
 	@Override
 	public void setDate(int parameterIndex, Date x) throws SQLException {
-		params.add(new DateParamContext(parameterIndex, new Object[] { x }));
+		setParam(new DateParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
-		params.add(new DateParamContext(parameterIndex, new Object[] { x, cal }));
+		setParam(new DateParamContext(parameterIndex, new Object[] { x, cal }));
 	}
 
 	@Override
 	public void setDouble(int parameterIndex, double x) throws SQLException {
-		params.add(new DoubleParamContext(parameterIndex, new Object[] { x }));
+		setParam(new DoubleParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setFloat(int parameterIndex, float x) throws SQLException {
-		params.add(new FloatParamContext(parameterIndex, new Object[] { x }));
+		setParam(new FloatParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setInt(int parameterIndex, int x) throws SQLException {
-		params.add(new IntParamContext(parameterIndex, new Object[] { x }));
+		setParam(new IntParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setLong(int parameterIndex, long x) throws SQLException {
-		params.add(new LongParamContext(parameterIndex, new Object[] { x }));
+		setParam(new LongParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
-		params.add(new NCharacterStreamParamContext(parameterIndex, new Object[] { value }));
+		setParam(new NCharacterStreamParamContext(parameterIndex, new Object[] { value }));
 	}
 
 	@Override
 	public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
-		params.add(new NCharacterStreamParamContext(parameterIndex, new Object[] { value, length }));
+		setParam(new NCharacterStreamParamContext(parameterIndex, new Object[] { value, length }));
 	}
 
 	@Override
 	public void setNClob(int parameterIndex, NClob value) throws SQLException {
-		params.add(new NClobParamContext(parameterIndex, new Object[] { value }));
+		setParam(new NClobParamContext(parameterIndex, new Object[] { value }));
 	}
 
 	@Override
 	public void setNClob(int parameterIndex, Reader reader) throws SQLException {
-		params.add(new NClobParamContext(parameterIndex, new Object[] { reader }));
+		setParam(new NClobParamContext(parameterIndex, new Object[] { reader }));
 	}
 
 	@Override
 	public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
-		params.add(new NClobParamContext(parameterIndex, new Object[] { reader, length }));
+		setParam(new NClobParamContext(parameterIndex, new Object[] { reader, length }));
 	}
 
 	@Override
 	public void setNString(int parameterIndex, String value) throws SQLException {
-		params.add(new NStringParamContext(parameterIndex, new Object[] { value }));
+		setParam(new NStringParamContext(parameterIndex, new Object[] { value }));
 	}
 
 	@Override
 	public void setNull(int parameterIndex, int sqlType) throws SQLException {
-		params.add(new NullParamContext(parameterIndex, new Object[] { sqlType }));
+		setParam(new NullParamContext(parameterIndex, new Object[] { sqlType }));
 	}
 
 	@Override
 	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
-		params.add(new NullParamContext(parameterIndex, new Object[] { sqlType, typeName }));
+		setParam(new NullParamContext(parameterIndex, new Object[] { sqlType, typeName }));
 	}
 
 	@Override
 	public void setObject(int parameterIndex, Object x) throws SQLException {
-		params.add(new ObjectParamContext(parameterIndex, new Object[] { x }));
+		setParam(new ObjectParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
-		params.add(new ObjectParamContext(parameterIndex, new Object[] { x, targetSqlType }));
+		setParam(new ObjectParamContext(parameterIndex, new Object[] { x, targetSqlType }));
 	}
 
 	@Override
 	public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
-		params.add(new ObjectParamContext(parameterIndex, new Object[] { x, targetSqlType, scaleOrLength }));
+		setParam(new ObjectParamContext(parameterIndex, new Object[] { x, targetSqlType, scaleOrLength }));
+	}
+
+	/**
+	 * 同一个下标重复设置时替换之前的值
+	 */
+	private void setParam(ParamContext param) {
+		for (int i = 0; i < params.size(); i++) {
+			if (params.get(i).getIndex() == param.getIndex()) {
+				params.set(i, param);
+				return;
+			}
+		}
+
+		params.add(param);
 	}
 
 	protected void setParams(PreparedStatement stmt) throws SQLException {
+		setParams(stmt, params);
+	}
+
+	protected void setParams(PreparedStatement stmt, List<ParamContext> params) throws SQLException {
 		for (ParamContext paramContext : params) {
 			paramContext.setParam(stmt);
 		}
 	}
 
+	/**
+	 * 多行insert拆分后，按物理sql中?的顺序重新编号参数
+	 * 
+	 * @param paramIndexes
+	 *           物理sql中每个?对应的原始参数下标，为null时使用全部参数
+	 */
+	protected List<ParamContext> selectParams(List<ParamContext> params, int[] paramIndexes) throws SQLException {
+		if (paramIndexes == null) {
+			return params;
+		}
+
+		// 同一个下标被多次设置时以最后一次为准
+		Map<Integer, ParamContext> indexedParams = new HashMap<Integer, ParamContext>();
+		for (ParamContext param : params) {
+			indexedParams.put(param.getIndex(), param);
+		}
+
+		List<ParamContext> selectedParams = new ArrayList<ParamContext>(paramIndexes.length);
+		for (int i = 0; i < paramIndexes.length; i++) {
+			ParamContext param = indexedParams.get(paramIndexes[i] + 1);
+			if (param == null) {
+				throw new SQLException("No value specified for parameter " + (paramIndexes[i] + 1));
+			}
+
+			selectedParams.add(param.copy(i + 1));
+		}
+
+		return selectedParams;
+	}
+
 	@Override
 	public void setRef(int parameterIndex, Ref x) throws SQLException {
-		params.add(new RefParamContext(parameterIndex, new Object[] { x }));
+		setParam(new RefParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setRowId(int parameterIndex, RowId x) throws SQLException {
-		params.add(new RowIdParamContext(parameterIndex, new Object[] { x }));
+		setParam(new RowIdParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setShort(int parameterIndex, short x) throws SQLException {
-		params.add(new ShortParamContext(parameterIndex, new Object[] { x }));
+		setParam(new ShortParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	public void setSql(String sql) {
@@ -521,42 +681,56 @@ public class ShardPreparedStatement extends UnsupportedShardPreparedStatement im
 
 	@Override
 	public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
-		params.add(new SQLXMLParamContext(parameterIndex, new Object[] { xmlObject }));
+		setParam(new SQLXMLParamContext(parameterIndex, new Object[] { xmlObject }));
 	}
 
 	@Override
 	public void setString(int parameterIndex, String x) throws SQLException {
-		params.add(new StringParamContext(parameterIndex, new Object[] { x }));
+		setParam(new StringParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setTime(int parameterIndex, Time x) throws SQLException {
-		params.add(new TimeParamContext(parameterIndex, new Object[] { x }));
+		setParam(new TimeParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
-		params.add(new TimeParamContext(parameterIndex, new Object[] { x, cal }));
+		setParam(new TimeParamContext(parameterIndex, new Object[] { x, cal }));
 	}
 
 	@Override
 	public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
-		params.add(new TimestampParamContext(parameterIndex, new Object[] { x }));
+		setParam(new TimestampParamContext(parameterIndex, new Object[] { x }));
 	}
 
 	@Override
 	public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
-		params.add(new TimestampParamContext(parameterIndex, new Object[] { x, cal }));
+		setParam(new TimestampParamContext(parameterIndex, new Object[] { x, cal }));
 	}
 
 	@Override
 	public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
-		params.add(new UnicodeStreamParamContext(parameterIndex, new Object[] { x, length }));
+		setParam(new UnicodeStreamParamContext(parameterIndex, new Object[] { x, length }));
 	}
 
 	@Override
 	public void setURL(int parameterIndex, URL x) throws SQLException {
-		params.add(new URLParamContext(parameterIndex, new Object[] { x }));
+		setParam(new URLParamContext(parameterIndex, new Object[] { x }));
 	}
 
+	private static class BatchTarget {
+		private final String dbName;
+
+		private final String sql;
+
+		private final List<Integer> batchIndexes = new ArrayList<Integer>();
+
+		private final List<List<ParamContext>> batchParams = new ArrayList<List<ParamContext>>();
+
+		public BatchTarget(String dbName, String sql) {
+			this.dbName = dbName;
+			this.sql = sql;
+		}
+	}
 }
@@ -12,18 +12,24 @@
  */
 package com.dianping.zebra.shard.jdbc;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
-import com.dianping.zebra.shard.jdbc.parallel.SQLThreadPoolExecutor;
+import com.dianping.zebra.shard.jdbc.parallel.BatchUpdateResult;
+import com.dianping.zebra.shard.jdbc.parallel.DBConcurrencyMonitor;
+import com.dianping.zebra.shard.jdbc.parallel.StatementExecuteBatchCallable;
 import com.dianping.zebra.shard.jdbc.parallel.StatementExecuteQueryCallable;
 import com.dianping.zebra.shard.jdbc.parallel.StatementExecuteUpdateCallable;
 import com.dianping.zebra.shard.jdbc.parallel.UpdateResult;
@@ -72,6 +78,8 @@ public class ShardStatement extends UnsupportedShardStatement implements Stateme
 
 	protected ResultSet generatedKey;
 
+	protected List<String> batchedSqls;
+
 	private boolean executeInternal(String sql, int autoGeneratedKeys, int[] columnIndexes, String[] columnNames)
 			throws SQLException {
 		SqlType sqlType = judgeSqlType(sql);
@@ -116,7 +124,7 @@ public class ShardStatement extends UnsupportedShardStatement implements Stateme
 			}
 		}
 
-		List<Future<UpdateResult>> futures = SQLThreadPoolExecutor.getInstance().invokeSQLs(tasks);
+		List<Future<UpdateResult>> futures = connection.getExecutor().invokeSQLs(tasks);
 
 		for (Future<UpdateResult> f : futures) {
 			try {
@@ -139,6 +147,142 @@ public class ShardStatement extends UnsupportedShardStatement implements Stateme
 		return affectedRows;
 	}
 
+	@Override
+	public void addBatch(String sql) throws SQLException {
+		checkClosed();
+
+		if (batchedSqls == null) {
+			batchedSqls = new ArrayList<String>();
+		}
+		if (sql != null) {
+			batchedSqls.add(sql);
+		}
+	}
+
+	@Override
+	public void clearBatch() throws SQLException {
+		checkClosed();
+
+		if (batchedSqls != null) {
+			batchedSqls.clear();
+		}
+	}
+
+	@Override
+	public int[] executeBatch() throws SQLException {
+		checkClosed();
+
+		try {
+			if (batchedSqls == null || batchedSqls.isEmpty()) {
+				return new int[0];
+			}
+
+			// 路由到同一个库的sql放在同一个Statement里批量执行
+			Map<String, List<String>> dbSqls = new LinkedHashMap<String, List<String>>();
+			Map<String, List<Integer>> dbBatchIndexes = new LinkedHashMap<String, List<Integer>>();
+
+			for (int i = 0; i < batchedSqls.size(); i++) {
+				String sql = batchedSqls.get(i);
+				checkBatchSqlType(sql);
+
+				RouterResult routerTarget = routingAndCheck(sql, null);
+
+				for (RouterTarget targetedSql : routerTarget.getSqls()) {
+					String db = targetedSql.getDatabaseName();
+					if (!dbSqls.containsKey(db)) {
+						dbSqls.put(db, new ArrayList<String>());
+						dbBatchIndexes.put(db, new ArrayList<Integer>());
+					}
+
+					for (String executableSql : targetedSql.getSqls()) {
+						dbSqls.get(db).add(executableSql);
+						dbBatchIndexes.get(db).add(i);
+					}
+				}
+			}
+
+			List<Callable<BatchUpdateResult>> tasks = new ArrayList<Callable<BatchUpdateResult>>();
+			List<List<Integer>> batchIndexes = new ArrayList<List<Integer>>();
+
+			for (Entry<String, List<String>> entry : dbSqls.entrySet()) {
+				Connection conn = connection.getRealConnection(entry.getKey(), autoCommit);
+				Statement stmt = conn.createStatement();
+				actualStatements.add(stmt);
+
+				tasks.add(new StatementExecuteBatchCallable(stmt, entry.getValue()));
+				batchIndexes.add(dbBatchIndexes.get(entry.getKey()));
+			}
+
+			return executeBatchTasks(batchedSqls.size(), tasks, batchIndexes);
+		} finally {
+			if (batchedSqls != null) {
+				batchedSqls.clear();
+			}
+		}
+	}
+
+	protected void checkBatchSqlType(String sql) throws SQLException {
+		if (judgeSqlType(sql) == SqlType.SELECT) {
+			throw new SQLException("Only insert, update, delete sql is supported in batch.");
+		}
+	}
+
+	/**
+	 * 并行执行各个物理Statement上的batch，再按原始的batch顺序合并update count
+	 * 
+	 * @param batchIndexes
+	 *           每个task中的每条记录对应的原始batch下标
+	 */
+	protected int[] executeBatchTasks(int batchSize, List<Callable<BatchUpdateResult>> tasks,
+			List<List<Integer>> batchIndexes) throws SQLException {
+		List<Future<BatchUpdateResult>> futures = connection.getExecutor().invokeSQLs(tasks);
+
+		int[] updateCounts = new int[batchSize];
+		SQLException exception = null;
+
+		for (int i = 0; i < futures.size(); i++) {
+			BatchUpdateResult result;
+			try {
+				result = futures.get(i).get();
+			} catch (Exception e) {
+				// normally can't be here
+				throw new SQLException(e);
+			}
+
+			if (exception == null) {
+				exception = result.getException();
+			}
+
+			List<Integer> indexes = batchIndexes.get(i);
+			for (int j = 0; j < indexes.size(); j++) {
+				int index = indexes.get(j);
+				updateCounts[index] = mergeUpdateCount(updateCounts[index], result.getUpdateCount(j));
+			}
+		}
+
+		this.results = null;
+		this.updateCount = -1;
+
+		if (exception != null) {
+			throw new BatchUpdateException(exception.getMessage(), exception.getSQLState(), exception.getErrorCode(),
+					updateCounts, exception);
+		}
+
+		return updateCounts;
+	}
+
+	// 一条记录路由到多个分表时，update count累加
+	private int mergeUpdateCount(int current, int count) {
+		if (current == Statement.EXECUTE_FAILED || count == Statement.EXECUTE_FAILED) {
+			return Statement.EXECUTE_FAILED;
+		}
+		if (current == Statement.SUCCESS_NO_INFO || count == Statement.SUCCESS_NO_INFO) {
+			return Statement.SUCCESS_NO_INFO;
+		}
+
+		return current + count;
+	}
+
 	protected ResultSet beforeQuery(String sql) throws SQLException {
 		// 特殊处理 SELECT @@IDENTITY AS A
 		// 这种SQL，因为这种SQL需要从同一个DPConnection会话中获得上次Insert语句的返回值
@@ -266,19 +410,24 @@ public class ShardStatement extends UnsupportedShardStatement implements Stateme
 		attachedResultSets.add(rs);
 
 		List<Callable<ResultSet>> callables = new ArrayList<Callable<ResultSet>>();
+		DBConcurrencyMonitor monitor = connection.getConcurrencyMonitor();
 
 		for (RouterTarget targetedSql : routerTarget.getSqls()) {
-			for (String executableSql : targetedSql.getSqls()) {
-				Connection conn = connection.getRealConnection(targetedSql.getDatabaseName(), autoCommit);
+			String dbName = targetedSql.getDatabaseName();
+			List<String> executableSqls = targetedSql.getSqls();
+
+			for (int i = 0; i < executableSqls.size(); i++) {
+				Connection conn = connection.getReadConnection(dbName, autoCommit, i);
 				Statement stmt = createStatement(conn);
 				actualStatements.add(stmt);
 
-				callables.add(new StatementExecuteQueryCallable(stmt, executableSql));
+				callables.add(monitor.monitor(dbName,
+						new StatementExecuteQueryCallable(stmt, executableSqls.get(i))));
 			}
 
 		}
 
-		List<Future<ResultSet>> futures = SQLThreadPoolExecutor.getInstance().invokeSQLs(callables);
+		List<Future<ResultSet>> futures = connection.getExecutor().invokeSQLs(callables);
 
 		for (Future<ResultSet> f : futures) {
 			try {
@@ -0,0 +1,36 @@
+package com.dianping.zebra.shard.jdbc.parallel;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class BatchUpdateResult {
+	private int[] updateCounts;
+
+	// 执行失败时的异常，update count只包含失败前执行成功的部分
+	private SQLException exception;
+
+	public BatchUpdateResult(int[] updateCounts) {
+		this(updateCounts, null);
+	}
+
+	public BatchUpdateResult(int[] updateCounts, SQLException exception) {
+		this.updateCounts = updateCounts;
+		this.exception = exception;
+	}
+
+	public int getUpdateCount(int index) {
+		if (updateCounts != null && index < updateCounts.length) {
+			return updateCounts[index];
+		}
+
+		return Statement.EXECUTE_FAILED;
+	}
+
+	public int[] getUpdateCounts() {
+		return updateCounts;
+	}
+
+	public SQLException getException() {
+		return exception;
+	}
+}
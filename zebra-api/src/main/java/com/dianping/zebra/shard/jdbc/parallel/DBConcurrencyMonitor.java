@@ -0,0 +1,117 @@
+package com.dianping.zebra.shard.jdbc.parallel;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按库统计分表查询的并发情况
+ */
+public class DBConcurrencyMonitor {
+
+	private final ConcurrentMap<String, DBConcurrency> concurrencies = new ConcurrentHashMap<String, DBConcurrency>();
+
+	public <T> Callable<T> monitor(String dbName, final Callable<T> callable) {
+		final DBConcurrency concurrency = getConcurrency(dbName);
+
+		return new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				concurrency.begin();
+				try {
+					return callable.call();
+				} finally {
+					concurrency.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * 记录为了并行查询额外借用的连接
+	 */
+	public void borrowConnection(String dbName) {
+		getConcurrency(dbName).borrowedConnections.incrementAndGet();
+	}
+
+	public DBConcurrency getConcurrency(String dbName) {
+		DBConcurrency concurrency = concurrencies.get(dbName);
+
+		if (concurrency == null) {
+			concurrency = new DBConcurrency();
+			DBConcurrency existing = concurrencies.putIfAbsent(dbName, concurrency);
+			if (existing != null) {
+				concurrency = existing;
+			}
+		}
+
+		return concurrency;
+	}
+
+	public Map<String, DBConcurrency> getConcurrencies() {
+		return Collections.unmodifiableMap(concurrencies);
+	}
+
+	@Override
+	public String toString() {
+		return "DBConcurrencyMonitor " + concurrencies;
+	}
+
+	public static class DBConcurrency {
+
+		private final AtomicInteger active = new AtomicInteger();
+
+		private final AtomicInteger peakActive = new AtomicInteger();
+
+		private final AtomicLong queryCount = new AtomicLong();
+
+		private final AtomicLong borrowedConnections = new AtomicLong();
+
+		void begin() {
+			int current = active.incrementAndGet();
+			queryCount.incrementAndGet();
+
+			for (int peak = peakActive.get(); current > peak; peak = peakActive.get()) {
+				if (peakActive.compareAndSet(peak, current)) {
+					break;
+				}
+			}
+		}
+
+		void end() {
+			active.decrementAndGet();
+		}
+
+		/**
+		 * @return 当前正在执行的分表查询数
+		 */
+		public int getActive() {
+			return active.get();
+		}
+
+		/**
+		 * @return 同时执行的分表查询数的峰值
+		 */
+		public int getPeakActive() {
+			return peakActive.get();
+		}
+
+		public long getQueryCount() {
+			return queryCount.get();
+		}
+
+		public long getBorrowedConnections() {
+			return borrowedConnections.get();
+		}
+
+		@Override
+		public String toString() {
+			return "[active=" + getActive() + ", peakActive=" + getPeakActive() + ", queryCount=" + getQueryCount()
+					+ ", borrowedConnections=" + getBorrowedConnections() + "]";
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.dianping.zebra.shard.jdbc.parallel;
+
+public class DefaultSQLExecutorFactory implements SQLExecutorFactory {
+
+	@Override
+	public SQLThreadPoolExecutor create(String name, int corePoolSize, int maxPoolSize, int workQueueSize,
+			long executeTimeOut) {
+		return new SQLThreadPoolExecutor(name, corePoolSize, maxPoolSize, workQueueSize, executeTimeOut);
+	}
+}
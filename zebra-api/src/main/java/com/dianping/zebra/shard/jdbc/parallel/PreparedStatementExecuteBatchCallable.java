@@ -0,0 +1,45 @@
+package com.dianping.zebra.shard.jdbc.parallel;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.dianping.zebra.group.jdbc.param.ParamContext;
+import com.dianping.zebra.group.util.DaoContextHolder;
+
+public class PreparedStatementExecuteBatchCallable implements Callable<BatchUpdateResult> {
+
+	private PreparedStatement stmt;
+	private String sqlName;
+	private List<List<ParamContext>> batchedParams;
+
+	public PreparedStatementExecuteBatchCallable(PreparedStatement stmt, String sqlName,
+			List<List<ParamContext>> batchedParams) {
+		this.stmt = stmt;
+		this.sqlName = sqlName;
+		this.batchedParams = batchedParams;
+	}
+
+	@Override
+	public BatchUpdateResult call() throws Exception {
+		DaoContextHolder.setSqlName(sqlName);
+
+		// 异常作为结果返回，不影响其他分片上的batch执行完
+		try {
+			for (List<ParamContext> params : batchedParams) {
+				for (ParamContext param : params) {
+					param.setParam(stmt);
+				}
+				stmt.addBatch();
+			}
+
+			return new BatchUpdateResult(stmt.executeBatch());
+		} catch (BatchUpdateException e) {
+			return new BatchUpdateResult(e.getUpdateCounts(), e);
+		} catch (SQLException e) {
+			return new BatchUpdateResult(null, e);
+		}
+	}
+}
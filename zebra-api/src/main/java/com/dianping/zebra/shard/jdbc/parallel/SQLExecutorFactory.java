@@ -0,0 +1,14 @@
+package com.dianping.zebra.shard.jdbc.parallel;
+
+/**
+ * 创建ShardDataSource使用的线程池，可以注入自定义实现
+ */
+public interface SQLExecutorFactory {
+
+	/**
+	 * @param name
+	 *            用于线程名，一般是ShardDataSource的ruleName
+	 */
+	SQLThreadPoolExecutor create(String name, int corePoolSize, int maxPoolSize, int workQueueSize,
+			long executeTimeOut);
+}
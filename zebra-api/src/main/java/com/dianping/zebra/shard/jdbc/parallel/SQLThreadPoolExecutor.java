@@ -1,10 +1,11 @@
 package com.dianping.zebra.shard.jdbc.parallel;
 
+import java.lang.management.ManagementFactory;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
@@ -15,8 +16,22 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class SQLThreadPoolExecutor extends ThreadPoolExecutor {
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.Logger;
+
+import com.dianping.zebra.log.LoggerLoader;
+
+/**
+ * 并行执行分表SQL的线程池。<br>
+ * 每个ShardDataSource使用自己的线程池，互不影响；队列满时由调用线程直接执行，不会失败，只有超过executeTimeOut才报超时。<br>
+ * 静态的getInstance()只给没有绑定ShardDataSource的连接使用。
+ */
+public class SQLThreadPoolExecutor extends ThreadPoolExecutor implements SQLThreadPoolExecutorMXBean {
+
+	private static final Logger logger = LoggerLoader.getLogger(SQLThreadPoolExecutor.class);
 
 	public static int corePoolSize = 32;
 
@@ -28,40 +43,128 @@ public class SQLThreadPoolExecutor extends ThreadPoolExecutor {
 
 	private static volatile SQLThreadPoolExecutor executor = null;
 
-	private SQLThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
-			BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory) {
-		super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory);
+	private static final AtomicInteger MBEAN_ID = new AtomicInteger();
+
+	private final String name;
+
+	private final long timeout;
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	private volatile ObjectName mbeanName;
+
+	public SQLThreadPoolExecutor(String name, int corePoolSize, int maximumPoolSize, int workQueueSize,
+			long executeTimeOut) {
+		super(corePoolSize, maximumPoolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(workQueueSize),
+				new NamedThreadFactory(name));
+
+		this.name = name;
+		this.timeout = executeTimeOut;
+		this.setRejectedExecutionHandler(new CallerRunsPolicy() {
+			@Override
+			public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+				rejectedCount.incrementAndGet();
+				super.rejectedExecution(r, e);
+			}
+		});
 	}
 
 	public static SQLThreadPoolExecutor getInstance() {
 		if (executor == null) {
 			synchronized (SQLThreadPoolExecutor.class) {
 				if (executor == null) {
-					executor = new SQLThreadPoolExecutor(corePoolSize, maxPoolSize, 60L, TimeUnit.SECONDS,
-							new LinkedBlockingQueue<Runnable>(workQueueSize), new ThreadFactory() {
+					executor = new SQLThreadPoolExecutor(null, corePoolSize, maxPoolSize, workQueueSize, executeTimeOut);
+					executor.registerMBean();
+				}
+			}
+		}
+
+		return executor;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getExecuteTimeOut() {
+		return timeout;
+	}
+
+	@Override
+	public int getQueueSize() {
+		return getQueue().size();
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
 
-								private AtomicInteger counter = new AtomicInteger(1);
+	@Override
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	/**
+	 * 注册到platform MBeanServer，线程池终止时自动注销。<br>
+	 * 同名的线程池可能同时存在（比如相同的ruleName），名字后面加上递增的id，每个线程池的注册互不影响。
+	 */
+	public synchronized void registerMBean() {
+		if (mbeanName != null) {
+			return;
+		}
 
-								@Override
-								public Thread newThread(Runnable r) {
-									Thread t = new Thread(r);
-									t.setName("Zebra-Shard-Executor-" + counter.getAndIncrement());
-									t.setDaemon(true);
+		try {
+			ObjectName objectName = new ObjectName("com.dianping.zebra:type=ShardExecutor,name="
+					+ ObjectName.quote(name == null ? "default" : name) + ",id=" + MBEAN_ID.incrementAndGet());
+
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			this.mbeanName = objectName;
+		} catch (Exception e) {
+			logger.warn("fail to register ShardExecutor MBean for " + name, e);
+		}
+	}
 
-									return t;
-								}
-							});
+	/**
+	 * @return 注册的MBean名字，没有注册时返回null
+	 */
+	public ObjectName getMBeanName() {
+		return mbeanName;
+	}
+
+	/**
+	 * 只注销自己注册的名字
+	 */
+	@Override
+	protected void terminated() {
+		super.terminated();
+
+		synchronized (this) {
+			if (mbeanName != null) {
+				try {
+					ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+				} catch (Exception ignore) {
 				}
+				mbeanName = null;
 			}
 		}
+	}
 
-		return executor;
+	@Override
+	public String toString() {
+		return "SQLThreadPoolExecutor [name=" + name + ", poolSize=" + getPoolSize() + ", activeCount="
+				+ getActiveCount() + ", queueSize=" + getQueueSize() + ", rejectedCount=" + getRejectedCount()
+				+ ", timeoutCount=" + getTimeoutCount() + ", completedTaskCount=" + getCompletedTaskCount() + "]";
 	}
 
 	public <T> List<Future<T>> invokeSQLs(Collection<? extends Callable<T>> tasks) throws SQLException {
 		if (tasks == null)
 			throw new NullPointerException();
-		long nanos = TimeUnit.MILLISECONDS.toNanos(executeTimeOut);
+		long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
 		ArrayList<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
 		boolean done = false;
 		try {
@@ -72,22 +175,20 @@ public class SQLThreadPoolExecutor extends ThreadPoolExecutor {
 			final long deadline = System.nanoTime() + nanos;
 			final int size = futures.size();
 
-			// Interleave time checks and calls to execute in case
-			// executor doesn't have any/much parallelism.
+			// 队列满时任务在调用线程里执行，提交本身也会占用时间，超过deadline后不再提交剩下的任务
 			for (int i = 0; i < size; i++) {
-				execute((Runnable) futures.get(i));
-				nanos = deadline - System.nanoTime();
-				if (nanos <= 0L) {
-					throw new SQLException(
-							"Error! Do not have enough thread to excute sql, you have to increase your thread pool maxsize");
+				if (deadline - System.nanoTime() <= 0L) {
+					throw timeout(null);
 				}
+				execute((Runnable) futures.get(i));
 			}
 
+			nanos = deadline - System.nanoTime();
 			for (int i = 0; i < size; i++) {
 				Future<T> f = futures.get(i);
 				if (!f.isDone()) {
-					if (nanos <= 0L){
-						return futures;
+					if (nanos <= 0L) {
+						throw timeout(null);
 					}
 					try {
 						f.get(nanos, TimeUnit.NANOSECONDS);
@@ -96,8 +197,7 @@ public class SQLThreadPoolExecutor extends ThreadPoolExecutor {
 					} catch (ExecutionException ee) {
 						throw new SQLException(ee.getCause());
 					} catch (TimeoutException toe) {
-						throw new SQLException(
-								"One of your sql's execution time is beyond " + executeTimeOut + " milliseconds.", toe);
+						throw timeout(toe);
 					} catch (InterruptedException e) {
 						throw new SQLException(e);
 					}
@@ -114,4 +214,36 @@ public class SQLThreadPoolExecutor extends ThreadPoolExecutor {
 			}
 		}
 	}
+
+	private SQLTimeoutException timeout(TimeoutException cause) {
+		timeoutCount.incrementAndGet();
+		logger.warn("sql execution timeout, " + this);
+
+		SQLTimeoutException e = new SQLTimeoutException("One of your sql's execution time is beyond " + timeout
+				+ " milliseconds.");
+		if (cause != null) {
+			e.initCause(cause);
+		}
+		return e;
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		private final String prefix;
+
+		private final AtomicInteger counter = new AtomicInteger(1);
+
+		public NamedThreadFactory(String name) {
+			this.prefix = name == null ? "Zebra-Shard-Executor-" : "Zebra-Shard-Executor-" + name + "-";
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r);
+			t.setName(prefix + counter.getAndIncrement());
+			t.setDaemon(true);
+
+			return t;
+		}
+	}
 }
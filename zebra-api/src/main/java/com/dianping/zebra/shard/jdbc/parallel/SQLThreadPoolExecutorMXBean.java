@@ -0,0 +1,29 @@
+package com.dianping.zebra.shard.jdbc.parallel;
+
+/**
+ * 分表SQL线程池的运行状态，注册的名字是com.dianping.zebra:type=ShardExecutor,name=线程池名字,id=递增的编号
+ */
+public interface SQLThreadPoolExecutorMXBean {
+
+	public String getName();
+
+	public long getExecuteTimeOut();
+
+	public int getPoolSize();
+
+	public int getActiveCount();
+
+	public int getQueueSize();
+
+	/**
+	 * @return 队列满了以后由调用线程执行的任务数
+	 */
+	public long getRejectedCount();
+
+	/**
+	 * @return 超过executeTimeOut的批次数
+	 */
+	public long getTimeoutCount();
+
+	public long getCompletedTaskCount();
+}
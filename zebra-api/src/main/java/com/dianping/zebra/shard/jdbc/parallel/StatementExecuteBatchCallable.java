@@ -0,0 +1,34 @@
+package com.dianping.zebra.shard.jdbc.parallel;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class StatementExecuteBatchCallable implements Callable<BatchUpdateResult> {
+
+	private Statement stmt;
+	private List<String> sqls;
+
+	public StatementExecuteBatchCallable(Statement stmt, List<String> sqls) {
+		this.stmt = stmt;
+		this.sqls = sqls;
+	}
+
+	@Override
+	public BatchUpdateResult call() throws Exception {
+		// 异常作为结果返回，不影响其他分片上的batch执行完
+		try {
+			for (String sql : sqls) {
+				stmt.addBatch(sql);
+			}
+
+			return new BatchUpdateResult(stmt.executeBatch());
+		} catch (BatchUpdateException e) {
+			return new BatchUpdateResult(e.getUpdateCounts(), e);
+		} catch (SQLException e) {
+			return new BatchUpdateResult(null, e);
+		}
+	}
+}
@@ -9,11 +9,6 @@ import com.dianping.zebra.shard.jdbc.ShardStatement;
 
 public abstract class UnsupportedShardPreparedStatement extends ShardStatement implements PreparedStatement{
 
-	@Override
-	public void addBatch() throws SQLException {
-		throw new UnsupportedOperationException("Zebra unsupport addBatch");
-	}
-	
 	@Override
 	public ResultSetMetaData getMetaData() throws SQLException {
 		throw new UnsupportedOperationException("Zebra unsupport getMetaData");
@@ -6,21 +6,11 @@ import java.sql.Statement;
 
 public abstract class UnsupportedShardStatement implements Statement {
 
-	@Override
-	public void addBatch(String sql) throws SQLException {
-		throw new UnsupportedOperationException("Zebra unsupport addBatch");
-	}
-
 	@Override
 	public void cancel() throws SQLException {
 		throw new UnsupportedOperationException("Zebra unsupport cancel");
 	}
 
-	@Override
-	public void clearBatch() throws SQLException {
-		throw new UnsupportedOperationException("Zebra unsupport clearBatch");
-	}
-
 	@Override
 	public void clearWarnings() throws SQLException {
 		throw new UnsupportedOperationException("Zebra unsupport clearWarnings");
@@ -30,11 +20,6 @@ public abstract class UnsupportedShardStatement implements Statement {
 		throw new UnsupportedOperationException("closeOnCompletion");
 	}
 
-	@Override
-	public int[] executeBatch() throws SQLException {
-		throw new UnsupportedOperationException("Zebra unsupport executeBatch");
-	}
-
 	@Override
 	public int getFetchDirection() throws SQLException {
 		throw new UnsupportedOperationException("Zebra unsupport getFetchDirection");
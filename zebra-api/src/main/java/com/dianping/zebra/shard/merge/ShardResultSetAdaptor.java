@@ -39,6 +39,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.dianping.zebra.shard.jdbc.unsupport.UnsupportedShardResultSet;
+import com.dianping.zebra.shard.merge.orderby.OrderByStreamingMerger;
 
 /**
  * 数据池， 用于隐藏真实数据的来源。<br>
@@ -48,6 +49,8 @@ import com.dianping.zebra.shard.jdbc.unsupport.UnsupportedShardResultSet;
  * ，这种情况通常不需要Zebra进行数据处理（没有跨表跨库orderby并且没有跨库跨表聚合函数列存在）。</li>
  * <li>由若干个<tt>ResultSet</tt>中的所有数据经过全局排序以及数据合并（主要针对跨库跨表的全局聚合函数）而得到的
  * <tt>List</tt>组成。这种情况的数据池称作内存数据池</li>
+ * <li>由若干个已经排好序的<tt>ResultSet</tt>通过优先队列流式归并而成的复合<tt>ResultSet</tt>
+ * ，这种情况仅有跨表跨库orderby，没有聚合函数、group by和distinct。</li>
  * </ol>
  * 在遍历数据的时候，<br>
  * 对于第一种情况，我们只要简单的按照顺序遍历每一个<tt>ResultSet</tt>并且调用具体的<tt>ResultSet</tt>方法即可。<br>
@@ -66,6 +69,8 @@ public class ShardResultSetAdaptor extends UnsupportedShardResultSet implements
 
 	protected boolean inMemory = false;
 
+	protected OrderByStreamingMerger streamingMerger;
+
 	protected int resultSetIndex = 0;
 
 	protected int rowNum = 0;
@@ -88,6 +93,9 @@ public class ShardResultSetAdaptor extends UnsupportedShardResultSet implements
 			if (max != MergeContext.NO_LIMIT && rowNum > max) {
 				return false;
 			}
+			if (streamingMerger != null) {
+				return nextStreaming();
+			}
 			if (!resultSets.get(resultSetIndex).next()) {
 				while (++resultSetIndex < resultSets.size()) {
 					if (resultSets.get(resultSetIndex).next()) {
@@ -107,6 +115,13 @@ public class ShardResultSetAdaptor extends UnsupportedShardResultSet implements
 		}
 	}
 
+	private boolean nextStreaming() throws SQLException {
+		boolean hasNext = streamingMerger.next();
+		resultSetIndex = streamingMerger.getCurrentIndex();
+
+		return hasNext;
+	}
+
 	/**
 	 * @return the skip
 	 */
@@ -161,6 +176,25 @@ public class ShardResultSetAdaptor extends UnsupportedShardResultSet implements
 		this.resultSets = resultSets;
 	}
 
+	/**
+	 * 设定流式归并器，设定后按全局顺序遍历<tt>ResultSet</tt>列表
+	 *
+	 * @param streamingMerger
+	 *            the streamingMerger to set
+	 */
+	public void setStreamingMerger(OrderByStreamingMerger streamingMerger) {
+		this.streamingMerger = streamingMerger;
+	}
+
+	/**
+	 * 是否流式归并的数据池
+	 *
+	 * @return
+	 */
+	public boolean isStreaming() {
+		return streamingMerger != null;
+	}
+
 	/**
 	 * <p>
 	 * 处理limit
@@ -180,6 +214,12 @@ public class ShardResultSetAdaptor extends UnsupportedShardResultSet implements
 			List<RowData> subDataList = memoryData.subList(fromIndex, toIndex);
 
 			this.memoryData = new ArrayList<RowData>(subDataList);
+		} else if (streamingMerger != null) {
+			for (int rowSkipped = 0; rowSkipped < skip; rowSkipped++) {
+				if (!nextStreaming()) {
+					break;
+				}
+			}
 		} else {
 			if (skip > 0) {
 				int rowSkipped = 0;
@@ -208,6 +248,7 @@ public class ShardResultSetAdaptor extends UnsupportedShardResultSet implements
 			this.memoryData.clear();
 		}
 		this.inMemory = false;
+		this.streamingMerger = null;
 		this.resultSetIndex = 0;
 		this.rowNum = 0;
 	}
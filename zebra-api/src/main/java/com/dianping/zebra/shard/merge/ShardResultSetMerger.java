@@ -19,13 +19,19 @@ import java.sql.ResultSet;
 import java.sql.RowId;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.Map.Entry;
 
 import com.alibaba.druid.sql.ast.statement.SQLSelectItem;
 import com.dianping.zebra.shard.merge.distinct.DistinctDataMerger;
 import com.dianping.zebra.shard.merge.groupby.GroupByDataMerger;
+import com.dianping.zebra.shard.merge.orderby.OrderByComparator;
 import com.dianping.zebra.shard.merge.orderby.OrderByDataMerger;
+import com.dianping.zebra.shard.merge.orderby.OrderByStreamingMerger;
+import com.dianping.zebra.shard.merge.orderby.OrderByTopN;
 import com.dianping.zebra.shard.router.RouterResult;
 import com.dianping.zebra.shard.router.RouterResult.RouterTarget;
 
@@ -50,7 +56,11 @@ public class ShardResultSetMerger {
 	 * <ol>
 	 * <li>如果路由结果中仅包含一个数据源或者路由结果包含多个数据源但是SQL不包含order
 	 * by子句和聚合函数，且没有distinct，则直接把真实ResultSet List进行limit处理后保存于dataPool中。</li>
-	 * <li>非第一种情况，则需要从ResultSet
+	 * <li>如果路由结果包含多个数据源，SQL仅包含order by子句，没有聚合函数、group by和distinct，
+	 * 则各个ResultSet已经按照下推的order by排好序，直接通过优先队列进行流式归并，再进行limit处理。</li>
+	 * <li>如果SQL包含order by子句和limit，没有聚合函数和group by，则边读取边放入大小为offset+limit的有界堆，
+	 * 某个ResultSet的数据已经排不进前N条时就不再读取该ResultSet。</li>
+	 * <li>非以上情况，则需要从ResultSet
 	 * List中弹出所有记录，进行distinct处理，聚合函数计算，排序，limit计算。并把结果保存于dataPool中。</li>
 	 * </ol>
 	 * </p>
@@ -69,6 +79,13 @@ public class ShardResultSetMerger {
 		} else if ((sqls.size() > 1 || sqls.get(0).getSqls().size() > 1) && (mergeContext.getOrderBy() == null)
 				&& !mergeContext.isAggregate() && !mergeContext.isDistinct()) {
 			adaptor.setResultSets(actualResultSets);
+		} else if (isStreamingOrderBy(mergeContext)) {
+			adaptor.setResultSets(actualResultSets);
+			adaptor.setStreamingMerger(new OrderByStreamingMerger(actualResultSets,
+					new OrderByComparator(mergeContext.getOrderBy())));
+		} else if (isTopNOrderBy(mergeContext)) {
+			adaptor.setResultSets(actualResultSets);
+			adaptor.setMemoryData(popTopNResultSets(actualResultSets, mergeContext));
 		} else {
 			adaptor.setResultSets(actualResultSets);
 			List<RowData> rowDatas = popResultSets(actualResultSets, mergeContext);
@@ -92,35 +109,96 @@ public class ShardResultSetMerger {
 		}
 	}
 
-	private List<RowData> popResultSets(List<ResultSet> actualResultSets, MergeContext mergeContext)
+	private boolean isStreamingOrderBy(MergeContext mergeContext) {
+		return mergeContext.getOrderBy() != null && !mergeContext.isAggregate() && !mergeContext.isDistinct()
+				&& (mergeContext.getGroupByColumns() == null || mergeContext.getGroupByColumns().isEmpty());
+	}
+
+	private boolean isTopNOrderBy(MergeContext mergeContext) {
+		return mergeContext.getOrderBy() != null && mergeContext.getLimit() != MergeContext.NO_LIMIT
+				&& !mergeContext.isAggregate()
+				&& (mergeContext.getGroupByColumns() == null || mergeContext.getGroupByColumns().isEmpty());
+	}
+
+	List<RowData> popResultSets(List<ResultSet> actualResultSets, MergeContext mergeContext)
 			throws SQLException {
 		List<RowData> rows = new ArrayList<RowData>();
 
 		for (int resultSetIndex = 0; resultSetIndex < actualResultSets.size(); resultSetIndex++) {
 			while (actualResultSets.get(resultSetIndex).next()) {
-				RowData row = new RowData(actualResultSets.get(resultSetIndex));
-
-				for (Entry<String, SQLSelectItem> col : mergeContext.getSelectItemMap().entrySet()) {
-					String columnName = col.getKey();
-					int columnIndex = actualResultSets.get(resultSetIndex).findColumn(columnName);
-					Object value = actualResultSets.get(resultSetIndex).getObject(columnIndex);
-					boolean wasNull = actualResultSets.get(resultSetIndex).wasNull();
-					RowId rowId = null;
-					try {
-						rowId = actualResultSets.get(resultSetIndex).getRowId(columnIndex);
-					} catch (Throwable e) {
-						// ignore
+				rows.add(popRow(actualResultSets.get(resultSetIndex), mergeContext));
+			}
+		}
+
+		return rows;
+	}
+
+	List<RowData> popTopNResultSets(List<ResultSet> actualResultSets, MergeContext mergeContext)
+			throws SQLException {
+		OrderByTopN topN = orderbyMerger.newTopN(mergeContext);
+
+		try {
+			for (ResultSet rs : actualResultSets) {
+				while (rs.next()) {
+					// 每个ResultSet已经按照order by排好序，当前行排不进前N条，之后的行也不可能
+					if (!topN.offer(popRow(rs, mergeContext))) {
+						break;
 					}
+				}
+			}
+		} catch (RuntimeException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw e;
+		}
+
+		List<RowData> rows = topN.toSortedList();
+		closeUnusedResultSets(actualResultSets, rows);
+
+		return rows;
+	}
 
-					ColumnData columnData = new ColumnData(columnIndex, columnName, value,
-							value == null ? null : value.getClass(), rowId, wasNull);
-					row.addColumn(columnData);
+	/**
+	 * 提前关闭没有任何数据进入结果的ResultSet，尽早释放驱动缓存的数据
+	 */
+	private void closeUnusedResultSets(List<ResultSet> actualResultSets, List<RowData> rows) {
+		Set<ResultSet> usedResultSets = Collections.newSetFromMap(new IdentityHashMap<ResultSet, Boolean>());
+		for (RowData row : rows) {
+			usedResultSets.add(row.getResultSet());
+		}
+
+		for (ResultSet rs : actualResultSets) {
+			if (!usedResultSets.contains(rs)) {
+				try {
+					rs.close();
+				} catch (SQLException e) {
+					// ignore
 				}
+			}
+		}
+	}
 
-				rows.add(row);
+	private RowData popRow(ResultSet rs, MergeContext mergeContext) throws SQLException {
+		RowData row = new RowData(rs);
+
+		for (Entry<String, SQLSelectItem> col : mergeContext.getSelectItemMap().entrySet()) {
+			String columnName = col.getKey();
+			int columnIndex = rs.findColumn(columnName);
+			Object value = rs.getObject(columnIndex);
+			boolean wasNull = rs.wasNull();
+			RowId rowId = null;
+			try {
+				rowId = rs.getRowId(columnIndex);
+			} catch (Throwable e) {
+				// ignore
 			}
+
+			ColumnData columnData = new ColumnData(columnIndex, columnName, value,
+					value == null ? null : value.getClass(), rowId, wasNull);
+			row.addColumn(columnData);
 		}
 
-		return rows;
+		return row;
 	}
 }
@@ -0,0 +1,99 @@
+package com.dianping.zebra.shard.merge.orderby;
+
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+
+import com.alibaba.druid.sql.ast.SQLName;
+import com.alibaba.druid.sql.ast.SQLOrderBy;
+import com.alibaba.druid.sql.ast.SQLOrderingSpecification;
+import com.alibaba.druid.sql.ast.statement.SQLSelectOrderByItem;
+import com.dianping.zebra.shard.merge.RowData;
+
+/**
+ * 按照order by子句比较两行数据，内存排序和流式归并共用
+ */
+public class OrderByComparator implements Comparator<RowData> {
+
+	private final String[] columnNames;
+
+	private final boolean[] descs;
+
+	public OrderByComparator(SQLOrderBy orderBy) {
+		List<SQLSelectOrderByItem> items = orderBy.getItems();
+
+		this.columnNames = new String[items.size()];
+		this.descs = new boolean[items.size()];
+
+		for (int i = 0; i < items.size(); i++) {
+			SQLSelectOrderByItem orderByEle = items.get(i);
+			SQLName identifier = (SQLName) orderByEle.getExpr();
+
+			columnNames[i] = identifier.getSimpleName();
+			descs[i] = orderByEle.getType() != null
+					&& !((SQLOrderingSpecification) orderByEle.getType()).name().equals("ASC");
+		}
+	}
+
+	public String[] getColumnNames() {
+		return columnNames;
+	}
+
+	@Override
+	public int compare(RowData o1, RowData o2) {
+		try {
+			for (int i = 0; i < columnNames.length; i++) {
+				int compareRes = compareValue(i, o1.get(columnNames[i]).getValue(), o2.get(columnNames[i]).getValue());
+
+				if (compareRes != 0) {
+					return compareRes;
+				}
+			}
+
+			return 0;
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * 比较两组按照order by列顺序取出的值
+	 */
+	public int compareValues(Object[] values1, Object[] values2) throws SQLException {
+		for (int i = 0; i < columnNames.length; i++) {
+			int compareRes = compareValue(i, values1[i], values2[i]);
+
+			if (compareRes != 0) {
+				return compareRes;
+			}
+		}
+
+		return 0;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private int compareValue(int itemIndex, Object value1, Object value2) throws SQLException {
+		int compareRes;
+
+		// 与MySQL保持一致，升序时NULL排在最前面
+		if (value1 == null || value2 == null) {
+			compareRes = value1 == value2 ? 0 : (value1 == null ? -1 : 1);
+		} else {
+			if (!value1.getClass().equals(value2.getClass())) {
+				throw new SQLException("Invalid data");
+			}
+
+			if (!(value1 instanceof Comparable)) {
+				throw new SQLException("Can not orderBy column : " + columnNames[itemIndex] + " which isn't comparable.");
+			}
+
+			compareRes = ((Comparable) value1).compareTo((Comparable) value2);
+		}
+
+		if (descs[itemIndex] && compareRes != 0) {
+			return compareRes < 0 ? 1 : -1;
+		}
+
+		return compareRes;
+	}
+}
@@ -2,70 +2,67 @@ package com.dianping.zebra.shard.merge.orderby;
 
 import java.sql.SQLException;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
-import com.alibaba.druid.sql.ast.SQLName;
-import com.alibaba.druid.sql.ast.SQLOrderBy;
-import com.alibaba.druid.sql.ast.SQLOrderingSpecification;
-import com.alibaba.druid.sql.ast.statement.SQLSelectOrderByItem;
-import com.dianping.zebra.shard.merge.MergeContext;
 import com.dianping.zebra.shard.merge.DataMerger;
+import com.dianping.zebra.shard.merge.MergeContext;
 import com.dianping.zebra.shard.merge.RowData;
 
 public class OrderByDataMerger implements DataMerger {
 
 	public List<RowData> process(List<RowData> sourceData, MergeContext mergeContext) throws SQLException {
 		if (mergeContext.getOrderBy() != null) {
-			SQLOrderBy orderBy = mergeContext.getOrderBy();
-			final List<SQLSelectOrderByItem> items = orderBy.getItems();
-			Collections.sort(sourceData, new Comparator<RowData>() {
-				@Override
-				public int compare(RowData o1, RowData o2) {
-					try {
-						for (SQLSelectOrderByItem orderByEle : items) {
-							SQLName identifier = (SQLName) orderByEle.getExpr();
+			try {
+				OrderByComparator comparator = new OrderByComparator(mergeContext.getOrderBy());
+				int topN = getTopN(mergeContext);
 
-							Object value1 = o1.get(identifier.getSimpleName()).getValue();
-							Class<?> type1 = o1.get(identifier.getSimpleName()).getType();
-							Object value2 = o2.get(identifier.getSimpleName()).getValue();
-							Class<?> type2 = o2.get(identifier.getSimpleName()).getType();
-
-							if (!type1.equals(type2)) {
-								throw new SQLException("Invalid data");
-							}
+				if (topN >= 0 && topN < sourceData.size()) {
+					OrderByTopN heap = new OrderByTopN(comparator, topN, false);
+					for (RowData row : sourceData) {
+						heap.offer(row);
+					}
 
-							if (!Comparable.class.isAssignableFrom(type1)) {
-								throw new SQLException(
-										"Can not orderBy column : " + identifier + " which isn't comparable.");
-							}
+					return heap.toSortedList();
+				} else {
+					Collections.sort(sourceData, comparator);
+				}
+			} catch (RuntimeException e) {
+				if (e.getCause() instanceof SQLException) {
+					throw (SQLException) e.getCause();
+				}
+				throw e;
+			}
+		}
 
-							@SuppressWarnings({ "unchecked", "rawtypes" })
-							int compareRes = ((Comparable) value1).compareTo((Comparable) value2);
+		return sourceData;
+	}
 
-							if (orderByEle.getType() == null
-									|| ((SQLOrderingSpecification) orderByEle.getType()).name().equals("ASC")) {
-								if (compareRes != 0) {
-									return compareRes;
-								}
-							} else {
-								if (compareRes != 0) {
-									return compareRes < 0 ? 1 : -1;
-								}
-							}
-						}
+	/**
+	 * 创建用于边读取边排序的有界堆
+	 *
+	 * @return 没有limit时返回null
+	 */
+	public OrderByTopN newTopN(MergeContext mergeContext) {
+		int topN = getTopN(mergeContext);
 
-						return 0;
+		if (mergeContext.getOrderBy() == null || topN < 0) {
+			return null;
+		}
 
-					} catch (SQLException e) {
-						throw new RuntimeException(e);
-					}
-				}
+		return new OrderByTopN(new OrderByComparator(mergeContext.getOrderBy()), topN, mergeContext.isDistinct());
+	}
 
-			});
+	/**
+	 * @return 需要保留的数据条数offset+limit，没有limit时返回-1
+	 */
+	private int getTopN(MergeContext mergeContext) {
+		if (mergeContext.getLimit() == MergeContext.NO_LIMIT) {
+			return -1;
 		}
 
-		return sourceData;
-	}
+		long offset = mergeContext.getOffset() == MergeContext.NO_OFFSET ? 0 : Math.max(0, mergeContext.getOffset());
+		long topN = offset + Math.max(0, mergeContext.getLimit());
 
+		return topN > Integer.MAX_VALUE ? -1 : (int) topN;
+	}
 }
@@ -0,0 +1,107 @@
+package com.dianping.zebra.shard.merge.orderby;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ * 跨表order by的流式归并。
+ * </p>
+ * 每个分表的<tt>ResultSet</tt>已经按照下推的order by排好序，所以只需要在优先队列中为每个分表保留当前行的排序值，
+ * 每次弹出最小的一个即可，内存占用只和分表数量相关，也不需要等所有分表的数据都读完才能返回第一行。
+ */
+public class OrderByStreamingMerger {
+
+	private final List<ResultSet> resultSets;
+
+	private final OrderByComparator comparator;
+
+	private PriorityQueue<Cursor> queue;
+
+	private Cursor current;
+
+	public OrderByStreamingMerger(List<ResultSet> resultSets, OrderByComparator comparator) {
+		this.resultSets = resultSets;
+		this.comparator = comparator;
+	}
+
+	/**
+	 * 移动到全局排序的下一行
+	 *
+	 * @return 是否还有数据
+	 * @throws SQLException
+	 */
+	public boolean next() throws SQLException {
+		try {
+			if (queue == null) {
+				queue = new PriorityQueue<Cursor>(Math.max(1, resultSets.size()), new Comparator<Cursor>() {
+					@Override
+					public int compare(Cursor o1, Cursor o2) {
+						try {
+							int compareRes = comparator.compareValues(o1.values, o2.values);
+							// 排序值相同时按分表顺序输出，保证结果稳定
+							return compareRes != 0 ? compareRes : o1.index - o2.index;
+						} catch (SQLException e) {
+							throw new RuntimeException(e);
+						}
+					}
+				});
+
+				for (int i = 0; i < resultSets.size(); i++) {
+					Cursor cursor = new Cursor(i, comparator.getColumnNames().length);
+					if (cursor.advance()) {
+						queue.add(cursor);
+					}
+				}
+			} else if (current != null && current.advance()) {
+				queue.add(current);
+			}
+		} catch (RuntimeException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw e;
+		}
+
+		current = queue.poll();
+
+		return current != null;
+	}
+
+	/**
+	 * @return 当前行所在的<tt>ResultSet</tt>下标
+	 */
+	public int getCurrentIndex() {
+		return current == null ? 0 : current.index;
+	}
+
+	private class Cursor {
+
+		private final int index;
+
+		private final Object[] values;
+
+		public Cursor(int index, int columnCount) {
+			this.index = index;
+			this.values = new Object[columnCount];
+		}
+
+		public boolean advance() throws SQLException {
+			ResultSet rs = resultSets.get(index);
+
+			if (!rs.next()) {
+				return false;
+			}
+
+			String[] columnNames = comparator.getColumnNames();
+			for (int i = 0; i < columnNames.length; i++) {
+				values[i] = rs.getObject(columnNames[i]);
+			}
+
+			return true;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.dianping.zebra.shard.merge.orderby;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.dianping.zebra.shard.merge.RowData;
+
+/**
+ * <p>
+ * 大小为offset+limit的有界大顶堆，用于order by + limit时只保留全局排序的前N条数据。
+ * </p>
+ * 相同排序值的数据按照加入的先后顺序排列，结果与全量稳定排序后再截取前N条完全一致。
+ */
+public class OrderByTopN {
+
+	private final OrderByComparator comparator;
+
+	private final int size;
+
+	private final Set<RowData> distinctRows;
+
+	private final PriorityQueue<Entry> heap;
+
+	private long sequence = 0;
+
+	public OrderByTopN(OrderByComparator comparator, int size, boolean distinct) {
+		this.comparator = comparator;
+		this.size = size;
+		this.distinctRows = distinct ? new HashSet<RowData>() : null;
+		this.heap = new PriorityQueue<Entry>(Math.min(size, 1024) + 1, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry o1, Entry o2) {
+				return o2.compareTo(o1);
+			}
+		});
+	}
+
+	/**
+	 * 尝试把一行数据加入堆中
+	 *
+	 * @param row
+	 * @return 如果该行数据已经排在前N条之后，返回false。对于已经排好序的数据源，之后的数据也都不可能再进入前N条
+	 */
+	public boolean offer(RowData row) {
+		if (size <= 0) {
+			return false;
+		}
+
+		if (distinctRows != null && distinctRows.contains(row)) {
+			return true;
+		}
+
+		Entry entry = new Entry(row, sequence++);
+
+		if (heap.size() < size) {
+			add(entry);
+			return true;
+		}
+
+		Entry max = heap.peek();
+		if (entry.compareTo(max) >= 0) {
+			return false;
+		}
+
+		heap.poll();
+		if (distinctRows != null) {
+			distinctRows.remove(max.row);
+		}
+		add(entry);
+
+		return true;
+	}
+
+	/**
+	 * @return 按照order by排好序的前N条数据
+	 */
+	public List<RowData> toSortedList() {
+		List<Entry> entries = new ArrayList<Entry>(heap);
+		Collections.sort(entries);
+
+		List<RowData> rows = new ArrayList<RowData>(entries.size());
+		for (Entry entry : entries) {
+			rows.add(entry.row);
+		}
+
+		return rows;
+	}
+
+	private void add(Entry entry) {
+		heap.add(entry);
+		if (distinctRows != null) {
+			distinctRows.add(entry.row);
+		}
+	}
+
+	private class Entry implements Comparable<Entry> {
+
+		private final RowData row;
+
+		private final long seq;
+
+		public Entry(RowData row, long seq) {
+			this.row = row;
+			this.seq = seq;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			int compareRes = comparator.compare(row, o.row);
+			if (compareRes != 0) {
+				return compareRes;
+			}
+
+			return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+		}
+	}
+}
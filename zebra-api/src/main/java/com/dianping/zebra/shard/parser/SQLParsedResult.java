@@ -16,6 +16,8 @@ public class SQLParsedResult {
 
 	private MergeContext mergeContext;
 
+	private volatile SQLTemplate template;
+
 	public SQLParsedResult(SqlType type, SQLStatement stmt) throws ShardParseException {
 		this.stmt = stmt;
 		this.type = type;
@@ -38,4 +40,16 @@ public class SQLParsedResult {
 	public MergeContext getMergeContext() {
 		return mergeContext;
 	}
+
+	public SQLTemplate getTemplate() {
+		if (template == null) {
+			template = SQLTemplate.compile(stmt);
+		}
+
+		return template;
+	}
+
+	public void setTemplate(SQLTemplate template) {
+		this.template = template;
+	}
 }
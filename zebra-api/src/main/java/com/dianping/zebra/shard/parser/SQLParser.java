@@ -1,8 +1,5 @@
 package com.dianping.zebra.shard.parser;
 
-import java.util.Collections;
-import java.util.Map;
-
 import com.alibaba.druid.sql.ast.SQLStatement;
 import com.alibaba.druid.sql.ast.statement.SQLDeleteStatement;
 import com.alibaba.druid.sql.ast.statement.SQLInsertStatement;
@@ -19,52 +16,86 @@ import com.dianping.zebra.shard.parser.visitor.MySQLDeleteASTVisitor;
 import com.dianping.zebra.shard.parser.visitor.MySQLInsertASTVisitor;
 import com.dianping.zebra.shard.parser.visitor.MySQLSelectASTVisitor;
 import com.dianping.zebra.shard.parser.visitor.MySQLUpdateASTVisitor;
-import com.dianping.zebra.shard.util.LRUCache;
+import com.dianping.zebra.util.ConcurrentLRUCache;
 import com.dianping.zebra.util.SqlType;
 
 public class SQLParser {
 
-	private final static Map<String, SQLParsedResult> parsedSqlCache = Collections
-			.synchronizedMap(new LRUCache<String, SQLParsedResult>(1000));
+	public static final int DEFAULT_CACHE_SIZE = 1000;
+
+	private final static SQLParser DEFAULT_PARSER = new SQLParser(DEFAULT_CACHE_SIZE);
+
+	private final ConcurrentLRUCache<String, SQLParsedResult> parsedSqlCache;
+
+	public SQLParser(int cacheSize) {
+		this.parsedSqlCache = new ConcurrentLRUCache<String, SQLParsedResult>(cacheSize);
+	}
+
+	/**
+	 * 使用全局共享的解析缓存
+	 */
+	public static SQLParser getDefault() {
+		return DEFAULT_PARSER;
+	}
 
 	public static SQLParsedResult parse(String sql) throws ShardParseException {
-		if (!parsedSqlCache.containsKey(sql)) {
-			MySqlLexer lexer = new MySqlLexer(sql);
-			HintCommentHandler commentHandler = new HintCommentHandler();
-			lexer.setCommentHandler(commentHandler);
-			lexer.nextToken();
-
-			SQLStatementParser parser = new MySqlStatementParser(lexer);
-			SQLStatement stmt = parser.parseStatement();
-			SQLParsedResult result = null;
-
-			if (stmt instanceof SQLSelectStatement) {
-				result = new SQLParsedResult(SqlType.SELECT, stmt);
-				SQLASTVisitor visitor = new MySQLSelectASTVisitor(result);
-				stmt.accept(visitor);
-			} else if (stmt instanceof SQLInsertStatement) {
-				result = new SQLParsedResult(SqlType.INSERT, stmt);
-				SQLASTVisitor visitor = new MySQLInsertASTVisitor(result);
-				stmt.accept(visitor);
-			} else if (stmt instanceof SQLUpdateStatement) {
-				result = new SQLParsedResult(SqlType.UPDATE, stmt);
-				SQLASTVisitor visitor = new MySQLUpdateASTVisitor(result);
-				stmt.accept(visitor);
-			} else if (stmt instanceof SQLDeleteStatement) {
-				result = new SQLParsedResult(SqlType.DELETE, stmt);
-				SQLASTVisitor visitor = new MySQLDeleteASTVisitor(result);
-				stmt.accept(visitor);
-			} else {
-				throw new ShardParseException("UnSupported sql type in sharding jdbc.");
+		return DEFAULT_PARSER.parseSql(sql);
+	}
+
+	public SQLParsedResult parseSql(String sql) throws ShardParseException {
+		SQLParsedResult result = parsedSqlCache.get(sql);
+
+		if (result == null) {
+			result = parseWithoutCache(sql);
+
+			SQLParsedResult existing = parsedSqlCache.putIfAbsent(sql, result);
+			if (existing != null) {
+				result = existing;
 			}
+		}
 
-			SQLHint sqlhint = SQLHint.parseHint(commentHandler.getHintComment());
-			result.getRouterContext().setSqlhint(sqlhint);
+		return result;
+	}
 
-			parsedSqlCache.put(sql, result);
+	public ConcurrentLRUCache<String, SQLParsedResult> getParsedSqlCache() {
+		return parsedSqlCache;
+	}
+
+	public static SQLParsedResult parseWithoutCache(String sql) throws ShardParseException {
+		MySqlLexer lexer = new MySqlLexer(sql);
+		HintCommentHandler commentHandler = new HintCommentHandler();
+		lexer.setCommentHandler(commentHandler);
+		lexer.nextToken();
+
+		SQLStatementParser parser = new MySqlStatementParser(lexer);
+		SQLStatement stmt = parser.parseStatement();
+		SQLParsedResult result = null;
+
+		if (stmt instanceof SQLSelectStatement) {
+			result = new SQLParsedResult(SqlType.SELECT, stmt);
+			SQLASTVisitor visitor = new MySQLSelectASTVisitor(result);
+			stmt.accept(visitor);
+		} else if (stmt instanceof SQLInsertStatement) {
+			result = new SQLParsedResult(SqlType.INSERT, stmt);
+			SQLASTVisitor visitor = new MySQLInsertASTVisitor(result);
+			stmt.accept(visitor);
+		} else if (stmt instanceof SQLUpdateStatement) {
+			result = new SQLParsedResult(SqlType.UPDATE, stmt);
+			SQLASTVisitor visitor = new MySQLUpdateASTVisitor(result);
+			stmt.accept(visitor);
+		} else if (stmt instanceof SQLDeleteStatement) {
+			result = new SQLParsedResult(SqlType.DELETE, stmt);
+			SQLASTVisitor visitor = new MySQLDeleteASTVisitor(result);
+			stmt.accept(visitor);
+		} else {
+			throw new ShardParseException("UnSupported sql type in sharding jdbc.");
 		}
 
-		return parsedSqlCache.get(sql);
+		SQLHint sqlhint = SQLHint.parseHint(commentHandler.getHintComment());
+		result.getRouterContext().setSqlhint(sqlhint);
+		result.setTemplate(SQLTemplate.compile(stmt));
+
+		return result;
 	}
 
 	public static class HintCommentHandler implements CommentHandler {
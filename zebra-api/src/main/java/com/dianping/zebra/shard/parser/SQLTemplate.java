@@ -0,0 +1,300 @@
+package com.dianping.zebra.shard.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.druid.sql.ast.SQLName;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLIntegerExpr;
+import com.alibaba.druid.sql.ast.expr.SQLVariantRefExpr;
+import com.alibaba.druid.sql.ast.statement.SQLExprTableSource;
+import com.alibaba.druid.sql.ast.statement.SQLInsertStatement.ValuesClause;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlOutputVisitor;
+
+/**
+ * <p>
+ * 解析时预编译的不可变SQL模板，由若干段字面SQL和表名占位组成。
+ * </p>
+ * 改写成物理表SQL时只需要拼接字符串，不再遍历AST，也不会修改缓存中共享的AST。<br>
+ * limit改写只和SQL本身有关，在编译时就已经处理成<tt>LIMIT 0, offset+limit</tt>。<br>
+ * 多行insert会记录VALUES中每一行的文本和参数下标，拆分到不同物理表时只拼接对应的行。
+ */
+public class SQLTemplate {
+
+	private final String[] fragments;
+
+	private final String[] tableNames;
+
+	private final String[] tableTexts;
+
+	private final int length;
+
+	// insert中VALUES的行数，不是insert时为0
+	private int valuesCount;
+
+	// 多行insert的每一行，不是多行insert或者无法拆分时为null
+	private String[] rows;
+
+	private int[][] rowParamIndexes;
+
+	private int[] headParamIndexes;
+
+	private int[] tailParamIndexes;
+
+	// 所有行在最后一段字面SQL中的起止位置
+	private int rowsStart;
+
+	private int rowsEnd;
+
+	private String rowSeparator;
+
+	private SQLTemplate(List<String> fragments, List<String> tableNames, List<String> tableTexts) {
+		this.fragments = fragments.toArray(new String[fragments.size()]);
+		this.tableNames = tableNames.toArray(new String[tableNames.size()]);
+		this.tableTexts = tableTexts.toArray(new String[tableTexts.size()]);
+
+		int length = 0;
+		for (String fragment : fragments) {
+			length += fragment.length();
+		}
+		for (String tableText : tableTexts) {
+			length += tableText.length();
+		}
+		this.length = length;
+	}
+
+	public static SQLTemplate compile(SQLStatement stmt) {
+		StringBuilder out = new StringBuilder(128);
+		TemplateOutputVisitor visitor = new TemplateOutputVisitor(out);
+
+		stmt.accept(visitor);
+
+		return visitor.build();
+	}
+
+	/**
+	 * 把逻辑表名替换成物理表名
+	 */
+	public String render(String logicalTable, String physicalTable) {
+		return render(logicalTable, physicalTable, fragments[tableNames.length]);
+	}
+
+	/**
+	 * insert中VALUES的行数，不是insert时返回0
+	 */
+	public int getValuesCount() {
+		return valuesCount;
+	}
+
+	/**
+	 * 多行insert的行数，不能按行拆分时返回0
+	 */
+	public int getRowCount() {
+		return rows == null ? 0 : rows.length;
+	}
+
+	/**
+	 * 把逻辑表名替换成物理表名，并且VALUES中只保留指定的行
+	 */
+	public String renderRows(String logicalTable, String physicalTable, List<Integer> rowIndexes) {
+		String tail = fragments[tableNames.length];
+		StringBuilder lastFragment = new StringBuilder(tail.length());
+
+		lastFragment.append(tail, 0, rowsStart);
+		for (int i = 0; i < rowIndexes.size(); i++) {
+			if (i != 0) {
+				lastFragment.append(rowSeparator);
+			}
+			lastFragment.append(rows[rowIndexes.get(i)]);
+		}
+		lastFragment.append(tail, rowsEnd, tail.length());
+
+		return render(logicalTable, physicalTable, lastFragment.toString());
+	}
+
+	/**
+	 * @return 只保留指定行的SQL中，每个?对应的原始参数下标
+	 */
+	public int[] getParamIndexes(List<Integer> rowIndexes) {
+		int size = headParamIndexes.length + tailParamIndexes.length;
+		for (Integer row : rowIndexes) {
+			size += rowParamIndexes[row].length;
+		}
+
+		int[] paramIndexes = new int[size];
+		int pos = 0;
+
+		System.arraycopy(headParamIndexes, 0, paramIndexes, pos, headParamIndexes.length);
+		pos += headParamIndexes.length;
+		for (Integer row : rowIndexes) {
+			System.arraycopy(rowParamIndexes[row], 0, paramIndexes, pos, rowParamIndexes[row].length);
+			pos += rowParamIndexes[row].length;
+		}
+		System.arraycopy(tailParamIndexes, 0, paramIndexes, pos, tailParamIndexes.length);
+
+		return paramIndexes;
+	}
+
+	private String render(String logicalTable, String physicalTable, String lastFragment) {
+		StringBuilder sql = new StringBuilder(length + tableNames.length * 8);
+
+		for (int i = 0; i < tableNames.length; i++) {
+			sql.append(fragments[i]);
+
+			if (logicalTable.equalsIgnoreCase(tableNames[i])) {
+				sql.append(physicalTable);
+			} else {
+				sql.append(tableTexts[i]);
+			}
+		}
+		sql.append(lastFragment);
+
+		return sql.toString();
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	static class TemplateOutputVisitor extends MySqlOutputVisitor {
+
+		private final StringBuilder out;
+
+		private final List<String> fragments = new ArrayList<String>();
+
+		private final List<String> tableNames = new ArrayList<String>();
+
+		private final List<String> tableTexts = new ArrayList<String>();
+
+		private int mark = 0;
+
+		private final List<String> rows = new ArrayList<String>();
+
+		private final List<int[]> rowParamIndexes = new ArrayList<int[]>();
+
+		private final List<Integer> headParamIndexes = new ArrayList<Integer>();
+
+		private final List<Integer> tailParamIndexes = new ArrayList<Integer>();
+
+		private List<Integer> paramIndexes = headParamIndexes;
+
+		private int rowsFragment = -1;
+
+		private int rowsStart;
+
+		private int rowsEnd;
+
+		private String rowSeparator;
+
+		public TemplateOutputVisitor(StringBuilder out) {
+			super(out);
+			this.out = out;
+		}
+
+		public SQLTemplate build() {
+			fragments.add(out.substring(mark));
+
+			SQLTemplate template = new SQLTemplate(fragments, tableNames, tableTexts);
+			template.valuesCount = rows.size();
+
+			// VALUES之后如果还有表名，行的位置已经不在最后一段中，不做拆分
+			if (rows.size() > 1 && rowsFragment == fragments.size() - 1) {
+				template.rows = rows.toArray(new String[rows.size()]);
+				template.rowParamIndexes = rowParamIndexes.toArray(new int[rowParamIndexes.size()][]);
+				template.headParamIndexes = toArray(headParamIndexes);
+				template.tailParamIndexes = toArray(tailParamIndexes);
+				template.rowsStart = rowsStart;
+				template.rowsEnd = rowsEnd;
+				template.rowSeparator = rowSeparator;
+			}
+
+			return template;
+		}
+
+		@Override
+		public boolean visit(ValuesClause x) {
+			int start = out.length();
+
+			if (rows.isEmpty()) {
+				rowsFragment = fragments.size();
+				rowsStart = start - mark;
+			} else if (rowSeparator == null) {
+				rowSeparator = out.substring(mark + rowsEnd, start);
+			}
+
+			List<Integer> rowParams = new ArrayList<Integer>();
+			paramIndexes = rowParams;
+			super.visit(x);
+			paramIndexes = tailParamIndexes;
+
+			rows.add(out.substring(start));
+			rowParamIndexes.add(toArray(rowParams));
+			rowsEnd = out.length() - mark;
+
+			return false;
+		}
+
+		@Override
+		public boolean visit(SQLVariantRefExpr x) {
+			paramIndexes.add(x.getIndex());
+
+			return super.visit(x);
+		}
+
+		@Override
+		public boolean visit(SQLExprTableSource x) {
+			fragments.add(out.substring(mark));
+
+			int start = out.length();
+			x.getExpr().accept(this);
+
+			tableNames.add(((SQLName) x.getExpr()).getSimpleName());
+			tableTexts.add(out.substring(start));
+			out.setLength(start);
+			mark = start;
+
+			if (x.getAlias() != null) {
+				print(' ');
+				print0(x.getAlias());
+			}
+
+			for (int i = 0; i < x.getHintsSize(); ++i) {
+				print(' ');
+				x.getHints().get(i).accept(this);
+			}
+
+			return false;
+		}
+
+		@Override
+		public boolean visit(MySqlSelectQueryBlock.Limit x) {
+			print0(ucase ? "LIMIT " : "limit ");
+
+			int offset = Integer.MIN_VALUE;
+			if (x.getOffset() != null) {
+				if (x.getOffset() instanceof SQLIntegerExpr) {
+					offset = ((SQLIntegerExpr) x.getOffset()).getNumber().intValue();
+					print0("0");
+				} else {
+					x.getOffset().accept(this);
+				}
+
+				print0(", ");
+			}
+
+			if (x.getRowCount() instanceof SQLIntegerExpr && offset != Integer.MIN_VALUE) {
+				int limit = ((SQLIntegerExpr) x.getRowCount()).getNumber().intValue();
+				print0(String.valueOf(offset + limit));
+			} else {
+				x.getRowCount().accept(this);
+			}
+
+			return false;
+		}
+	}
+}
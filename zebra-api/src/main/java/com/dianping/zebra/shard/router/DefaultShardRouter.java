@@ -16,6 +16,7 @@
 package com.dianping.zebra.shard.router;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,21 +31,30 @@ import com.dianping.zebra.shard.parser.DefaultSQLRewrite;
 import com.dianping.zebra.shard.parser.SQLParsedResult;
 import com.dianping.zebra.shard.parser.SQLParser;
 import com.dianping.zebra.shard.parser.SQLRewrite;
+import com.dianping.zebra.shard.parser.SQLTemplate;
 import com.dianping.zebra.shard.router.RouterResult.RouterTarget;
 import com.dianping.zebra.shard.router.rule.RouterRule;
 import com.dianping.zebra.shard.router.rule.ShardEvalContext;
 import com.dianping.zebra.shard.router.rule.ShardEvalResult;
 import com.dianping.zebra.shard.router.rule.TableShardRule;
+import com.dianping.zebra.util.SqlType;
 
 /**
  * @author hao.zhu
  */
 public class DefaultShardRouter implements ShardRouter {
 
+	public static final int DEFAULT_RANGE_SHARD_LIMIT = 64;
+
 	private SQLRewrite sqlRewrite = new DefaultSQLRewrite();
 
 	private RouterRule routerRule;
 
+	private SQLParser sqlParser = SQLParser.getDefault();
+
+	// 范围条件展开的分片字段值超过这个个数时全表扫描
+	private int rangeShardLimit = DEFAULT_RANGE_SHARD_LIMIT;
+
 	public DefaultShardRouter(RouterRule routerRule) {
 		this(routerRule, new DefaultSQLRewrite());
 	}
@@ -57,15 +67,31 @@ public class DefaultShardRouter implements ShardRouter {
 	@Override
 	public RouterResult router(final String sql, List<Object> params) throws ShardRouterException, ShardParseException {
 		RouterResult routerResult = new RouterResult();
-		SQLParsedResult parsedResult = SQLParser.parse(sql);
+		SQLParsedResult parsedResult = sqlParser.parseSql(sql);
 
 		TableShardRule tableShardRule = findShardRule(parsedResult.getRouterContext(), params);
-		ShardEvalResult shardResult = tableShardRule.eval(new ShardEvalContext(parsedResult, params));
 
 		MergeContext mergeContext = new MergeContext(parsedResult.getMergeContext());
-
 		routerResult.setMergeContext(mergeContext);
-		routerResult.setSqls(buildSqls(shardResult.getDbAndTables(), parsedResult, tableShardRule.getTableName()));
+
+		SQLTemplate template = parsedResult.getTemplate();
+		if (parsedResult.getType() == SqlType.INSERT && template.getValuesCount() > 1) {
+			// 按第一行路由会把所有行都写到第一行的分片上
+			if (template.getRowCount() != template.getValuesCount()) {
+				throw new ShardRouterException(
+						"Multiple rows insertion with table reference after VALUES cannot be split across shards: " + sql);
+			}
+
+			List<ShardEvalResult> rowResults = tableShardRule.evalInsertRows(parsedResult, params,
+					template.getRowCount());
+			routerResult.setSqls(buildInsertSqls(rowResults, parsedResult, tableShardRule.getTableName()));
+		} else {
+			ShardEvalContext ctx = new ShardEvalContext(parsedResult, params);
+			ctx.setRangeShardLimit(rangeShardLimit);
+
+			ShardEvalResult shardResult = tableShardRule.eval(ctx);
+			routerResult.setSqls(buildSqls(shardResult.getDbAndTables(), parsedResult, tableShardRule.getTableName()));
+		}
 		routerResult.setParams(buildParams(params, routerResult));
 
 		return routerResult;
@@ -81,6 +107,22 @@ public class DefaultShardRouter implements ShardRouter {
 		return this.routerRule;
 	}
 
+	public SQLParser getSqlParser() {
+		return sqlParser;
+	}
+
+	public void setSqlParser(SQLParser sqlParser) {
+		this.sqlParser = sqlParser;
+	}
+
+	public int getRangeShardLimit() {
+		return rangeShardLimit;
+	}
+
+	public void setRangeShardLimit(int rangeShardLimit) {
+		this.rangeShardLimit = rangeShardLimit;
+	}
+
 	private TableShardRule findShardRule(RouterContext context, List<Object> params) throws ShardRouterException {
 		Map<String, TableShardRule> tableShardRules = this.routerRule.getTableShardRules();
 		TableShardRule tableShardRule = null;
@@ -129,6 +171,55 @@ public class DefaultShardRouter implements ShardRouter {
 		return sqls;
 	}
 
+	/**
+	 * 多行insert按每一行路由到的物理表分组，每张物理表生成一条只包含对应行的多行insert
+	 */
+	private List<RouterTarget> buildInsertSqls(List<ShardEvalResult> rowResults, SQLParsedResult parseResult,
+			String logicTable) {
+		Map<String, Map<String, List<Integer>>> dbTableRows = new LinkedHashMap<String, Map<String, List<Integer>>>();
+
+		for (int row = 0; row < rowResults.size(); row++) {
+			for (Entry<String, Set<String>> entry : rowResults.get(row).getDbAndTables().entrySet()) {
+				Map<String, List<Integer>> tableRows = dbTableRows.get(entry.getKey());
+				if (tableRows == null) {
+					tableRows = new LinkedHashMap<String, List<Integer>>();
+					dbTableRows.put(entry.getKey(), tableRows);
+				}
+
+				for (String physicalTable : entry.getValue()) {
+					List<Integer> rows = tableRows.get(physicalTable);
+					if (rows == null) {
+						rows = new ArrayList<Integer>();
+						tableRows.put(physicalTable, rows);
+					}
+					rows.add(row);
+				}
+			}
+		}
+
+		SQLTemplate template = parseResult.getTemplate();
+		String hintComment = parseResult.getRouterContext().getSqlhint().getForceMasterComment();
+		List<RouterTarget> sqls = new ArrayList<RouterTarget>();
+
+		for (Entry<String, Map<String, List<Integer>>> entry : dbTableRows.entrySet()) {
+			RouterTarget targetedSql = new RouterTarget(entry.getKey());
+
+			for (Entry<String, List<Integer>> tableRows : entry.getValue().entrySet()) {
+				String _sql = template.renderRows(logicTable, tableRows.getKey(), tableRows.getValue());
+
+				if (hintComment != null) {
+					_sql = hintComment + _sql;
+				}
+
+				targetedSql.addSql(_sql, template.getParamIndexes(tableRows.getValue()));
+			}
+
+			sqls.add(targetedSql);
+		}
+
+		return sqls;
+	}
+
 	// TODO maybe consider putting into merge later
 	private List<Object> buildParams(List<Object> params, RouterResult rr) {
 		List<Object> newParams = null;
@@ -63,6 +63,9 @@ public class RouterResult {
 
 		private List<String> sqls;
 
+		// 多行insert拆分后，每条sql中的?对应的原始参数下标；为null时使用全部原始参数
+		private List<int[]> paramIndexes;
+
 		public RouterTarget(String dbName) {
 			this.dbName = dbName;
 		}
@@ -81,6 +84,7 @@ public class RouterResult {
 
 		public void setSqls(List<String> sqls) {
 			this.sqls = sqls;
+			this.paramIndexes = null;
 		}
 
 		public void addSql(String sql) {
@@ -88,6 +92,26 @@ public class RouterResult {
 				this.sqls = new ArrayList<String>();
 			}
 			this.sqls.add(sql);
+
+			if (this.paramIndexes != null) {
+				this.paramIndexes.add(null);
+			}
+		}
+
+		public void addSql(String sql, int[] sqlParamIndexes) {
+			if (this.paramIndexes == null) {
+				this.paramIndexes = new ArrayList<int[]>();
+				for (int i = 0; this.sqls != null && i < this.sqls.size(); i++) {
+					this.paramIndexes.add(null);
+				}
+			}
+
+			addSql(sql);
+			this.paramIndexes.set(this.paramIndexes.size() - 1, sqlParamIndexes);
+		}
+
+		public int[] getParamIndexes(int sqlIndex) {
+			return this.paramIndexes == null ? null : this.paramIndexes.get(sqlIndex);
 		}
 	}
 }
@@ -12,6 +12,12 @@ public class ShardEvalContext {
 
 	private List<ColumnValue> columnValues;
 
+	// 多行insert时计算VALUES中的第几行
+	private int valuesIndex;
+
+	// 范围条件最多展开的分片字段值个数，小于等于0时不按范围条件路由
+	private int rangeShardLimit;
+
 	public ShardEvalContext(SQLParsedResult parseResult, List<Object> params) {
 		this.parseResult = parseResult;
 		this.params = params;
@@ -33,6 +39,22 @@ public class ShardEvalContext {
 		this.columnValues = columnValues;
 	}
 
+	public int getValuesIndex() {
+		return valuesIndex;
+	}
+
+	public void setValuesIndex(int valuesIndex) {
+		this.valuesIndex = valuesIndex;
+	}
+
+	public int getRangeShardLimit() {
+		return rangeShardLimit;
+	}
+
+	public void setRangeShardLimit(int rangeShardLimit) {
+		this.rangeShardLimit = rangeShardLimit;
+	}
+
 	public static class ColumnValue {
 		private boolean used = false;
 
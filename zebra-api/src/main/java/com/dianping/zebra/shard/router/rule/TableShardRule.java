@@ -22,6 +22,7 @@ import java.util.Set;
 import com.dianping.zebra.shard.api.ShardDataSourceHelper;
 import com.dianping.zebra.shard.exception.ShardRouterException;
 import com.dianping.zebra.shard.parser.SQLHint;
+import com.dianping.zebra.shard.parser.SQLParsedResult;
 import com.dianping.zebra.shard.router.rule.ShardEvalContext.ColumnValue;
 import com.dianping.zebra.shard.router.rule.dimension.DimensionRule;
 import com.dianping.zebra.shard.util.ShardColumnValueUtil;
@@ -42,42 +43,67 @@ public class TableShardRule {
 	}
 
 	public ShardEvalResult eval(ShardEvalContext ctx) {
-		SqlType type = ctx.getParseResult().getType();
+		try {
+			return evalInternal(ctx);
+		} finally {
+			// clear thread local
+			ShardDataSourceHelper.clearAllThreadLocal();
+		}
+	}
 
+	/**
+	 * 多行insert语句，VALUES中的每一行分别计算路由
+	 */
+	public List<ShardEvalResult> evalInsertRows(SQLParsedResult parseResult, List<Object> params, int rowCount) {
 		try {
-			// force dimension from hint
-			SQLHint sqlhint = ctx.getParseResult().getRouterContext().getSqlhint();
-			if (sqlhint != null & sqlhint.getShardColumn() != null) {
-				DimensionRule rule = findDimensionRule(sqlhint.getShardColumn());
-				if (rule != null) {
-					ShardEvalResult result = evalDimension(ctx, type, rule);
-
-					if (result != null) {
-						return result;
-					}
-				} else {
-					throw new ShardRouterException(
-							"Fail to force dimension in your hint, since cannot find any dimension!");
-				}
+			List<ShardEvalResult> results = new ArrayList<ShardEvalResult>(rowCount);
+
+			for (int i = 0; i < rowCount; i++) {
+				ShardEvalContext ctx = new ShardEvalContext(parseResult, params);
+				ctx.setValuesIndex(i);
+
+				results.add(evalInternal(ctx));
 			}
 
-			for (DimensionRule rule : dimensions) {
+			return results;
+		} finally {
+			// clear thread local
+			ShardDataSourceHelper.clearAllThreadLocal();
+		}
+	}
+
+	private ShardEvalResult evalInternal(ShardEvalContext ctx) {
+		SqlType type = ctx.getParseResult().getType();
+
+		// force dimension from hint
+		SQLHint sqlhint = ctx.getParseResult().getRouterContext().getSqlhint();
+		if (sqlhint != null & sqlhint.getShardColumn() != null) {
+			DimensionRule rule = findDimensionRule(sqlhint.getShardColumn());
+			if (rule != null) {
 				ShardEvalResult result = evalDimension(ctx, type, rule);
 
 				if (result != null) {
 					return result;
 				}
+			} else {
+				throw new ShardRouterException(
+						"Fail to force dimension in your hint, since cannot find any dimension!");
 			}
+		}
 
-			// full table scan if is not insert sql.
-			if (type != SqlType.INSERT) {
-				return new ShardEvalResult(masterDimension.getAllDBAndTables());
-			} else {
-				throw new ShardRouterException("Cannot find any shard columns in your insert sql.");
+		for (DimensionRule rule : dimensions) {
+			ShardEvalResult result = evalDimension(ctx, type, rule);
+
+			if (result != null) {
+				return result;
 			}
-		} finally {
-			// clear thread local
-			ShardDataSourceHelper.clearAllThreadLocal();
+		}
+
+		// full table scan if is not insert sql.
+		if (type != SqlType.INSERT) {
+			return new ShardEvalResult(masterDimension.getAllDBAndTables());
+		} else {
+			throw new ShardRouterException("Cannot find any shard columns in your insert sql.");
 		}
 	}
 
@@ -94,7 +120,7 @@ public class TableShardRule {
 	}
 
 	private ShardEvalResult evalDimension(ShardEvalContext ctx, SqlType type, DimensionRule rule) {
-		List<ColumnValue> columnValues = ShardColumnValueUtil.eval(ctx, rule.getShardColumns());
+		List<ColumnValue> columnValues = ShardColumnValueUtil.eval(ctx, rule.getShardColumns(), rule.getRangePeriod());
 		ctx.setColumnValues(columnValues);
 
 		if (columnValues.size() > 0) {
@@ -49,6 +49,11 @@ public abstract class AbstractDimensionRule implements DimensionRule {
 		return needSync;
 	}
 
+	@Override
+	public long getRangePeriod() {
+		return 0;
+	}
+
 	public void setMaster(boolean isMaster) {
 		this.isMaster = isMaster;
 	}
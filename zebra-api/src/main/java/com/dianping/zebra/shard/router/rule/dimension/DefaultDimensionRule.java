@@ -26,8 +26,9 @@ import com.dianping.zebra.shard.config.TableShardDimensionConfig;
 import com.dianping.zebra.shard.router.rule.ShardEvalContext;
 import com.dianping.zebra.shard.router.rule.ShardEvalResult;
 import com.dianping.zebra.shard.router.rule.ShardEvalContext.ColumnValue;
-import com.dianping.zebra.shard.router.rule.engine.GroovyRuleEngine;
+import com.dianping.zebra.shard.router.rule.engine.CompiledRuleEngine;
 import com.dianping.zebra.shard.router.rule.engine.RuleEngine;
+import com.dianping.zebra.shard.router.rule.engine.RuleEngineFactory;
 import com.dianping.zebra.shard.router.rule.tableset.TableSets;
 import com.dianping.zebra.shard.router.rule.tableset.TableSetsManager;
 import com.dianping.zebra.shard.router.rule.tableset.DefaultTableSetsManager;
@@ -55,8 +56,8 @@ public class DefaultDimensionRule extends AbstractDimensionRule {
 		this.tablesMappingManager = new DefaultTableSetsManager(dimensionConfig.getTableName(),
 				dimensionConfig.getDbIndexes(), dimensionConfig.getTbSuffix());
 		this.allDBAndTables.putAll(this.tablesMappingManager.getAllTableSets());
-		this.dbRuleEngine = new GroovyRuleEngine(dimensionConfig.getDbRule());
-		this.tableRuleEngine = new GroovyRuleEngine(dimensionConfig.getTbRule());
+		this.dbRuleEngine = RuleEngineFactory.getRuleEngine(dimensionConfig.getDbRule());
+		this.tableRuleEngine = RuleEngineFactory.getRuleEngine(dimensionConfig.getTbRule());
 		this.initShardColumn(dimensionConfig.getDbRule());
 	}
 
@@ -112,6 +113,57 @@ public class DefaultDimensionRule extends AbstractDimensionRule {
 		}
 	}
 
+	RuleEngine getDbRuleEngine() {
+		return dbRuleEngine;
+	}
+
+	void setDbRuleEngine(RuleEngine dbRuleEngine) {
+		this.dbRuleEngine = dbRuleEngine;
+	}
+
+	RuleEngine getTableRuleEngine() {
+		return tableRuleEngine;
+	}
+
+	void setTableRuleEngine(RuleEngine tableRuleEngine) {
+		this.tableRuleEngine = tableRuleEngine;
+	}
+
+	/**
+	 * 分库和分表规则都是同一个字段上的取模时，返回两个模数的最小公倍数；有白名单时不能按周期推算，返回0
+	 */
+	@Override
+	public long getRangePeriod() {
+		if (whiteListRules != null && !whiteListRules.isEmpty() || shardColumns.size() != 1) {
+			return 0;
+		}
+
+		String column = shardColumns.iterator().next();
+		long dbPeriod = getPeriod(dbRuleEngine, column);
+		long tablePeriod = getPeriod(tableRuleEngine, column);
+
+		if (dbPeriod <= 0 || tablePeriod <= 0) {
+			return 0;
+		}
+
+		long gcd = dbPeriod;
+		for (long b = tablePeriod; b != 0;) {
+			long tmp = gcd % b;
+			gcd = b;
+			b = tmp;
+		}
+
+		return dbPeriod / gcd * tablePeriod;
+	}
+
+	private long getPeriod(RuleEngine engine, String column) {
+		if (engine instanceof CompiledRuleEngine && column.equals(((CompiledRuleEngine) engine).getColumn())) {
+			return ((CompiledRuleEngine) engine).getFunction().getPeriod();
+		}
+
+		return 0;
+	}
+
 	@Override
 	public Set<String> getShardColumns() {
 		return this.shardColumns;
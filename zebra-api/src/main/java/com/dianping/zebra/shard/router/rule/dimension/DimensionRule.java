@@ -39,4 +39,9 @@ public interface DimensionRule {
 	boolean isMaster();
 	
 	boolean needSync();
+
+	/**
+	 * @return 范围条件路由时，整数分片字段值每隔多少个重复一次路由结果；未知时返回0
+	 */
+	long getRangePeriod();
 }
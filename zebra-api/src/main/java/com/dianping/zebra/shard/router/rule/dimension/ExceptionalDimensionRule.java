@@ -24,8 +24,8 @@ import com.dianping.zebra.shard.config.ExceptionalDimensionConfig;
 import com.dianping.zebra.shard.router.rule.ShardEvalContext;
 import com.dianping.zebra.shard.router.rule.ShardEvalResult;
 import com.dianping.zebra.shard.router.rule.ShardEvalContext.ColumnValue;
-import com.dianping.zebra.shard.router.rule.engine.GroovyRuleEngine;
 import com.dianping.zebra.shard.router.rule.engine.RuleEngine;
+import com.dianping.zebra.shard.router.rule.engine.RuleEngineFactory;
 
 /**
  * @author hao.zhu
@@ -43,7 +43,7 @@ public class ExceptionalDimensionRule extends AbstractDimensionRule {
 		this.dataSource = exceptionConfig.getDb();
 		this.table = exceptionConfig.getTable();
 		String condition = exceptionConfig.getCondition();
-		this.ruleEngine = new GroovyRuleEngine(condition);
+		this.ruleEngine = RuleEngineFactory.getRuleEngine(condition);
 		this.initShardColumn(condition);
 	}
 
@@ -0,0 +1,57 @@
+package com.dianping.zebra.shard.router.rule.engine;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * 单个分片字段、可以编译成{@link ShardFunction}的规则使用的引擎。
+ * </p>
+ * 遇到编译后的函数不支持的参数类型时，按原规则交给groovy引擎计算，保证结果和groovy一致。
+ */
+public class CompiledRuleEngine implements RuleEngine {
+
+	private final String rule;
+
+	private final String column;
+
+	private final ShardFunction function;
+
+	private volatile RuleEngine fallback;
+
+	public CompiledRuleEngine(String rule, String column, ShardFunction function) {
+		this.rule = rule;
+		this.column = column;
+		this.function = function;
+	}
+
+	@Override
+	public Object eval(Map<String, Object> valMap) {
+		Number result = function.apply(valMap.get(column));
+
+		if (result != null) {
+			return result;
+		}
+
+		return getFallback().eval(valMap);
+	}
+
+	private RuleEngine getFallback() {
+		if (fallback == null) {
+			synchronized (this) {
+				if (fallback == null) {
+					fallback = new GroovyRuleEngine(rule);
+				}
+			}
+		}
+
+		return fallback;
+	}
+
+	public String getColumn() {
+		return column;
+	}
+
+	public ShardFunction getFunction() {
+		return function;
+	}
+}
@@ -0,0 +1,194 @@
+package com.dianping.zebra.shard.router.rule.engine;
+
+import java.io.UnsupportedEncodingException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * 根据规则表达式创建{@link RuleEngine}。
+ * </p>
+ * 常见的规则会编译成{@link ShardFunction}直接计算，其他任意表达式仍然使用groovy引擎：
+ * 
+ * <pre>
+ * #col#.intValue() % N
+ * #col#.longValue() % N
+ * #col#.toLong() % N
+ * crc32(#col#) % N
+ * (#col#.intValue() % N).intdiv(M)
+ * </pre>
+ * 
+ * 计算结果的类型和groovy保持一致：intValue()得到Integer，其他得到Long。
+ */
+public final class RuleEngineFactory {
+
+	private static final String TERM = "(?:#([^#]+)#\\.(intValue|longValue|toLong)\\(\\)|crc32\\(#([^#]+)#\\))";
+
+	private static final Pattern MOD_PATTERN = Pattern.compile("^" + TERM + "%(\\d+)$");
+
+	private static final Pattern BRACKET_MOD_PATTERN = Pattern.compile("^\\(" + TERM + "%(\\d+)\\)$");
+
+	private static final Pattern INTDIV_PATTERN = Pattern.compile("^\\(" + TERM + "%(\\d+)\\)\\.intdiv\\((\\d+)\\)$");
+
+	private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+
+	private RuleEngineFactory() {
+	}
+
+	public static RuleEngine getRuleEngine(String rule) {
+		RuleEngine engine = compile(rule);
+
+		return engine != null ? engine : new GroovyRuleEngine(rule);
+	}
+
+	/**
+	 * @return 无法编译时返回null
+	 */
+	public static CompiledRuleEngine compile(String rule) {
+		if (rule == null) {
+			return null;
+		}
+
+		String expr = WHITESPACE_PATTERN.matcher(rule).replaceAll("");
+		long divisor = 1;
+
+		Matcher matcher = INTDIV_PATTERN.matcher(expr);
+		if (matcher.matches()) {
+			divisor = parsePositive(matcher.group(5));
+		} else {
+			matcher = MOD_PATTERN.matcher(expr);
+			if (!matcher.matches()) {
+				matcher = BRACKET_MOD_PATTERN.matcher(expr);
+				if (!matcher.matches()) {
+					return null;
+				}
+			}
+		}
+
+		long mod = parsePositive(matcher.group(4));
+		if (mod <= 0 || divisor <= 0) {
+			return null;
+		}
+
+		String method = matcher.group(2);
+		ShardFunction function;
+		if (method == null) {
+			function = new Crc32ModFunction(mod, divisor);
+		} else if ("intValue".equals(method)) {
+			if (mod > Integer.MAX_VALUE || divisor > Integer.MAX_VALUE) {
+				return null;
+			}
+			function = new IntModFunction((int) mod, (int) divisor);
+		} else {
+			function = new LongModFunction(mod, divisor, "toLong".equals(method));
+		}
+
+		String column = method == null ? matcher.group(3) : matcher.group(1);
+
+		return new CompiledRuleEngine(rule, column, function);
+	}
+
+	private static long parsePositive(String number) {
+		try {
+			return Long.parseLong(number);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	static class IntModFunction implements ShardFunction {
+
+		private final int mod;
+
+		private final int divisor;
+
+		IntModFunction(int mod, int divisor) {
+			this.mod = mod;
+			this.divisor = divisor;
+		}
+
+		@Override
+		public Number apply(Object value) {
+			if (!(value instanceof Number)) {
+				return null;
+			}
+
+			return ((Number) value).intValue() % mod / divisor;
+		}
+
+		@Override
+		public long getPeriod() {
+			return mod;
+		}
+	}
+
+	static class LongModFunction implements ShardFunction {
+
+		private final long mod;
+
+		private final long divisor;
+
+		private final boolean parseString;
+
+		LongModFunction(long mod, long divisor, boolean parseString) {
+			this.mod = mod;
+			this.divisor = divisor;
+			this.parseString = parseString;
+		}
+
+		@Override
+		public Number apply(Object value) {
+			long longValue;
+
+			if (value instanceof Number) {
+				longValue = ((Number) value).longValue();
+			} else if (parseString && value instanceof String) {
+				// 和groovy的String.toLong()一致
+				try {
+					longValue = Long.parseLong(((String) value).trim());
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			} else {
+				return null;
+			}
+
+			return longValue % mod / divisor;
+		}
+
+		@Override
+		public long getPeriod() {
+			return mod;
+		}
+	}
+
+	static class Crc32ModFunction implements ShardFunction {
+
+		private final long mod;
+
+		private final long divisor;
+
+		Crc32ModFunction(long mod, long divisor) {
+			this.mod = mod;
+			this.divisor = divisor;
+		}
+
+		@Override
+		public Number apply(Object value) {
+			CRC32 crc32 = new CRC32();
+			try {
+				crc32.update(String.valueOf(value).getBytes("utf-8"));
+			} catch (UnsupportedEncodingException e) {
+				return null;
+			}
+
+			return crc32.getValue() % mod / divisor;
+		}
+
+		@Override
+		public long getPeriod() {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package com.dianping.zebra.shard.router.rule.engine;
+
+/**
+ * 由规则表达式编译成的分片函数，直接用Java计算，不经过groovy的动态调用
+ */
+public interface ShardFunction {
+
+	/**
+	 * @param value
+	 *            分片字段的值
+	 * @return 计算结果；不支持的参数类型返回null，由groovy引擎计算
+	 */
+	Number apply(Object value);
+
+	/**
+	 * @return 同号的整数分片字段值按这个周期重复得到相同的结果；不是周期函数时返回0
+	 */
+	long getPeriod();
+}
@@ -15,6 +15,7 @@
  */
 package com.dianping.zebra.shard.util;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -27,6 +28,7 @@ import java.util.Set;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.SQLName;
 import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLBetweenExpr;
 import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
 import com.alibaba.druid.sql.ast.expr.SQLBinaryOperator;
 import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
@@ -55,6 +57,14 @@ import com.dianping.zebra.util.SqlType;
 public class ShardColumnValueUtil {
 
 	public static List<ColumnValue> eval(ShardEvalContext ctx, Set<String> shardColumns) {
+		return eval(ctx, shardColumns, 0);
+	}
+
+	/**
+	 * @param rangePeriod
+	 *            分片字段值每隔多少个重复一次路由结果，大于0时范围条件只需要展开一个周期，等于0时范围条件不展开
+	 */
+	public static List<ColumnValue> eval(ShardEvalContext ctx, Set<String> shardColumns, long rangePeriod) {
 		List<ColumnValue> result = new LinkedList<ColumnValue>();
 
 		Map<Integer, Map<String, Object>> tmpResult = new LinkedHashMap<Integer, Map<String, Object>>();
@@ -81,7 +91,12 @@ public class ShardColumnValueUtil {
 		// get shard column params from sql or params
 		if (!ShardDataSourceHelper.extractParamsOnlyFromThreadLocal()) {
 			for (String shardColumn : shardColumns) {
-				Set<Object> columnValues = eval(ctx.getParseResult(), ctx.getParams(), shardColumn);
+				Set<Object> columnValues = eval(ctx, shardColumn);
+				// 没有等值条件时，单个分片字段上的范围条件展开成所有可能的值
+				if (columnValues.isEmpty() && tmpResult.isEmpty() && shardColumns.size() == 1) {
+					columnValues = evalRange(ctx, shardColumn, rangePeriod);
+				}
+
 				int index = 0;
 				for (Object o : columnValues) {
 					Map<String, Object> map = tmpResult.get(index);
@@ -105,9 +120,12 @@ public class ShardColumnValueUtil {
 		return result;
 	}
 
-	private static Set<Object> eval(SQLParsedResult parseResult, List<Object> params, String column) {
+	private static Set<Object> eval(ShardEvalContext ctx, String column) {
+		SQLParsedResult parseResult = ctx.getParseResult();
+		List<Object> params = ctx.getParams();
+
 		if (parseResult.getType() == SqlType.INSERT) {
-			return evalInsert(parseResult, column, params);
+			return evalInsert(parseResult, column, params, ctx.getValuesIndex());
 		}
 
 		Set<Object> result = new LinkedHashSet<Object>();
@@ -148,6 +166,97 @@ public class ShardColumnValueUtil {
 		return result;
 	}
 
+	/**
+	 * 只在整数取模的规则下展开整数的范围条件，groovy或者hash规则的字段不一定是整数，超过上限时也返回空集合，由调用方全表扫描
+	 */
+	private static Set<Object> evalRange(ShardEvalContext ctx, String column, long period) {
+		Set<Object> result = new LinkedHashSet<Object>();
+		int limit = ctx.getRangeShardLimit();
+		SQLParsedResult parseResult = ctx.getParseResult();
+
+		if (period <= 0 || limit <= 0 || parseResult.getType() == SqlType.INSERT) {
+			return result;
+		}
+
+		SQLExpr where = getWhere(parseResult);
+		if (where == null) {
+			return result;
+		}
+
+		Range range = new Range();
+		evalRange(where, column, ctx.getParams(), range);
+
+		// 负数通常不在分片规则的定义域内，不做展开
+		if (range.lower == null || range.upper == null || range.empty || range.lower < 0
+				|| range.lower > range.upper) {
+			return result;
+		}
+
+		long lower = range.lower;
+		long upper = range.upper;
+
+		// 非负整数的取模结果按周期重复，只需要展开一个周期
+		if (upper <= Integer.MAX_VALUE) {
+			upper = Math.min(upper, lower + period - 1);
+		}
+
+		if (upper - lower >= limit) {
+			return result;
+		}
+
+		boolean intValue = !range.longValue && upper <= Integer.MAX_VALUE;
+		for (long i = 0; i <= upper - lower; i++) {
+			long value = lower + i;
+			result.add(intValue ? (Object) Integer.valueOf((int) value) : Long.valueOf(value));
+		}
+
+		return result;
+	}
+
+	/**
+	 * 只处理and连接的条件，or下的范围条件不能缩小范围
+	 */
+	private static void evalRange(SQLExpr expr, String column, List<Object> params, Range range) {
+		if (expr instanceof SQLBinaryOpExpr) {
+			SQLBinaryOpExpr binaryOpExpr = (SQLBinaryOpExpr) expr;
+			SQLBinaryOperator operator = binaryOpExpr.getOperator();
+
+			if (operator == SQLBinaryOperator.BooleanAnd) {
+				evalRange(binaryOpExpr.getLeft(), column, params, range);
+				evalRange(binaryOpExpr.getRight(), column, params, range);
+			} else if (isColumn(binaryOpExpr.getLeft(), column)) {
+				range.add(operator, evalValue(binaryOpExpr.getRight(), params));
+			}
+		} else if (expr instanceof SQLBetweenExpr) {
+			SQLBetweenExpr betweenExpr = (SQLBetweenExpr) expr;
+
+			if (!betweenExpr.isNot() && isColumn(betweenExpr.getTestExpr(), column)) {
+				range.add(SQLBinaryOperator.GreaterThanOrEqual, evalValue(betweenExpr.getBeginExpr(), params));
+				range.add(SQLBinaryOperator.LessThanOrEqual, evalValue(betweenExpr.getEndExpr(), params));
+			}
+		}
+	}
+
+	private static boolean isColumn(SQLExpr expr, String column) {
+		if (expr instanceof SQLIdentifierExpr) {
+			return evalColumn(((SQLIdentifierExpr) expr).getName(), column);
+		} else if (expr instanceof SQLPropertyExpr) {
+			return evalColumn(((SQLPropertyExpr) expr).getName(), column);
+		}
+
+		return false;
+	}
+
+	private static Object evalValue(SQLExpr expr, List<Object> params) {
+		if (expr instanceof SQLValuableExpr) {
+			return ((SQLValuableExpr) expr).getValue();
+		} else if (expr instanceof SQLVariantRefExpr && params != null) {
+			return params.get(((SQLVariantRefExpr) expr).getIndex());
+		}
+
+		return null;
+	}
+
 	private static SQLExpr getWhere(SQLParsedResult parseResult) {
 		SQLExpr expr = null;
 		SQLStatement stmt = parseResult.getStmt();
@@ -207,24 +316,25 @@ public class ShardColumnValueUtil {
 		return column.equalsIgnoreCase(indentifier) || ("`" + column + "`").equalsIgnoreCase(indentifier);
 	}
 
-	private static Set<Object> evalInsert(SQLParsedResult parseResult, String column, List<Object> params) {
+	private static Set<Object> evalInsert(SQLParsedResult parseResult, String column, List<Object> params,
+			int valuesIndex) {
 		Set<Object> evalSet = new LinkedHashSet<Object>();
 		MySqlInsertStatement stmt = (MySqlInsertStatement) parseResult.getStmt();
 
 		List<SQLExpr> columns = stmt.getColumns();
 		List<ValuesClause> valuesList = stmt.getValuesList();
 
-		if (valuesList.size() > 1) {
-			throw new ShardRouterException("Multipal rows insertion is currently unsupported!");
+		if (valuesIndex >= valuesList.size()) {
+			throw new ShardRouterException("Insert values index " + valuesIndex + " is out of range!");
 		}
 
-		ValuesClause values = valuesList.get(0);
+		ValuesClause values = valuesList.get(valuesIndex);
 		for (int i = 0; i < columns.size(); i++) {
 			SQLName columnObj = (SQLName) columns.get(i);
 			if (evalColumn(columnObj.getSimpleName(), column)) {
 				SQLExpr sqlExpr = values.getValues().get(i);
 				if (sqlExpr instanceof SQLVariantRefExpr) {
-					evalSet.add(params.get(i));
+					evalSet.add(params.get(((SQLVariantRefExpr) sqlExpr).getIndex()));
 				} else if (sqlExpr instanceof SQLValuableExpr) {
 					evalSet.add(((SQLValuableExpr) sqlExpr).getValue());
 				}
@@ -235,6 +345,65 @@ public class ShardColumnValueUtil {
 		return evalSet;
 	}
 
+	/**
+	 * 整数范围，两端都包含；不是整数的边界直接忽略，得到的范围只会更大
+	 */
+	private static class Range {
+		private Long lower;
+
+		private Long upper;
+
+		private boolean empty;
+
+		private boolean longValue;
+
+		public void add(SQLBinaryOperator operator, Object value) {
+			long bound;
+
+			if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				bound = ((Number) value).longValue();
+			} else if (value instanceof Long) {
+				bound = (Long) value;
+				longValue = true;
+			} else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+				bound = ((BigInteger) value).longValue();
+				longValue = true;
+			} else {
+				return;
+			}
+
+			if (operator == SQLBinaryOperator.GreaterThan) {
+				if (bound == Long.MAX_VALUE) {
+					empty = true;
+				} else {
+					addLower(bound + 1);
+				}
+			} else if (operator == SQLBinaryOperator.GreaterThanOrEqual) {
+				addLower(bound);
+			} else if (operator == SQLBinaryOperator.LessThan) {
+				if (bound == Long.MIN_VALUE) {
+					empty = true;
+				} else {
+					addUpper(bound - 1);
+				}
+			} else if (operator == SQLBinaryOperator.LessThanOrEqual) {
+				addUpper(bound);
+			}
+		}
+
+		private void addLower(long bound) {
+			if (lower == null || bound > lower) {
+				lower = bound;
+			}
+		}
+
+		private void addUpper(long bound) {
+			if (upper == null || bound < upper) {
+				upper = bound;
+			}
+		}
+	}
+
 	private static class Pair {
 		private String identifier;
 
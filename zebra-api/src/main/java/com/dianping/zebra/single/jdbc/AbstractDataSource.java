@@ -3,6 +3,7 @@ package com.dianping.zebra.single.jdbc;
 import com.dianping.zebra.Constants;
 import com.dianping.zebra.exception.ZebraException;
 import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.JdbcFilterChain;
 import com.dianping.zebra.util.StringUtils;
 
 import javax.sql.DataSource;
@@ -23,6 +24,9 @@ public abstract class AbstractDataSource implements DataSource {
 
 	protected volatile List<JdbcFilter> filters;
 
+	// 由filters编译的filter链，filters被替换后在下次使用时重新编译
+	private volatile JdbcFilterChain filterChain;
+
 	private int loginTimeout = 0;
 
 	private PrintWriter out = null;
@@ -30,6 +34,18 @@ public abstract class AbstractDataSource implements DataSource {
 	protected void close() throws SQLException {
 	}
 
+	protected JdbcFilterChain getFilterChain() {
+		List<JdbcFilter> filters = this.filters;
+		JdbcFilterChain chain = this.filterChain;
+
+		if (chain == null || !chain.isCompiledFrom(filters)) {
+			chain = JdbcFilterChain.compile(filters);
+			this.filterChain = chain;
+		}
+
+		return chain;
+	}
+
 	@Override
 	public PrintWriter getLogWriter() throws SQLException {
 		return out;
@@ -1,7 +1,8 @@
 package com.dianping.zebra.single.jdbc;
 
-import com.dianping.zebra.filter.DefaultJdbcFilterChain;
+import com.dianping.zebra.annotation.Internal;
 import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.JdbcFilterChain;
 import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
 
 import java.sql.*;
@@ -25,18 +26,30 @@ public class SingleConnection implements Connection {
 
 	private final List<JdbcFilter> filters;
 
+	private final JdbcFilterChain filterChain;
+
 	public SingleConnection(SingleDataSource dataSource, final DataSourceConfig config, Connection conn,
 			List<JdbcFilter> filters) {
+		this(dataSource, config, conn, filters, JdbcFilterChain.compile(filters));
+	}
+
+	public SingleConnection(SingleDataSource dataSource, final DataSourceConfig config, Connection conn,
+			List<JdbcFilter> filters, JdbcFilterChain filterChain) {
 		this.dsId = config.getId();
 		this.dataSource = dataSource;
 		this.conn = conn;
 		this.filters = filters;
+		this.filterChain = filterChain;
 	}
 
 	public String getDataSourceId() {
 		return dsId;
 	}
 
+	public String getPhysicalUrl() {
+		return dataSource == null ? null : dataSource.getPhysicalUrl();
+	}
+
 	public void abort(Executor executor) throws SQLException {
 		conn.abort(executor);
 	}
@@ -46,26 +59,17 @@ public class SingleConnection implements Connection {
 		conn.clearWarnings();
 	}
 
-	private void closeOrigin() throws SQLException {
+	@Internal
+	public void closeOrigin() throws SQLException {
 		conn.close();
 	}
 
 	@Override
 	public void close() throws SQLException {
-		if (filters != null && filters.size() > 0) {
-			JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
-				@Override
-				public void closeSingleConnection(SingleConnection source, JdbcFilter chain) throws SQLException {
-					if (index < filters.size()) {
-						filters.get(index++).closeSingleConnection(source, chain);
-					} else {
-						source.closeOrigin();
-					}
-				}
-			};
-			chain.closeSingleConnection(this, chain);
-		} else {
+		if (filterChain.isEmpty()) {
 			closeOrigin();
+		} else {
+			filterChain.closeSingleConnection(this, filterChain);
 		}
 	}
 
@@ -102,20 +106,20 @@ public class SingleConnection implements Connection {
 	@Override
 	public Statement createStatement() throws SQLException {
 		Statement stmt = conn.createStatement();
-		return new SingleStatement(this.dsId, conn, stmt, this.filters);
+		return new SingleStatement(this, conn, stmt, this.filters, this.filterChain);
 	}
 
 	@Override
 	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
 		Statement stmt = conn.createStatement(resultSetType, resultSetConcurrency);
-		return new SingleStatement(this.dsId, conn, stmt, this.filters);
+		return new SingleStatement(this, conn, stmt, this.filters, this.filterChain);
 	}
 
 	@Override
 	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
 			throws SQLException {
 		Statement stmt = conn.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
-		return new SingleStatement(this.dsId, conn, stmt, this.filters);
+		return new SingleStatement(this, conn, stmt, this.filters, this.filterChain);
 	}
 
 	@Override
@@ -265,7 +269,7 @@ public class SingleConnection implements Connection {
 		String newSql = processSQL(sql,true);
 		PreparedStatement pstmt = conn.prepareStatement(newSql);
 
-		return new SinglePreparedStatement(this.dsId, conn, filters, pstmt, sql);
+		return new SinglePreparedStatement(this, conn, filters, filterChain, pstmt, sql);
 	}
 
 	@Override
@@ -274,7 +278,7 @@ public class SingleConnection implements Connection {
 		String newSql = processSQL(sql,true);
 		PreparedStatement pstmt = conn.prepareStatement(newSql, resultSetType, resultSetConcurrency);
 
-		return new SinglePreparedStatement(this.dsId, conn, filters, pstmt, sql);
+		return new SinglePreparedStatement(this, conn, filters, filterChain, pstmt, sql);
 	}
 
 	@Override
@@ -283,7 +287,7 @@ public class SingleConnection implements Connection {
 		String newSql = processSQL(sql,true);
 		PreparedStatement pstmt = conn.prepareStatement(newSql, resultSetType, resultSetConcurrency, resultSetHoldability);
 
-		return new SinglePreparedStatement(this.dsId, conn, filters, pstmt, sql);
+		return new SinglePreparedStatement(this, conn, filters, filterChain, pstmt, sql);
 	}
 
 	@Override
@@ -291,7 +295,7 @@ public class SingleConnection implements Connection {
 		String newSql = processSQL(sql,true);
 		PreparedStatement pstmt = conn.prepareStatement(newSql, autoGeneratedKeys);
 
-		return new SinglePreparedStatement(this.dsId, conn, filters, pstmt, sql);
+		return new SinglePreparedStatement(this, conn, filters, filterChain, pstmt, sql);
 	}
 
 	@Override
@@ -299,7 +303,7 @@ public class SingleConnection implements Connection {
 		String newSql = processSQL(sql,true);
 		PreparedStatement pstmt = conn.prepareStatement(newSql, columnIndexes);
 
-		return new SinglePreparedStatement(this.dsId, conn, filters, pstmt, sql);
+		return new SinglePreparedStatement(this, conn, filters, filterChain, pstmt, sql);
 	}
 
 	@Override
@@ -307,27 +311,15 @@ public class SingleConnection implements Connection {
 		String newSql = processSQL(sql,true);
 		PreparedStatement pstmt = conn.prepareStatement(newSql, columnNames);
 
-		return new SinglePreparedStatement(this.dsId, conn, filters, pstmt, sql);
+		return new SinglePreparedStatement(this, conn, filters, filterChain, pstmt, sql);
 	}
 
 	protected String processSQL(final String sql, boolean isPreparedStmt) throws SQLException {
-		if (filters != null && filters.size() > 0) {
-			JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
-				@Override
-				public String processSQL(String dsId, String sql, boolean isPreparedStmt, JdbcFilter chain)
-						throws SQLException {
-					if (index < filters.size()) {
-						return filters.get(index++).processSQL(dsId, sql, isPreparedStmt, chain);
-					} else {
-						return sql;
-					}
-				}
-			};
-
-			return chain.processSQL(this.dsId, sql, isPreparedStmt, chain);
+		if (filterChain.isEmpty()) {
+			return sql;
 		}
 
-		return sql;
+		return filterChain.processSQL(this.dsId, sql, isPreparedStmt, filterChain);
 	}
 	
 	@Override
@@ -12,10 +12,12 @@ import javax.sql.DataSource;
 import org.apache.commons.lang.StringUtils;
 import org.apache.logging.log4j.Logger;
 
+import com.dianping.zebra.annotation.Internal;
 import com.dianping.zebra.exception.ZebraConfigException;
 import com.dianping.zebra.filter.DefaultJdbcFilterChain;
 import com.dianping.zebra.filter.FilterManagerFactory;
 import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.JdbcFilterChain;
 import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
 import com.dianping.zebra.group.monitor.SingleDataSourceMBean;
 import com.dianping.zebra.group.util.DataSourceState;
@@ -48,6 +50,9 @@ public class SingleDataSource extends C3P0StyleDataSource implements DataSourceL
 
 	private volatile DataSourceState state = DataSourceState.INITIAL;
 
+	// 第一次获取连接时从驱动取到的url，之后不再调用getMetaData()
+	private volatile String physicalUrl;
+
 	private AtomicInteger closeAttmpet = new AtomicInteger(1);
 
 	private String poolType = "c3p0";
@@ -153,26 +158,18 @@ public class SingleDataSource extends C3P0StyleDataSource implements DataSourceL
 	}
 
 	@Override
-	public Connection getConnection(final String username, final String password) throws SQLException {
-		if (filters != null && filters.size() > 0) {
-			JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
-				@Override
-				public SingleConnection getSingleConnection(SingleDataSource source, JdbcFilter chain)
-						throws SQLException {
-					if (index < filters.size()) {
-						return filters.get(index++).getSingleConnection(source, chain);
-					} else {
-						return source.getConnectionOrigin(username, password);
-					}
-				}
-			};
-			return chain.getSingleConnection(this, chain);
+	public Connection getConnection(String username, String password) throws SQLException {
+		JdbcFilterChain chain = getFilterChain();
+
+		if (chain.isEmpty()) {
+			return getConnectionOrigin();
 		} else {
-			return getConnectionOrigin(username, password);
+			return chain.getSingleConnection(this, chain);
 		}
 	}
 
-	private SingleConnection getConnectionOrigin(String username, String password) throws SQLException {
+	@Internal
+	public SingleConnection getConnectionOrigin() throws SQLException {
 		checkState();
 		Connection conn;
 		try {
@@ -186,7 +183,11 @@ public class SingleDataSource extends C3P0StyleDataSource implements DataSourceL
 			state = DataSourceState.UP;
 		}
 
-		return new SingleConnection(this, this.config, conn, this.filters);
+		if (physicalUrl == null) {
+			physicalUrl = getPhysicalUrl(conn);
+		}
+
+		return new SingleConnection(this, this.config, conn, this.filters, getFilterChain());
 	}
 
 	@Override
@@ -246,6 +247,27 @@ public class SingleDataSource extends C3P0StyleDataSource implements DataSourceL
 		return 0;
 	}
 
+	/**
+	 * 连接的物理url，在还没有获取过连接时返回配置中的jdbcUrl
+	 */
+	public String getPhysicalUrl() {
+		String url = physicalUrl;
+
+		return url != null ? url : config.getJdbcUrl();
+	}
+
+	private String getPhysicalUrl(Connection conn) {
+		try {
+			String url = conn.getMetaData().getURL();
+			if (url != null) {
+				return url;
+			}
+		} catch (SQLException ignore) {
+		}
+
+		return config.getJdbcUrl();
+	}
+
 	public CountPunisher getPunisher() {
 		return this.punisher;
 	}
@@ -277,6 +299,13 @@ public class SingleDataSource extends C3P0StyleDataSource implements DataSourceL
 		return ZebraPoolManager.buildDataSource(value);
 	}
 
+	/**
+	 * 不经过filter，按当前配置创建连接池
+	 */
+	public DataSource initDataSourceOrigin() {
+		return initDataSourceOrigin(getConfig());
+	}
+
 	public boolean isAvailable() {
 		return this.state == DataSourceState.INITIAL || this.state == DataSourceState.UP;
 	}
@@ -41,6 +41,7 @@ import java.util.Calendar;
 import java.util.List;
 
 import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.JdbcFilterChain;
 import com.dianping.zebra.filter.JdbcOperationCallback;
 import com.dianping.zebra.group.jdbc.param.ArrayParamContext;
 import com.dianping.zebra.group.jdbc.param.AsciiParamContext;
@@ -91,6 +92,12 @@ public class SinglePreparedStatement extends SingleStatement implements Prepared
 		this.sql = sql;
 	}
 
+	public SinglePreparedStatement(SingleConnection singleConnection, Connection innerConnection,
+			List<JdbcFilter> filters, JdbcFilterChain filterChain, Statement stmt, String sql) throws SQLException {
+		super(singleConnection, innerConnection, stmt, filters, filterChain);
+		this.sql = sql;
+	}
+
 	private PreparedStatement getPreparedStatement() throws SQLException {
 		checkClosed();
 		return (PreparedStatement) innerStatement;
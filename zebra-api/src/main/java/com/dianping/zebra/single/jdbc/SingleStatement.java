@@ -23,8 +23,8 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.dianping.zebra.filter.DefaultJdbcFilterChain;
 import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.JdbcFilterChain;
 import com.dianping.zebra.filter.JdbcOperationCallback;
 import com.dianping.zebra.util.SqlType;
 import com.dianping.zebra.util.SqlUtils;
@@ -44,14 +44,44 @@ public class SingleStatement implements Statement {
 
 	protected final Statement innerStatement;
 
+	protected final JdbcFilterChain filterChain;
+
+	private final SingleConnection singleConnection;
+
 	protected boolean closed;
 
+	private JdbcOperationCallback<?> currentOperation;
+
 	public SingleStatement(String dsId, Connection innerConnection, Statement innnerStatement, List<JdbcFilter> filters)
 			throws SQLException {
+		this(null, dsId, innerConnection, innnerStatement, filters, JdbcFilterChain.compile(filters));
+	}
+
+	public SingleStatement(SingleConnection singleConnection, Connection innerConnection, Statement innnerStatement,
+			List<JdbcFilter> filters, JdbcFilterChain filterChain) throws SQLException {
+		this(singleConnection, singleConnection.getDataSourceId(), innerConnection, innnerStatement, filters,
+				filterChain);
+	}
+
+	private SingleStatement(SingleConnection singleConnection, String dsId, Connection innerConnection,
+			Statement innnerStatement, List<JdbcFilter> filters, JdbcFilterChain filterChain) throws SQLException {
+		this.singleConnection = singleConnection;
 		this.dsId = dsId;
 		this.innerConnection = innerConnection;
 		this.innerStatement = innnerStatement;
 		this.filters = filters;
+		this.filterChain = filterChain;
+	}
+
+	public String getDataSourceId() {
+		return dsId;
+	}
+
+	/**
+	 * @return 数据库的实际地址，在第一次获取连接时从驱动取得并缓存，未知时返回null
+	 */
+	public String getPhysicalUrl() {
+		return singleConnection == null ? null : singleConnection.getPhysicalUrl();
 	}
 
 	@Override
@@ -179,52 +209,37 @@ public class SingleStatement implements Statement {
 	}
 
 	protected String processSQL(final String sql, boolean isPreparedStmt) throws SQLException {
-		if (filters != null && filters.size() > 0) {
-			JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
-				@Override
-				public String processSQL(String dsId, String sql, boolean isPreparedStmt, JdbcFilter chain)
-						throws SQLException {
-					if (index < filters.size()) {
-						return filters.get(index++).processSQL(dsId, sql, isPreparedStmt, chain);
-					} else {
-						return sql;
-					}
-				}
-			};
-
-			return chain.processSQL(this.dsId, sql, isPreparedStmt, chain);
+		if (filterChain.isEmpty()) {
+			return sql;
 		}
 
-		return sql;
+		return filterChain.processSQL(this.dsId, sql, isPreparedStmt, filterChain);
 	}
 
-	@SuppressWarnings({ "unchecked", "hiding" })
-	protected <T> T executeWithFilter(final JdbcOperationCallback<T> callback, final String sql, Object params,
-			boolean isBatch) throws SQLException {
-		if (filters != null && filters.size() > 0) {
-			JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
-				@Override
-				public <T> T executeSingleStatement(SingleStatement source, Connection conn, String sql,
-						List<String> batchedSql, boolean isBatched, boolean autoCommit, Object params, JdbcFilter chain)
-								throws SQLException {
-					if (index < filters.size()) {
-						return filters.get(index++).executeSingleStatement(source, conn, sql, (List<String>) batchedSql,
-								isBatched, autoCommit, params, chain);
-					} else {
-						return (T) executeWithFilterOrigin(callback, conn);
-					}
-				}
-			};
+	/**
+	 * @return 正在执行的操作，由filter链的最后一个节点执行，不在执行中时返回null
+	 */
+	public JdbcOperationCallback<?> getCurrentOperation() {
+		return currentOperation;
+	}
 
-			return chain.executeSingleStatement(this, this.innerConnection, sql, null, isBatch,
-					this.innerConnection.getAutoCommit(), params, chain);
-		} else {
-			return executeWithFilterOrigin(callback, this.innerConnection);
+	/**
+	 * 依次经过filter之后，由链的最后一个节点执行callback；filter里再执行这个statement时先保存外层的操作，结束后恢复
+	 */
+	protected <T> T executeWithFilter(JdbcOperationCallback<T> callback, String sql, Object params, boolean isBatch)
+			throws SQLException {
+		if (filterChain.isEmpty()) {
+			return callback.doAction(this.innerConnection);
 		}
-	}
 
-	private <T> T executeWithFilterOrigin(JdbcOperationCallback<T> callback, Connection conn) throws SQLException {
-		return callback.doAction(conn);
+		JdbcOperationCallback<?> outerOperation = this.currentOperation;
+		this.currentOperation = callback;
+		try {
+			return filterChain.executeSingleStatement(this, this.innerConnection, sql, null, isBatch,
+					this.innerConnection.getAutoCommit(), params, filterChain);
+		} finally {
+			this.currentOperation = outerOperation;
+		}
 	}
 
 	@Override
@@ -1,8 +1,22 @@
 package com.dianping.zebra.single.pool;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
@@ -28,6 +42,32 @@ public class ZebraPoolManager {
 	
 	private static final int MAX_CLOSE_ATTEMPT = 600;
 
+	// c3p0的minPoolSize默认值
+	private static final int DEFAULT_C3P0_MIN_POOL_SIZE = 3;
+
+	private static final int WARM_UP_THREADS = 8;
+
+	private static final int WARM_UP_QUEUE_SIZE = 256;
+
+	// 建立连接卡住的线程在超时之后仍然会占用，线程数和队列都有上限，放不下的连接算作预热失败
+	private static final ThreadPoolExecutor WARM_UP_EXECUTOR = new ThreadPoolExecutor(WARM_UP_THREADS,
+			WARM_UP_THREADS, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(WARM_UP_QUEUE_SIZE),
+			new ThreadFactory() {
+				private final AtomicInteger index = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r);
+					t.setDaemon(true);
+					t.setName("Dal-WarmUpDataSource-" + index.incrementAndGet());
+					return t;
+				}
+			});
+
+	static {
+		WARM_UP_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
 	public static DataSource buildDataSource(DataSourceConfig value) {
 		try {
 			JdbcDriverClassHelper.loadDriverClass(value.getDriverClass(), value.getJdbcUrl());
@@ -174,6 +214,186 @@ public class ZebraPoolManager {
 		}
 	}
 
+	public static int warmUp(SingleDataSource singleDataSource, long timeout) {
+		return warmUp(Collections.singletonList(singleDataSource), timeout);
+	}
+
+	/**
+	 * <p>
+	 * 在切换流量之前预热连接池：每个连接池并行建立minPoolSize个连接并执行校验SQL，之后归还给连接池。
+	 * </p>
+	 * 所有连接池共用一个超时时间，超时或者失败时不影响datasource的使用，剩下的连接在第一次使用时再建立。<br>
+	 * 超时之后还没有完成的预热任务会被取消。
+	 *
+	 * @param timeout
+	 *           预热的最长时间，单位毫秒，小于等于0时不预热
+	 * @return 预热成功的连接数
+	 */
+	public static int warmUp(Collection<SingleDataSource> singleDataSources, long timeout) {
+		if (timeout <= 0) {
+			return 0;
+		}
+
+		long start = System.currentTimeMillis();
+		List<WarmUpContext> contexts = new ArrayList<WarmUpContext>();
+
+		for (SingleDataSource singleDataSource : singleDataSources) {
+			WarmUpContext context = createWarmUpContext(singleDataSource);
+
+			if (context != null) {
+				for (int i = 0; i < context.minPoolSize; i++) {
+					try {
+						context.futures.add(WARM_UP_EXECUTOR.submit(context));
+					} catch (RejectedExecutionException e) {
+						// 预热线程都被占满时这个连接不预热
+						context.futures.add(null);
+					}
+				}
+				contexts.add(context);
+			}
+		}
+
+		long deadline = start + timeout;
+		int total = 0;
+		for (WarmUpContext context : contexts) {
+			for (Future<?> future : context.futures) {
+				if (future == null) {
+					logger.warn(String.format("fail to warm up connection of dataSource [%s], warm up threads are busy",
+							context.dsId));
+					continue;
+				}
+
+				try {
+					future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					logger.warn(String.format("warm up dataSource [%s] timeout after %dms", context.dsId, timeout));
+					break;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				} catch (Exception e) {
+					logger.warn(String.format("fail to warm up connection of dataSource [%s]", context.dsId), e);
+				}
+			}
+
+			for (Future<?> future : context.futures) {
+				if (future != null) {
+					future.cancel(true);
+				}
+			}
+
+			int warmed = context.finish();
+			total += warmed;
+			logger.info(String.format("dataSource [%s] warmed up %d/%d connections in %dms", context.dsId, warmed,
+					context.minPoolSize, System.currentTimeMillis() - start));
+		}
+
+		return total;
+	}
+
+	private static WarmUpContext createWarmUpContext(SingleDataSource singleDataSource) {
+		DataSource dataSource = singleDataSource.getInnerDataSource();
+		DataSourceConfig config = singleDataSource.getConfig();
+
+		try {
+			int minPoolSize;
+			if (dataSource instanceof PoolBackedDataSource) {
+				minPoolSize = getIntProperty(config, "minPoolSize", DEFAULT_C3P0_MIN_POOL_SIZE);
+			} else if (dataSource instanceof org.apache.tomcat.jdbc.pool.DataSource) {
+				((org.apache.tomcat.jdbc.pool.DataSource) dataSource).createPool();
+				minPoolSize = getIntProperty(config, "minPoolSize", 5);
+			} else if (dataSource instanceof DruidDataSource) {
+				((DruidDataSource) dataSource).init();
+				minPoolSize = getIntProperty(config, "minPoolSize", 5);
+			} else {
+				return null;
+			}
+
+			return new WarmUpContext(singleDataSource.getId(), dataSource, minPoolSize, getStringProperty(config,
+					"preferredTestQuery", "SELECT 1"));
+		} catch (SQLException e) {
+			logger.warn(String.format("fail to warm up dataSource [%s]", singleDataSource.getId()), e);
+			return null;
+		}
+	}
+
+	/**
+	 * 预热时先持有所有连接，保证连接池建立的是不同的连接，结束时统一归还。<br>
+	 * 超时之后才建立好的连接直接归还。
+	 */
+	private static class WarmUpContext implements Runnable {
+
+		private final String dsId;
+
+		private final DataSource dataSource;
+
+		private final int minPoolSize;
+
+		private final String validationQuery;
+
+		private final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+		private final List<Connection> connections = new ArrayList<Connection>();
+
+		private boolean finished;
+
+		WarmUpContext(String dsId, DataSource dataSource, int minPoolSize, String validationQuery) {
+			this.dsId = dsId;
+			this.dataSource = dataSource;
+			this.minPoolSize = minPoolSize;
+			this.validationQuery = validationQuery;
+		}
+
+		@Override
+		public void run() {
+			Connection conn = null;
+			try {
+				conn = dataSource.getConnection();
+
+				Statement stmt = conn.createStatement();
+				try {
+					stmt.execute(validationQuery);
+				} finally {
+					stmt.close();
+				}
+
+				synchronized (this) {
+					if (!finished) {
+						connections.add(conn);
+						conn = null;
+					}
+				}
+			} catch (SQLException e) {
+				throw new ZebraException(e);
+			} finally {
+				closeQuietly(conn);
+			}
+		}
+
+		int finish() {
+			List<Connection> toBeClosed;
+			synchronized (this) {
+				finished = true;
+				toBeClosed = new ArrayList<Connection>(connections);
+			}
+
+			for (Connection conn : toBeClosed) {
+				closeQuietly(conn);
+			}
+
+			return toBeClosed.size();
+		}
+
+		private void closeQuietly(Connection conn) {
+			if (conn != null) {
+				try {
+					conn.close();
+				} catch (SQLException ignore) {
+				}
+			}
+		}
+	}
+
 	private static void throwException(String dsId) {
 		throw new ZebraException(String.format("Cannot close dataSource[%s] since there are busy connections.", dsId));
 	}
@@ -0,0 +1,198 @@
+package com.dianping.zebra.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * 近似LRU的并发缓存，读取不加锁。
+ * </p>
+ * 淘汰使用CLOCK(second chance)算法：读取时只设置访问标记，写入超过容量时由一个线程扫描环形队列，
+ * 有访问标记的清除标记后放回队尾，没有访问标记的淘汰。其他线程发现正在淘汰时直接返回，不会等待。
+ */
+public class ConcurrentLRUCache<K, V> {
+
+	private final int maxSize;
+
+	private final ConcurrentHashMap<K, Node<K, V>> map;
+
+	private final ConcurrentLinkedQueue<Node<K, V>> clock = new ConcurrentLinkedQueue<Node<K, V>>();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final StripedCounter hitCount = new StripedCounter();
+
+	private final StripedCounter missCount = new StripedCounter();
+
+	private final StripedCounter evictionCount = new StripedCounter();
+
+	public ConcurrentLRUCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be greater than 0");
+		}
+
+		this.maxSize = maxSize;
+		this.map = new ConcurrentHashMap<K, Node<K, V>>(Math.min(maxSize, 1024), 0.75f,
+				Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	public V get(K key) {
+		Node<K, V> node = map.get(key);
+
+		if (node == null) {
+			missCount.increment();
+			return null;
+		}
+
+		// 只在标记变化时写入，避免读多时cache line来回失效
+		if (!node.referenced) {
+			node.referenced = true;
+		}
+		hitCount.increment();
+
+		return node.value;
+	}
+
+	/**
+	 * @return 如果key已经存在，返回已有的值；否则返回null
+	 */
+	public V putIfAbsent(K key, V value) {
+		Node<K, V> node = new Node<K, V>(key, value);
+		Node<K, V> existing = map.putIfAbsent(key, node);
+
+		if (existing != null) {
+			existing.referenced = true;
+			return existing.value;
+		}
+
+		clock.offer(node);
+		if (size.incrementAndGet() > maxSize) {
+			evict();
+		}
+
+		return null;
+	}
+
+	public V remove(K key) {
+		Node<K, V> node = map.remove(key);
+
+		if (node == null) {
+			return null;
+		}
+
+		size.decrementAndGet();
+		return node.value;
+	}
+
+	public void clear() {
+		evictionLock.lock();
+		try {
+			for (K key : map.keySet()) {
+				remove(key);
+			}
+			clock.clear();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private void evict() {
+		if (!evictionLock.tryLock()) {
+			return;
+		}
+
+		try {
+			// 所有数据都被访问过时，最多扫描两圈就一定能淘汰
+			int scanned = 0;
+			int maxScan = 2 * (maxSize + 1);
+
+			while (size.get() > maxSize) {
+				Node<K, V> node = clock.poll();
+				if (node == null) {
+					break;
+				}
+
+				if (node.referenced && scanned++ < maxScan) {
+					node.referenced = false;
+					clock.offer(node);
+				} else if (map.remove(node.key, node)) {
+					size.decrementAndGet();
+					evictionCount.increment();
+				}
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentLRUCache [size=" + size() + ", maxSize=" + maxSize + ", hitCount=" + getHitCount()
+				+ ", missCount=" + getMissCount() + ", evictionCount=" + getEvictionCount() + "]";
+	}
+
+	private static class Node<K, V> {
+
+		private final K key;
+
+		private final V value;
+
+		private volatile boolean referenced;
+
+		public Node(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * 按线程分散的计数器，避免所有线程竞争同一个AtomicLong
+	 */
+	private static class StripedCounter {
+
+		private static final int STRIPES = 16;
+
+		// 每个计数占一个cache line
+		private static final int PADDING = 8;
+
+		private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+		public void increment() {
+			int index = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+			cells.incrementAndGet(index);
+		}
+
+		public long sum() {
+			long sum = 0;
+			for (int i = 0; i < STRIPES; i++) {
+				sum += cells.get(i * PADDING);
+			}
+			return sum;
+		}
+	}
+}
@@ -1,5 +1,10 @@
 package com.dianping.zebra.util;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
 import com.dianping.zebra.exception.ZebraConfigException;
 
 /**
@@ -30,4 +35,29 @@ public class JdbcDriverClassHelper {
 			throw new ZebraConfigException("Cannot find driver class : " + url, e);
 		}
 	}
+
+	/**
+	 * 不经过连接池创建一个探测用的连接，mysql连接带上连接和读超时
+	 *
+	 * @param timeout
+	 *           超时时间，单位毫秒
+	 */
+	public static Connection getConnection(String driverClass, String url, String username, String password,
+			long timeout) throws SQLException {
+		loadDriverClass(driverClass, url);
+
+		Properties info = new Properties();
+		if (username != null) {
+			info.setProperty("user", username);
+		}
+		if (password != null) {
+			info.setProperty("password", password);
+		}
+		if (url.startsWith("jdbc:mysql:")) {
+			info.setProperty("connectTimeout", String.valueOf(timeout));
+			info.setProperty("socketTimeout", String.valueOf(timeout));
+		}
+
+		return DriverManager.getConnection(url, info);
+	}
 }
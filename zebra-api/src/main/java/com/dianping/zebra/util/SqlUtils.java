@@ -1,8 +1,16 @@
 package com.dianping.zebra.util;
 
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlSchemaStatVisitor;
+import com.alibaba.druid.stat.TableStat;
 import com.dianping.zebra.Constants;
 
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 public final class SqlUtils {
@@ -13,7 +21,175 @@ public final class SqlUtils {
 	private static final Pattern SELECT_FOR_UPDATE_PATTERN = Pattern.compile("^select\\s+.*\\s+for\\s+update.*$",
 	      Pattern.CASE_INSENSITIVE);
 
+	private static final String[] KEYWORDS = { "select", "insert", "update", "delete", "show", "replace", "truncate",
+	      "create", "drop", "load", "merge" };
+
+	private static final SqlType[] KEYWORD_TYPES = { SqlType.SELECT, SqlType.INSERT, SqlType.UPDATE, SqlType.DELETE,
+	      SqlType.SHOW, SqlType.REPLACE, SqlType.TRUNCATE, SqlType.CREATE, SqlType.DROP, SqlType.LOAD, SqlType.MERGE };
+
+	private static final int SQL_INFO_CACHE_SIZE = 1024;
+
+	// 太长的SQL基本不会是重复执行的PreparedStatement，不缓存
+	private static final int MAX_CACHED_SQL_LENGTH = 4096;
+
+	private static final AtomicReferenceArray<SqlInfo> sqlInfoCache = new AtomicReferenceArray<SqlInfo>(
+	      SQL_INFO_CACHE_SIZE);
+
 	public static SqlType getSqlType(String sql) throws SQLException {
+		return getSqlInfo(sql).getSqlType();
+	}
+
+	/**
+	 * 获取SQL类型以及是否带有强制走写库的hint，结果按SQL缓存在一个定长的数组中，冲突时直接覆盖
+	 */
+	public static SqlInfo getSqlInfo(String sql) {
+		int hash = sql.hashCode();
+		int index = (hash ^ (hash >>> 16)) & (SQL_INFO_CACHE_SIZE - 1);
+
+		SqlInfo sqlInfo = sqlInfoCache.get(index);
+		if (sqlInfo != null && (sqlInfo.sql == sql || sqlInfo.sql.equals(sql))) {
+			return sqlInfo;
+		}
+
+		sqlInfo = parseSqlInfo(sql);
+		if (sql.length() <= MAX_CACHED_SQL_LENGTH) {
+			sqlInfoCache.lazySet(index, sqlInfo);
+		}
+
+		return sqlInfo;
+	}
+
+	/**
+	 * <p>
+	 * 不使用缓存解析SQL，只扫描一遍SQL并且不分配中间字符串。
+	 * </p>
+	 * 跳过开头的空白和注释找到第一个关键字，同时查找hint；遇到行注释、多行注释、非ASCII字符等少见的情况时，SQL类型交给
+	 * {@link #getSqlTypeByRegex(String)}判断，保证结果和原来一致。
+	 */
+	public static SqlInfo parseSqlInfo(String sql) {
+		String hint = Constants.SQL_FORCE_WRITE_HINT;
+		int length = sql.length();
+		int pos = 0;
+		boolean forceWrite = false;
+		boolean hasComment = false;
+
+		while (pos < length) {
+			char c = sql.charAt(pos);
+
+			if (c == '/' && pos + 1 < length && sql.charAt(pos + 1) == '*') {
+				int end = sql.indexOf("*/", pos + 2);
+				if (end < 0 || containsLineBreak(sql, pos + 2, end)) {
+					return new SqlInfo(sql, getSqlTypeByRegex(sql), sql.contains(hint));
+				}
+
+				// 注释在第一个*/处结束，注释中的hint只可能以这个*/结尾
+				int hintStart = end + 2 - hint.length();
+				if (hintStart >= pos && sql.startsWith(hint, hintStart)) {
+					forceWrite = true;
+				}
+
+				hasComment = true;
+				pos = end + 2;
+			} else if (c <= ' ' && Character.isWhitespace(c)) {
+				pos++;
+			} else {
+				break;
+			}
+		}
+
+		SqlType sqlType = null;
+		for (int i = 0; i < KEYWORDS.length; i++) {
+			if (sql.regionMatches(true, pos, KEYWORDS[i], 0, KEYWORDS[i].length())) {
+				sqlType = KEYWORD_TYPES[i];
+				break;
+			}
+		}
+
+		if (sqlType == null) {
+			return new SqlInfo(sql, getSqlTypeByRegex(sql), sql.contains(hint));
+		} else if (sqlType != SqlType.SELECT) {
+			return new SqlInfo(sql, sqlType, forceWrite || sql.indexOf(hint, pos) >= 0);
+		}
+
+		boolean stripped = false;
+		boolean identity = false;
+
+		for (int i = pos; i < length; i++) {
+			char c = sql.charAt(i);
+
+			if (c >= 'A') {
+				if (c > 127) {
+					// 非ASCII字符转小写后可能和regionMatches的结果不同
+					return new SqlInfo(sql, getSqlTypeByRegex(sql), sql.contains(hint));
+				} else if ((c | 0x20) == 'l') {
+					identity |= matchesAsciiIgnoreCase(sql, i, "last_insert_id()");
+				}
+			} else if (c == ' ') {
+				if (matchesAsciiIgnoreCase(sql, i, " for ")) {
+					// 可能是select ... for update
+					return new SqlInfo(sql, getSqlTypeByRegex(sql), sql.contains(hint));
+				}
+			} else if (c == '@') {
+				identity |= matchesAsciiIgnoreCase(sql, i, "@@identity");
+			} else if (c == '/') {
+				if (i + 1 < length && sql.charAt(i + 1) == '*') {
+					hasComment = true;
+					if (sql.startsWith(hint, i)) {
+						forceWrite = true;
+					}
+				}
+				stripped = true;
+			} else if (c == '#' || (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-')) {
+				stripped = true;
+			}
+		}
+
+		// 去掉注释后的文本和原文不一致
+		if (hasComment && stripped) {
+			sqlType = getSqlTypeByRegex(sql);
+		} else if (identity) {
+			sqlType = SqlType.SELECT_FOR_IDENTITY;
+		}
+
+		return new SqlInfo(sql, sqlType, forceWrite);
+	}
+
+	/**
+	 * 只按ASCII字母忽略大小写比较，pattern必须是小写
+	 */
+	private static boolean matchesAsciiIgnoreCase(String sql, int offset, String pattern) {
+		int length = pattern.length();
+		if (offset + length > sql.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			char c = sql.charAt(offset + i);
+			char p = pattern.charAt(i);
+
+			if (c != p && (p < 'a' || p > 'z' || (c | 0x20) != p)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean containsLineBreak(String sql, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = sql.charAt(i);
+			if (c == '\r' || c == '\n') {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * 原来的实现，去掉注释后用正则判断SQL类型
+	 */
+	public static SqlType getSqlTypeByRegex(String sql) {
 		SqlType sqlType = null;
 		String noCommentsSql = sql;
 		if (sql.contains("/*")) {
@@ -84,6 +260,150 @@ public final class SqlUtils {
 		return "Execute";
 	}
 
+	public static final class SqlInfo {
+
+		private static final Set<String> UNKNOWN_TABLES = Collections.unmodifiableSet(new HashSet<String>());
+
+		private final String sql;
+
+		private final SqlType sqlType;
+
+		private final boolean forceWrite;
+
+		// 用到时才解析，和SQL类型一起缓存
+		private volatile Set<String> tables;
+
+		SqlInfo(String sql, SqlType sqlType, boolean forceWrite) {
+			this.sql = sql;
+			this.sqlType = sqlType;
+			this.forceWrite = forceWrite;
+		}
+
+		public SqlType getSqlType() {
+			return sqlType;
+		}
+
+		/**
+		 * @return SQL中是否带有强制走写库的hint
+		 */
+		public boolean isForceWrite() {
+			return forceWrite;
+		}
+
+		/**
+		 * @return SQL中用到的表名，解析失败时返回null
+		 */
+		public Set<String> getTables() {
+			Set<String> result = tables;
+
+			if (result == null) {
+				result = parseTables(sql);
+				tables = result = (result == null ? UNKNOWN_TABLES : Collections.unmodifiableSet(result));
+			}
+
+			return result == UNKNOWN_TABLES ? null : result;
+		}
+	}
+
+	/**
+	 * 解析SQL中用到的表名，统一为小写并去掉库名和反引号，解析失败时返回null
+	 */
+	public static Set<String> parseTables(String sql) {
+		try {
+			MySqlSchemaStatVisitor visitor = new MySqlSchemaStatVisitor();
+			for (SQLStatement stmt : new MySqlStatementParser(sql).parseStatementList()) {
+				stmt.accept(visitor);
+			}
+
+			Set<String> tables = new HashSet<String>();
+			for (TableStat.Name name : visitor.getTables().keySet()) {
+				String table = name.getName().replace("`", "");
+				tables.add(table.substring(table.lastIndexOf('.') + 1).toLowerCase());
+			}
+
+			return tables;
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 把SQL中的字符串和数字常量替换成?，合并连续的空白以及IN列表中相邻的?，用于按SQL聚合统计，结果最长为maxLength
+	 */
+	public static String normalizeSql(String sql, int maxLength) {
+		int length = sql.length();
+		StringBuilder sb = new StringBuilder(Math.min(length, maxLength));
+
+		for (int i = 0; i < length && sb.length() < maxLength; i++) {
+			char c = sql.charAt(i);
+
+			if (c == '\'' || c == '"') {
+				int j = i + 1;
+				while (j < length) {
+					char d = sql.charAt(j);
+					if (d == '\\') {
+						j += 2;
+					} else if (d == c && j + 1 < length && sql.charAt(j + 1) == c) {
+						j += 2;
+					} else if (d == c) {
+						break;
+					} else {
+						j++;
+					}
+				}
+				appendPlaceholder(sb);
+				i = j;
+			} else if (c == '?' || (Character.isDigit(c) && (i == 0 || !isIdentifierPart(sql.charAt(i - 1))))) {
+				int j = i + 1;
+				while (c != '?' && j < length && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '.')) {
+					j++;
+				}
+				appendPlaceholder(sb);
+				i = j - 1;
+			} else if (Character.isWhitespace(c)) {
+				if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+					sb.append(' ');
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+
+		int end = sb.length();
+		while (end > 0 && sb.charAt(end - 1) == ' ') {
+			end--;
+		}
+		sb.setLength(Math.min(end, maxLength));
+
+		return sb.toString();
+	}
+
+	// 前面是"?,"时不再追加，把IN列表合并成一个?
+	private static void appendPlaceholder(StringBuilder sb) {
+		int end = sb.length();
+		while (end > 0 && sb.charAt(end - 1) == ' ') {
+			end--;
+		}
+
+		if (end > 0 && sb.charAt(end - 1) == ',') {
+			int start = end - 1;
+			while (start > 0 && sb.charAt(start - 1) == ' ') {
+				start--;
+			}
+
+			if (start > 0 && sb.charAt(start - 1) == '?') {
+				sb.setLength(start);
+				return;
+			}
+		}
+
+		sb.append('?');
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '`';
+	}
+
 	public static String parseSqlComment(String sql) {
 		String trimSql = sql.trim();
 
@@ -7,23 +7,33 @@ import org.junit.runners.Suite.SuiteClasses;
 import com.dianping.zebra.config.LocalConfigServiceTest;
 import com.dianping.zebra.group.config.DataSourceConfigManagerTest;
 import com.dianping.zebra.group.config.SystemConfigManagerTest;
+import com.dianping.zebra.group.datasources.FailOverDataSourceMonitorTest;
 import com.dianping.zebra.group.datasources.FailoverDataSourceTest;
 import com.dianping.zebra.group.datasources.LoadBalancedDataSourceTest;
+import com.dianping.zebra.group.datasources.ReplicationLagMonitorTest;
 import com.dianping.zebra.group.filter.DefaultFilterManagerTest;
 import com.dianping.zebra.group.filter.FilterChainTest;
+import com.dianping.zebra.group.filter.JdbcFilterChainTest;
+import com.dianping.zebra.group.filter.histogram.HistogramFilterTest;
+import com.dianping.zebra.group.filter.slowquery.SlowQueryFilterTest;
 import com.dianping.zebra.group.filter.wall.WallFilterTest;
 import com.dianping.zebra.group.jdbc.DPGroupConnectionTestCase;
 import com.dianping.zebra.group.jdbc.DPGroupPreparedStatementTest;
 import com.dianping.zebra.group.jdbc.DPGroupStatementTest;
 import com.dianping.zebra.group.jdbc.GroupDataSourceTest;
+import com.dianping.zebra.group.jdbc.GroupPreparedStatementReuseTest;
 import com.dianping.zebra.group.jdbc.SingleAndGroupC3P0FieldTest;
 import com.dianping.zebra.group.router.CustomizedReadWriteStrategyWrapperTest;
 import com.dianping.zebra.group.router.DpdlReadWriteStrategyImplTest;
 import com.dianping.zebra.group.router.GroupDataSourceRouterTest;
+import com.dianping.zebra.group.router.LatencyAwareDataSourceRouterTest;
 import com.dianping.zebra.group.router.LocalContextReadWriteStrategyTest;
 import com.dianping.zebra.group.router.ReadWriteStrategyServiceLoaderTest;
+import com.dianping.zebra.group.router.SessionConsistencyTest;
+import com.dianping.zebra.group.router.WeightDataSourceRouterTest;
 import com.dianping.zebra.group.util.SmoothReloadTest;
 import com.dianping.zebra.group.util.SqlUtilsTest;
+import com.dianping.zebra.single.jdbc.ZebraPoolManagerWarmUpTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({
@@ -35,11 +45,16 @@ import com.dianping.zebra.group.util.SqlUtilsTest;
 
 	  //datasources
 	  FailoverDataSourceTest.class,
+	  FailOverDataSourceMonitorTest.class,
 	  LoadBalancedDataSourceTest.class,
+	  ReplicationLagMonitorTest.class,
 
 	  //filter
 	  DefaultFilterManagerTest.class,
 	  FilterChainTest.class,
+	  JdbcFilterChainTest.class,
+	  HistogramFilterTest.class,
+	  SlowQueryFilterTest.class,
 	  WallFilterTest.class,
 
 	  //jdbc
@@ -48,6 +63,7 @@ import com.dianping.zebra.group.util.SqlUtilsTest;
 	  DPGroupStatementTest.class,
 	  SingleAndGroupC3P0FieldTest.class,
 	  GroupDataSourceTest.class,
+	  GroupPreparedStatementReuseTest.class,
 
 	  //router
 	  CustomizedReadWriteStrategyWrapperTest.class,
@@ -55,6 +71,12 @@ import com.dianping.zebra.group.util.SqlUtilsTest;
 	  LocalContextReadWriteStrategyTest.class,
 	  GroupDataSourceRouterTest.class,
 	  ReadWriteStrategyServiceLoaderTest.class,
+	  WeightDataSourceRouterTest.class,
+	  LatencyAwareDataSourceRouterTest.class,
+	  SessionConsistencyTest.class,
+
+	  //single
+	  ZebraPoolManagerWarmUpTest.class,
 
 	  //util
 	  SmoothReloadTest.class,
@@ -0,0 +1,207 @@
+package com.dianping.zebra.group.datasources;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.dianping.zebra.filter.DefaultJdbcFilter;
+import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+
+import junit.framework.Assert;
+
+/**
+ * 用H2模拟read_only标记，切换标记后后台线程会切换主库
+ */
+public class FailOverDataSourceMonitorTest {
+
+	private static final long WAIT_MILLIS = 5000;
+
+	public static int slowReadOnly() throws InterruptedException {
+		Thread.sleep(WAIT_MILLIS);
+		return 0;
+	}
+
+	@Test
+	public void testSwitchWhenReadOnlyFlips() throws Exception {
+		Map<String, DataSourceConfig> configs = createConfigs("flip");
+		setReadOnly(configs.get("flip0"), false);
+		setReadOnly(configs.get("flip1"), true);
+
+		SwitchCountFilter filter = new SwitchCountFilter();
+		FailOverDataSource ds = createDataSource(configs, filter);
+		ds.setCheckMasterInterval(50);
+		ds.setMinSwitchInterval(0);
+		ds.init();
+
+		try {
+			Assert.assertEquals("flip0", ds.getCurrentDataSourceMBean().getId());
+
+			setReadOnly(configs.get("flip0"), true);
+			setReadOnly(configs.get("flip1"), false);
+			waitForMaster(ds, "flip1");
+			Assert.assertEquals(1, filter.count.get());
+
+			setReadOnly(configs.get("flip0"), false);
+			setReadOnly(configs.get("flip1"), true);
+			waitForMaster(ds, "flip0");
+			Assert.assertEquals(2, filter.count.get());
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void testKeepMasterWhenStillWritable() throws Exception {
+		Map<String, DataSourceConfig> configs = createConfigs("keep");
+		setReadOnly(configs.get("keep0"), true);
+		setReadOnly(configs.get("keep1"), false);
+
+		SwitchCountFilter filter = new SwitchCountFilter();
+		FailOverDataSource ds = createDataSource(configs, filter);
+		ds.setCheckMasterInterval(0);
+		ds.setMinSwitchInterval(0);
+		ds.init();
+
+		try {
+			Assert.assertEquals("keep1", ds.getCurrentDataSourceMBean().getId());
+
+			// 两个库都可写时不切换
+			setReadOnly(configs.get("keep0"), false);
+			new FailOverDataSource.MasterDataSourceMonitor(ds).checkMaster();
+			Assert.assertEquals("keep1", ds.getCurrentDataSourceMBean().getId());
+			Assert.assertEquals(0, filter.count.get());
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void testRateLimit() throws Exception {
+		Map<String, DataSourceConfig> configs = createConfigs("limit");
+		setReadOnly(configs.get("limit0"), false);
+		setReadOnly(configs.get("limit1"), true);
+
+		SwitchCountFilter filter = new SwitchCountFilter();
+		FailOverDataSource ds = createDataSource(configs, filter);
+		ds.setCheckMasterInterval(0);
+		ds.setMinSwitchInterval(60000);
+		ds.init();
+
+		try {
+			FailOverDataSource.MasterDataSourceMonitor monitor = new FailOverDataSource.MasterDataSourceMonitor(ds);
+
+			setReadOnly(configs.get("limit0"), true);
+			setReadOnly(configs.get("limit1"), false);
+			monitor.checkMaster();
+			Assert.assertEquals("limit1", ds.getCurrentDataSourceMBean().getId());
+			Assert.assertEquals(1, filter.count.get());
+
+			// 刚切换过，最小间隔内不再切换
+			setReadOnly(configs.get("limit0"), false);
+			setReadOnly(configs.get("limit1"), true);
+			monitor.checkMaster();
+			Assert.assertEquals("limit1", ds.getCurrentDataSourceMBean().getId());
+			Assert.assertEquals(1, filter.count.get());
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void testProbeTimeout() throws Exception {
+		Map<String, DataSourceConfig> configs = createConfigs("timeout");
+		setReadOnly(configs.get("timeout1"), false);
+
+		// 第一个库检测时一直阻塞
+		Connection conn = DriverManager.getConnection(configs.get("timeout0").getJdbcUrl(), "sa", "");
+		Statement stmt = conn.createStatement();
+		stmt.execute("CREATE ALIAS IF NOT EXISTS SLOW_READ_ONLY FOR \""
+				+ FailOverDataSourceMonitorTest.class.getName() + ".slowReadOnly\"");
+		stmt.close();
+		conn.close();
+		configs.get("timeout0").setTestReadOnlySql("select SLOW_READ_ONLY()");
+
+		FailOverDataSource ds = createDataSource(configs, new SwitchCountFilter());
+		ds.setCheckMasterInterval(0);
+		ds.setCheckMasterTimeout(200);
+
+		long start = System.currentTimeMillis();
+		ds.init();
+
+		try {
+			Assert.assertTrue(System.currentTimeMillis() - start < WAIT_MILLIS);
+			Assert.assertEquals("timeout1", ds.getCurrentDataSourceMBean().getId());
+		} finally {
+			ds.close();
+		}
+	}
+
+	private FailOverDataSource createDataSource(Map<String, DataSourceConfig> configs, JdbcFilter filter) {
+		List<JdbcFilter> filters = new ArrayList<JdbcFilter>();
+		filters.add(filter);
+
+		return new FailOverDataSource(configs, filters);
+	}
+
+	private void waitForMaster(FailOverDataSource ds, String dsId) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+		while (!dsId.equals(ds.getCurrentDataSourceMBean().getId()) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		Assert.assertEquals(dsId, ds.getCurrentDataSourceMBean().getId());
+	}
+
+	private Map<String, DataSourceConfig> createConfigs(String prefix) throws Exception {
+		Class.forName("org.h2.Driver");
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+
+		for (int i = 0; i < 2; i++) {
+			DataSourceConfig config = new DataSourceConfig();
+			config.setId(prefix + i);
+			config.setJdbcUrl("jdbc:h2:mem:" + prefix + i + ";DB_CLOSE_DELAY=-1");
+			config.setDriverClass("org.h2.Driver");
+			config.setUsername("sa");
+			config.setPassword("");
+			config.setTestReadOnlySql("select v from read_only_flag");
+			configs.put(config.getId(), config);
+
+			Connection conn = DriverManager.getConnection(config.getJdbcUrl(), "sa", "");
+			Statement stmt = conn.createStatement();
+			stmt.execute("CREATE TABLE IF NOT EXISTS read_only_flag (v int)");
+			stmt.execute("DELETE FROM read_only_flag");
+			stmt.execute("INSERT INTO read_only_flag VALUES (1)");
+			stmt.close();
+			conn.close();
+		}
+
+		return configs;
+	}
+
+	private void setReadOnly(DataSourceConfig config, boolean readOnly) throws Exception {
+		Connection conn = DriverManager.getConnection(config.getJdbcUrl(), "sa", "");
+		Statement stmt = conn.createStatement();
+		stmt.executeUpdate("UPDATE read_only_flag SET v = " + (readOnly ? 1 : 0));
+		stmt.close();
+		conn.close();
+	}
+
+	static class SwitchCountFilter extends DefaultJdbcFilter {
+		AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public void switchFailOverDataSource(FailOverDataSource source, JdbcFilter chain) {
+			count.incrementAndGet();
+			chain.switchFailOverDataSource(source, chain);
+		}
+	}
+}
@@ -70,13 +70,20 @@ public class FailoverDataSourceTest {
 		FailOverDataSource ds = new FailOverDataSource(configs, null);
 		FailOverDataSource.MasterDataSourceMonitor monitor = spy(new FailOverDataSource.MasterDataSourceMonitor(ds));
 
+		SQLException error = new SQLException();
 		Connection errorCoon = mock(Connection.class);
-		when(errorCoon.createStatement()).thenThrow(new SQLException());
+		when(errorCoon.createStatement()).thenThrow(error);
 
 		doReturn(errorCoon).when(monitor).getConnection(any(DataSourceConfig.class));
-		Assert.assertEquals(monitor.isMasterDataSource(configs.get("db1")),
-				FailOverDataSource.CheckMasterDataSourceResult.ERROR);
+		FailOverDataSource.CheckMasterDataSourceResult checkResult = monitor.isMasterDataSource(configs.get("db1"));
+		Assert.assertEquals(FailOverDataSource.CheckMasterDataSourceResult.State.ERROR, checkResult.getState());
+		Assert.assertSame(error, checkResult.getException());
 		verify(errorCoon, atLeastOnce()).createStatement();
+
+		// 每次检测的结果相互独立，后一次出错不会覆盖前一次的异常
+		doReturn(coon).when(monitor).getConnection(any(DataSourceConfig.class));
+		Assert.assertNull(monitor.isMasterDataSource(configs.get("db1")).getException());
+		Assert.assertSame(error, checkResult.getException());
 	}
 
 	@Test
@@ -85,8 +92,8 @@ public class FailoverDataSourceTest {
 		FailOverDataSource.MasterDataSourceMonitor monitor = spy(new FailOverDataSource.MasterDataSourceMonitor(ds));
 
 		doReturn(coon).when(monitor).getConnection(any(DataSourceConfig.class));
-		Assert.assertEquals(monitor.isMasterDataSource(configs.get("db1")),
-				FailOverDataSource.CheckMasterDataSourceResult.READ_WRITE);
+		Assert.assertEquals(monitor.isMasterDataSource(configs.get("db1")).getState(),
+				FailOverDataSource.CheckMasterDataSourceResult.State.READ_WRITE);
 		verify(coon, atLeastOnce()).createStatement();
 	}
 
@@ -96,8 +103,8 @@ public class FailoverDataSourceTest {
 		FailOverDataSource.MasterDataSourceMonitor monitor = spy(new FailOverDataSource.MasterDataSourceMonitor(ds));
 
 		doReturn(readOnlyCoon).when(monitor).getConnection(any(DataSourceConfig.class));
-		Assert.assertEquals(monitor.isMasterDataSource(configs.get("db1")),
-				FailOverDataSource.CheckMasterDataSourceResult.READ_ONLY);
+		Assert.assertEquals(monitor.isMasterDataSource(configs.get("db1")).getState(),
+				FailOverDataSource.CheckMasterDataSourceResult.State.READ_ONLY);
 		verify(readOnlyCoon, atLeastOnce()).createStatement();
 	}
 
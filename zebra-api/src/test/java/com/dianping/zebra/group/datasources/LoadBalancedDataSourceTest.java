@@ -1,12 +1,24 @@
 package com.dianping.zebra.group.datasources;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.junit.Test;
 
+import com.dianping.zebra.group.config.DataSourceConfigDiff;
 import com.dianping.zebra.group.config.DataSourceConfigManager;
 import com.dianping.zebra.group.config.DataSourceConfigManagerFactory;
 import com.dianping.zebra.group.config.SystemConfigManager;
 import com.dianping.zebra.group.config.SystemConfigManagerFactory;
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
 import com.dianping.zebra.group.exception.SlaveDsDisConnectedException;
+import com.dianping.zebra.single.jdbc.SingleConnection;
+import com.dianping.zebra.single.jdbc.SingleDataSource;
+
+import junit.framework.Assert;
 
 public class LoadBalancedDataSourceTest {
 	
@@ -21,4 +33,177 @@ public class LoadBalancedDataSourceTest {
 
 		ds.init();
 	}
+
+	@Test
+	public void test_refresh_weight_keeps_data_sources() throws Exception {
+		LoadBalancedDataSource ds = createDataSource(createConfigs("weight0", "weight1"));
+
+		try {
+			Map<String, SingleDataSource> before = ds.getDataSources();
+			Connection conn = ds.getConnection();
+
+			Map<String, DataSourceConfig> newConfigs = createConfigs("weight0", "weight1");
+			newConfigs.get("weight0").setWeight(0);
+			ds.refresh(newConfigs);
+
+			Assert.assertSame(before.get("weight0"), ds.getDataSources().get("weight0"));
+			Assert.assertSame(before.get("weight1"), ds.getDataSources().get("weight1"));
+			assertConnectionAlive(conn);
+			conn.close();
+
+			for (int i = 0; i < 20; i++) {
+				Assert.assertEquals("weight1", getDataSourceId(ds));
+			}
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void test_refresh_add_and_remove_slave() throws Exception {
+		LoadBalancedDataSource ds = createDataSource(createConfigs("slave0", "slave1"));
+
+		try {
+			Map<String, SingleDataSource> before = ds.getDataSources();
+			Connection conn = getConnection(ds, "slave0");
+
+			ds.refresh(createConfigs("slave0", "slave2"));
+
+			Map<String, SingleDataSource> after = ds.getDataSources();
+			Assert.assertEquals(2, after.size());
+			Assert.assertSame(before.get("slave0"), after.get("slave0"));
+			Assert.assertNotNull(after.get("slave2"));
+			Assert.assertFalse(after.containsKey("slave1"));
+			assertConnectionAlive(conn);
+			conn.close();
+
+			for (int i = 0; i < 20; i++) {
+				Assert.assertFalse("slave1".equals(getDataSourceId(ds)));
+			}
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void test_refresh_changed_slave() throws Exception {
+		LoadBalancedDataSource ds = createDataSource(createConfigs("changed0", "changed1"));
+
+		try {
+			Map<String, SingleDataSource> before = ds.getDataSources();
+
+			Map<String, DataSourceConfig> newConfigs = createConfigs("changed0", "changed1");
+			newConfigs.get("changed1").setJdbcUrl("jdbc:h2:mem:changed1_new;DB_CLOSE_DELAY=-1");
+			ds.refresh(newConfigs);
+
+			Assert.assertSame(before.get("changed0"), ds.getDataSources().get("changed0"));
+			Assert.assertNotSame(before.get("changed1"), ds.getDataSources().get("changed1"));
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void test_refresh_fail_when_new_slave_unreachable() throws Exception {
+		LoadBalancedDataSource ds = createDataSource(createConfigs("fail0"));
+
+		try {
+			Map<String, SingleDataSource> before = ds.getDataSources();
+
+			Map<String, DataSourceConfig> newConfigs = createConfigs("fail0");
+			DataSourceConfig config = createConfig("fail1");
+			config.setJdbcUrl("jdbc:h2:tcp://127.0.0.1:1/not_exist");
+			newConfigs.put(config.getId(), config);
+
+			try {
+				ds.refresh(newConfigs);
+				Assert.fail();
+			} catch (SlaveDsDisConnectedException expected) {
+			}
+
+			Assert.assertEquals(before, ds.getDataSources());
+			Assert.assertEquals("fail0", getDataSourceId(ds));
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void test_config_diff() {
+		Map<String, DataSourceConfig> oldConfigs = createConfigs("diff0", "diff1", "diff2", "diff3");
+		Map<String, DataSourceConfig> newConfigs = createConfigs("diff0", "diff1", "diff2", "diff4");
+		newConfigs.get("diff1").setWeight(5);
+		newConfigs.get("diff2").setPassword("changed");
+
+		DataSourceConfigDiff diff = new DataSourceConfigDiff(oldConfigs, newConfigs);
+		Assert.assertEquals("[diff4]", diff.getAdded().toString());
+		Assert.assertEquals("[diff3]", diff.getRemoved().toString());
+		Assert.assertEquals("[diff2]", diff.getChanged().toString());
+		Assert.assertEquals("[diff1]", diff.getRouteChanged().toString());
+		Assert.assertTrue(diff.isPoolChanged());
+
+		Assert.assertTrue(new DataSourceConfigDiff(oldConfigs, createConfigs("diff0", "diff1", "diff2", "diff3"))
+				.isEmpty());
+	}
+
+	private LoadBalancedDataSource createDataSource(Map<String, DataSourceConfig> configs) {
+		LoadBalancedDataSource ds = new LoadBalancedDataSource(configs, null, SystemConfigManagerFactory.getConfigManger(
+				"local").getSystemConfig());
+		ds.init();
+
+		return ds;
+	}
+
+	private void assertConnectionAlive(Connection conn) throws SQLException {
+		Assert.assertFalse(conn.isClosed());
+
+		ResultSet rs = conn.createStatement().executeQuery("select 1");
+		Assert.assertTrue(rs.next());
+		rs.close();
+	}
+
+	private Connection getConnection(LoadBalancedDataSource ds, String dsId) throws SQLException {
+		for (int i = 0; i < 100; i++) {
+			Connection conn = ds.getConnection();
+			if (dsId.equals(((SingleConnection) conn).getDataSourceId())) {
+				return conn;
+			}
+			conn.close();
+		}
+
+		throw new SQLException("cannot get connection of " + dsId);
+	}
+
+	private String getDataSourceId(LoadBalancedDataSource ds) throws SQLException {
+		Connection conn = ds.getConnection();
+
+		try {
+			return ((SingleConnection) conn).getDataSourceId();
+		} finally {
+			conn.close();
+		}
+	}
+
+	private Map<String, DataSourceConfig> createConfigs(String... ids) {
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+
+		for (String id : ids) {
+			configs.put(id, createConfig(id));
+		}
+
+		return configs;
+	}
+
+	private DataSourceConfig createConfig(String id) {
+		DataSourceConfig config = new DataSourceConfig();
+		config.setId(id);
+		config.setJdbcUrl("jdbc:h2:mem:" + id + ";DB_CLOSE_DELAY=-1");
+		config.setDriverClass("org.h2.Driver");
+		config.setUsername("sa");
+		config.setPassword("");
+		config.setCanRead(true);
+		config.setActive(true);
+
+		return config;
+	}
 }
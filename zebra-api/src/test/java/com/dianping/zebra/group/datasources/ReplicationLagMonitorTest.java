@@ -0,0 +1,168 @@
+package com.dianping.zebra.group.datasources;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.dianping.zebra.group.config.SystemConfigManagerFactory;
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+import com.dianping.zebra.single.jdbc.SingleConnection;
+
+import junit.framework.Assert;
+
+/**
+ * 用H2的心跳表模拟从库延迟
+ */
+public class ReplicationLagMonitorTest {
+
+	private static final long MAX_LAG = 5000;
+
+	@Test
+	public void testExcludeAndRecover() throws Exception {
+		Map<String, DataSourceConfig> configs = createConfigs("lag");
+		ReplicationLagMonitor monitor = new ReplicationLagMonitor(configs, new HeartbeatReplicationLagProbe(), MAX_LAG,
+				MAX_LAG / 2, 0);
+
+		setLag(configs.get("lag0"), 10000);
+		setLag(configs.get("lag1"), 0);
+		monitor.checkLag();
+		Assert.assertTrue(monitor.getLaggingDataSources().contains("lag0"));
+		Assert.assertFalse(monitor.getLaggingDataSources().contains("lag1"));
+		Assert.assertTrue(monitor.getReplicationLags().get("lag0") >= 10000);
+
+		// 延迟在恢复阈值和最大延迟之间时保持原来的状态
+		setLag(configs.get("lag0"), 4000);
+		setLag(configs.get("lag1"), 4000);
+		monitor.checkLag();
+		Assert.assertTrue(monitor.getLaggingDataSources().contains("lag0"));
+		Assert.assertFalse(monitor.getLaggingDataSources().contains("lag1"));
+
+		setLag(configs.get("lag0"), 0);
+		monitor.checkLag();
+		Assert.assertTrue(monitor.getLaggingDataSources().isEmpty());
+	}
+
+	@Test
+	public void testProbeFailureKeepsState() throws Exception {
+		Map<String, DataSourceConfig> configs = createConfigs("nolag");
+		ReplicationLagMonitor monitor = new ReplicationLagMonitor(configs, new HeartbeatReplicationLagProbe(
+				"select max(ts) from not_exist_heartbeat"), MAX_LAG, MAX_LAG / 2, 0);
+
+		monitor.checkLag();
+		Assert.assertTrue(monitor.getLaggingDataSources().isEmpty());
+		Assert.assertEquals(ReplicationLagMonitor.UNKNOWN_LAG, monitor.getReplicationLags().get("nolag0").longValue());
+	}
+
+	@Test
+	public void testProbeTimeout() throws Exception {
+		Map<String, DataSourceConfig> configs = createConfigs("slow");
+		setLag(configs.get("slow1"), 0);
+
+		// slow0上的检测一直阻塞
+		ReplicationLagMonitor monitor = new ReplicationLagMonitor(configs, new HeartbeatReplicationLagProbe() {
+			@Override
+			public long getReplicationLag(Connection conn) throws SQLException {
+				if (conn.getMetaData().getURL().contains("slow0")) {
+					try {
+						Thread.sleep(5000);
+					} catch (InterruptedException e) {
+						throw new SQLException("interrupted");
+					}
+				}
+				return super.getReplicationLag(conn);
+			}
+		}, MAX_LAG, MAX_LAG / 2, 0);
+		monitor.setProbeTimeout(300);
+
+		long start = System.currentTimeMillis();
+		monitor.checkLag();
+
+		Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+		Assert.assertEquals(ReplicationLagMonitor.UNKNOWN_LAG, monitor.getReplicationLags().get("slow0").longValue());
+		Assert.assertTrue(monitor.getReplicationLags().get("slow1") >= 0);
+	}
+
+	@Test
+	public void testLoadBalancedDataSource() throws Exception {
+		Map<String, DataSourceConfig> configs = createConfigs("lb");
+		setLag(configs.get("lb0"), 10000);
+		setLag(configs.get("lb1"), 0);
+
+		LoadBalancedDataSource dataSource = new LoadBalancedDataSource(configs, null, SystemConfigManagerFactory
+				.getConfigManger("local").getSystemConfig());
+		dataSource.setMaxReplicationLag(MAX_LAG);
+		dataSource.setReplicationLagCheckInterval(0);
+		dataSource.init();
+
+		try {
+			dataSource.getReplicationLagMonitor().checkLag();
+			for (int i = 0; i < 100; i++) {
+				Assert.assertEquals("lb1", getDataSourceId(dataSource));
+			}
+
+			// 所有从库延迟都过大时不摘除
+			setLag(configs.get("lb1"), 10000);
+			dataSource.getReplicationLagMonitor().checkLag();
+			Assert.assertEquals(2, dataSource.getReplicationLagMonitor().getLaggingDataSources().size());
+			for (int i = 0; i < 100; i++) {
+				Assert.assertNotNull(getDataSourceId(dataSource));
+			}
+		} finally {
+			dataSource.close();
+		}
+	}
+
+	private String getDataSourceId(LoadBalancedDataSource dataSource) throws SQLException {
+		Connection conn = dataSource.getConnection();
+
+		try {
+			return ((SingleConnection) conn).getDataSourceId();
+		} finally {
+			conn.close();
+		}
+	}
+
+	private Map<String, DataSourceConfig> createConfigs(String prefix) throws Exception {
+		Class.forName("org.h2.Driver");
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+
+		for (int i = 0; i < 2; i++) {
+			DataSourceConfig config = new DataSourceConfig();
+			config.setId(prefix + i);
+			config.setJdbcUrl("jdbc:h2:mem:" + prefix + i + ";DB_CLOSE_DELAY=-1");
+			config.setDriverClass("org.h2.Driver");
+			config.setUsername("sa");
+			config.setPassword("");
+			config.setCanRead(true);
+			config.setActive(true);
+			configs.put(config.getId(), config);
+
+			Connection conn = DriverManager.getConnection(config.getJdbcUrl(), "sa", "");
+			Statement stmt = conn.createStatement();
+			stmt.execute("CREATE TABLE IF NOT EXISTS heartbeat (ts timestamp)");
+			stmt.execute("DELETE FROM heartbeat");
+			stmt.close();
+			conn.close();
+		}
+
+		return configs;
+	}
+
+	private void setLag(DataSourceConfig config, long lag) throws Exception {
+		Connection conn = DriverManager.getConnection(config.getJdbcUrl(), "sa", "");
+		conn.createStatement().execute("DELETE FROM heartbeat");
+
+		PreparedStatement stmt = conn.prepareStatement("INSERT INTO heartbeat VALUES (?)");
+		stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() - lag));
+		stmt.executeUpdate();
+		stmt.close();
+		conn.close();
+	}
+}
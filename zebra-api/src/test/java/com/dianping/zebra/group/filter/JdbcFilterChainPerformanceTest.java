@@ -0,0 +1,223 @@
+package com.dianping.zebra.group.filter;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.zebra.filter.DefaultJdbcFilter;
+import com.dianping.zebra.filter.DefaultJdbcFilterChain;
+import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.JdbcFilterChain;
+import com.dianping.zebra.filter.JdbcOperationCallback;
+import com.dianping.zebra.single.jdbc.SingleStatement;
+
+/**
+ * 比较每次调用都创建chain和预先编译的chain的分配字节数和耗时，executeSingleStatement使用同一个callback，只统计chain本身的分配
+ */
+public class JdbcFilterChainPerformanceTest {
+
+	private static final int ROUNDS = 1000000;
+
+	private static final String SQL = "select * from user where id = ?";
+
+	private static final JdbcOperationCallback<Integer> CALLBACK = new JdbcOperationCallback<Integer>() {
+		@Override
+		public Integer doAction(Connection conn) throws SQLException {
+			return 1;
+		}
+	};
+
+	private Connection conn;
+
+	@Before
+	public void setup() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:filter_chain_performance;DB_CLOSE_DELAY=-1", "sa", "");
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		conn.close();
+	}
+
+	@Test
+	public void test_allocation() throws SQLException {
+		for (int filterCount : new int[] { 0, 1, 3 }) {
+			List<JdbcFilter> filters = new ArrayList<JdbcFilter>();
+			for (int i = 0; i < filterCount; i++) {
+				filters.add(new DefaultJdbcFilter());
+			}
+
+			// 预热
+			runDefaultChain(filters);
+			runCompiledChain(filters);
+
+			measure("default chain, filters=" + filterCount, new DefaultChainTask(filters));
+			measure("compiled chain, filters=" + filterCount, new CompiledChainTask(filters));
+
+			final BenchmarkStatement stmt = new BenchmarkStatement(filters);
+			stmt.runDefaultChain();
+			stmt.runCompiledChain();
+
+			measure("default chain execute, filters=" + filterCount, new Task() {
+				@Override
+				public void run() throws SQLException {
+					stmt.runDefaultChain();
+				}
+			});
+			measure("compiled chain execute, filters=" + filterCount, new Task() {
+				@Override
+				public void run() throws SQLException {
+					stmt.runCompiledChain();
+				}
+			});
+			stmt.close();
+		}
+	}
+
+	private void measure(String name, Task task) throws SQLException {
+		long bytes = getAllocatedBytes();
+		long start = System.nanoTime();
+
+		task.run();
+
+		long time = System.nanoTime() - start;
+		bytes = getAllocatedBytes() - bytes;
+
+		System.out.println(String.format("%s: %.1f bytes/op, %.1f ns/op", name, (double) bytes / ROUNDS,
+				(double) time / ROUNDS));
+	}
+
+	private long getAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+				.currentThread().getId());
+	}
+
+	private int runDefaultChain(final List<JdbcFilter> filters) throws SQLException {
+		int length = 0;
+
+		for (int i = 0; i < ROUNDS; i++) {
+			if (filters.size() > 0) {
+				JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
+					@Override
+					public String processSQL(String dsId, String sql, boolean isPreparedStmt, JdbcFilter chain)
+							throws SQLException {
+						if (index < filters.size()) {
+							return filters.get(index++).processSQL(dsId, sql, isPreparedStmt, chain);
+						} else {
+							return sql;
+						}
+					}
+				};
+				length += chain.processSQL("ds", SQL, true, chain).length();
+			} else {
+				length += SQL.length();
+			}
+		}
+
+		return length;
+	}
+
+	private int runCompiledChain(List<JdbcFilter> filters) throws SQLException {
+		JdbcFilterChain chain = JdbcFilterChain.compile(filters);
+		int length = 0;
+
+		for (int i = 0; i < ROUNDS; i++) {
+			if (chain.isEmpty()) {
+				length += SQL.length();
+			} else {
+				length += chain.processSQL("ds", SQL, true, chain).length();
+			}
+		}
+
+		return length;
+	}
+
+	/**
+	 * 分别按原来每次创建DefaultJdbcFilterChain的方式和编译好的链执行executeSingleStatement
+	 */
+	private class BenchmarkStatement extends SingleStatement {
+
+		BenchmarkStatement(List<JdbcFilter> filters) throws SQLException {
+			super("ds", conn, conn.createStatement(), filters);
+		}
+
+		int runDefaultChain() throws SQLException {
+			int count = 0;
+
+			for (int i = 0; i < ROUNDS; i++) {
+				if (filters.size() > 0) {
+					JdbcFilter chain = new DefaultJdbcFilterChain(filters) {
+						@Override
+						@SuppressWarnings("unchecked")
+						public <T> T executeSingleStatement(SingleStatement source, Connection conn, String sql,
+								List<String> batchedSql, boolean isBatched, boolean autoCommit, Object params,
+								JdbcFilter chain) throws SQLException {
+							if (index < filters.size()) {
+								return filters.get(index++).executeSingleStatement(source, conn, sql, batchedSql,
+										isBatched, autoCommit, params, chain);
+							} else {
+								return (T) CALLBACK.doAction(conn);
+							}
+						}
+					};
+					count += chain.<Integer> executeSingleStatement(this, innerConnection, SQL, null, false,
+							innerConnection.getAutoCommit(), null, chain);
+				} else {
+					count += CALLBACK.doAction(innerConnection);
+				}
+			}
+
+			return count;
+		}
+
+		int runCompiledChain() throws SQLException {
+			int count = 0;
+
+			for (int i = 0; i < ROUNDS; i++) {
+				count += executeWithFilter(CALLBACK, SQL, null, false);
+			}
+
+			return count;
+		}
+	}
+
+	private interface Task {
+		void run() throws SQLException;
+	}
+
+	private class DefaultChainTask implements Task {
+
+		private final List<JdbcFilter> filters;
+
+		DefaultChainTask(List<JdbcFilter> filters) {
+			this.filters = filters;
+		}
+
+		@Override
+		public void run() throws SQLException {
+			runDefaultChain(filters);
+		}
+	}
+
+	private class CompiledChainTask implements Task {
+
+		private final List<JdbcFilter> filters;
+
+		CompiledChainTask(List<JdbcFilter> filters) {
+			this.filters = filters;
+		}
+
+		@Override
+		public void run() throws SQLException {
+			runCompiledChain(filters);
+		}
+	}
+}
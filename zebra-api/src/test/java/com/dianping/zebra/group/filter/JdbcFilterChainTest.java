@@ -0,0 +1,203 @@
+package com.dianping.zebra.group.filter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.zebra.filter.DefaultJdbcFilter;
+import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.JdbcFilterChain;
+import com.dianping.zebra.single.jdbc.SingleDataSource;
+import com.dianping.zebra.single.jdbc.SinglePreparedStatement;
+import com.dianping.zebra.single.jdbc.SingleStatement;
+
+import junit.framework.Assert;
+
+public class JdbcFilterChainTest {
+
+	private Connection conn;
+
+	private List<String> events = new ArrayList<String>();
+
+	@Before
+	public void setup() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:filter_chain;DB_CLOSE_DELAY=-1", "sa", "");
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		conn.close();
+	}
+
+	@Test
+	public void test_execute_with_order() throws SQLException {
+		List<JdbcFilter> filters = new ArrayList<JdbcFilter>();
+		filters.add(new RecordFilter("a"));
+		filters.add(new RecordFilter("b"));
+
+		SingleStatement stmt = new SingleStatement("ds", conn, conn.createStatement(), filters);
+		ResultSet rs = stmt.executeQuery("select 1");
+		Assert.assertTrue(rs.next());
+		Assert.assertEquals(1, rs.getInt(1));
+
+		Assert.assertEquals("[sql-a, sql-b, before-a, before-b, after-b, after-a]", events.toString());
+		stmt.close();
+	}
+
+	@Test
+	public void test_prepared_statement() throws SQLException {
+		List<JdbcFilter> filters = new ArrayList<JdbcFilter>();
+		filters.add(new RecordFilter("a"));
+
+		PreparedStatement pstmt = new SinglePreparedStatement("ds", conn, filters, conn.prepareStatement("select ?"),
+				"select ?");
+		pstmt.setInt(1, 2);
+		ResultSet rs = pstmt.executeQuery();
+		Assert.assertTrue(rs.next());
+		Assert.assertEquals(2, rs.getInt(1));
+
+		Assert.assertEquals("[before-a, after-a]", events.toString());
+		pstmt.close();
+	}
+
+	@Test
+	public void test_chain_is_reused() throws SQLException {
+		final List<JdbcFilter> chains = new ArrayList<JdbcFilter>();
+		List<JdbcFilter> filters = new ArrayList<JdbcFilter>();
+		filters.add(new DefaultJdbcFilter() {
+			@Override
+			public String processSQL(String dsId, String sql, boolean isPreparedStmt, JdbcFilter chain)
+					throws SQLException {
+				chains.add(chain);
+				return chain.processSQL(dsId, sql, isPreparedStmt, chain);
+			}
+		});
+
+		SingleStatement stmt = new SingleStatement("ds", conn, conn.createStatement(), filters);
+		stmt.executeQuery("select 1");
+		stmt.executeUpdate("set @a = 1");
+
+		Assert.assertEquals(2, chains.size());
+		Assert.assertSame(chains.get(0), chains.get(1));
+		stmt.close();
+	}
+
+	/**
+	 * 执行的操作作为参数传给链，filter里再执行一次同一个statement的其他操作不会互相影响
+	 */
+	@Test
+	public void test_nested_execution() throws SQLException {
+		final List<Integer> nested = new ArrayList<Integer>();
+		List<JdbcFilter> filters = new ArrayList<JdbcFilter>();
+		filters.add(new DefaultJdbcFilter() {
+			@Override
+			public <T> T executeSingleStatement(SingleStatement source, Connection conn, String sql,
+					List<String> batchedSql, boolean isBatched, boolean autoCommit, Object params, JdbcFilter chain)
+					throws SQLException {
+				if ("select 1".equals(sql)) {
+					nested.add(source.executeUpdate("set @a = 2"));
+				}
+				return chain.executeSingleStatement(source, conn, sql, batchedSql, isBatched, autoCommit, params, chain);
+			}
+		});
+
+		SingleStatement stmt = new SingleStatement("ds", conn, conn.createStatement(), filters);
+		ResultSet rs = stmt.executeQuery("select 1");
+		Assert.assertTrue(rs.next());
+		Assert.assertEquals(1, rs.getInt(1));
+		Assert.assertEquals(1, nested.size());
+		stmt.close();
+	}
+
+	@Test
+	public void test_empty_chain() throws SQLException {
+		Assert.assertTrue(JdbcFilterChain.compile(null).isEmpty());
+		Assert.assertTrue(JdbcFilterChain.compile(new ArrayList<JdbcFilter>()).isEmpty());
+
+		SingleStatement stmt = new SingleStatement("ds", conn, conn.createStatement(), null);
+		ResultSet rs = stmt.executeQuery("select 1");
+		Assert.assertTrue(rs.next());
+		stmt.close();
+	}
+
+	@Test
+	public void test_recompile_after_filters_changed() {
+		List<JdbcFilter> filters = new ArrayList<JdbcFilter>();
+		filters.add(new RecordFilter("a"));
+
+		JdbcFilterChain chain = JdbcFilterChain.compile(filters);
+		Assert.assertTrue(chain.isCompiledFrom(filters));
+		Assert.assertFalse(chain.isCompiledFrom(new ArrayList<JdbcFilter>(filters)));
+
+		filters.add(new RecordFilter("b"));
+		Assert.assertFalse(chain.isCompiledFrom(filters));
+	}
+
+	@Test
+	public void test_lifecycle_falls_through() throws SQLException {
+		List<JdbcFilter> filters = new ArrayList<JdbcFilter>();
+		filters.add(new RecordFilter("a"));
+		filters.add(new RecordFilter("b"));
+		filters.add(new DefaultJdbcFilter() {
+			@Override
+			public void closeSingleDataSource(SingleDataSource source, JdbcFilter chain) throws SQLException {
+				events.add("close-last");
+			}
+		});
+
+		JdbcFilterChain chain = JdbcFilterChain.compile(filters);
+		chain.init();
+		chain.closeSingleDataSource(null, chain);
+
+		Assert.assertEquals("[init-a, init-b, close-a, close-b, close-last]", events.toString());
+		Assert.assertEquals(JdbcFilter.DEFAULT_ORDER, chain.getOrder());
+	}
+
+	private class RecordFilter extends DefaultJdbcFilter {
+
+		private final String name;
+
+		RecordFilter(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void init() {
+			events.add("init-" + name);
+		}
+
+		@Override
+		public void closeSingleDataSource(SingleDataSource source, JdbcFilter chain) throws SQLException {
+			events.add("close-" + name);
+			chain.closeSingleDataSource(source, chain);
+		}
+
+		@Override
+		public String processSQL(String dsId, String sql, boolean isPreparedStmt, JdbcFilter chain)
+				throws SQLException {
+			events.add("sql-" + name);
+			return chain.processSQL(dsId, sql, isPreparedStmt, chain);
+		}
+
+		@Override
+		public <T> T executeSingleStatement(SingleStatement source, Connection conn, String sql,
+				List<String> batchedSql, boolean isBatched, boolean autoCommit, Object params, JdbcFilter chain)
+				throws SQLException {
+			events.add("before-" + name);
+			try {
+				return chain.executeSingleStatement(source, conn, sql, batchedSql, isBatched, autoCommit, params, chain);
+			} finally {
+				events.add("after-" + name);
+			}
+		}
+	}
+}
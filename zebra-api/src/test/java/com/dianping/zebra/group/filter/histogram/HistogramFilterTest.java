@@ -0,0 +1,199 @@
+package com.dianping.zebra.group.filter.histogram;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.dianping.zebra.Constants;
+import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.histogram.DataSourceLatency;
+import com.dianping.zebra.filter.histogram.HistogramFilter;
+import com.dianping.zebra.filter.histogram.LatencyHistogram;
+import com.dianping.zebra.filter.histogram.LatencySnapshot;
+import com.dianping.zebra.filter.histogram.SqlLatencyMXBean;
+import com.dianping.zebra.filter.histogram.SqlLatencyStats;
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+import com.dianping.zebra.group.config.datasource.entity.GroupDataSourceConfig;
+import com.dianping.zebra.group.jdbc.GroupDataSource;
+import com.dianping.zebra.group.util.DaoContextHolder;
+import com.dianping.zebra.single.jdbc.SingleDataSource;
+
+import junit.framework.Assert;
+
+public class HistogramFilterTest {
+
+	private static final long INTERVAL_MILLIS = 1000;
+
+	private static final long INTERVAL_NANOS = INTERVAL_MILLIS * 1000000;
+
+	@Test
+	public void test_percentiles() {
+		LatencyHistogram histogram = new LatencyHistogram(INTERVAL_MILLIS);
+		long now = System.nanoTime();
+
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L, now);
+		}
+
+		LatencySnapshot snapshot = histogram.getSnapshot(now);
+		Assert.assertEquals(1000, snapshot.getCount());
+		Assert.assertEquals(500.5, snapshot.getMean(), 500.5 / 16);
+		assertNear(500, snapshot.getP50());
+		assertNear(900, snapshot.getP90());
+		assertNear(990, snapshot.getP99());
+		assertNear(1000, snapshot.getMax());
+
+		// 分位数按桶的上界返回，不会低估
+		Assert.assertTrue(snapshot.getP99() >= 990);
+	}
+
+	@Test
+	public void test_rolling_window() {
+		LatencyHistogram histogram = new LatencyHistogram(INTERVAL_MILLIS);
+		long now = System.nanoTime();
+
+		histogram.record(1000, now);
+		Assert.assertEquals(1, histogram.getSnapshot(now).getCount());
+
+		// 下一个窗口仍然包含上一个窗口的数据
+		histogram.record(2000, now + INTERVAL_NANOS);
+		Assert.assertEquals(2, histogram.getSnapshot(now + INTERVAL_NANOS).getCount());
+
+		// 再往后旧数据过期，写入时复用的窗口会被清空
+		Assert.assertEquals(1, histogram.getSnapshot(now + 2 * INTERVAL_NANOS).getCount());
+		histogram.record(3000, now + 2 * INTERVAL_NANOS);
+		Assert.assertEquals(2, histogram.getSnapshot(now + 2 * INTERVAL_NANOS).getCount());
+		Assert.assertEquals(0, histogram.getSnapshot(now + 4 * INTERVAL_NANOS).getCount());
+	}
+
+	@Test
+	public void test_bounded_cardinality() {
+		DataSourceLatency latency = new DataSourceLatency("db", 2, INTERVAL_MILLIS);
+
+		Assert.assertSame(latency.getOrCreate("select * from a where id = 1"),
+				latency.getOrCreate("select * from a where id = 2"));
+		Assert.assertNotSame(latency.getOrCreate("select * from a where id = 1"),
+				latency.getOrCreate("select * from b where id = 1"));
+		Assert.assertEquals(2, latency.getSqlCount());
+
+		Assert.assertEquals(DataSourceLatency.OTHER_SQL, latency.getOrCreate("select * from c").getSql());
+		Assert.assertEquals(2, latency.getSqlCount());
+		Assert.assertEquals(3, latency.getSqlLatencies().size());
+	}
+
+	@Test
+	public void test_filter_and_mbean() throws Exception {
+		HistogramFilter filter = new HistogramFilter();
+		SingleDataSource ds = new SingleDataSource(createConfig("histogram"),
+				new ArrayList<JdbcFilter>(Arrays.<JdbcFilter> asList(filter)));
+
+		try {
+			for (int i = 0; i < 10; i++) {
+				Assert.assertEquals(3, query(ds, "select x from system_range(1, 3) where x > ?"));
+			}
+
+			DaoContextHolder.setSqlName("User.findAll");
+			try {
+				query(ds, "select x from system_range(1, 5) where x > ?");
+			} finally {
+				DaoContextHolder.clearSqlName();
+			}
+
+			SqlLatencyMXBean mbean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), new ObjectName(
+					"com.dianping.zebra:type=SqlLatency,name=\"histogram\""), SqlLatencyMXBean.class);
+
+			Assert.assertEquals("histogram", mbean.getDataSourceId());
+			Assert.assertEquals(2, mbean.getSqlCount());
+
+			SqlLatencyStats stats = mbean.getSqlLatency("select x from system_range(1, 3) where x > ?");
+			Assert.assertEquals("select x from system_range(?) where x > ?", stats.getSql());
+			Assert.assertEquals(10, stats.getExecute().getCount());
+			Assert.assertEquals(10, stats.getFetch().getCount());
+
+			stats = mbean.getSqlLatency("User.findAll");
+			Assert.assertEquals(1, stats.getExecute().getCount());
+			Assert.assertEquals(1, stats.getFetch().getCount());
+
+			Assert.assertNull(mbean.getSqlLatency("select 1"));
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void test_unregister_mbean_on_group_close() throws Exception {
+		HistogramFilter filter = new HistogramFilter();
+		filter.getDataSourceLatency("histogram-close");
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("com.dianping.zebra:type=SqlLatency,name=\"histogram-close\"");
+		Assert.assertTrue(server.isRegistered(name));
+
+		GroupDataSourceConfig groupConfig = new GroupDataSourceConfig();
+		groupConfig.addDataSourceConfig(createConfig("histogram-close"));
+		GroupDataSource source = mock(GroupDataSource.class);
+		JdbcFilter chain = mock(JdbcFilter.class);
+		when(source.getConfig()).thenReturn(groupConfig);
+
+		// 刷新时关闭旧的datasource，仍然保留
+		filter.closeGroupDataSource(source, chain);
+		Assert.assertTrue(server.isRegistered(name));
+
+		when(source.isClosed()).thenReturn(true);
+		filter.closeGroupDataSource(source, chain);
+		Assert.assertFalse(server.isRegistered(name));
+		verify(chain, times(2)).closeGroupDataSource(source, chain);
+	}
+
+	private int query(SingleDataSource ds, String sql) throws SQLException {
+		Connection conn = ds.getConnection();
+
+		try {
+			PreparedStatement stmt = conn.prepareStatement(sql);
+			stmt.setInt(1, 0);
+
+			ResultSet rs = stmt.executeQuery();
+			int rows = 0;
+			while (rs.next()) {
+				rows++;
+			}
+			rs.close();
+			stmt.close();
+
+			return rows;
+		} finally {
+			conn.close();
+		}
+	}
+
+	private void assertNear(long expected, long actual) {
+		Assert.assertTrue(expected + " vs " + actual, Math.abs(actual - expected) <= expected / 16 + 1);
+	}
+
+	private DataSourceConfig createConfig(String id) {
+		DataSourceConfig config = new DataSourceConfig();
+		config.setId(id);
+		config.setType(Constants.CONNECTION_POOL_TYPE_C3P0);
+		config.setJdbcUrl("jdbc:h2:mem:" + id + ";DB_CLOSE_DELAY=-1");
+		config.setDriverClass("org.h2.Driver");
+		config.setUsername("sa");
+		config.setPassword("");
+
+		return config;
+	}
+}
@@ -0,0 +1,71 @@
+package com.dianping.zebra.group.filter.histogram;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.dianping.zebra.filter.histogram.LatencyHistogram;
+
+/**
+ * 多个线程同时写同一个直方图时每次记录的耗时
+ */
+public class LatencyHistogramPerformanceTest {
+
+	private static final int ROUNDS = 10000000;
+
+	@Test
+	public void test_record_under_contention() throws Exception {
+		int processors = Runtime.getRuntime().availableProcessors();
+
+		// 预热
+		run(1);
+
+		for (int threads = 1; threads <= Math.max(8, processors); threads *= 2) {
+			long time = run(threads);
+
+			System.out.println(String.format("threads=%d: %.1f ns/op", threads, (double) time / ROUNDS));
+		}
+	}
+
+	private long run(int threads) throws InterruptedException {
+		final LatencyHistogram histogram = new LatencyHistogram(30000);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch end = new CountDownLatch(threads);
+		final long[] times = new long[threads];
+
+		for (int i = 0; i < threads; i++) {
+			final int index = i;
+
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+
+					long now = System.nanoTime();
+					long begin = System.nanoTime();
+					for (int j = 0; j < ROUNDS; j++) {
+						// 模拟几十微秒到几毫秒的耗时，分散到不同的桶
+						histogram.record(((j & 1023) + 1) * 5000L, now);
+					}
+					times[index] = System.nanoTime() - begin;
+
+					end.countDown();
+				}
+			}.start();
+		}
+
+		start.countDown();
+		end.await();
+
+		long max = 0;
+		for (long time : times) {
+			max = Math.max(max, time);
+		}
+
+		return max;
+	}
+}
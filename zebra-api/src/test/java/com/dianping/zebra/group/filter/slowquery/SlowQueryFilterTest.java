@@ -0,0 +1,195 @@
+package com.dianping.zebra.group.filter.slowquery;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.JMX;
+import javax.management.ObjectName;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.dianping.zebra.Constants;
+import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.filter.slowquery.SlowQueryFilter;
+import com.dianping.zebra.filter.slowquery.SlowQueryMXBean;
+import com.dianping.zebra.filter.slowquery.SlowQueryRecord;
+import com.dianping.zebra.filter.slowquery.SlowQuerySummary;
+import com.dianping.zebra.filter.slowquery.SqlFingerprint;
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+import com.dianping.zebra.single.jdbc.SingleDataSource;
+
+import junit.framework.Assert;
+
+/**
+ * 用H2中调用Thread.sleep的函数模拟慢SQL
+ */
+public class SlowQueryFilterTest {
+
+	private static final String URL = "jdbc:h2:mem:slowquery;DB_CLOSE_DELAY=-1";
+
+	public static int sleep(int millis) throws InterruptedException {
+		Thread.sleep(millis);
+		return millis;
+	}
+
+	@BeforeClass
+	public static void createSleepFunction() throws Exception {
+		Class.forName("org.h2.Driver");
+		Connection conn = DriverManager.getConnection(URL, "sa", "");
+		Statement stmt = conn.createStatement();
+
+		stmt.execute("DROP ALIAS IF EXISTS SLEEP_MS");
+		stmt.execute("CREATE ALIAS SLEEP_MS FOR \"" + SlowQueryFilterTest.class.getName() + ".sleep\"");
+
+		stmt.close();
+		conn.close();
+	}
+
+	@Test
+	public void test_fingerprint() {
+		Assert.assertEquals("SELECT * FROM t WHERE id IN (?+) AND name = ?",
+				SqlFingerprint.fingerprint("select * from t where id in (1, 2, 3) and name = 'a'"));
+		Assert.assertEquals(SqlFingerprint.fingerprint("select * from t where id in (1, 2, 3) and name = 'a'"),
+				SqlFingerprint.fingerprint("SELECT *\n FROM T WHERE ID IN (?) AND NAME = \"b\""));
+		Assert.assertEquals("INSERT INTO t (a, b) VALUES (?, ?)",
+				SqlFingerprint.fingerprint("insert into t (a, b) values (1, 'x'), (2, 'y'), (3, 'z')"));
+		Assert.assertEquals("SELECT ?", SqlFingerprint.fingerprint("/* comment */ select 1"));
+
+		Assert.assertEquals(8, SqlFingerprint.id("SELECT ?").length());
+		Assert.assertEquals(SqlFingerprint.id("SELECT ?"), SqlFingerprint.id(SqlFingerprint.fingerprint("select 2")));
+	}
+
+	@Test
+	public void test_slow_query() throws Exception {
+		SlowQueryFilter filter = createFilter(50);
+		SingleDataSource ds = createDataSource("slowquery1", filter);
+
+		try {
+			query(ds, "select SLEEP_MS(100) from dual where 1 = 1");
+			query(ds, "select SLEEP_MS(120) from dual where 2 = 2");
+			query(ds, "select SLEEP_MS(0) from dual");
+
+			List<SlowQuerySummary> summaries = filter.getSummaries();
+			Assert.assertEquals(1, summaries.size());
+
+			SlowQuerySummary summary = summaries.get(0);
+			Assert.assertEquals("slowquery1", summary.getDataSourceId());
+			Assert.assertEquals(2, summary.getCount());
+			Assert.assertTrue(summary.getMaxMillis() >= 120);
+			Assert.assertTrue(summary.getSumMillis() >= 220);
+			Assert.assertEquals("select SLEEP_MS(120) from dual where 2 = 2", summary.getLastSql());
+			Assert.assertTrue(System.currentTimeMillis() - summary.getLastSeen().getTime() < 10000);
+
+			List<SlowQueryRecord> records = filter.getRecentQueries();
+			Assert.assertEquals(2, records.size());
+			Assert.assertEquals("select SLEEP_MS(120) from dual where 2 = 2", records.get(0).getSql());
+			Assert.assertEquals(summary.getFingerprintId(), records.get(1).getFingerprintId());
+
+			SlowQueryMXBean mbean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), new ObjectName(
+					SlowQueryFilter.OBJECT_NAME), SlowQueryMXBean.class);
+			Assert.assertEquals(50, mbean.getThresholdMillis());
+			Assert.assertEquals(summary.getFingerprint(), mbean.getSummaries().get(0).getFingerprint());
+			Assert.assertEquals(2, mbean.getRecentQueries().size());
+
+			mbean.reset();
+			Assert.assertEquals(0, filter.getSummaries().size());
+			Assert.assertEquals(0, filter.getRecentQueries().size());
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void test_failed_query() throws Exception {
+		SlowQueryFilter filter = createFilter(0);
+		SingleDataSource ds = createDataSource("slowquery2", filter);
+
+		try {
+			query(ds, "select * from not_exist");
+			Assert.fail();
+		} catch (SQLException expected) {
+			Assert.assertEquals(1, filter.getRecentQueries().size());
+			Assert.assertFalse(filter.getRecentQueries().get(0).isSuccess());
+		} finally {
+			ds.close();
+		}
+	}
+
+	@Test
+	public void test_bounded() throws Exception {
+		SlowQueryFilter filter = createFilter(0);
+		filter.setBufferSize(2);
+		filter.setMaxFingerprints(1);
+		SingleDataSource ds = createDataSource("slowquery3", filter);
+
+		try {
+			query(ds, "select 1 from dual");
+			query(ds, "select 2 from dual");
+			query(ds, "select 3, 4 from dual");
+
+			List<SlowQueryRecord> records = filter.getRecentQueries();
+			Assert.assertEquals(2, records.size());
+			Assert.assertEquals("select 3, 4 from dual", records.get(0).getSql());
+			Assert.assertEquals("select 2 from dual", records.get(1).getSql());
+
+			List<SlowQuerySummary> summaries = filter.getSummaries();
+			Assert.assertEquals(2, summaries.size());
+			Assert.assertEquals(SlowQueryFilter.OTHER_FINGERPRINT, findSummary(summaries, 1).getFingerprintId());
+			Assert.assertEquals(SqlFingerprint.fingerprint("select 5 from dual"), findSummary(summaries, 2)
+					.getFingerprint());
+		} finally {
+			ds.close();
+		}
+	}
+
+	private SlowQuerySummary findSummary(List<SlowQuerySummary> summaries, long count) {
+		for (SlowQuerySummary summary : summaries) {
+			if (summary.getCount() == count) {
+				return summary;
+			}
+		}
+
+		return null;
+	}
+
+	private SlowQueryFilter createFilter(long thresholdMillis) {
+		SlowQueryFilter filter = new SlowQueryFilter();
+		filter.init();
+		filter.setThresholdMillis(thresholdMillis);
+
+		return filter;
+	}
+
+	private void query(SingleDataSource ds, String sql) throws SQLException {
+		Connection conn = ds.getConnection();
+
+		try {
+			Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery(sql);
+			rs.close();
+			stmt.close();
+		} finally {
+			conn.close();
+		}
+	}
+
+	private SingleDataSource createDataSource(String id, SlowQueryFilter filter) {
+		DataSourceConfig config = new DataSourceConfig();
+		config.setId(id);
+		config.setType(Constants.CONNECTION_POOL_TYPE_C3P0);
+		config.setJdbcUrl(URL);
+		config.setDriverClass("org.h2.Driver");
+		config.setUsername("sa");
+		config.setPassword("");
+
+		return new SingleDataSource(config, new ArrayList<JdbcFilter>(Arrays.<JdbcFilter> asList(filter)));
+	}
+}
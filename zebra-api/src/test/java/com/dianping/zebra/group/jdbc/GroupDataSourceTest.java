@@ -171,6 +171,41 @@ public class GroupDataSourceTest extends MultiDatabaseTestCase {
 			checkConfig(ds.getConfig().getDataSourceConfigs().get("db1").getProperties(), "initialPoolSize", "2"));
 	}
 
+	@Test
+	public void test_refresh_incrementally_rebuilds_only_write_data_source() throws Exception {
+		final String extra = ";LOCK_TIMEOUT=10000";
+		final boolean[] changed = new boolean[1];
+
+		GroupDataSource ds = new GroupDataSource(getResourceId()) {
+			@Override
+			protected GroupDataSourceConfig buildGroupConfig() {
+				GroupDataSourceConfig config = super.buildGroupConfig();
+				if (changed[0]) {
+					// db1只是写库
+					DataSourceConfig db1 = config.getDataSourceConfigs().get("db1");
+					db1.setJdbcUrl(db1.getJdbcUrl() + extra);
+				}
+				return config;
+			}
+		};
+		ds.setConfigManagerType(getConfigManagerType());
+		ds.init();
+
+		try {
+			Object read = ds.readDataSource;
+			Object write = ds.writeDataSource;
+
+			changed[0] = true;
+			ds.refreshOrigin();
+
+			Assert.assertSame(read, ds.readDataSource);
+			Assert.assertNotSame(write, ds.writeDataSource);
+			Assert.assertTrue(ds.getConfig().getDataSourceConfigs().get("db1").getJdbcUrl().endsWith(extra));
+		} finally {
+			ds.close();
+		}
+	}
+
 	private boolean checkConfig(List<Any> anys, String key, String value) {
 		for (Any any : anys) {
 			if (any.getName().equalsIgnoreCase(key)) {
@@ -0,0 +1,158 @@
+package com.dianping.zebra.group.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.zebra.group.router.RouterType;
+
+import junit.framework.Assert;
+
+/**
+ * 通过统计物理连接上prepareStatement的次数，验证路由不变时GroupPreparedStatement复用内部的PreparedStatement
+ */
+public class GroupPreparedStatementReuseTest {
+
+	private static final int LOOP = 100;
+
+	private CountingDataSource master;
+
+	private CountingDataSource slave;
+
+	@Before
+	public void init() throws SQLException {
+		master = new CountingDataSource("reuseMaster");
+		slave = new CountingDataSource("reuseSlave");
+	}
+
+	@Test
+	public void testQueryPreparedOnce() throws Exception {
+		GroupConnection conn = createConnection();
+		PreparedStatement pstmt = conn.prepareStatement("select count(*) from users where id > ?");
+
+		for (int i = 0; i < LOOP; i++) {
+			pstmt.setInt(1, i);
+			ResultSet rs = pstmt.executeQuery();
+			Assert.assertTrue(rs.next());
+		}
+		conn.close();
+
+		Assert.assertEquals(1, slave.prepareCount.get());
+		Assert.assertEquals(0, master.prepareCount.get());
+	}
+
+	@Test
+	public void testUpdateAndBatchPreparedOnce() throws Exception {
+		GroupConnection conn = createConnection();
+		PreparedStatement pstmt = conn.prepareStatement("insert into users values (?)");
+
+		for (int i = 0; i < LOOP; i++) {
+			pstmt.setInt(1, i);
+			Assert.assertEquals(1, pstmt.executeUpdate());
+		}
+
+		for (int i = 0; i < LOOP; i++) {
+			pstmt.setInt(1, i);
+			pstmt.addBatch();
+		}
+		Assert.assertEquals(LOOP, pstmt.executeBatch().length);
+		conn.close();
+
+		Assert.assertEquals(1, master.prepareCount.get());
+		Assert.assertEquals(0, slave.prepareCount.get());
+	}
+
+	@Test
+	public void testRePrepareOnRouteChange() throws Exception {
+		GroupConnection conn = createConnection();
+		PreparedStatement pstmt = conn.prepareStatement("select count(*) from users");
+
+		pstmt.executeQuery();
+		pstmt.executeQuery();
+		Assert.assertEquals(1, slave.prepareCount.get());
+
+		// 事务中的读走写库
+		conn.setAutoCommit(false);
+		pstmt.executeQuery();
+		pstmt.executeQuery();
+		Assert.assertEquals(1, master.prepareCount.get());
+		conn.commit();
+
+		conn.setAutoCommit(true);
+		pstmt.executeQuery();
+		Assert.assertEquals(2, slave.prepareCount.get());
+		conn.close();
+	}
+
+	@Test
+	public void testRePrepareAfterStatementExecute() throws Exception {
+		GroupConnection conn = createConnection();
+		PreparedStatement pstmt = conn.prepareStatement("select count(*) from users");
+
+		pstmt.executeQuery();
+		// 作为普通Statement执行其他SQL后，内部的PreparedStatement已经被关闭
+		pstmt.executeQuery("select 1");
+		pstmt.executeQuery();
+		conn.close();
+
+		Assert.assertEquals(2, slave.prepareCount.get());
+	}
+
+	private GroupConnection createConnection() {
+		return new GroupConnection(slave, master, null, RouterType.ROUND_ROBIN, null);
+	}
+
+	static class CountingDataSource extends JdbcDataSource {
+
+		private static final long serialVersionUID = 1L;
+
+		final AtomicInteger prepareCount = new AtomicInteger();
+
+		CountingDataSource(String name) throws SQLException {
+			setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+			setUser("sa");
+			setPassword("");
+
+			Connection conn = super.getConnection();
+			Statement stmt = conn.createStatement();
+			stmt.execute("DROP TABLE IF EXISTS users");
+			stmt.execute("CREATE TABLE users (id int)");
+			stmt.close();
+			conn.close();
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			final Connection conn = super.getConnection();
+
+			return (Connection) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new InvocationHandler() {
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							if ("prepareStatement".equals(method.getName())) {
+								prepareCount.incrementAndGet();
+							}
+
+							try {
+								return method.invoke(conn, args);
+							} catch (InvocationTargetException e) {
+								throw e.getTargetException();
+							}
+						}
+					});
+		}
+	}
+}
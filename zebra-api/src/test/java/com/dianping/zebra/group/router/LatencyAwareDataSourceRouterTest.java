@@ -0,0 +1,180 @@
+package com.dianping.zebra.group.router;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.dianping.zebra.filter.latency.LatencyFilter;
+import com.dianping.zebra.group.config.SystemConfigManagerFactory;
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+import com.dianping.zebra.group.datasources.LoadBalancedDataSource;
+import com.dianping.zebra.single.jdbc.SingleConnection;
+
+import junit.framework.Assert;
+
+/**
+ * 三个权重相同的H2从库，其中一个的查询被人为拖慢，按延迟选择时流量会从慢的从库上转移走
+ */
+public class LatencyAwareDataSourceRouterTest {
+
+	private static final long SLOW_MILLIS = 20;
+
+	private static final int WARMUP_ROUNDS = 50;
+
+	private static final int ROUNDS = 300;
+
+	public static int fast() {
+		return 1;
+	}
+
+	public static int slow() throws InterruptedException {
+		Thread.sleep(SLOW_MILLIS);
+		return 1;
+	}
+
+	@Test
+	public void testTrafficShiftsAwayFromSlowDataSource() throws Exception {
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+		for (int i = 0; i < 3; i++) {
+			String url = "jdbc:h2:mem:latency" + i + ";DB_CLOSE_DELAY=-1";
+			createDelayFunction(url, i == 0 ? "slow" : "fast");
+
+			DataSourceConfig config = createConfig("latency" + i, 1);
+			config.setJdbcUrl(url);
+			config.setDriverClass("org.h2.Driver");
+			config.setUsername("sa");
+			config.setPassword("");
+			configs.put(config.getId(), config);
+		}
+
+		LoadBalancedDataSource dataSource = new LoadBalancedDataSource(configs, null, SystemConfigManagerFactory
+				.getConfigManger("local").getSystemConfig(), RouterType.LATENCY_AWARE);
+		dataSource.init();
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			query(dataSource);
+		}
+
+		Map<String, Integer> counter = new HashMap<String, Integer>();
+		for (int i = 0; i < ROUNDS; i++) {
+			String dsId = query(dataSource);
+			Integer count = counter.get(dsId);
+			counter.put(dsId, count == null ? 1 : count + 1);
+		}
+
+		// 按静态权重每个从库各占1/3，按延迟选择时慢的从库只有两次都抽中自己才会被选中，约占1/9
+		Assert.assertTrue(counter.get("latency0") == null || counter.get("latency0") < ROUNDS / 5);
+		Assert.assertTrue(counter.get("latency1") > ROUNDS / 3);
+		Assert.assertTrue(counter.get("latency2") > ROUNDS / 3);
+		Assert.assertTrue(dataSource.getLatencyFilter().getLatencyNanos("latency0") > dataSource.getLatencyFilter()
+				.getLatencyNanos("latency1"));
+
+		dataSource.close();
+	}
+
+	@Test
+	public void testSameLatencyKeepsWeight() {
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+		configs.put("db0", createConfig("db0", 1));
+		configs.put("db1", createConfig("db1", 3));
+
+		LatencyAwareDataSourceRouter router = new LatencyAwareDataSourceRouter(configs, new LatencyFilter());
+
+		int samples = 100000;
+		int count = 0;
+		for (int i = 0; i < samples; i++) {
+			if ("db1".equals(router.select(new RouterContext()).getId())) {
+				count++;
+			}
+		}
+
+		double expected = samples * 0.75;
+		double sigma = Math.sqrt(samples * 0.75 * 0.25);
+		Assert.assertTrue(Math.abs(count - expected) < 5 * sigma);
+	}
+
+	@Test
+	public void testUnsampledDataSourceKeepsWeight() {
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+		configs.put("db0", createConfig("db0", 1));
+		configs.put("db1", createConfig("db1", 1));
+
+		// db1刚加入还没有样本
+		LatencyFilter latencyFilter = new LatencyFilter() {
+			@Override
+			public double getLatencyNanos(String dsId, double defaultNanos) {
+				return "db0".equals(dsId) ? 1000000 : defaultNanos;
+			}
+		};
+		LatencyAwareDataSourceRouter router = new LatencyAwareDataSourceRouter(configs, latencyFilter);
+
+		int samples = 100000;
+		int count = 0;
+		for (int i = 0; i < samples; i++) {
+			if ("db1".equals(router.select(new RouterContext()).getId())) {
+				count++;
+			}
+		}
+
+		// 没有样本时按权重各占一半，而不是抽中就被选择的3/4
+		double expected = samples * 0.5;
+		double sigma = Math.sqrt(samples * 0.5 * 0.5);
+		Assert.assertTrue(Math.abs(count - expected) < 5 * sigma);
+	}
+
+	@Test
+	public void testZeroWeight() {
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+		configs.put("db0", createConfig("db0", 0));
+
+		LatencyAwareDataSourceRouter router = new LatencyAwareDataSourceRouter(configs, new LatencyFilter());
+		Assert.assertEquals("db0", router.select(new RouterContext()).getId());
+
+		RouterContext context = new RouterContext();
+		context.addExcludeTarget("db0");
+		Assert.assertNull(router.select(context));
+	}
+
+	private String query(LoadBalancedDataSource dataSource) throws SQLException {
+		Connection conn = dataSource.getConnection();
+
+		try {
+			ResultSet rs = conn.createStatement().executeQuery("select QUERY_DELAY()");
+			Assert.assertTrue(rs.next());
+
+			return ((SingleConnection) conn).getDataSourceId();
+		} finally {
+			conn.close();
+		}
+	}
+
+	private void createDelayFunction(String url, String method) throws Exception {
+		Class.forName("org.h2.Driver");
+		Connection conn = DriverManager.getConnection(url, "sa", "");
+		Statement stmt = conn.createStatement();
+
+		stmt.execute("DROP ALIAS IF EXISTS QUERY_DELAY");
+		stmt.execute("CREATE ALIAS QUERY_DELAY FOR \"" + LatencyAwareDataSourceRouterTest.class.getName() + "."
+				+ method + "\"");
+
+		stmt.close();
+		conn.close();
+	}
+
+	private DataSourceConfig createConfig(String id, int weight) {
+		DataSourceConfig config = new DataSourceConfig();
+		config.setId(id);
+		config.setWeight(weight);
+		config.setCanRead(true);
+		config.setActive(true);
+
+		return config;
+	}
+}
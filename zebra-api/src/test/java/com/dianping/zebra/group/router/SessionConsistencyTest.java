@@ -0,0 +1,251 @@
+package com.dianping.zebra.group.router;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.zebra.group.jdbc.GroupConnection;
+
+import junit.framework.Assert;
+
+/**
+ * 从库是一个不同步主库数据的H2库，模拟延迟无限大的从库
+ */
+public class SessionConsistencyTest {
+
+	private static final long WINDOW = 200;
+
+	private JdbcDataSource master;
+
+	private JdbcDataSource slave;
+
+	@Before
+	public void init() throws SQLException {
+		master = createDataSource("rywMaster");
+		slave = createDataSource("rywSlave");
+	}
+
+	@After
+	public void clearContext() {
+		SessionConsistency.clearSessionKey();
+	}
+
+	@Test
+	public void testStaleReadWithoutConsistency() throws Exception {
+		insert(null, "users");
+
+		Assert.assertEquals(0, count(null, "users"));
+	}
+
+	@Test
+	public void testReadYourWrites() throws Exception {
+		SessionConsistency consistency = new SessionConsistency(WINDOW, false);
+
+		insert(consistency, "users");
+		Assert.assertEquals(1, count(consistency, "users"));
+
+		Thread.sleep(WINDOW + 50);
+		Assert.assertEquals(0, count(consistency, "users"));
+	}
+
+	@Test
+	public void testPerTable() throws Exception {
+		SessionConsistency consistency = new SessionConsistency(WINDOW, true);
+
+		insert(consistency, "users");
+		Assert.assertEquals(1, count(consistency, "users"));
+
+		// 没有写过的表仍然读从库
+		insertOnMaster("orders");
+		Assert.assertEquals(0, count(consistency, "orders"));
+	}
+
+	@Test
+	public void testOtherThreadReadsSlave() throws Exception {
+		final SessionConsistency consistency = new SessionConsistency(WINDOW, false);
+
+		insert(consistency, "users");
+		Assert.assertEquals(0, countInOtherThread(consistency, null));
+	}
+
+	@Test
+	public void testSessionKey() throws Exception {
+		SessionConsistency consistency = new SessionConsistency(WINDOW, false);
+
+		SessionConsistency.setSessionKey("u1");
+		insert(consistency, "users");
+		SessionConsistency.clearSessionKey();
+
+		Assert.assertEquals(0, count(consistency, "users"));
+		Assert.assertEquals(1, countInOtherThread(consistency, "u1"));
+		Assert.assertEquals(0, countInOtherThread(consistency, "u2"));
+	}
+
+	@Test
+	public void testSessionKeyNotInherited() throws Exception {
+		SessionConsistency consistency = new SessionConsistency(WINDOW, false);
+
+		SessionConsistency.setSessionKey("u1");
+		insert(consistency, "users");
+
+		// 子线程不继承key，按自己的线程区分
+		Assert.assertEquals(0, countInOtherThread(consistency, null));
+		Assert.assertEquals(1, countInOtherThread(consistency, "u1"));
+	}
+
+	@Test
+	public void testBatchPerTable() throws Exception {
+		SessionConsistency consistency = new SessionConsistency(WINDOW, true);
+
+		GroupConnection conn = createConnection(consistency);
+		Statement stmt = conn.createStatement();
+		stmt.addBatch("insert into users values (1)");
+		stmt.addBatch("insert into users values (2)");
+		stmt.executeBatch();
+		conn.close();
+
+		Assert.assertEquals(2, count(consistency, "users"));
+
+		// 批量中没有写过的表仍然读从库
+		insertOnMaster("orders");
+		Assert.assertEquals(0, count(consistency, "orders"));
+	}
+
+	@Test
+	public void testTransaction() throws Exception {
+		SessionConsistency consistency = new SessionConsistency(WINDOW, false);
+
+		GroupConnection conn = createConnection(consistency);
+		conn.setAutoCommit(false);
+		Statement stmt = conn.createStatement();
+		stmt.executeUpdate("insert into users values (1)");
+		conn.commit();
+		conn.close();
+
+		Assert.assertEquals(1, count(consistency, "users"));
+	}
+
+	/**
+	 * 事务中不同的写SQL太多时不再逐条记录，提交后整个会话走写库
+	 */
+	@Test
+	public void testTransactionWithManyWrites() throws Exception {
+		SessionConsistency consistency = new SessionConsistency(WINDOW, true);
+
+		GroupConnection conn = createConnection(consistency);
+		conn.setAutoCommit(false);
+		Statement stmt = conn.createStatement();
+		for (int i = 0; i < 20; i++) {
+			stmt.executeUpdate("insert into users values (" + i + ")");
+		}
+		conn.commit();
+		conn.close();
+
+		insertOnMaster("orders");
+		Assert.assertEquals(1, count(consistency, "orders"));
+	}
+
+	@Test
+	public void testBoundedKeySessions() {
+		SessionConsistency consistency = new SessionConsistency(WINDOW, false);
+
+		for (int i = 0; i < SessionConsistency.MAX_KEY_SESSIONS + 100; i++) {
+			consistency.recordWrite("u" + i, null);
+		}
+
+		Assert.assertEquals(SessionConsistency.MAX_KEY_SESSIONS, consistency.getKeySessionCount());
+		Assert.assertTrue(consistency.shouldReadFromMaster("u" + (SessionConsistency.MAX_KEY_SESSIONS + 99), null));
+	}
+
+	private int countInOtherThread(final SessionConsistency consistency, final String key) throws Exception {
+		final int[] result = new int[] { -1 };
+
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					if (key != null) {
+						SessionConsistency.setSessionKey(key);
+					}
+					result[0] = count(consistency, "users");
+				} catch (SQLException e) {
+					e.printStackTrace();
+				} finally {
+					SessionConsistency.clearSessionKey();
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+
+		return result[0];
+	}
+
+	private GroupConnection createConnection(SessionConsistency consistency) {
+		return new GroupConnection(slave, master, null, consistency, RouterType.ROUND_ROBIN, null);
+	}
+
+	private void insert(SessionConsistency consistency, String table) throws SQLException {
+		GroupConnection conn = createConnection(consistency);
+		try {
+			conn.createStatement().executeUpdate("insert into " + table + " values (1)");
+		} finally {
+			conn.close();
+		}
+	}
+
+	private int count(SessionConsistency consistency, String table) throws SQLException {
+		GroupConnection conn = createConnection(consistency);
+		try {
+			ResultSet rs = conn.createStatement().executeQuery("select count(*) from " + table);
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			conn.close();
+		}
+	}
+
+	private void insertOnMaster(String table) throws SQLException {
+		Connection conn = master.getConnection();
+		try {
+			conn.createStatement().executeUpdate("insert into " + table + " values (1)");
+		} finally {
+			conn.close();
+		}
+	}
+
+	private int countOnMaster(String table) throws SQLException {
+		Connection conn = master.getConnection();
+		try {
+			ResultSet rs = conn.createStatement().executeQuery("select count(*) from " + table);
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			conn.close();
+		}
+	}
+
+	private JdbcDataSource createDataSource(String name) throws SQLException {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		dataSource.setUser("sa");
+		dataSource.setPassword("");
+
+		Connection conn = dataSource.getConnection();
+		Statement stmt = conn.createStatement();
+		stmt.execute("DROP TABLE IF EXISTS users");
+		stmt.execute("DROP TABLE IF EXISTS orders");
+		stmt.execute("CREATE TABLE users (id int)");
+		stmt.execute("CREATE TABLE orders (id int)");
+		stmt.close();
+		conn.close();
+
+		return dataSource;
+	}
+}
@@ -0,0 +1,128 @@
+package com.dianping.zebra.group.router;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+
+/**
+ * 多线程下共享Random加TreeSet的选择方式和别名表加线程本地Random的选择吞吐对比
+ */
+public class WeightDataSourceRouterPerformanceTest {
+
+	private static final int LOOP = 500000;
+
+	@Test
+	public void test() throws Exception {
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+		for (int i = 0; i < 8; i++) {
+			DataSourceConfig config = new DataSourceConfig();
+			config.setId("db" + i);
+			config.setWeight(i + 1);
+			configs.put(config.getId(), config);
+		}
+
+		final TreeSetWeightRandom treeSetRandom = new TreeSetWeightRandom(configs);
+		final WeightDataSourceRouter router = new WeightDataSourceRouter(configs);
+
+		final Set<RouterTarget> excludeTargets = new HashSet<RouterTarget>();
+		excludeTargets.add(new RouterTarget("db7"));
+
+		for (int threads = 1; threads <= 32; threads *= 2) {
+			long treeSetTime = run(threads, new Selector() {
+				@Override
+				public RouterTarget select(int i) {
+					return treeSetRandom.select(i % 10 == 0 ? excludeTargets : null);
+				}
+			});
+
+			long aliasTime = run(threads, new Selector() {
+				@Override
+				public RouterTarget select(int i) {
+					return router.select(i % 10 == 0 ? new RouterContext(excludeTargets) : new RouterContext());
+				}
+			});
+
+			System.out.println(String.format("threads %2d: tree set %6d ops/ms, alias table %6d ops/ms", threads,
+					(long) threads * LOOP / Math.max(1, treeSetTime), (long) threads * LOOP / Math.max(1, aliasTime)));
+		}
+	}
+
+	private long run(int threads, final Selector selector) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch end = new CountDownLatch(threads);
+
+		for (int t = 0; t < threads; t++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < LOOP; i++) {
+							if (selector.select(i) == null) {
+								throw new IllegalStateException("no target");
+							}
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+					} finally {
+						end.countDown();
+					}
+				}
+			}).start();
+		}
+
+		long now = System.currentTimeMillis();
+		start.countDown();
+		end.await();
+
+		return System.currentTimeMillis() - now;
+	}
+
+	interface Selector {
+		RouterTarget select(int i);
+	}
+
+	/**
+	 * 原来的实现，所有线程共享一个Random，有排除的target时复制TreeSet
+	 */
+	static class TreeSetWeightRandom {
+
+		private int totalWeight = 0;
+
+		private TreeSet<RouterTarget> targets = new TreeSet<RouterTarget>();
+
+		private Random random = new Random();
+
+		public TreeSetWeightRandom(Map<String, DataSourceConfig> configs) {
+			for (DataSourceConfig config : configs.values()) {
+				totalWeight += config.getWeight();
+				targets.add(new RouterTarget(config.getId(), config.getWeight(), totalWeight - 1));
+			}
+		}
+
+		public RouterTarget select(Set<RouterTarget> excludeTargets) {
+			TreeSet<RouterTarget> weights = this.targets;
+			int weight = this.totalWeight;
+
+			if (excludeTargets != null && !excludeTargets.isEmpty()) {
+				TreeSet<RouterTarget> copyWeights = new TreeSet<RouterTarget>(weights);
+				for (RouterTarget target : excludeTargets) {
+					if (copyWeights.remove(target)) {
+						weight -= target.getWeight();
+					}
+				}
+				weights = copyWeights;
+			}
+
+			return weights.ceiling(new RouterTarget(null, -1, random.nextInt(weight)));
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.dianping.zebra.group.router;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+import com.dianping.zebra.group.router.WeightDataSourceRouter.AliasTable;
+
+import junit.framework.Assert;
+
+/**
+ * 别名表抽样的分布和配置的权重一致，偏差都在5倍标准差以内
+ */
+public class WeightDataSourceRouterTest {
+
+	private static final int SAMPLES = 1000000;
+
+	@Test
+	public void testDistribution() {
+		AliasTable table = new AliasTable(createConfigs(1, 2, 3, 4, 0, 7));
+
+		Map<String, Integer> counter = sample(table, new HashSet<RouterTarget>());
+
+		assertDistribution(counter, createConfigs(1, 2, 3, 4, 0, 7));
+	}
+
+	@Test
+	public void testDistributionWithExclude() {
+		AliasTable table = new AliasTable(createConfigs(1, 2, 3, 4, 0, 7));
+		Set<RouterTarget> excludeTargets = new HashSet<RouterTarget>();
+		excludeTargets.add(new RouterTarget("db3"));
+		excludeTargets.add(new RouterTarget("db5"));
+
+		Map<String, Integer> counter = sample(table, excludeTargets);
+
+		assertDistribution(counter, createConfigs(1, 2, 3));
+		Assert.assertNull(counter.get("db3"));
+		Assert.assertNull(counter.get("db5"));
+	}
+
+	@Test
+	public void testMostWeightExcluded() {
+		AliasTable table = new AliasTable(createConfigs(1, 2, 1000));
+		Set<RouterTarget> excludeTargets = new HashSet<RouterTarget>();
+		excludeTargets.add(new RouterTarget("db2"));
+
+		assertDistribution(sample(table, excludeTargets), createConfigs(1, 2));
+	}
+
+	@Test
+	public void testNoTarget() {
+		Set<RouterTarget> excludeTargets = new HashSet<RouterTarget>();
+		excludeTargets.add(new RouterTarget("db0"));
+
+		Assert.assertNull(new AliasTable(createConfigs(1)).select(excludeTargets, new Random()));
+		Assert.assertNull(new AliasTable(createConfigs(0)).select(null, new Random()));
+		Assert.assertNull(new AliasTable(createConfigs()).select(null, new Random()));
+	}
+
+	@Test
+	public void testRefresh() {
+		WeightDataSourceRouter router = new WeightDataSourceRouter(createConfigs(0, 1));
+		Assert.assertEquals("db1", router.select(new RouterContext()).getId());
+
+		router.refresh(createConfigs(1, 0));
+		Assert.assertEquals("db0", router.select(new RouterContext()).getId());
+	}
+
+	private Map<String, Integer> sample(AliasTable table, Set<RouterTarget> excludeTargets) {
+		Map<String, Integer> counter = new HashMap<String, Integer>();
+		Random random = new Random(1);
+
+		for (int i = 0; i < SAMPLES; i++) {
+			String id = table.select(excludeTargets, random).getId();
+			Integer count = counter.get(id);
+			counter.put(id, count == null ? 1 : count + 1);
+		}
+
+		return counter;
+	}
+
+	private void assertDistribution(Map<String, Integer> counter, Map<String, DataSourceConfig> expectedConfigs) {
+		int totalWeight = 0;
+		for (DataSourceConfig config : expectedConfigs.values()) {
+			totalWeight += config.getWeight();
+		}
+
+		for (DataSourceConfig config : expectedConfigs.values()) {
+			double p = (double) config.getWeight() / totalWeight;
+			double expected = SAMPLES * p;
+			double sigma = Math.sqrt(SAMPLES * p * (1 - p));
+			Integer actual = counter.get(config.getId());
+
+			if (config.getWeight() == 0) {
+				Assert.assertNull(actual);
+				continue;
+			}
+
+			Assert.assertNotNull(actual);
+			Assert.assertTrue(String.format("%s: expected %.0f, actual %d", config.getId(), expected, actual),
+					Math.abs(actual - expected) < 5 * sigma);
+		}
+	}
+
+	private Map<String, DataSourceConfig> createConfigs(int... weights) {
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+
+		for (int i = 0; i < weights.length; i++) {
+			DataSourceConfig config = new DataSourceConfig();
+			config.setId("db" + i);
+			config.setWeight(weights[i]);
+			configs.put(config.getId(), config);
+		}
+
+		return configs;
+	}
+}
@@ -0,0 +1,93 @@
+package com.dianping.zebra.group.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.dianping.zebra.util.SqlType;
+import com.dianping.zebra.util.SqlUtils;
+
+/**
+ * 原来基于正则的SQL类型判断、单次扫描、带缓存的单次扫描三种方式的耗时对比，先预热再分多轮测量
+ */
+public class SqlUtilsPerformanceTest {
+
+	private static final int WARMUP_ITERATIONS = 5;
+
+	private static final int MEASUREMENT_ITERATIONS = 5;
+
+	private static final int LOOP = 200000;
+
+	private final List<String> sqls = new ArrayList<String>();
+
+	// 防止JIT把没有使用的结果优化掉
+	private int blackhole;
+
+	@Test
+	public void test() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			sqls.add("SELECT ShopID, ShopName, CityID, Power, AddTime, UpdateTime FROM DP_Shop" + i
+					+ " WHERE ShopID = ? AND Status = 1");
+			sqls.add("select a.id, a.name, b.value from user" + i + " a join user_detail b on a.id = b.user_id "
+					+ "where a.id in (?, ?, ?) order by a.id desc limit ?, ?");
+			sqls.add("/*+zebra:w*/select id, version from account" + i + " where id = ?");
+			sqls.add("SELECT id FROM orders" + i + " WHERE user_id = ? FOR UPDATE");
+			sqls.add("INSERT INTO DP_ShopLog" + i + " (ShopID, Content, AddTime) VALUES (?, ?, NOW())");
+			sqls.add("UPDATE DP_Shop" + i + " SET Power = ?, UpdateTime = NOW() WHERE ShopID = ?");
+			sqls.add("  /* app:shop-web */ delete from shop_tag" + i + " where shop_id = ? and tag_id = ?");
+			sqls.add("SELECT LAST_INSERT_ID()");
+		}
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			runAll(false);
+		}
+		for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+			runAll(true);
+		}
+
+		System.out.println(blackhole);
+	}
+
+	private void runAll(boolean print) throws Exception {
+		long regex = run(new Classifier() {
+			@Override
+			public SqlType classify(String sql) throws Exception {
+				return SqlUtils.getSqlTypeByRegex(sql);
+			}
+		});
+
+		long scan = run(new Classifier() {
+			@Override
+			public SqlType classify(String sql) throws Exception {
+				return SqlUtils.parseSqlInfo(sql).getSqlType();
+			}
+		});
+
+		long cached = run(new Classifier() {
+			@Override
+			public SqlType classify(String sql) throws Exception {
+				return SqlUtils.getSqlInfo(sql).getSqlType();
+			}
+		});
+
+		if (print) {
+			System.out.println(String.format("regex %5d ns/op, scan %5d ns/op, cached %5d ns/op", regex, scan, cached));
+		}
+	}
+
+	private long run(Classifier classifier) throws Exception {
+		int size = sqls.size();
+		long start = System.nanoTime();
+
+		for (int i = 0; i < LOOP; i++) {
+			blackhole += classifier.classify(sqls.get(i % size)).ordinal();
+		}
+
+		return (System.nanoTime() - start) / LOOP;
+	}
+
+	interface Classifier {
+		SqlType classify(String sql) throws Exception;
+	}
+}
@@ -1,9 +1,13 @@
 package com.dianping.zebra.group.util;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
 
+import com.dianping.zebra.Constants;
 import com.dianping.zebra.util.SqlType;
 import com.dianping.zebra.util.SqlUtils;
+import com.dianping.zebra.util.SqlUtils.SqlInfo;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -137,4 +141,85 @@ public class SqlUtilsTest {
 		Assert.assertNull("isnull", type);;
 	}
 
+	@Test
+	public void testSqlInfo() throws SQLException {
+		SqlInfo sqlInfo = SqlUtils.getSqlInfo(" /* a */ /*+zebra:w*/ select * from xx");
+		Assert.assertEquals(SqlType.SELECT, sqlInfo.getSqlType());
+		Assert.assertTrue(sqlInfo.isForceWrite());
+
+		sqlInfo = SqlUtils.getSqlInfo("select * from xx where a = '/*+zebra:w*/'");
+		Assert.assertTrue(sqlInfo.isForceWrite());
+
+		sqlInfo = SqlUtils.getSqlInfo("select * from xx /*+zebra:r*/");
+		Assert.assertFalse(sqlInfo.isForceWrite());
+	}
+
+	@Test
+	public void testTables() {
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("user")),
+				SqlUtils.getSqlInfo("insert into `db`.`User` (id) values (?)").getTables());
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("a", "b")),
+				SqlUtils.getSqlInfo("/*+zebra:w*/select * from a join b on a.id = b.id").getTables());
+		Assert.assertTrue(SqlUtils.getSqlInfo("select 1").getTables().isEmpty());
+		Assert.assertNull(SqlUtils.getSqlInfo("select * from where").getTables());
+	}
+
+	@Test
+	public void testSqlInfoCache() throws SQLException {
+		String sql = "select * from xx where id = ?";
+
+		Assert.assertSame(SqlUtils.getSqlInfo(sql), SqlUtils.getSqlInfo(sql));
+		Assert.assertSame(SqlUtils.getSqlInfo(sql), SqlUtils.getSqlInfo(new String(sql)));
+		Assert.assertEquals(SqlType.SELECT, SqlUtils.getSqlType(new String(sql)));
+	}
+
+	/**
+	 * 新的扫描方式和原来基于正则的实现对各种组合的SQL结果一致
+	 */
+	@Test
+	public void testSqlTypeSameAsRegex() throws SQLException {
+		String[] prefixes = { "", " ", "\t\r\n ", "/* a */", " /*+zebra:w*/ ", "/* a */ /*b*/\n", "/**/", "/*/ a */",
+				"/* a\r\n b */ ", "/* a", "/*+zebra:w*/", "/* a /*+zebra:w*/ ", "/*+zebra:w*/*/", "\u3000", "\u0000",
+				"# a\n", "-- a\n", "// a\n", "(" };
+		String[] keywords = { "select", "SeLeCt", "selectx", "insert", "UPDATE", "delete", "show", "replace", "truncate",
+				"create", "drop", "load", "merge", "call", "{call", "with", "set", "", "sel", "\u017Fhow" };
+		String[] bodies = { "", " * from t", " * from t for update", " * FROM t\nFOR UPDATE ", " * from t for ",
+				" @@IDENTITY", " Last_Insert_Id()", " last_insert_id ()", " a from t where b = '/*+zebra:w*/'",
+				" a -- x\n for update", " a # x", " a /* c */ from t for update", " a/2 from t", " a-1 from t", " 'x-'",
+				" '\u0130' @@identity", " \u017F", " a from t\n for update", " for", " from t where a = \"#\"",
+				" /*+zebra:w*/ from t" };
+		String[] suffixes = { "", " ", "\n", " /* c */", "/", "-", "#" };
+
+		int count = 0;
+		for (String prefix : prefixes) {
+			for (String keyword : keywords) {
+				for (String body : bodies) {
+					for (String suffix : suffixes) {
+						String sql = prefix + keyword + body + suffix;
+						SqlInfo sqlInfo = SqlUtils.parseSqlInfo(sql);
+
+						Assert.assertEquals(sql, SqlUtils.getSqlTypeByRegex(sql), sqlInfo.getSqlType());
+						Assert.assertEquals(sql, sql.contains(Constants.SQL_FORCE_WRITE_HINT), sqlInfo.isForceWrite());
+						count++;
+					}
+				}
+			}
+		}
+
+		Assert.assertEquals(prefixes.length * keywords.length * bodies.length * suffixes.length, count);
+	}
+
+	@Test
+	public void testNormalizeSql() {
+		Assert.assertEquals("select * from t where id = ? and name=? and x in (?)",
+				SqlUtils.normalizeSql("select * from t where id = 1 and name='a''b' and x in (1, 2,3)", 256));
+		Assert.assertEquals("SELECT a1, b FROM t2 WHERE c IN (?) limit ?",
+				SqlUtils.normalizeSql("SELECT  a1,\n b FROM t2 WHERE c IN (?, ?, ?) limit 10, 20", 256));
+		Assert.assertEquals("update t set a=-? where b=?",
+				SqlUtils.normalizeSql("update t set a=-1.5e3 where b=\"q\\\"x\"", 256));
+		Assert.assertEquals("select ? f", SqlUtils.normalizeSql("select 1 from   dual  ", 10));
+
+		Assert.assertEquals(SqlUtils.normalizeSql("select * from t where id = 1", 256),
+				SqlUtils.normalizeSql("select * from t where id = 2", 256));
+	}
 }
@@ -9,6 +9,7 @@ import com.dianping.zebra.shard.jdbc.MultiDBLifeCycleTest;
 import com.dianping.zebra.shard.jdbc.MultiDBPreparedStatementLifeCycleTest;
 import com.dianping.zebra.shard.jdbc.ResultSetTest;
 import com.dianping.zebra.shard.jdbc.ShardConnectionTest;
+import com.dianping.zebra.shard.jdbc.ShardParallelConnectionTest;
 import com.dianping.zebra.shard.jdbc.ShardPreparedStatementMultiKeyTest;
 import com.dianping.zebra.shard.jdbc.ShardPreparedStatementTest;
 import com.dianping.zebra.shard.jdbc.ShardStatementTest;
@@ -21,13 +22,18 @@ import com.dianping.zebra.shard.jdbc.parallel.SQLThreadPoolExecutorTest;
 import com.dianping.zebra.shard.jdbc.specification.ConnectionTest;
 import com.dianping.zebra.shard.jdbc.specification.DataSourceTest;
 import com.dianping.zebra.shard.jdbc.specification.StatementTest;
+import com.dianping.zebra.shard.merge.ShardResultSetMergerTest;
 import com.dianping.zebra.shard.parser.SQLHintTest;
 import com.dianping.zebra.shard.parser.SQLParserResultTest;
 import com.dianping.zebra.shard.parser.SQLRewriteTest;
 import com.dianping.zebra.shard.router.DataSourceRouterImplTest;
+import com.dianping.zebra.shard.router.MultiRowInsertRouterTest;
+import com.dianping.zebra.shard.router.RangeShardRouterTest;
 import com.dianping.zebra.shard.router.rule.GroovyRuleEngineTest;
 import com.dianping.zebra.shard.router.rule.SimpleDataSourceProviderTest;
+import com.dianping.zebra.shard.router.rule.engine.RuleEngineFactoryTest;
 import com.dianping.zebra.shard.util.ShardColumnValueUtilTest;
+import com.dianping.zebra.util.ConcurrentLRUCacheTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({
@@ -50,10 +56,14 @@ import com.dianping.zebra.shard.util.ShardColumnValueUtilTest;
         ShardStatementTest.class,
         ShardPreparedStatementTest.class,
         ShardPreparedStatementMultiKeyTest.class,
+        ShardParallelConnectionTest.class,
         ShardSupportedCaseTest.class,
         
         SQLThreadPoolExecutorTest.class,
 
+        //merge
+        ShardResultSetMergerTest.class,
+
         //parser
         SQLParserResultTest.class,
         SQLRewriteTest.class,
@@ -61,10 +71,14 @@ import com.dianping.zebra.shard.util.ShardColumnValueUtilTest;
 
         //router
         DataSourceRouterImplTest.class,
+        MultiRowInsertRouterTest.class,
+        RangeShardRouterTest.class,
         GroovyRuleEngineTest.class,
+        RuleEngineFactoryTest.class,
         SimpleDataSourceProviderTest.class,
         
         //util
+        ConcurrentLRUCacheTest.class,
         ShardColumnValueUtilTest.class
 })
 public class AllTests {
@@ -21,6 +21,7 @@ import org.junit.Test;
 import com.dianping.zebra.shard.jdbc.base.MultiDBBaseTestCase;
 
 import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
@@ -1000,4 +1001,87 @@ public class MultiDBLifeCycleTest extends MultiDBBaseTestCase {
 			}
 		}
 	}
+
+	@Test
+	public void testBatch() throws Exception {
+		DataSource ds = (DataSource) context.getBean("zebraDS");
+		Connection conn = null;
+		try {
+			conn = ds.getConnection();
+			Statement stmt = conn.createStatement();
+			stmt.addBatch("insert into test(id,name,score,type,classid) values (43, 'testbatch', 1, 'a', 43)");
+			stmt.addBatch("update test set name='testbatch' where id=1");
+			stmt.addBatch("insert into test(id,name,score,type,classid) values (40, 'testbatch', 1, 'a', 40)");
+			stmt.addBatch("delete from test where id=1000");
+			int[] counts = stmt.executeBatch();
+
+			Assert.assertEquals("[1, 3, 1, 0]", Arrays.toString(counts));
+
+			stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery("select count(*) c from test where name='testbatch'");
+			Assert.assertTrue(rs.next());
+			Assert.assertEquals(5, rs.getInt("c"));
+		} finally {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+	}
+
+	@Test
+	public void testBatchPartialFailure() throws Exception {
+		DataSource ds = (DataSource) context.getBean("zebraDS");
+		Connection conn = null;
+		try {
+			conn = ds.getConnection();
+			Statement stmt = conn.createStatement();
+			stmt.addBatch("insert into test(id,name,score,type,classid) values (40, 'testbatch', 1, 'a', 40)");
+			stmt.addBatch("insert into test(id,name,score,type,classid) values (43, 'testbatch', 'abc', 'a', 43)");
+			stmt.addBatch("insert into test(id,name,score,type,classid) values (44, 'testbatch', 1, 'a', 44)");
+
+			try {
+				stmt.executeBatch();
+				Assert.fail();
+			} catch (BatchUpdateException e) {
+				Assert.assertEquals("[1, " + Statement.EXECUTE_FAILED + ", 1]", Arrays.toString(e.getUpdateCounts()));
+			}
+
+			stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery("select id from test where name='testbatch' order by id");
+			List<Integer> rows = new ArrayList<Integer>();
+			while (rs.next()) {
+				rows.add(rs.getInt("id"));
+			}
+			Assert.assertEquals("[40, 44]", rows.toString());
+		} finally {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+	}
+
+	@Test
+	public void testMultiRowsInsert() throws Exception {
+		DataSource ds = (DataSource) context.getBean("zebraDS");
+		Connection conn = null;
+		try {
+			conn = ds.getConnection();
+			Statement stmt = conn.createStatement();
+			int affectedRows = stmt.executeUpdate("insert into test(id,name,score,type,classid) values "
+					+ "(43, 'testmulti', 430, 'a', 43), (40, 'testmulti', 400, 'a', 40), "
+					+ "(51, 'testmulti', 510, 'a', 51)");
+			Assert.assertEquals(3, affectedRows);
+
+			ResultSet rs = stmt.executeQuery("select id, score from test where name='testmulti' order by id");
+			List<String> rows = new ArrayList<String>();
+			while (rs.next()) {
+				rows.add(rs.getInt("id") + ":" + rs.getInt("score"));
+			}
+			Assert.assertEquals("[40:400, 43:430, 51:510]", rows.toString());
+		} finally {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+	}
 }
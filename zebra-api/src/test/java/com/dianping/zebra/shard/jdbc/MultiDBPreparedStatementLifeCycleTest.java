@@ -15,6 +15,7 @@
  */
 package com.dianping.zebra.shard.jdbc;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -933,4 +934,183 @@ public class MultiDBPreparedStatementLifeCycleTest extends MultiDBBaseTestCase {
 			}
 		}
 	}
+
+	@Test
+	public void testBatchInsert() throws Exception {
+		DataSource ds = (DataSource) context.getBean("zebraDS");
+		Connection conn = null;
+		try {
+			conn = ds.getConnection();
+			PreparedStatement stmt = conn
+					.prepareStatement("insert into test(id,name,score,type,classid) values (?, ?, ?, ?,?)");
+			for (int id : new int[] { 43, 40, 47, 51, 44 }) {
+				stmt.setInt(1, id);
+				stmt.setString(2, "testbatch");
+				stmt.setInt(3, id);
+				stmt.setString(4, "fff");
+				stmt.setInt(5, id);
+				stmt.addBatch();
+			}
+			int[] counts = stmt.executeBatch();
+
+			Assert.assertEquals("[1, 1, 1, 1, 1]", Arrays.toString(counts));
+			Assert.assertEquals(2, countRows("id1", "test_3", "testbatch"));
+			Assert.assertEquals(1, countRows("id0", "test_0", "testbatch"));
+			Assert.assertEquals(1, countRows("id3", "test_7", "testbatch"));
+			Assert.assertEquals(1, countRows("id2", "test_4", "testbatch"));
+
+			// batch执行完之后清空
+			Assert.assertEquals(0, stmt.executeBatch().length);
+		} finally {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+	}
+
+	@Test
+	public void testBatchKeepsParameters() throws Exception {
+		DataSource ds = (DataSource) context.getBean("zebraDS");
+		Connection conn = null;
+		try {
+			conn = ds.getConnection();
+			PreparedStatement stmt = conn
+					.prepareStatement("insert into test(id,name,score,type,classid) values (?, ?, ?, ?,?)");
+			stmt.setInt(1, 40);
+			stmt.setString(2, "testbatch");
+			stmt.setInt(3, 1);
+			stmt.setString(4, "fff");
+			stmt.setInt(5, 1);
+			stmt.addBatch();
+
+			// addBatch之后参数保留，只改id
+			stmt.setInt(1, 44);
+			stmt.addBatch();
+			int[] counts = stmt.executeBatch();
+
+			Assert.assertEquals("[1, 1]", Arrays.toString(counts));
+			Assert.assertEquals(1, countRows("id0", "test_0", "testbatch"));
+			Assert.assertEquals(1, countRows("id2", "test_4", "testbatch"));
+		} finally {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+	}
+
+	@Test
+	public void testBatchUpdate() throws Exception {
+		DataSource ds = (DataSource) context.getBean("zebraDS");
+		Connection conn = null;
+		try {
+			conn = ds.getConnection();
+			PreparedStatement stmt = conn.prepareStatement("update test set name='testbatch' where id=?");
+			stmt.setInt(1, 1);
+			stmt.addBatch();
+			stmt.setInt(1, 0);
+			stmt.addBatch();
+			stmt.setInt(1, 1000);
+			stmt.addBatch();
+			int[] counts = stmt.executeBatch();
+
+			Assert.assertEquals("[3, 2, 0]", Arrays.toString(counts));
+			Assert.assertEquals(3, countRows("id0", "test_1", "testbatch"));
+			Assert.assertEquals(2, countRows("id0", "test_0", "testbatch"));
+		} finally {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+	}
+
+	@Test
+	public void testBatchPartialFailure() throws Exception {
+		DataSource ds = (DataSource) context.getBean("zebraDS");
+		Connection conn = null;
+		try {
+			conn = ds.getConnection();
+			PreparedStatement stmt = conn
+					.prepareStatement("insert into test(id,name,score,type,classid) values (?, ?, ?, ?,?)");
+
+			char[] tooLong = new char[300];
+			Arrays.fill(tooLong, 'a');
+
+			int[] ids = new int[] { 40, 43, 44 };
+			for (int id : ids) {
+				stmt.setInt(1, id);
+				stmt.setString(2, id == 43 ? new String(tooLong) : "testbatch");
+				stmt.setInt(3, id);
+				stmt.setString(4, "fff");
+				stmt.setInt(5, id);
+				stmt.addBatch();
+			}
+
+			try {
+				stmt.executeBatch();
+				Assert.fail();
+			} catch (BatchUpdateException e) {
+				int[] counts = e.getUpdateCounts();
+				Assert.assertEquals(3, counts.length);
+				Assert.assertEquals(1, counts[0]);
+				Assert.assertEquals(Statement.EXECUTE_FAILED, counts[1]);
+				Assert.assertEquals(1, counts[2]);
+			}
+
+			// 其他分片上的batch不受影响
+			Assert.assertEquals(1, countRows("id0", "test_0", "testbatch"));
+			Assert.assertEquals(1, countRows("id2", "test_4", "testbatch"));
+			Assert.assertEquals(0, countRows("id1", "test_3", "testbatch"));
+		} finally {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+	}
+
+	@Test
+	public void testMultiRowsInsert() throws Exception {
+		DataSource ds = (DataSource) context.getBean("zebraDS");
+		Connection conn = null;
+		try {
+			conn = ds.getConnection();
+			PreparedStatement stmt = conn.prepareStatement("insert into test(id,name,score,type,classid) values "
+					+ "(?, 'testmulti', ?, 'a', ?), (?, 'testmulti', ?, 'a', ?), (?, 'testmulti', ?, 'a', ?), "
+					+ "(?, 'testmulti', ?, 'a', ?)");
+			int index = 1;
+			for (int id : new int[] { 43, 40, 51, 44 }) {
+				stmt.setInt(index++, id);
+				stmt.setInt(index++, id * 10);
+				stmt.setInt(index++, id);
+			}
+
+			Assert.assertEquals(4, stmt.executeUpdate());
+			Assert.assertEquals(2, countRows("id1", "test_3", "testmulti"));
+			Assert.assertEquals(1, countRows("id0", "test_0", "testmulti"));
+			Assert.assertEquals(1, countRows("id2", "test_4", "testmulti"));
+
+			Statement stmt2 = conn.createStatement();
+			ResultSet rs = stmt2.executeQuery("select id, score from test where name='testmulti' order by id");
+			List<String> rows = new ArrayList<String>();
+			while (rs.next()) {
+				rows.add(rs.getInt("id") + ":" + rs.getInt("score"));
+			}
+			Assert.assertEquals("[40:400, 43:430, 44:440, 51:510]", rows.toString());
+		} finally {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+	}
+
+	private int countRows(String db, String table, String name) throws Exception {
+		Connection conn = DriverManager.getConnection(getDBBaseUrl() + db + ";DB_CLOSE_DELAY=-1");
+		try {
+			ResultSet rs = conn.createStatement()
+					.executeQuery("select count(*) from " + table + " where name='" + name + "'");
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			conn.close();
+		}
+	}
 }
@@ -0,0 +1,242 @@
+package com.dianping.zebra.shard.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.dianping.zebra.shard.jdbc.parallel.DBConcurrencyMonitor.DBConcurrency;
+import com.dianping.zebra.shard.jdbc.parallel.SQLExecutorFactory;
+import com.dianping.zebra.shard.jdbc.parallel.SQLThreadPoolExecutor;
+import com.dianping.zebra.shard.router.builder.XmlResourceRouterBuilder;
+
+import junit.framework.Assert;
+
+/**
+ * 模拟MySQL同一个连接上的语句串行执行，每条语句有固定的延迟，对比同一个库的分表共用连接和多连接并行的耗时
+ */
+public class ShardParallelConnectionTest {
+
+	private static final long LATENCY = 100;
+
+	private static final String[] DBS = { "id0", "id1", "id2", "id3" };
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		Class.forName("org.h2.Driver");
+
+		// router-rule-multidb-lifecycle.xml中每个库有两张表，test_{i}在id{i / 2}上
+		for (int i = 0; i < 8; i++) {
+			Connection conn = DriverManager.getConnection(getUrl(DBS[i / 2]));
+			Statement stmt = conn.createStatement();
+			stmt.execute("drop table if exists test_" + i);
+			stmt.execute("create table test_" + i + " (id int primary key, name varchar(20))");
+			stmt.execute("insert into test_" + i + " values (" + i + ", 'name" + i + "')");
+			stmt.close();
+			conn.close();
+		}
+	}
+
+	@Test
+	public void testParallelConnections() throws Exception {
+		ShardDataSource serialDs = createDataSource(1);
+		ShardDataSource parallelDs = createDataSource(2);
+
+		// warm up
+		query(serialDs);
+		query(parallelDs);
+
+		long serial = query(serialDs);
+		long parallel = query(parallelDs);
+
+		String message = String.format("one connection per db: %d ms, two connections per db: %d ms", serial,
+				parallel);
+		Assert.assertTrue(message, serial >= 2 * LATENCY);
+		Assert.assertTrue(message, parallel < serial * 3 / 4);
+
+		for (String db : DBS) {
+			DBConcurrency concurrency = parallelDs.getConcurrencyMonitor().getConcurrency(db);
+
+			Assert.assertEquals(4, concurrency.getQueryCount());
+			Assert.assertEquals(2, concurrency.getBorrowedConnections());
+			Assert.assertEquals(0, concurrency.getActive());
+			Assert.assertEquals(0, serialDs.getConcurrencyMonitor().getConcurrency(db).getBorrowedConnections());
+		}
+
+		serialDs.close();
+		parallelDs.close();
+	}
+
+	@Test
+	public void testPreparedStatement() throws Exception {
+		ShardDataSource ds = createDataSource(2);
+		Connection conn = ds.getConnection();
+
+		PreparedStatement stmt = conn.prepareStatement("select id from test where name <> ? order by id");
+		stmt.setString(1, "name3");
+		ResultSet rs = stmt.executeQuery();
+
+		StringBuilder ids = new StringBuilder();
+		while (rs.next()) {
+			ids.append(rs.getInt(1));
+		}
+
+		Assert.assertEquals("0124567", ids.toString());
+		Assert.assertEquals(1, ds.getConcurrencyMonitor().getConcurrency("id0").getBorrowedConnections());
+
+		conn.close();
+		ds.close();
+	}
+
+	@Test
+	public void testTransactionUseOneConnection() throws Exception {
+		ShardDataSource ds = createDataSource(2);
+		Connection conn = ds.getConnection();
+		conn.setAutoCommit(false);
+
+		ResultSet rs = conn.createStatement().executeQuery("select id from test");
+		int count = 0;
+		while (rs.next()) {
+			count++;
+		}
+		conn.commit();
+
+		Assert.assertEquals(8, count);
+		for (String db : DBS) {
+			Assert.assertEquals(0, ds.getConcurrencyMonitor().getConcurrency(db).getBorrowedConnections());
+		}
+
+		conn.close();
+		ds.close();
+	}
+
+	@Test
+	public void testExecutorPerDataSource() throws Exception {
+		final List<String> names = new ArrayList<String>();
+
+		ShardDataSource ds1 = createDataSource(1);
+		ShardDataSource ds2 = new ShardDataSource();
+		ds2.setDataSourcePool(Collections.singletonMap("id0", createLatencyDataSource(getUrl("id0"))));
+		ds2.setDataSourceRepository(new DataSourceRepository());
+		ds2.setRouterFactory(new XmlResourceRouterBuilder("router-rule-multidb-lifecycle.xml"));
+		ds2.setParallelMaxPoolSize(4);
+		ds2.setExecutorFactory(new SQLExecutorFactory() {
+			@Override
+			public SQLThreadPoolExecutor create(String name, int corePoolSize, int maxPoolSize, int workQueueSize,
+					long executeTimeOut) {
+				names.add(name + ":" + maxPoolSize);
+				return new SQLThreadPoolExecutor("custom", 2, maxPoolSize, workQueueSize, executeTimeOut);
+			}
+		});
+		ds2.init();
+
+		Assert.assertEquals("[null:4]", names.toString());
+		Assert.assertNotSame(ds1.getExecutor(), ds2.getExecutor());
+		Assert.assertNotSame(SQLThreadPoolExecutor.getInstance(), ds1.getExecutor());
+		Assert.assertEquals("custom", ds2.getExecutor().getName());
+
+		query(ds1);
+		Assert.assertTrue(ds1.getExecutor().getPoolSize() > 0);
+		Assert.assertEquals(0, ds2.getExecutor().getPoolSize());
+
+		ds1.close();
+		ds2.close();
+		Assert.assertTrue(ds1.getExecutor().isShutdown());
+	}
+
+	private long query(ShardDataSource ds) throws SQLException {
+		Connection conn = ds.getConnection();
+
+		try {
+			long start = System.currentTimeMillis();
+			ResultSet rs = conn.createStatement().executeQuery("select id from test");
+
+			int count = 0;
+			while (rs.next()) {
+				count++;
+			}
+			Assert.assertEquals(8, count);
+
+			return System.currentTimeMillis() - start;
+		} finally {
+			conn.close();
+		}
+	}
+
+	private ShardDataSource createDataSource(int parallelConnectionsPerDb) {
+		Map<String, DataSource> dataSourcePool = new HashMap<String, DataSource>();
+		for (String db : DBS) {
+			dataSourcePool.put(db, createLatencyDataSource(getUrl(db)));
+		}
+
+		ShardDataSource ds = new ShardDataSource();
+		ds.setDataSourcePool(dataSourcePool);
+		ds.setDataSourceRepository(new DataSourceRepository());
+		ds.setRouterFactory(new XmlResourceRouterBuilder("router-rule-multidb-lifecycle.xml"));
+		ds.setParallelConnectionsPerDb(parallelConnectionsPerDb);
+		ds.init();
+
+		return ds;
+	}
+
+	private static String getUrl(String db) {
+		return "jdbc:h2:mem:parallel_" + db + ";DB_CLOSE_DELAY=-1";
+	}
+
+	private static DataSource createLatencyDataSource(final String url) {
+		return (DataSource) Proxy.newProxyInstance(ShardParallelConnectionTest.class.getClassLoader(),
+				new Class<?>[] { DataSource.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getConnection".equals(method.getName())) {
+							return createLatencyProxy(DriverManager.getConnection(url), Connection.class, new Object());
+						}
+
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private static Object createLatencyProxy(final Object target, Class<?> type, final Object connectionLock) {
+		return Proxy.newProxyInstance(ShardParallelConnectionTest.class.getClassLoader(), new Class<?>[] { type },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						try {
+							if (method.getName().startsWith("execute")) {
+								// 同一个连接上的语句串行执行
+								synchronized (connectionLock) {
+									Thread.sleep(LATENCY);
+									return method.invoke(target, args);
+								}
+							}
+
+							Object result = method.invoke(target, args);
+							if (result instanceof Statement) {
+								return createLatencyProxy(result, method.getReturnType(), connectionLock);
+							}
+
+							return result;
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					}
+				});
+	}
+}
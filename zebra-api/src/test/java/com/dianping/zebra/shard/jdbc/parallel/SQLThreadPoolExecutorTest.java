@@ -1,12 +1,18 @@
 package com.dianping.zebra.shard.jdbc.parallel;
 
+import java.lang.management.ManagementFactory;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -105,6 +111,90 @@ public class SQLThreadPoolExecutorTest {
 		}
 	}
 	
+	@Test
+	public void testCallerRunsWhenQueueFull() throws Exception {
+		SQLThreadPoolExecutor executor = new SQLThreadPoolExecutor("test", 1, 1, 1, 2000L);
+
+		List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+		for (int i = 0; i < 3; i++) {
+			tasks.add(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					Thread.sleep(200L);
+					return Thread.currentThread().getName();
+				}
+			});
+		}
+
+		List<Future<String>> futures = executor.invokeSQLs(tasks);
+
+		Assert.assertEquals("Zebra-Shard-Executor-test-1", futures.get(0).get());
+		Assert.assertEquals("Zebra-Shard-Executor-test-1", futures.get(1).get());
+		Assert.assertEquals(Thread.currentThread().getName(), futures.get(2).get());
+		Assert.assertEquals(1, executor.getRejectedCount());
+		Assert.assertEquals(0, executor.getQueueSize());
+
+		executor.shutdown();
+	}
+
+	@Test
+	public void testCallerRunsTimeout() throws Exception {
+		SQLThreadPoolExecutor executor = new SQLThreadPoolExecutor("callerRunsTimeout", 1, 1, 1, 300L);
+		executor.registerMBean();
+
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for (int i = 0; i < 4; i++) {
+			tasks.add(new MockCallable(MockType.NORMAL, 500L, 1));
+		}
+
+		// 第三个任务在调用线程中执行完已经超过deadline，报超时而不是线程不够
+		try {
+			executor.invokeSQLs(tasks);
+			Assert.fail();
+		} catch (SQLTimeoutException e) {
+			Assert.assertEquals("One of your sql's execution time is beyond 300 milliseconds.", e.getMessage());
+		}
+
+		Assert.assertEquals(1, executor.getRejectedCount());
+		Assert.assertEquals(1, executor.getTimeoutCount());
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = executor.getMBeanName();
+		Assert.assertEquals("callerRunsTimeout", ObjectName.unquote(name.getKeyProperty("name")));
+		Assert.assertEquals(1L, server.getAttribute(name, "TimeoutCount"));
+
+		executor.shutdownNow();
+		executor.awaitTermination(1, TimeUnit.SECONDS);
+		Assert.assertFalse(server.isRegistered(name));
+	}
+
+	/**
+	 * 同名的线程池各自注册，先关闭的不会注销后注册的
+	 */
+	@Test
+	public void testSameNameMBean() throws Exception {
+		SQLThreadPoolExecutor first = new SQLThreadPoolExecutor("sameName", 1, 1, 1, 300L);
+		SQLThreadPoolExecutor second = new SQLThreadPoolExecutor("sameName", 1, 1, 1, 300L);
+		first.registerMBean();
+		second.registerMBean();
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName firstName = first.getMBeanName();
+		ObjectName secondName = second.getMBeanName();
+		Assert.assertFalse(firstName.equals(secondName));
+		Assert.assertTrue(server.isRegistered(firstName));
+		Assert.assertTrue(server.isRegistered(secondName));
+
+		first.shutdown();
+		first.awaitTermination(1, TimeUnit.SECONDS);
+		Assert.assertFalse(server.isRegistered(firstName));
+		Assert.assertTrue(server.isRegistered(secondName));
+
+		second.shutdown();
+		second.awaitTermination(1, TimeUnit.SECONDS);
+		Assert.assertFalse(server.isRegistered(secondName));
+	}
+
 	@Test
 	public void testSubmitTimeout() {
 		SQLThreadPoolExecutor instance = SQLThreadPoolExecutor.getInstance();
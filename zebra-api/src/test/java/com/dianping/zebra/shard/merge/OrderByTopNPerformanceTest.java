@@ -0,0 +1,125 @@
+package com.dianping.zebra.shard.merge;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.zebra.shard.merge.distinct.DistinctDataMerger;
+import com.dianping.zebra.shard.merge.orderby.OrderByDataMerger;
+import com.dianping.zebra.shard.parser.SQLParser;
+
+/**
+ * 32个分表，每个分表10000行数据，order by + limit 20时全量排序和有界堆的对比
+ */
+public class OrderByTopNPerformanceTest {
+
+	private static final int TABLE_COUNT = 32;
+
+	private static final int ROW_COUNT = 10000;
+
+	private static final int ROUNDS = 10;
+
+	private Connection conn;
+
+	private MergeContext mergeContext;
+
+	@Before
+	public void setUp() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:topn;DB_CLOSE_DELAY=-1");
+
+		Statement stmt = conn.createStatement();
+		for (int i = 0; i < TABLE_COUNT; i++) {
+			stmt.execute("create table test_" + i + " (id int primary key, name varchar(20), score int)");
+			stmt.execute("insert into test_" + i + " select x, 'name' || mod(x, 100), mod(x * 7919 + " + i
+					+ ", 10007) from system_range(1, " + ROW_COUNT + ")");
+		}
+		stmt.close();
+
+		mergeContext = SQLParser.parse("select distinct id, name, score from test order by score limit 20")
+				.getMergeContext();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Statement stmt = conn.createStatement();
+		for (int i = 0; i < TABLE_COUNT; i++) {
+			stmt.execute("drop table test_" + i);
+		}
+		stmt.close();
+		conn.close();
+	}
+
+	@Test
+	public void test() throws Exception {
+		// warm up
+		fullSort();
+		topN();
+
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+		long sortTime = 0, sortHeap = 0;
+		long topNTime = 0, topNHeap = 0;
+		for (int i = 0; i < ROUNDS; i++) {
+			System.gc();
+			long heap = memory.getHeapMemoryUsage().getUsed();
+			long start = System.nanoTime();
+			List<RowData> sortRows = fullSort();
+			sortTime += System.nanoTime() - start;
+			sortHeap += memory.getHeapMemoryUsage().getUsed() - heap;
+
+			System.gc();
+			heap = memory.getHeapMemoryUsage().getUsed();
+			start = System.nanoTime();
+			List<RowData> topNRows = topN();
+			topNTime += System.nanoTime() - start;
+			topNHeap += memory.getHeapMemoryUsage().getUsed() - heap;
+
+			if (!sortRows.equals(topNRows)) {
+				throw new IllegalStateException("top-N result is different from full sort");
+			}
+		}
+
+		System.out.println(String.format("full sort : %d ms, %d KB heap per merge", sortTime / ROUNDS / 1000000,
+				sortHeap / ROUNDS / 1024));
+		System.out.println(String.format("top-N heap: %d ms, %d KB heap per merge", topNTime / ROUNDS / 1000000,
+				topNHeap / ROUNDS / 1024));
+	}
+
+	private List<RowData> fullSort() throws SQLException {
+		MergeContext sortContext = new MergeContext(mergeContext);
+		sortContext.setLimit(MergeContext.NO_LIMIT);
+
+		List<RowData> rows = new ShardResultSetMerger().popResultSets(executeQuery(), sortContext);
+		rows = new DistinctDataMerger().process(rows, sortContext);
+		rows = new OrderByDataMerger().process(rows, sortContext);
+
+		return new ArrayList<RowData>(rows.subList(0, mergeContext.getLimit()));
+	}
+
+	private List<RowData> topN() throws SQLException {
+		return new ShardResultSetMerger().popTopNResultSets(executeQuery(), mergeContext);
+	}
+
+	private List<ResultSet> executeQuery() throws SQLException {
+		List<ResultSet> resultSets = new ArrayList<ResultSet>();
+
+		// 模拟深度分页时每个分表都返回全部数据
+		for (int i = 0; i < TABLE_COUNT; i++) {
+			resultSets.add(conn.createStatement().executeQuery("select id, name, score from test_" + i
+					+ " order by score"));
+		}
+
+		return resultSets;
+	}
+}
@@ -0,0 +1,219 @@
+package com.dianping.zebra.shard.merge;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.zebra.shard.merge.distinct.DistinctDataMerger;
+import com.dianping.zebra.shard.merge.orderby.OrderByDataMerger;
+import com.dianping.zebra.shard.parser.DefaultSQLRewrite;
+import com.dianping.zebra.shard.parser.SQLParsedResult;
+import com.dianping.zebra.shard.parser.SQLParser;
+import com.dianping.zebra.shard.router.RouterResult;
+import com.dianping.zebra.shard.router.RouterResult.RouterTarget;
+
+public class ShardResultSetMergerTest {
+
+	private static final int TABLE_COUNT = 4;
+
+	private Connection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:merge;DB_CLOSE_DELAY=-1");
+
+		Random random = new Random(20151018L);
+		Statement stmt = conn.createStatement();
+		for (int i = 0; i < TABLE_COUNT; i++) {
+			stmt.execute("create table test_" + i + " (id int primary key, name varchar(20), score int)");
+
+			PreparedStatement ps = conn.prepareStatement("insert into test_" + i + " values (?, ?, ?)");
+			for (int j = 0; j < 50 + i * 10; j++) {
+				int id = j * TABLE_COUNT + i;
+				ps.setInt(1, id);
+				ps.setString(2, "name" + random.nextInt(10));
+				ps.setInt(3, random.nextInt(20));
+				ps.executeUpdate();
+			}
+			ps.close();
+		}
+
+		// 空表也需要参与归并
+		stmt.execute("create table test_" + TABLE_COUNT + " (id int primary key, name varchar(20), score int)");
+		stmt.close();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Statement stmt = conn.createStatement();
+		for (int i = 0; i <= TABLE_COUNT; i++) {
+			stmt.execute("drop table test_" + i);
+		}
+		stmt.close();
+		conn.close();
+	}
+
+	@Test
+	public void testStreamingOrderBy() throws Exception {
+		assertSameAsInMemory("select id, name, score from test order by score desc, id");
+	}
+
+	@Test
+	public void testStreamingOrderByWithLimit() throws Exception {
+		assertSameAsInMemory("select id, name, score from test order by score, name desc, id limit 7, 25");
+	}
+
+	@Test
+	public void testStreamingOrderByWithLimitOnly() throws Exception {
+		assertSameAsInMemory("select id, name, score from test order by name, id desc limit 13");
+	}
+
+	@Test
+	public void testStreamingOrderByWithOffsetOutOfRange() throws Exception {
+		assertSameAsInMemory("select id, name, score from test order by id limit 10000, 10");
+	}
+
+	@Test
+	public void testTopNWithDistinct() throws Exception {
+		assertSameAsInMemory("select distinct name, score from test order by score desc, name limit 3, 12", false);
+	}
+
+	@Test
+	public void testTopNWithDistinctAndDuplicatedSortKey() throws Exception {
+		assertSameAsInMemory("select distinct name from test order by name limit 5", false);
+	}
+
+	@Test
+	public void testTopNOrderByDataMerger() throws Exception {
+		RouterResult routerResult = buildRouterResult("select id, name, score from test order by score limit 6, 30");
+		MergeContext mergeContext = routerResult.getMergeContext();
+		ShardResultSetMerger merger = new ShardResultSetMerger();
+
+		List<RowData> topN = new OrderByDataMerger().process(
+				merger.popResultSets(executeQuery(routerResult), mergeContext), mergeContext);
+
+		MergeContext sortContext = new MergeContext(mergeContext);
+		sortContext.setLimit(MergeContext.NO_LIMIT);
+		List<RowData> sorted = new OrderByDataMerger().process(
+				merger.popResultSets(executeQuery(routerResult), sortContext), sortContext);
+
+		// score有大量重复，前N条的顺序必须和稳定排序一致
+		Assert.assertEquals(36, topN.size());
+		Assert.assertEquals(sorted.subList(0, 36), topN);
+	}
+
+	@Test
+	public void testFallbackToMemoryForDistinct() throws Exception {
+		RouterResult routerResult = buildRouterResult("select distinct name from test order by name");
+
+		ShardResultSetAdaptor adaptor = new ShardResultSetAdaptor();
+		new ShardResultSetMerger().merge(adaptor, routerResult, executeQuery(routerResult));
+
+		Assert.assertFalse(adaptor.isStreaming());
+		Assert.assertTrue(adaptor.isInMemory());
+	}
+
+	@Test
+	public void testFallbackToMemoryForGroupBy() throws Exception {
+		RouterResult routerResult = buildRouterResult("select name, count(*) c from test group by name order by name");
+
+		ShardResultSetAdaptor adaptor = new ShardResultSetAdaptor();
+		new ShardResultSetMerger().merge(adaptor, routerResult, executeQuery(routerResult));
+
+		Assert.assertFalse(adaptor.isStreaming());
+		Assert.assertTrue(adaptor.isInMemory());
+	}
+
+	private void assertSameAsInMemory(String sql) throws Exception {
+		assertSameAsInMemory(sql, true);
+	}
+
+	private void assertSameAsInMemory(String sql, boolean streaming) throws Exception {
+		RouterResult routerResult = buildRouterResult(sql);
+		MergeContext mergeContext = routerResult.getMergeContext();
+
+		ShardResultSetAdaptor merged = new ShardResultSetAdaptor();
+		new ShardResultSetMerger().merge(merged, routerResult, executeQuery(routerResult));
+		Assert.assertEquals(streaming, merged.isStreaming());
+		Assert.assertEquals(!streaming, merged.isInMemory());
+
+		// 全量读取并排序后再截取，作为对照
+		MergeContext sortContext = new MergeContext(mergeContext);
+		sortContext.setLimit(MergeContext.NO_LIMIT);
+
+		List<ResultSet> resultSets = executeQuery(routerResult);
+		List<RowData> rows = new ShardResultSetMerger().popResultSets(resultSets, sortContext);
+		rows = new DistinctDataMerger().process(rows, sortContext);
+		rows = new OrderByDataMerger().process(rows, sortContext);
+
+		ShardResultSetAdaptor inMemory = new ShardResultSetAdaptor();
+		inMemory.setResultSets(resultSets);
+		inMemory.setMemoryData(rows);
+		inMemory.setMax(mergeContext.getLimit());
+		inMemory.setSkip(mergeContext.getOffset());
+		inMemory.procLimit();
+
+		List<String> selectColumns = new ArrayList<String>(mergeContext.getSelectItemMap().keySet());
+		List<String> expected = readRows(inMemory, selectColumns);
+		List<String> actual = readRows(merged, selectColumns);
+
+		Assert.assertEquals(expected, actual);
+	}
+
+	private RouterResult buildRouterResult(String sql) throws Exception {
+		SQLParsedResult parsedResult = SQLParser.parse(sql);
+		DefaultSQLRewrite rewrite = new DefaultSQLRewrite();
+
+		List<RouterTarget> targets = new ArrayList<RouterTarget>();
+		for (int i = 0; i <= TABLE_COUNT; i++) {
+			RouterTarget target = new RouterTarget("db" + (i % 2));
+			target.addSql(rewrite.rewrite(parsedResult, "test", "test_" + i));
+			targets.add(target);
+		}
+
+		RouterResult routerResult = new RouterResult();
+		routerResult.setSqls(targets);
+		routerResult.setMergeContext(new MergeContext(parsedResult.getMergeContext()));
+
+		return routerResult;
+	}
+
+	private List<ResultSet> executeQuery(RouterResult routerResult) throws SQLException {
+		List<ResultSet> resultSets = new ArrayList<ResultSet>();
+
+		for (RouterTarget target : routerResult.getSqls()) {
+			for (String sql : target.getSqls()) {
+				resultSets.add(conn.createStatement().executeQuery(sql));
+			}
+		}
+
+		return resultSets;
+	}
+
+	private List<String> readRows(ResultSet rs, List<String> columns) throws SQLException {
+		List<String> rows = new ArrayList<String>();
+
+		while (rs.next()) {
+			StringBuilder row = new StringBuilder();
+			for (String column : columns) {
+				row.append(rs.getObject(column)).append(',');
+			}
+			rows.add(row.toString());
+		}
+
+		return rows;
+	}
+}
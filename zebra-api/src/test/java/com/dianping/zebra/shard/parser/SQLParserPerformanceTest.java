@@ -0,0 +1,92 @@
+package com.dianping.zebra.shard.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.dianping.zebra.shard.util.LRUCache;
+
+/**
+ * 多线程下全局锁的LRUCache和ConcurrentLRUCache的解析缓存吞吐对比
+ */
+public class SQLParserPerformanceTest {
+
+	private static final int SQL_COUNT = 500;
+
+	private static final int LOOP = 200000;
+
+	private final List<String> sqls = new ArrayList<String>();
+
+	@Test
+	public void test() throws Exception {
+		for (int i = 0; i < SQL_COUNT; i++) {
+			sqls.add("select a, b from db where c = ? and d = " + i);
+		}
+
+		final Map<String, SQLParsedResult> synchronizedCache = Collections
+				.synchronizedMap(new LRUCache<String, SQLParsedResult>(SQLParser.DEFAULT_CACHE_SIZE));
+		final SQLParser parser = new SQLParser(SQLParser.DEFAULT_CACHE_SIZE);
+
+		for (int threads = 1; threads <= 32; threads *= 2) {
+			long synchronizedTime = run(threads, new Parser() {
+				@Override
+				public void parse(String sql) throws Exception {
+					if (synchronizedCache.get(sql) == null) {
+						synchronizedCache.put(sql, SQLParser.parseWithoutCache(sql));
+					}
+				}
+			});
+
+			long concurrentTime = run(threads, new Parser() {
+				@Override
+				public void parse(String sql) throws Exception {
+					parser.parseSql(sql);
+				}
+			});
+
+			System.out.println(String.format("threads %2d: synchronized %6d ops/ms, concurrent %6d ops/ms", threads,
+					(long) threads * LOOP / Math.max(1, synchronizedTime), (long) threads * LOOP
+							/ Math.max(1, concurrentTime)));
+		}
+
+		System.out.println(parser.getParsedSqlCache());
+	}
+
+	private long run(int threads, final Parser parser) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch end = new CountDownLatch(threads);
+
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < LOOP; i++) {
+							parser.parse(sqls.get((i + offset) % SQL_COUNT));
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+					} finally {
+						end.countDown();
+					}
+				}
+			}).start();
+		}
+
+		long now = System.currentTimeMillis();
+		start.countDown();
+		end.await();
+
+		return System.currentTimeMillis() - now;
+	}
+
+	interface Parser {
+		void parse(String sql) throws Exception;
+	}
+}
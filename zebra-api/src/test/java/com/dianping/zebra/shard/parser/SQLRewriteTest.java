@@ -1,7 +1,12 @@
 package com.dianping.zebra.shard.parser;
 
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlOutputVisitor;
 import com.dianping.zebra.shard.exception.ShardParseException;
 
 import junit.framework.Assert;
@@ -57,4 +62,100 @@ public class SQLRewriteTest {
 		Assert.assertEquals(result.getMergeContext().getOffset(),10);
 		Assert.assertEquals("SELECT a, b\nFROM db1\nWHERE `c` = 1\nLIMIT 0, 20", newSql);
 	}
+
+	@Test
+	public void testOtherTableNotRewrited() throws ShardParseException {
+		DefaultSQLRewrite rewriter = new DefaultSQLRewrite();
+		SQLParsedResult result = SQLParser
+				.parse("select a.x, b.y from db a join other b on a.id = b.id where a.c in (select c from db2)");
+
+		String newSql = rewriter.rewrite(result, "db", "db_1");
+
+		Assert.assertTrue(newSql.contains("db_1 a"));
+		Assert.assertTrue(newSql.contains("other b"));
+		Assert.assertTrue(newSql.contains("db2"));
+		Assert.assertFalse(newSql.contains("db a"));
+	}
+
+	@Test
+	public void testRewriteNotChangeAST() throws ShardParseException {
+		DefaultSQLRewrite rewriter = new DefaultSQLRewrite();
+		SQLParsedResult result = SQLParser.parse("select a,b from db where `c` = 1 limit 10,100");
+
+		rewriter.rewrite(result, "db", "db1");
+		rewriter.rewrite(result, "db", "db2");
+
+		StringBuilder out = new StringBuilder();
+		result.getStmt().accept(new MySqlOutputVisitor(out));
+
+		Assert.assertEquals("SELECT a, b\nFROM db\nWHERE `c` = 1\nLIMIT 10, 100", out.toString());
+	}
+
+	@Test
+	public void testConcurrentRewrite() throws Exception {
+		final DefaultSQLRewrite rewriter = new DefaultSQLRewrite();
+		final int threadCount = 32;
+		final int loop = 2000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch end = new CountDownLatch(threadCount);
+		final AtomicInteger errors = new AtomicInteger();
+
+		for (int t = 0; t < threadCount; t++) {
+			final int limit = t + 1;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < loop; i++) {
+							int offset = i % 5;
+							SQLParsedResult result = SQLParser.parse("select a,b from db where `c` = 1 limit " + offset
+									+ "," + limit);
+							String physicalTable = "db_" + (i % 8);
+
+							String newSql = rewriter.rewrite(result, "db", physicalTable);
+
+							if (!newSql.equals("SELECT a, b\nFROM " + physicalTable + "\nWHERE `c` = 1\nLIMIT 0, "
+									+ (offset + limit))) {
+								errors.incrementAndGet();
+							}
+							if (result.getMergeContext().getOffset() != offset
+									|| result.getMergeContext().getLimit() != limit) {
+								errors.incrementAndGet();
+							}
+						}
+					} catch (Throwable e) {
+						errors.incrementAndGet();
+					} finally {
+						end.countDown();
+					}
+				}
+			}).start();
+		}
+
+		start.countDown();
+		end.await();
+
+		Assert.assertEquals(0, errors.get());
+	}
+
+	@Test
+	public void testRenderInsertRows() throws ShardParseException {
+		SQLTemplate template = SQLParser.parse(
+				"insert into db (a, b) values (?, 1), (?, ?), (3, ?) on duplicate key update b = ?").getTemplate();
+
+		Assert.assertEquals(3, template.getRowCount());
+
+		String expected = SQLParser.parse("insert into db (a, b) values (?, 1), (3, ?) on duplicate key update b = ?")
+				.getTemplate().render("db", "db_1");
+		Assert.assertEquals(expected, template.renderRows("db", "db_1", Arrays.asList(0, 2)));
+		Assert.assertEquals("[0, 3, 4]", Arrays.toString(template.getParamIndexes(Arrays.asList(0, 2))));
+
+		expected = SQLParser.parse("insert into db (a, b) values (?, ?) on duplicate key update b = ?").getTemplate()
+				.render("db", "db_2");
+		Assert.assertEquals(expected, template.renderRows("db", "db_2", Arrays.asList(1)));
+		Assert.assertEquals("[1, 2, 4]", Arrays.toString(template.getParamIndexes(Arrays.asList(1))));
+
+		Assert.assertEquals(0, SQLParser.parse("insert into db (a, b) values (?, ?)").getTemplate().getRowCount());
+	}
 }
@@ -0,0 +1,47 @@
+package com.dianping.zebra.shard.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.zebra.shard.exception.ShardRouterException;
+import com.dianping.zebra.shard.router.RouterResult.RouterTarget;
+import com.dianping.zebra.shard.router.builder.XmlResourceRouterBuilder;
+
+import junit.framework.Assert;
+
+/**
+ * router-rule-multidb-lifecycle.xml中id对应test_{id % 8}，分布在id{(id % 8) / 2}上
+ */
+public class MultiRowInsertRouterTest {
+
+	private DefaultShardRouter router;
+
+	@Before
+	public void setUp() {
+		router = (DefaultShardRouter) new XmlResourceRouterBuilder("router-rule-multidb-lifecycle.xml").build();
+	}
+
+	@Test
+	public void testSplitRows() throws Exception {
+		RouterResult result = router.router("insert into test (id, name) values (?, ?), (?, ?)",
+				new ArrayList<Object>(Arrays.asList(1, "a", 2, "b")));
+
+		int sqlCount = 0;
+		for (RouterTarget target : result.getSqls()) {
+			sqlCount += target.getSqls().size();
+		}
+
+		Assert.assertEquals(2, sqlCount);
+	}
+
+	/**
+	 * VALUES中有子查询时不能按行拆分，也不能按第一行路由
+	 */
+	@Test(expected = ShardRouterException.class)
+	public void testUnsplittableRows() throws Exception {
+		router.router("insert into test (id, name) values (1, (select name from other where id = 1)), (2, 'b')", null);
+	}
+}
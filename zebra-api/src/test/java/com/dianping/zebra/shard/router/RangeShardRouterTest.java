@@ -0,0 +1,117 @@
+package com.dianping.zebra.shard.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.zebra.shard.router.RouterResult.RouterTarget;
+import com.dianping.zebra.shard.router.builder.XmlResourceRouterBuilder;
+
+import junit.framework.Assert;
+
+/**
+ * router-rule-multidb-lifecycle.xml中id对应test_{id % 8}，分布在id{(id % 8) / 2}上
+ */
+public class RangeShardRouterTest {
+
+	private DefaultShardRouter router;
+
+	@Before
+	public void setUp() {
+		router = (DefaultShardRouter) new XmlResourceRouterBuilder("router-rule-multidb-lifecycle.xml").build();
+	}
+
+	@Test
+	public void testBetween() throws Exception {
+		RouterResult result = router.router("select * from test where id between 1 and 3", null);
+
+		Assert.assertEquals("[id0:test_1, id1:test_2, id1:test_3]", getTables(result).toString());
+	}
+
+	@Test
+	public void testPreparedRange() throws Exception {
+		List<Object> params = new ArrayList<Object>();
+		params.add(8);
+		params.add(10);
+
+		RouterResult result = router.router("select * from test where id >= ? and id < ? order by id", params);
+
+		Assert.assertEquals("[id0:test_0, id0:test_1]", getTables(result).toString());
+	}
+
+	@Test
+	public void testLargeRangeInPeriod() throws Exception {
+		RouterResult result = router.router("select * from test where id > 100 and id <= 100000", null);
+
+		Assert.assertEquals(8, getTables(result).size());
+	}
+
+	@Test
+	public void testRangeOverLimit() throws Exception {
+		router.setRangeShardLimit(4);
+
+		RouterResult result = router.router("select * from test where id between 1 and 6", null);
+
+		Assert.assertEquals(8, getTables(result).size());
+	}
+
+	@Test
+	public void testRangeDisabled() throws Exception {
+		router.setRangeShardLimit(0);
+
+		RouterResult result = router.router("select * from test where id between 1 and 2", null);
+
+		Assert.assertEquals(8, getTables(result).size());
+	}
+
+	@Test
+	public void testRangeInOr() throws Exception {
+		RouterResult result = router.router("select * from test where id between 1 and 2 or name = 'a'", null);
+
+		Assert.assertEquals(8, getTables(result).size());
+	}
+
+	@Test
+	public void testNonMasterDimension() throws Exception {
+		RouterResult result = router.router("select * from test where classid between 6 and 7", null);
+
+		Assert.assertEquals("[class3:test_class6, class3:test_class7]", getTables(result).toString());
+	}
+
+	@Test
+	public void testHashRuleFullScan() throws Exception {
+		DefaultShardRouter hashRouter = (DefaultShardRouter) new XmlResourceRouterBuilder("router-rule-multidb-hash.xml")
+				.build();
+
+		// crc32规则没有周期，范围条件不展开
+		RouterResult result = hashRouter.router("select * from test where id between 1 and 3", null);
+
+		Assert.assertEquals(8, getTables(result).size());
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		RouterResult result = router.router("update test set name = ? where id > ? and id < ?",
+				new ArrayList<Object>(Arrays.asList("a", 4, 7)));
+
+		Assert.assertEquals("[id2:test_5, id3:test_6]", getTables(result).toString());
+	}
+
+	private Set<String> getTables(RouterResult result) {
+		Set<String> tables = new TreeSet<String>();
+
+		for (RouterTarget target : result.getSqls()) {
+			for (String sql : target.getSqls()) {
+				String table = sql.replaceAll("(?s).*(test_\\w+).*", "$1");
+				tables.add(target.getDatabaseName() + ":" + table);
+			}
+		}
+
+		return tables;
+	}
+}
@@ -0,0 +1,83 @@
+package com.dianping.zebra.shard.router.rule.dimension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.dianping.zebra.shard.config.TableShardDimensionConfig;
+import com.dianping.zebra.shard.router.rule.ShardEvalContext;
+import com.dianping.zebra.shard.router.rule.ShardEvalContext.ColumnValue;
+import com.dianping.zebra.shard.router.rule.engine.GroovyRuleEngine;
+
+/**
+ * groovy动态调用和编译后的分片函数在DefaultDimensionRule.eval上的耗时对比
+ */
+public class DefaultDimensionRulePerformanceTest {
+
+	private static final int LOOP = 1000000;
+
+	private static final int ROUNDS = 5;
+
+	@Test
+	public void test() {
+		TableShardDimensionConfig config = new TableShardDimensionConfig();
+		config.setTableName("test");
+		config.setDbRule("(#id#.intValue() % 8).intdiv(2)");
+		config.setDbIndexes("id0,id1,id2,id3");
+		config.setTbRule("#id#.intValue() % 2");
+		config.setTbSuffix("alldb:[_0,_7]");
+		config.setMaster(true);
+
+		DefaultDimensionRule groovyRule = new DefaultDimensionRule(config);
+		groovyRule.setExceptionalRules(Collections.<DimensionRule> emptyList());
+		groovyRule.setDbRuleEngine(new GroovyRuleEngine(config.getDbRule()));
+		groovyRule.setTableRuleEngine(new GroovyRuleEngine(config.getTbRule()));
+
+		DefaultDimensionRule compiledRule = new DefaultDimensionRule(config);
+		compiledRule.setExceptionalRules(Collections.<DimensionRule> emptyList());
+
+		System.out.println("db rule engine: " + compiledRule.getDbRuleEngine().getClass().getSimpleName()
+				+ ", table rule engine: " + compiledRule.getTableRuleEngine().getClass().getSimpleName());
+
+		// warm up
+		run(groovyRule);
+		run(compiledRule);
+
+		long groovyTime = 0, compiledTime = 0;
+		for (int i = 0; i < ROUNDS; i++) {
+			groovyTime += run(groovyRule);
+			compiledTime += run(compiledRule);
+		}
+
+		System.out.println(String.format("groovy  : %d ns per eval", groovyTime / ROUNDS / LOOP));
+		System.out.println(String.format("compiled: %d ns per eval", compiledTime / ROUNDS / LOOP));
+	}
+
+	private long run(DimensionRule rule) {
+		long start = System.nanoTime();
+		int hash = 0;
+
+		for (int i = 0; i < LOOP; i++) {
+			Map<String, Object> value = new HashMap<String, Object>();
+			value.put("id", i);
+
+			List<ColumnValue> columnValues = new ArrayList<ColumnValue>(1);
+			columnValues.add(new ColumnValue(value));
+
+			ShardEvalContext context = new ShardEvalContext(null, null);
+			context.setColumnValues(columnValues);
+
+			hash += rule.eval(context).getDbAndTables().size();
+		}
+
+		if (hash != LOOP) {
+			throw new IllegalStateException("every eval should route to exactly one db");
+		}
+
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,89 @@
+package com.dianping.zebra.shard.router.rule.engine;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RuleEngineFactoryTest {
+
+	private static final Object[] VALUES = new Object[] { 0, 1, 7, 9, 25, 1849791, -13, Integer.MAX_VALUE,
+			Integer.MIN_VALUE, 2127114697L, Long.MAX_VALUE, -200867475132416L, new BigInteger("123456789012") };
+
+	@Test
+	public void testCompile() {
+		Assert.assertNotNull(RuleEngineFactory.compile("#id#.intValue() % 8"));
+		Assert.assertNotNull(RuleEngineFactory.compile("(#id#.intValue() % 8).intdiv(2)"));
+		Assert.assertNotNull(RuleEngineFactory.compile("#NoteID#.longValue() % 32"));
+		Assert.assertNotNull(RuleEngineFactory.compile("(#NoteID#.longValue()%32).intdiv(8)"));
+		Assert.assertNotNull(RuleEngineFactory.compile("#id#.toLong() % 16"));
+		Assert.assertNotNull(RuleEngineFactory.compile("crc32(#bid#) % 10"));
+		Assert.assertNotNull(RuleEngineFactory.compile("(crc32(#bid#) % 10)"));
+
+		Assert.assertEquals("id", RuleEngineFactory.compile("(#id#.intValue() % 8).intdiv(2)").getColumn());
+		Assert.assertEquals("bid", RuleEngineFactory.compile("crc32(#bid#) % 10").getColumn());
+
+		Assert.assertNull(RuleEngineFactory.compile("#id#.intValue() % 8.intdiv(2)"));
+		Assert.assertNull(RuleEngineFactory.compile("#id#.intValue() % 0"));
+		Assert.assertNull(RuleEngineFactory.compile("(crc32(#bid#)/10).toLong()%10"));
+		Assert.assertNull(RuleEngineFactory.compile("(crc32(md5(#id# + #name#))/10).toLong()%4"));
+		Assert.assertNull(RuleEngineFactory.compile("#AddTime# == null ? SKIP : 0"));
+		Assert.assertNull(RuleEngineFactory.compile("#id#.intValue() % 8 + #uid#.intValue() % 2"));
+
+		Assert.assertTrue(RuleEngineFactory.getRuleEngine("#id# == 0 ? 0 : 0") instanceof GroovyRuleEngine);
+		Assert.assertTrue(RuleEngineFactory.getRuleEngine("#id#.intValue() % 8") instanceof CompiledRuleEngine);
+	}
+
+	@Test
+	public void testSameAsGroovy() {
+		assertSameAsGroovy("#id#.intValue() % 8", VALUES);
+		assertSameAsGroovy("#id#.intValue() % 2", VALUES);
+		assertSameAsGroovy("(#id#.intValue() % 8).intdiv(2)", VALUES);
+		assertSameAsGroovy("#id#.longValue() % 32", VALUES);
+		assertSameAsGroovy("(#id#.longValue() % 32).intdiv(8)", VALUES);
+		assertSameAsGroovy("#id#.toLong() % 16", VALUES);
+		assertSameAsGroovy("#id#.toLong() % 16", new Object[] { "1", " 25 ", "-7", "2127114697" });
+		assertSameAsGroovy("crc32(#id#) % 10", VALUES);
+		assertSameAsGroovy("crc32(#id#) % 10", new Object[] { "2127114697", "hao.zhu", "", null });
+		assertSameAsGroovy("(crc32(#id#) % 100).intdiv(10)", VALUES);
+	}
+
+	@Test
+	public void testFallback() {
+		// 字符串没有intValue()，交给groovy处理
+		RuleEngine engine = RuleEngineFactory.getRuleEngine("#id#.toLong() % 16");
+		Assert.assertEquals(Long.valueOf(9), engine.eval(map("id", "25")));
+
+		engine = RuleEngineFactory.getRuleEngine("#id#.intValue() % 8");
+		try {
+			engine.eval(map("id", "25"));
+			Assert.fail();
+		} catch (RuntimeException e) {
+			// groovy: no such method
+		}
+	}
+
+	private void assertSameAsGroovy(String rule, Object[] values) {
+		RuleEngine compiled = RuleEngineFactory.compile(rule);
+		RuleEngine groovy = new GroovyRuleEngine(rule);
+
+		Assert.assertNotNull(rule, compiled);
+
+		for (Object value : values) {
+			Map<String, Object> valMap = map("id", value);
+			Object expected = groovy.eval(valMap);
+			Object actual = compiled.eval(valMap);
+
+			Assert.assertEquals(rule + " with " + value, expected, actual);
+			Assert.assertEquals(rule + " with " + value, expected.getClass(), actual.getClass());
+		}
+	}
+
+	private Map<String, Object> map(String column, Object value) {
+		Map<String, Object> valMap = new HashMap<String, Object>();
+		valMap.put(column, value);
+		return valMap;
+	}
+}
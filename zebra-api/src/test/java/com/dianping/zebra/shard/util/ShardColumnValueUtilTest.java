@@ -9,7 +9,6 @@ import org.junit.Test;
 
 import com.dianping.zebra.shard.api.ShardDataSourceHelper;
 import com.dianping.zebra.shard.exception.ShardParseException;
-import com.dianping.zebra.shard.exception.ShardRouterException;
 import com.dianping.zebra.shard.parser.SQLParsedResult;
 import com.dianping.zebra.shard.parser.SQLParser;
 import com.dianping.zebra.shard.router.rule.ShardEvalContext;
@@ -74,16 +73,38 @@ public class ShardColumnValueUtilTest {
 		Assert.assertEquals(1, columnValue.getValue().get("e"));
 	}
 
-	@Test(expected = ShardRouterException.class)
+	@Test
 	public void testMultipalInsertion() throws ShardParseException {
 		SQLParsedResult parseResult = SQLParser.parse(
 				"INSERT INTO `User` (`Name`,`Tel`,`Alias`,`Email`)VALUES('zhuhao','123','hao.zhu','z@d'),('zhuhao1','1233','hao.zhu1','z@d')");
 		List<Object> params = null;
 		ShardEvalContext ctx = new ShardEvalContext(parseResult, params);
+		ctx.setValuesIndex(1);
+		Set<String> shardColumns = new HashSet<String>();
+		shardColumns.add("Name");
+
+		List<ColumnValue> values = ShardColumnValueUtil.eval(ctx, shardColumns);
+
+		Assert.assertEquals(1, values.size());
+		Assert.assertEquals("zhuhao1", values.get(0).getValue().get("Name"));
+	}
+
+	@Test
+	public void testInsertionWithParams() throws ShardParseException {
+		SQLParsedResult parseResult = SQLParser
+				.parse("INSERT INTO `User` (`Tel`,`Name`)VALUES('123',?),(?,?)");
+		List<Object> params = new ArrayList<Object>();
+		params.add("zhuhao");
+		params.add("1233");
+		params.add("zhuhao1");
+		ShardEvalContext ctx = new ShardEvalContext(parseResult, params);
 		Set<String> shardColumns = new HashSet<String>();
 		shardColumns.add("Name");
 
-		ShardColumnValueUtil.eval(ctx, shardColumns);
+		Assert.assertEquals("zhuhao", ShardColumnValueUtil.eval(ctx, shardColumns).get(0).getValue().get("Name"));
+
+		ctx.setValuesIndex(1);
+		Assert.assertEquals("zhuhao1", ShardColumnValueUtil.eval(ctx, shardColumns).get(0).getValue().get("Name"));
 	}
 
 	@Test
@@ -128,6 +149,78 @@ public class ShardColumnValueUtilTest {
 		Assert.assertEquals(0, values.size());
 	}
 
+	@Test
+	public void testBetween() throws ShardParseException {
+		SQLParsedResult parseResult = SQLParser.parse("select a,b from db where `c` between 3 and 5");
+		ShardEvalContext ctx = new ShardEvalContext(parseResult, null);
+		ctx.setRangeShardLimit(10);
+		Set<String> shardColumns = new HashSet<String>();
+		shardColumns.add("c");
+
+		List<ColumnValue> values = ShardColumnValueUtil.eval(ctx, shardColumns, 8);
+
+		Assert.assertEquals(3, values.size());
+		Assert.assertEquals(3, values.get(0).getValue().get("c"));
+		Assert.assertEquals(4, values.get(1).getValue().get("c"));
+		Assert.assertEquals(5, values.get(2).getValue().get("c"));
+	}
+
+	@Test
+	public void testPreparedRange() throws ShardParseException {
+		SQLParsedResult parseResult = SQLParser.parse("select a,b from db where `c` > ? and b = 1 and c <= ?");
+		List<Object> params = new ArrayList<Object>();
+		params.add(10L);
+		params.add(12L);
+		ShardEvalContext ctx = new ShardEvalContext(parseResult, params);
+		ctx.setRangeShardLimit(10);
+		Set<String> shardColumns = new HashSet<String>();
+		shardColumns.add("c");
+
+		List<ColumnValue> values = ShardColumnValueUtil.eval(ctx, shardColumns, 8);
+
+		Assert.assertEquals(2, values.size());
+		Assert.assertEquals(11L, values.get(0).getValue().get("c"));
+		Assert.assertEquals(12L, values.get(1).getValue().get("c"));
+	}
+
+	@Test
+	public void testRangeOverLimit() throws ShardParseException {
+		SQLParsedResult parseResult = SQLParser.parse("select a,b from db where `c` between 1 and 100");
+		ShardEvalContext ctx = new ShardEvalContext(parseResult, null);
+		ctx.setRangeShardLimit(10);
+		Set<String> shardColumns = new HashSet<String>();
+		shardColumns.add("c");
+
+		Assert.assertEquals(0, ShardColumnValueUtil.eval(ctx, shardColumns, 1000).size());
+		// 按周期只需要展开8个值
+		Assert.assertEquals(8, ShardColumnValueUtil.eval(ctx, shardColumns, 8).size());
+	}
+
+	@Test
+	public void testRangeWithoutPeriod() throws ShardParseException {
+		SQLParsedResult parseResult = SQLParser.parse("select a,b from db where `c` between 3 and 5");
+		ShardEvalContext ctx = new ShardEvalContext(parseResult, null);
+		ctx.setRangeShardLimit(10);
+		Set<String> shardColumns = new HashSet<String>();
+		shardColumns.add("c");
+
+		// groovy或者hash规则没有周期，字段不一定是整数，范围条件不展开
+		Assert.assertEquals(0, ShardColumnValueUtil.eval(ctx, shardColumns).size());
+	}
+
+	@Test
+	public void testRangeInOr() throws ShardParseException {
+		SQLParsedResult parseResult = SQLParser.parse("select a,b from db where `c` between 1 and 2 or b = 1");
+		ShardEvalContext ctx = new ShardEvalContext(parseResult, null);
+		ctx.setRangeShardLimit(10);
+		Set<String> shardColumns = new HashSet<String>();
+		shardColumns.add("c");
+
+		List<ColumnValue> values = ShardColumnValueUtil.eval(ctx, shardColumns, 8);
+
+		Assert.assertEquals(0, values.size());
+	}
+
 	@Test
 	public void testNotEqual() throws ShardParseException {
 		SQLParsedResult parseResult = SQLParser.parse("select a,b from db where `c` != 1");
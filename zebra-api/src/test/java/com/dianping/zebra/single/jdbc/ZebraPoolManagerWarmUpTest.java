@@ -0,0 +1,223 @@
+package com.dianping.zebra.single.jdbc;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.zebra.Constants;
+import com.dianping.zebra.group.config.SystemConfigManagerFactory;
+import com.dianping.zebra.group.config.datasource.entity.Any;
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+import com.dianping.zebra.group.datasources.LoadBalancedDataSource;
+import com.dianping.zebra.single.pool.ZebraPoolManager;
+
+import junit.framework.Assert;
+
+/**
+ * 用一个建立连接很慢的H2驱动模拟冷启动的连接池
+ */
+public class ZebraPoolManagerWarmUpTest {
+
+	private static final int MIN_POOL_SIZE = 3;
+
+	@Before
+	public void setup() {
+		SlowH2Driver.connectDelay = 200;
+		SlowH2Driver.connectCount.set(0);
+	}
+
+	@Test
+	public void test_warm_up_c3p0() throws Exception {
+		testWarmUp(Constants.CONNECTION_POOL_TYPE_C3P0);
+	}
+
+	@Test
+	public void test_warm_up_tomcat_jdbc() throws Exception {
+		testWarmUp(Constants.CONNECTION_POOL_TYPE_TOMCAT_JDBC);
+	}
+
+	@Test
+	public void test_warm_up_druid() throws Exception {
+		testWarmUp(Constants.CONNECTION_POOL_TYPE_DRUID);
+	}
+
+	@Test
+	public void test_warm_up_timeout() throws Exception {
+		SlowH2Driver.connectDelay = 1000;
+		SingleDataSource ds = new SingleDataSource(createConfig("warmup_timeout", Constants.CONNECTION_POOL_TYPE_C3P0),
+				null);
+
+		try {
+			long start = System.currentTimeMillis();
+			Assert.assertEquals(0, ZebraPoolManager.warmUp(ds, 100));
+			Assert.assertTrue(System.currentTimeMillis() - start < SlowH2Driver.connectDelay);
+
+			// 超时之后建立的连接会被归还，不会泄漏
+			Thread.sleep(SlowH2Driver.connectDelay * 2);
+			Assert.assertEquals(0, ds.getNumBusyConnection());
+
+			Connection conn = ds.getConnection();
+			Assert.assertFalse(conn.isClosed());
+			conn.close();
+		} finally {
+			ZebraPoolManager.close(ds);
+		}
+	}
+
+	@Test
+	public void test_load_balanced_data_source() throws Exception {
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+		for (int i = 0; i < 2; i++) {
+			DataSourceConfig config = createConfig("warmup_lb" + i, Constants.CONNECTION_POOL_TYPE_C3P0);
+			config.setCanRead(true);
+			config.setActive(true);
+			configs.put(config.getId(), config);
+		}
+
+		LoadBalancedDataSource ds = new LoadBalancedDataSource(configs, null, SystemConfigManagerFactory
+				.getConfigManger("local").getSystemConfig());
+		ds.setWarmUpTimeout(5000);
+
+		ds.init();
+		Assert.assertTrue(SlowH2Driver.connectCount.get() >= 2 * MIN_POOL_SIZE);
+
+		try {
+			for (SingleDataSource single : ds.getDataSources().values()) {
+				assertWarm(single);
+			}
+		} finally {
+			ds.close();
+		}
+	}
+
+	private void testWarmUp(String type) throws Exception {
+		SingleDataSource ds = new SingleDataSource(createConfig("warmup_" + type.replace('-', '_'), type), null);
+
+		try {
+			Assert.assertEquals(MIN_POOL_SIZE, ZebraPoolManager.warmUp(ds, 5000));
+			Assert.assertTrue(SlowH2Driver.connectCount.get() >= MIN_POOL_SIZE);
+			Assert.assertEquals(0, ds.getNumBusyConnection());
+
+			assertWarm(ds);
+		} finally {
+			ZebraPoolManager.close(ds);
+		}
+	}
+
+	// 预热之后获取连接不需要再建立新的连接
+	private void assertWarm(SingleDataSource ds) throws SQLException {
+		List<Connection> conns = new ArrayList<Connection>();
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < MIN_POOL_SIZE; i++) {
+			conns.add(ds.getConnection());
+		}
+
+		Assert.assertTrue(System.currentTimeMillis() - start < SlowH2Driver.connectDelay);
+
+		for (Connection conn : conns) {
+			conn.close();
+		}
+	}
+
+	private DataSourceConfig createConfig(String id, String type) {
+		DataSourceConfig config = new DataSourceConfig();
+		config.setId(id);
+		config.setType(type);
+		config.setJdbcUrl(SlowH2Driver.URL_PREFIX + "mem:" + id + ";DB_CLOSE_DELAY=-1");
+		config.setDriverClass(SlowH2Driver.class.getName());
+		config.setUsername("sa");
+		config.setPassword("");
+		config.setProperties(new ArrayList<Any>(Arrays.asList(createProperty("initialPoolSize", "1"),
+				createProperty("minPoolSize", String.valueOf(MIN_POOL_SIZE)), createProperty("maxPoolSize", "10"),
+				createProperty("checkoutTimeout", "5000"), createProperty("preferredTestQuery", "select 1"))));
+
+		return config;
+	}
+
+	private Any createProperty(String name, String value) {
+		Any any = new Any();
+		any.setName(name);
+		any.setValue(value);
+
+		return any;
+	}
+
+	public static class SlowH2Driver implements Driver {
+
+		static final String URL_PREFIX = "jdbc:slowh2:";
+
+		static volatile long connectDelay;
+
+		static final AtomicInteger connectCount = new AtomicInteger();
+
+		private static final Driver h2 = new org.h2.Driver();
+
+		static {
+			try {
+				DriverManager.registerDriver(new SlowH2Driver());
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException {
+			if (!acceptsURL(url)) {
+				return null;
+			}
+
+			try {
+				Thread.sleep(connectDelay);
+			} catch (InterruptedException e) {
+				throw new SQLException(e);
+			}
+			connectCount.incrementAndGet();
+
+			return h2.connect("jdbc:h2:" + url.substring(URL_PREFIX.length()), info);
+		}
+
+		@Override
+		public boolean acceptsURL(String url) throws SQLException {
+			return url != null && url.startsWith(URL_PREFIX);
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+	}
+}
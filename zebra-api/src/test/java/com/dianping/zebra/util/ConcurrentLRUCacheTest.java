@@ -0,0 +1,137 @@
+package com.dianping.zebra.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.dianping.zebra.shard.exception.ShardParseException;
+import com.dianping.zebra.shard.parser.SQLParsedResult;
+import com.dianping.zebra.shard.parser.SQLParser;
+
+import junit.framework.Assert;
+
+public class ConcurrentLRUCacheTest {
+
+	@Test
+	public void testGetAndPut() {
+		ConcurrentLRUCache<String, Integer> cache = new ConcurrentLRUCache<String, Integer>(10);
+
+		Assert.assertNull(cache.get("a"));
+		Assert.assertNull(cache.putIfAbsent("a", 1));
+		Assert.assertEquals(Integer.valueOf(1), cache.putIfAbsent("a", 2));
+		Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<Integer, Integer>(100);
+
+		for (int i = 0; i < 1000; i++) {
+			cache.putIfAbsent(i, i);
+		}
+
+		Assert.assertEquals(100, cache.size());
+		Assert.assertEquals(900, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testRecentlyUsedSurvive() {
+		ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<Integer, Integer>(100);
+
+		for (int i = 0; i < 100; i++) {
+			cache.putIfAbsent(i, i);
+		}
+
+		// 热点数据在每一轮淘汰前都被访问过，不应该被淘汰
+		for (int i = 100; i < 1000; i++) {
+			for (int hot = 0; hot < 10; hot++) {
+				Assert.assertEquals(Integer.valueOf(hot), cache.get(hot));
+			}
+			cache.putIfAbsent(i, i);
+		}
+
+		Assert.assertEquals(100, cache.size());
+	}
+
+	@Test
+	public void testRemoveAndClear() {
+		ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<Integer, Integer>(10);
+
+		for (int i = 0; i < 10; i++) {
+			cache.putIfAbsent(i, i);
+		}
+
+		Assert.assertEquals(Integer.valueOf(3), cache.remove(3));
+		Assert.assertNull(cache.get(3));
+		Assert.assertEquals(9, cache.size());
+
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+		Assert.assertNull(cache.get(1));
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		final ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<Integer, Integer>(64);
+		final int threadCount = 16;
+		final int loop = 20000;
+		final CountDownLatch latch = new CountDownLatch(threadCount);
+		final AtomicInteger errors = new AtomicInteger();
+
+		for (int t = 0; t < threadCount; t++) {
+			final int seed = t;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < loop; i++) {
+							int key = (i * 31 + seed) % 256;
+							Integer value = cache.get(key);
+							if (value == null) {
+								cache.putIfAbsent(key, key);
+							} else if (value.intValue() != key) {
+								errors.incrementAndGet();
+							}
+						}
+					} catch (Throwable e) {
+						errors.incrementAndGet();
+					} finally {
+						latch.countDown();
+					}
+				}
+			}).start();
+		}
+
+		latch.await();
+
+		Assert.assertEquals(0, errors.get());
+		Assert.assertTrue(cache.size() <= 64 + threadCount);
+		Assert.assertEquals(threadCount * loop, cache.getHitCount() + cache.getMissCount());
+	}
+
+	@Test
+	public void testParserCache() throws ShardParseException {
+		SQLParser parser = new SQLParser(2);
+
+		SQLParsedResult result = parser.parseSql("select a from db where b = 1");
+		Assert.assertSame(result, parser.parseSql("select a from db where b = 1"));
+
+		parser.parseSql("select a from db where b = 2");
+		parser.parseSql("select a from db where b = 3");
+
+		List<Long> counters = new ArrayList<Long>();
+		counters.add(parser.getParsedSqlCache().getHitCount());
+		counters.add(parser.getParsedSqlCache().getMissCount());
+		counters.add(parser.getParsedSqlCache().getEvictionCount());
+
+		Assert.assertEquals("[1, 3, 1]", counters.toString());
+		Assert.assertEquals(2, parser.getParsedSqlCache().size());
+	}
+}
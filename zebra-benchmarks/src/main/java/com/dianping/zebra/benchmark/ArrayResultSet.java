@@ -0,0 +1,82 @@
+package com.dianping.zebra.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * <p>
+ * 基于数组的只进<tt>ResultSet</tt>，只实现归并用到的方法，让merger的benchmark不包含数据库本身的耗时。
+ * </p>
+ * 用动态代理实现，每次调用多出的反射开销对各种MergeContext都一样。
+ */
+final class ArrayResultSet implements InvocationHandler {
+
+	private final String[] columns;
+
+	private final Object[][] rows;
+
+	private int cursor = -1;
+
+	private boolean wasNull;
+
+	private boolean closed;
+
+	private ArrayResultSet(String[] columns, Object[][] rows) {
+		this.columns = columns;
+		this.rows = rows;
+	}
+
+	public static ResultSet create(String[] columns, Object[][] rows) {
+		return (ResultSet) Proxy.newProxyInstance(ArrayResultSet.class.getClassLoader(),
+				new Class<?>[] { ResultSet.class }, new ArrayResultSet(columns, rows));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+
+		if ("next".equals(name)) {
+			return ++cursor < rows.length;
+		} else if ("getObject".equals(name) && args.length == 1) {
+			int index = args[0] instanceof String ? findColumn((String) args[0]) : (Integer) args[0];
+			Object value = rows[cursor][index - 1];
+			wasNull = value == null;
+			return value;
+		} else if ("findColumn".equals(name)) {
+			return findColumn((String) args[0]);
+		} else if ("wasNull".equals(name)) {
+			return wasNull;
+		} else if ("getType".equals(name)) {
+			return ResultSet.TYPE_FORWARD_ONLY;
+		} else if ("getRowId".equals(name)) {
+			throw new SQLFeatureNotSupportedException(name);
+		} else if ("close".equals(name)) {
+			closed = true;
+			return null;
+		} else if ("isClosed".equals(name)) {
+			return closed;
+		} else if ("equals".equals(name)) {
+			return proxy == args[0];
+		} else if ("hashCode".equals(name)) {
+			return System.identityHashCode(proxy);
+		} else if ("toString".equals(name)) {
+			return "ArrayResultSet[" + rows.length + " rows]";
+		}
+
+		throw new UnsupportedOperationException(name);
+	}
+
+	private int findColumn(String column) throws SQLException {
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i].equalsIgnoreCase(column)) {
+				return i + 1;
+			}
+		}
+
+		throw new SQLException("No column named : " + column);
+	}
+}
@@ -0,0 +1,101 @@
+package com.dianping.zebra.benchmark;
+
+import java.beans.PropertyVetoException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
+/**
+ * 端到端benchmark使用的内存H2数据库
+ */
+final class Databases {
+
+	private Databases() {
+	}
+
+	/**
+	 * 和GroupDataSource默认一样使用c3p0连接池，作为没有zebra时的对照
+	 */
+	public static ComboPooledDataSource createPool(String url) {
+		ComboPooledDataSource ds = new ComboPooledDataSource();
+
+		try {
+			ds.setDriverClass("org.h2.Driver");
+		} catch (PropertyVetoException e) {
+			throw new IllegalStateException(e);
+		}
+		ds.setJdbcUrl(url);
+		ds.setUser("sa");
+		ds.setPassword("");
+		ds.setMinPoolSize(8);
+		ds.setMaxPoolSize(32);
+		ds.setInitialPoolSize(8);
+
+		return ds;
+	}
+
+	public static void execute(DataSource ds, String... sqls) throws SQLException {
+		Connection conn = ds.getConnection();
+
+		try {
+			Statement stmt = conn.createStatement();
+			for (String sql : sqls) {
+				stmt.execute(sql);
+			}
+			stmt.close();
+		} finally {
+			conn.close();
+		}
+	}
+
+	/**
+	 * 执行一条只有int参数的查询并读完结果
+	 *
+	 * @return 读到的行数
+	 */
+	public static int query(DataSource ds, String sql, int... params) throws SQLException {
+		Connection conn = ds.getConnection();
+
+		try {
+			PreparedStatement stmt = conn.prepareStatement(sql);
+			for (int i = 0; i < params.length; i++) {
+				stmt.setInt(i + 1, params[i]);
+			}
+
+			ResultSet rs = stmt.executeQuery();
+			int rows = 0;
+			while (rs.next()) {
+				rs.getObject(1);
+				rows++;
+			}
+			rs.close();
+			stmt.close();
+
+			return rows;
+		} finally {
+			conn.close();
+		}
+	}
+
+	public static int update(DataSource ds, String sql, int param) throws SQLException {
+		Connection conn = ds.getConnection();
+
+		try {
+			PreparedStatement stmt = conn.prepareStatement(sql);
+			stmt.setInt(1, param);
+
+			int rows = stmt.executeUpdate();
+			stmt.close();
+
+			return rows;
+		} finally {
+			conn.close();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.dianping.zebra.benchmark;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.zebra.group.jdbc.GroupDataSource;
+import com.dianping.zebra.single.jdbc.AbstractDataSource;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
+/**
+ * <p>
+ * 端到端的读写分离：GroupDataSource按benchmark.group.properties连接一个写库和两个读库，全部指向同一个内存H2数据库。
+ * </p>
+ * raw开头的直接使用同样配置的c3p0连接池，两者的差值就是zebra本身的开销。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupDataSourceBenchmark {
+
+	private static final String URL = "jdbc:h2:mem:group_benchmark;DB_CLOSE_DELAY=-1";
+
+	private static final int ROW_COUNT = 10000;
+
+	private static final String SELECT_SQL = "select id, name, score from test where id = ?";
+
+	private static final String UPDATE_SQL = "update test set score = score + 1 where id = ?";
+
+	private ComboPooledDataSource raw;
+
+	private GroupDataSource group;
+
+	@Setup
+	public void setUp() throws SQLException {
+		raw = Databases.createPool(URL);
+		Databases.execute(raw, "create table if not exists test (id int primary key, name varchar(20), score int)",
+				"delete from test", "insert into test select x, 'name' || mod(x, 100), 0 from system_range(1, "
+						+ ROW_COUNT + ")");
+
+		group = new GroupDataSource("benchmark.group");
+		group.setConfigManagerType(AbstractDataSource.LOCAL);
+		group.init();
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		group.close();
+		raw.close();
+	}
+
+	@Benchmark
+	public int read() throws SQLException {
+		return Databases.query(group, SELECT_SQL, nextId());
+	}
+
+	@Benchmark
+	public int write() throws SQLException {
+		return Databases.update(group, UPDATE_SQL, nextId());
+	}
+
+	@Benchmark
+	public int rawRead() throws SQLException {
+		return Databases.query(raw, SELECT_SQL, nextId());
+	}
+
+	@Benchmark
+	public int rawWrite() throws SQLException {
+		return Databases.update(raw, UPDATE_SQL, nextId());
+	}
+
+	private int nextId() {
+		return ThreadLocalRandom.current().nextInt(ROW_COUNT) + 1;
+	}
+}
@@ -0,0 +1,54 @@
+package com.dianping.zebra.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.zebra.shard.exception.ShardParseException;
+import com.dianping.zebra.shard.parser.SQLParsedResult;
+import com.dianping.zebra.shard.parser.SQLParser;
+
+/**
+ * SQL解析：命中全局解析缓存和每次重新解析的对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SQLParserBenchmark {
+
+	@Param({ "select", "orderBy", "groupBy", "insert", "update" })
+	public String type;
+
+	private String sql;
+
+	@Setup
+	public void setUp() throws ShardParseException {
+		sql = Sqls.get(type);
+
+		// 预先放进缓存
+		SQLParser.parse(sql);
+	}
+
+	@Benchmark
+	public SQLParsedResult parseCached() throws ShardParseException {
+		return SQLParser.parse(sql);
+	}
+
+	@Benchmark
+	public SQLParsedResult parseWithoutCache() throws ShardParseException {
+		return SQLParser.parseWithoutCache(sql);
+	}
+}
@@ -0,0 +1,49 @@
+package com.dianping.zebra.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.zebra.shard.exception.ShardParseException;
+import com.dianping.zebra.shard.parser.DefaultSQLRewrite;
+import com.dianping.zebra.shard.parser.SQLParsedResult;
+import com.dianping.zebra.shard.parser.SQLParser;
+
+/**
+ * 把逻辑表名改写成物理表名
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SQLRewriteBenchmark {
+
+	@Param({ "select", "orderBy", "groupBy", "insert", "update" })
+	public String type;
+
+	private final DefaultSQLRewrite rewrite = new DefaultSQLRewrite();
+
+	private SQLParsedResult parsedResult;
+
+	@Setup
+	public void setUp() throws ShardParseException {
+		parsedResult = SQLParser.parse(Sqls.get(type));
+	}
+
+	@Benchmark
+	public String rewrite() {
+		return rewrite.rewrite(parsedResult, "test", "test_3");
+	}
+}
@@ -0,0 +1,128 @@
+package com.dianping.zebra.benchmark;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.zebra.shard.jdbc.ShardDataSource;
+import com.dianping.zebra.shard.router.builder.XmlResourceRouterBuilder;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
+/**
+ * <p>
+ * 端到端的分库分表：router-rule-benchmark.xml中id对应test_{id % 8}，分布在4个内存H2数据库bench{(id % 8) / 2}上。
+ * </p>
+ * rawRead直接查询路由之后的那张物理表，作为没有zebra时的对照。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardDataSourceBenchmark {
+
+	private static final int DB_COUNT = 4;
+
+	private static final int TABLE_COUNT = 8;
+
+	private static final int ROW_COUNT = 10000;
+
+	private final ComboPooledDataSource[] pools = new ComboPooledDataSource[DB_COUNT];
+
+	private ShardDataSource shard;
+
+	@Setup
+	public void setUp() throws SQLException {
+		Map<String, DataSource> dataSourcePool = new HashMap<String, DataSource>();
+
+		for (int db = 0; db < DB_COUNT; db++) {
+			pools[db] = Databases.createPool("jdbc:h2:mem:shard_benchmark" + db + ";DB_CLOSE_DELAY=-1");
+			dataSourcePool.put("bench" + db, pools[db]);
+		}
+
+		for (int table = 0; table < TABLE_COUNT; table++) {
+			String name = "test_" + table;
+
+			Databases.execute(pools[table / 2], "drop table if exists " + name, "create table " + name
+					+ " (id int primary key, name varchar(20), score int)", "insert into " + name
+					+ " select x, 'name' || mod(x, 100), mod(x, 1000) from system_range(1, " + ROW_COUNT
+					+ ") where mod(x, " + TABLE_COUNT + ") = " + table);
+		}
+
+		shard = new ShardDataSource();
+		shard.setDataSourcePool(dataSourcePool);
+		shard.setRouterFactory(new XmlResourceRouterBuilder("router-rule-benchmark.xml"));
+		shard.init();
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		shard.close();
+
+		for (ComboPooledDataSource pool : pools) {
+			pool.close();
+		}
+	}
+
+	/**
+	 * 按分片字段查询，只路由到一张表
+	 */
+	@Benchmark
+	public int read() throws SQLException {
+		return Databases.query(shard, "select id, name, score from test where id = ?", nextId());
+	}
+
+	@Benchmark
+	public int rawRead() throws SQLException {
+		int id = nextId();
+		int table = id % TABLE_COUNT;
+
+		return Databases.query(pools[table / 2], "select id, name, score from test_" + table + " where id = ?", id);
+	}
+
+	@Benchmark
+	public int write() throws SQLException {
+		return Databases.update(shard, "update test set score = score + 1 where id = ?", nextId());
+	}
+
+	/**
+	 * 4个id分布在4张表上
+	 */
+	@Benchmark
+	public int readIn() throws SQLException {
+		int id = nextId();
+
+		return Databases.query(shard, "select id, name, score from test where id in (?, ?, ?, ?)", id, id + 1, id + 2,
+				id + 3);
+	}
+
+	/**
+	 * 不带分片字段，查询所有表后流式归并
+	 */
+	@Benchmark
+	public int readOrderByLimit() throws SQLException {
+		return Databases.query(shard, "select id, name, score from test where score = ? order by id limit 10",
+				ThreadLocalRandom.current().nextInt(1000));
+	}
+
+	private int nextId() {
+		return ThreadLocalRandom.current().nextInt(ROW_COUNT) + 1;
+	}
+}
@@ -0,0 +1,138 @@
+package com.dianping.zebra.benchmark;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.dianping.zebra.shard.exception.ShardParseException;
+import com.dianping.zebra.shard.merge.MergeContext;
+import com.dianping.zebra.shard.merge.ShardResultSetAdaptor;
+import com.dianping.zebra.shard.merge.ShardResultSetMerger;
+import com.dianping.zebra.shard.parser.DefaultSQLRewrite;
+import com.dianping.zebra.shard.parser.SQLParsedResult;
+import com.dianping.zebra.shard.parser.SQLParser;
+import com.dianping.zebra.shard.router.RouterResult;
+import com.dianping.zebra.shard.router.RouterResult.RouterTarget;
+
+/**
+ * <p>
+ * 8张分表的结果归并并读完所有结果，覆盖直接拼接、流式order by、有界堆top-N以及全部读到内存中处理这几种方式。
+ * </p>
+ * 每张分表的数据已经按所有列升序排好，和下推order by之后数据库返回的一致。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardResultSetMergerBenchmark {
+
+	private static final int TABLE_COUNT = 8;
+
+	private static final Map<String, String> SQLS = new HashMap<String, String>();
+
+	static {
+		SQLS.put("noOrder", "select id, name, score from test");
+		SQLS.put("orderBy", "select id, name, score from test order by score, id");
+		SQLS.put("orderByLimit", "select id, name, score from test order by score, id limit 100, 20");
+		SQLS.put("distinctTopN", "select distinct name, score from test order by score, name limit 20");
+		SQLS.put("distinct", "select distinct name, score from test");
+		SQLS.put("groupBy", "select name, count(*) cnt, max(score) max_score from test group by name order by name");
+	}
+
+	@Param({ "noOrder", "orderBy", "orderByLimit", "distinctTopN", "distinct", "groupBy" })
+	public String context;
+
+	@Param({ "100", "10000" })
+	public int rowsPerTable;
+
+	private final ShardResultSetMerger merger = new ShardResultSetMerger();
+
+	private MergeContext mergeContext;
+
+	private List<RouterTarget> targets;
+
+	private String[] columns;
+
+	private Object[][][] tables;
+
+	@Setup
+	public void setUp() throws ShardParseException {
+		SQLParsedResult parsedResult = SQLParser.parse(SQLS.get(context));
+		DefaultSQLRewrite rewrite = new DefaultSQLRewrite();
+
+		mergeContext = parsedResult.getMergeContext();
+		targets = new ArrayList<RouterTarget>();
+		for (int i = 0; i < TABLE_COUNT; i++) {
+			RouterTarget target = new RouterTarget("db" + i / 2);
+			target.addSql(rewrite.rewrite(parsedResult, "test", "test_" + i));
+			targets.add(target);
+		}
+
+		columns = mergeContext.getSelectItemMap().keySet().toArray(new String[0]);
+		tables = new Object[TABLE_COUNT][][];
+		for (int i = 0; i < TABLE_COUNT; i++) {
+			tables[i] = new Object[rowsPerTable][];
+
+			for (int row = 0; row < rowsPerTable; row++) {
+				tables[i][row] = createRow(i, row);
+			}
+		}
+	}
+
+	private Object[] createRow(int table, int row) {
+		Object[] values = new Object[columns.length];
+
+		// 每一列都随行号递增，score和name有重复值
+		for (int i = 0; i < columns.length; i++) {
+			if ("id".equalsIgnoreCase(columns[i])) {
+				values[i] = row * TABLE_COUNT + table;
+			} else if ("name".equalsIgnoreCase(columns[i])) {
+				values[i] = String.format("name%06d", row / 4);
+			} else if ("cnt".equalsIgnoreCase(columns[i])) {
+				values[i] = 1;
+			} else {
+				values[i] = row / 2;
+			}
+		}
+
+		return values;
+	}
+
+	@Benchmark
+	public void merge(Blackhole blackhole) throws SQLException {
+		List<ResultSet> resultSets = new ArrayList<ResultSet>(TABLE_COUNT);
+		for (Object[][] rows : tables) {
+			resultSets.add(ArrayResultSet.create(columns, rows));
+		}
+
+		RouterResult routerResult = new RouterResult();
+		routerResult.setSqls(targets);
+		routerResult.setMergeContext(new MergeContext(mergeContext));
+
+		ShardResultSetAdaptor adaptor = new ShardResultSetAdaptor();
+		merger.merge(adaptor, routerResult, resultSets);
+
+		while (adaptor.next()) {
+			blackhole.consume(adaptor.getObject(columns[0]));
+		}
+	}
+}
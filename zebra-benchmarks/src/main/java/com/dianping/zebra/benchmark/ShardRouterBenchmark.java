@@ -0,0 +1,55 @@
+package com.dianping.zebra.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.zebra.shard.exception.ShardParseException;
+import com.dianping.zebra.shard.exception.ShardRouterException;
+import com.dianping.zebra.shard.router.DefaultShardRouter;
+import com.dianping.zebra.shard.router.RouterResult;
+import com.dianping.zebra.shard.router.builder.XmlResourceRouterBuilder;
+
+/**
+ * 分库分表路由，包括解析（命中缓存）、规则计算和改写SQL，4个库8张表
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardRouterBenchmark {
+
+	@Param({ "select", "in", "range", "scan", "orderBy", "insert", "multiInsert", "update" })
+	public String type;
+
+	private DefaultShardRouter router;
+
+	private String sql;
+
+	private List<Object> params;
+
+	@Setup
+	public void setUp() {
+		router = (DefaultShardRouter) new XmlResourceRouterBuilder("router-rule-benchmark.xml").build();
+		sql = Sqls.get(type);
+		params = Sqls.getParams(type);
+	}
+
+	@Benchmark
+	public RouterResult router() throws ShardRouterException, ShardParseException {
+		return router.router(sql, params);
+	}
+}
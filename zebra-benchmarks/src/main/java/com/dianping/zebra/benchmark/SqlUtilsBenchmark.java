@@ -0,0 +1,61 @@
+package com.dianping.zebra.benchmark;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.zebra.Constants;
+import com.dianping.zebra.util.SqlType;
+import com.dianping.zebra.util.SqlUtils;
+
+/**
+ * 读写分离判断SQL类型：带缓存的getSqlType、不带缓存的解析和正则三种方式
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlUtilsBenchmark {
+
+	@Param({ "select", "insert", "update", "hint" })
+	public String type;
+
+	private String sql;
+
+	@Setup
+	public void setUp() {
+		if ("hint".equals(type)) {
+			sql = Constants.SQL_FORCE_WRITE_HINT + Sqls.get("select");
+		} else {
+			sql = Sqls.get(type);
+		}
+	}
+
+	@Benchmark
+	public SqlType getSqlType() throws SQLException {
+		return SqlUtils.getSqlType(sql);
+	}
+
+	@Benchmark
+	public SqlUtils.SqlInfo parseSqlInfo() {
+		return SqlUtils.parseSqlInfo(sql);
+	}
+
+	@Benchmark
+	public SqlType getSqlTypeByRegex() {
+		return SqlUtils.getSqlTypeByRegex(sql);
+	}
+}
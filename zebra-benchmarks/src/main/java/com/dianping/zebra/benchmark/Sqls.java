@@ -0,0 +1,51 @@
+package com.dianping.zebra.benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 各个benchmark共用的SQL，表名和列名对应router-rule-benchmark.xml
+ */
+final class Sqls {
+
+	private static final Map<String, String> SQLS = new HashMap<String, String>();
+
+	private static final Map<String, List<Object>> PARAMS = new HashMap<String, List<Object>>();
+
+	static {
+		add("select", "select id, name, score from test where id = ?", 5);
+		add("in", "select id, name, score from test where id in (?, ?, ?, ?)", 1, 2, 3, 4);
+		add("scan", "select id, name, score from test where name = ?", "name5");
+		add("range", "select id, name, score from test where id between ? and ?", 10, 13);
+		add("orderBy", "select id, name, score from test where score > ? order by score desc, id limit 10, 20", 0);
+		add("groupBy", "select name, count(*), max(score) from test where score > ? group by name order by name", 0);
+		add("insert", "insert into test (id, name, score) values (?, ?, ?)", 5, "name5", 50);
+		add("multiInsert", "insert into test (id, name, score) values (?, ?, ?), (?, ?, ?)", 5, "name5", 50, 6,
+				"name6", 60);
+		add("update", "update test set score = score + ? where id = ?", 1, 5);
+	}
+
+	private Sqls() {
+	}
+
+	private static void add(String type, String sql, Object... params) {
+		SQLS.put(type, sql);
+		PARAMS.put(type, Arrays.asList(params));
+	}
+
+	public static String get(String type) {
+		String sql = SQLS.get(type);
+
+		if (sql == null) {
+			throw new IllegalArgumentException("unknown sql type: " + type);
+		}
+
+		return sql;
+	}
+
+	public static List<Object> getParams(String type) {
+		return PARAMS.get(type);
+	}
+}
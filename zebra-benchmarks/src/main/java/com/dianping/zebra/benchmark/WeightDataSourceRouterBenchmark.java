@@ -0,0 +1,74 @@
+package com.dianping.zebra.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+import com.dianping.zebra.group.router.RouterContext;
+import com.dianping.zebra.group.router.RouterTarget;
+import com.dianping.zebra.group.router.WeightDataSourceRouter;
+
+/**
+ * 读库按权重选择，4个线程同时选择，权重各不相同
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class WeightDataSourceRouterBenchmark {
+
+	@Param({ "2", "8", "32" })
+	public int targetCount;
+
+	private WeightDataSourceRouter router;
+
+	private RouterContext context;
+
+	private RouterContext excludeContext;
+
+	@Setup
+	public void setUp() {
+		Map<String, DataSourceConfig> configs = new LinkedHashMap<String, DataSourceConfig>();
+
+		for (int i = 0; i < targetCount; i++) {
+			DataSourceConfig config = new DataSourceConfig();
+			config.setId("db" + i);
+			config.setWeight(i + 1);
+			configs.put(config.getId(), config);
+		}
+
+		router = new WeightDataSourceRouter(configs);
+		context = new RouterContext();
+
+		// 权重最大的读库连不上时重试其他读库
+		excludeContext = new RouterContext();
+		excludeContext.addExcludeTarget("db" + (targetCount - 1));
+	}
+
+	@Benchmark
+	public RouterTarget select() {
+		return router.select(context);
+	}
+
+	@Benchmark
+	public RouterTarget selectWithExclude() {
+		return router.select(excludeContext);
+	}
+}
@@ -0,0 +1,56 @@
+package com.dianping.zebra.dao.plugin.page;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.MetaObject;
+
+import com.dianping.zebra.dao.util.ReflectionUtils;
+
+/**
+ * <p>
+ * count语句的SqlSource，和参数无关，可以随count语句的MappedStatement一起缓存。
+ * </p>
+ * 每次执行时用原语句的参数映射和当前参数生成BoundSql。拦截时已经生成的原语句BoundSql放在当前线程中，避免再生成一次动态SQL。
+ */
+public class CountSqlSource implements SqlSource {
+
+	private static final ThreadLocal<BoundSql> CURRENT_BOUND_SQL = new ThreadLocal<BoundSql>();
+
+	private final MappedStatement ms;
+
+	private final String countSql;
+
+	public CountSqlSource(MappedStatement ms, String countSql) {
+		this.ms = ms;
+		this.countSql = countSql;
+	}
+
+	static void setCurrentBoundSql(BoundSql boundSql) {
+		CURRENT_BOUND_SQL.set(boundSql);
+	}
+
+	static void clearCurrentBoundSql() {
+		CURRENT_BOUND_SQL.remove();
+	}
+
+	public String getCountSql() {
+		return countSql;
+	}
+
+	@Override
+	public BoundSql getBoundSql(Object parameterObject) {
+		BoundSql boundSql = CURRENT_BOUND_SQL.get();
+
+		if (boundSql == null || boundSql.getParameterObject() != parameterObject) {
+			boundSql = ms.getBoundSql(parameterObject);
+		}
+
+		BoundSql countBoundSql = new BoundSql(ms.getConfiguration(), countSql, boundSql.getParameterMappings(),
+				parameterObject);
+		MetaObject mo = (MetaObject) ReflectionUtils.getFieldValue(boundSql, "metaParameters");
+		ReflectionUtils.setFieldValue(countBoundSql, "metaParameters", mo);
+
+		return countBoundSql;
+	}
+}
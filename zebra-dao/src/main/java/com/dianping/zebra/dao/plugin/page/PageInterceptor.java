@@ -25,8 +25,18 @@ import org.apache.ibatis.session.RowBounds;
 import com.dianping.zebra.dao.dialect.Dialect;
 import com.dianping.zebra.dao.util.ReflectionUtils;
 import com.dianping.zebra.group.util.DaoContextHolder;
+import com.dianping.zebra.util.ConcurrentLRUCache;
 
 /**
+ * <p>
+ * 物理分页拦截器，支持的属性：
+ * <ul>
+ * <li>dialectClass：数据库方言，必填</li>
+ * <li>countCacheSize：缓存的count语句的数量，默认1024</li>
+ * <li>skipCountIfPresent：PageModel中已经有总数时不再查询总数，默认false</li>
+ * </ul>
+ * </p>
+ * count语句按(原语句id, 动态生成的SQL)缓存，相同的分页查询只在第一次解析SQL并生成count语句。
  * 
  * @author damonzhu
  *
@@ -37,12 +47,17 @@ public class PageInterceptor implements Interceptor {
 
 	private static final List<ResultMapping> EMPTY_RESULTMAPPING = new ArrayList<ResultMapping>(0);
 
-	private static final Map<String, MappedStatement> COUNT_MAPPED_STATS = new ConcurrentHashMap<String, MappedStatement>();
+	public static final int DEFAULT_COUNT_CACHE_SIZE = 1024;
 
 	private static final Map<String, String> MAPPED_ID = new ConcurrentHashMap<String, String>();
 
 	private Dialect dialect;
 
+	private ConcurrentLRUCache<String, MappedStatement> countMappedStats = new ConcurrentLRUCache<String, MappedStatement>(
+			DEFAULT_COUNT_CACHE_SIZE);
+
+	private boolean skipCountIfPresent = false;
+
 	@Override
 	public Object plugin(Object target) {
 		if (target instanceof Executor) {
@@ -60,6 +75,17 @@ public class PageInterceptor implements Interceptor {
 		} catch (Exception e) {
 			throw new RuntimeException("cannot create dialect instance by dialectClass:" + dialectClass, e);
 		}
+
+		Object countCacheSize = properties.get("countCacheSize");
+		if (countCacheSize != null) {
+			countMappedStats = new ConcurrentLRUCache<String, MappedStatement>(Integer.parseInt(countCacheSize
+					.toString().trim()));
+		}
+
+		Object skipCount = properties.get("skipCountIfPresent");
+		if (skipCount != null) {
+			skipCountIfPresent = Boolean.parseBoolean(skipCount.toString().trim());
+		}
 	}
 
 	@Override
@@ -75,15 +101,19 @@ public class PageInterceptor implements Interceptor {
 			if (rb.getOffset() == RowBounds.NO_ROW_OFFSET && rb.getLimit() == RowBounds.NO_ROW_LIMIT) {
 				return invocation.proceed();
 			} else {
-				BoundSql boundSql = ms.getBoundSql(args);
+				BoundSql boundSql = ms.getBoundSql(args[1]);
 
 				if (rowBound instanceof PageModel) {
 					// physical pagination with PageModel
 					PageModel pageModel = (PageModel) rowBound;
-					Object count = queryCount(invocation, args, ms, boundSql);
-					Object records = queryLimit(invocation, args, ms, boundSql, pageModel);
 
-					pageModel.setRecordCount((Integer) ((List<?>) count).get(0));
+					// 调用方已经知道总数时（比如翻页时沿用第一页的总数）不再查询
+					if (!skipCountIfPresent || pageModel.getRecordCount() <= 0) {
+						Object count = queryCount(invocation, args, ms, boundSql);
+						pageModel.setRecordCount((Integer) ((List<?>) count).get(0));
+					}
+
+					Object records = queryLimit(invocation, args, ms, boundSql, pageModel);
 					pageModel.setRecords((List<?>) records);
 
 					return null;
@@ -119,32 +149,47 @@ public class PageInterceptor implements Interceptor {
 
 	private Object queryCount(Invocation invocation, Object[] args, MappedStatement ms, BoundSql boundSql)
 			throws InvocationTargetException, IllegalAccessException {
-		MappedStatement countRowStatement = COUNT_MAPPED_STATS.get(ms.getId());
+		args[0] = getCountMappedStatement(ms, boundSql);
+		args[2] = new RowBounds();
+		args[3] = null;
+
+		try {
+			DaoContextHolder.setSqlName(buildDaoName(ms.getId()) + "_COUNT");
+			CountSqlSource.setCurrentBoundSql(boundSql);
+			return invocation.proceed();
+		} finally {
+			CountSqlSource.clearCurrentBoundSql();
+			DaoContextHolder.clearSqlName();
+		}
+	}
+
+	/**
+	 * 动态SQL对于不同的参数会生成不同的SQL，所以按原语句id加上生成的SQL缓存
+	 */
+	MappedStatement getCountMappedStatement(MappedStatement ms, BoundSql boundSql) {
+		String key = ms.getId() + "\n" + boundSql.getSql();
+		MappedStatement countRowStatement = countMappedStats.get(key);
 
 		if (countRowStatement == null) {
 			String countSql = dialect.getCountSql(boundSql.getSql());
-			BoundSql newBoundSql = new BoundSql(ms.getConfiguration(), countSql, boundSql.getParameterMappings(),
-					boundSql.getParameterObject());
-			MetaObject mo = (MetaObject) ReflectionUtils.getFieldValue(boundSql, "metaParameters");
-			ReflectionUtils.setFieldValue(newBoundSql, "metaParameters", mo);
 			List<ResultMap> resultMaps = new ArrayList<ResultMap>();
 			ResultMap resultMap = new ResultMap.Builder(ms.getConfiguration(), ms.getId(), int.class,
 					EMPTY_RESULTMAPPING).build();
 			resultMaps.add(resultMap);
-			countRowStatement = buildMappedStatement(ms, new SqlSqlSourceWrapper(newBoundSql), ms.getId() + "_COUNT",
+			countRowStatement = buildMappedStatement(ms, new CountSqlSource(ms, countSql), ms.getId() + "_COUNT",
 					resultMaps);
+
+			MappedStatement existing = countMappedStats.putIfAbsent(key, countRowStatement);
+			if (existing != null) {
+				countRowStatement = existing;
+			}
 		}
 
-		args[0] = countRowStatement;
-		args[2] = new RowBounds();
-		args[3] = null;
+		return countRowStatement;
+	}
 
-		try {
-			DaoContextHolder.setSqlName(buildDaoName(ms.getId()) + "_COUNT");
-			return invocation.proceed();
-		} finally {
-			DaoContextHolder.clearSqlName();
-		}
+	ConcurrentLRUCache<String, MappedStatement> getCountMappedStats() {
+		return countMappedStats;
 	}
 
 	private Object queryLimit(Invocation invocation, Object[] args, MappedStatement ms, BoundSql boundSql, RowBounds rb)
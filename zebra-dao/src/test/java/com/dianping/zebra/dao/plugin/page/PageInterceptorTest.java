@@ -0,0 +1,230 @@
+package com.dianping.zebra.dao.plugin.page;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dianping.zebra.dao.dialect.MySQLDialect;
+
+import junit.framework.Assert;
+
+/**
+ * 不连接数据库，用一个记录SQL的Executor验证count语句的缓存
+ */
+public class PageInterceptorTest {
+
+	private static final int RECORD_COUNT = 42;
+
+	private Configuration configuration;
+
+	private Executor executor;
+
+	private Method queryMethod;
+
+	// 每次执行的SQL和参数
+	private List<BoundSql> executed;
+
+	@Before
+	public void setUp() throws Exception {
+		CountingDialect.PARSE_COUNT.set(0);
+
+		configuration = new Configuration();
+		executed = new ArrayList<BoundSql>();
+		queryMethod = Executor.class.getMethod("query", MappedStatement.class, Object.class, RowBounds.class,
+				ResultHandler.class);
+		executor = (Executor) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Executor.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						MappedStatement ms = (MappedStatement) args[0];
+						executed.add(ms.getBoundSql(args[1]));
+
+						if (ms.getId().endsWith("_COUNT")) {
+							return Arrays.asList(RECORD_COUNT);
+						} else {
+							return Arrays.asList("a", "b");
+						}
+					}
+				});
+	}
+
+	@Test
+	public void test_count_statement_cached() throws Throwable {
+		PageInterceptor interceptor = createInterceptor(new Properties());
+		MappedStatement ms = createMappedStatement("HeartbeatMapper.getAll", false);
+
+		for (int i = 0; i < 10; i++) {
+			PageModel page = new PageModel(i + 1, 10);
+			Map<String, Object> param = createParam("app" + i, null);
+			executed.clear();
+
+			interceptor.intercept(new Invocation(executor, queryMethod, new Object[] { ms, param, page, null }));
+
+			Assert.assertEquals(RECORD_COUNT, page.getRecordCount());
+			Assert.assertEquals(2, page.getRecords().size());
+
+			// 缓存的count语句每次都使用当前的参数
+			BoundSql count = executed.get(0);
+			Assert.assertTrue(count.getSql(), count.getSql().toLowerCase().contains("count("));
+			Assert.assertSame(param, count.getParameterObject());
+			Assert.assertEquals("appName", count.getParameterMappings().get(0).getProperty());
+		}
+
+		Assert.assertEquals(1, CountingDialect.PARSE_COUNT.get());
+		Assert.assertEquals(1, interceptor.getCountMappedStats().size());
+	}
+
+	@Test
+	public void test_keyed_by_dynamic_sql() throws Throwable {
+		PageInterceptor interceptor = createInterceptor(new Properties());
+		MappedStatement ms = createMappedStatement("HeartbeatMapper.find", true);
+
+		for (int i = 0; i < 3; i++) {
+			query(interceptor, ms, createParam("app", null), new PageModel(1, 10));
+			query(interceptor, ms, createParam("app", "ip"), new PageModel(1, 10));
+		}
+
+		Assert.assertEquals(2, CountingDialect.PARSE_COUNT.get());
+		Assert.assertEquals(2, interceptor.getCountMappedStats().size());
+		Assert.assertTrue(executed.get(executed.size() - 2).getSql().contains("ip = ?"));
+	}
+
+	@Test
+	public void test_bounded_cache() throws Throwable {
+		Properties properties = new Properties();
+		properties.setProperty("countCacheSize", "2");
+		PageInterceptor interceptor = createInterceptor(properties);
+
+		for (int i = 0; i < 5; i++) {
+			query(interceptor, createMappedStatement("HeartbeatMapper.get" + i, false), createParam("app", null),
+					new PageModel(1, 10));
+		}
+
+		Assert.assertEquals(5, CountingDialect.PARSE_COUNT.get());
+		Assert.assertEquals(2, interceptor.getCountMappedStats().size());
+	}
+
+	@Test
+	public void test_skip_count_if_present() throws Throwable {
+		Properties properties = new Properties();
+		properties.setProperty("skipCountIfPresent", "true");
+		PageInterceptor interceptor = createInterceptor(properties);
+		MappedStatement ms = createMappedStatement("HeartbeatMapper.getAll", false);
+
+		PageModel page = new PageModel(2, 10);
+		page.setRecordCount(100);
+		query(interceptor, ms, createParam("app", null), page);
+
+		Assert.assertEquals(100, page.getRecordCount());
+		Assert.assertEquals(1, executed.size());
+		Assert.assertEquals(0, CountingDialect.PARSE_COUNT.get());
+
+		// 没有总数时仍然查询
+		page = new PageModel(1, 10);
+		query(interceptor, ms, createParam("app", null), page);
+
+		Assert.assertEquals(RECORD_COUNT, page.getRecordCount());
+		Assert.assertEquals(1, CountingDialect.PARSE_COUNT.get());
+	}
+
+	@Test
+	public void test_count_by_default_even_if_present() throws Throwable {
+		PageInterceptor interceptor = createInterceptor(new Properties());
+
+		PageModel page = new PageModel(2, 10);
+		page.setRecordCount(100);
+		query(interceptor, createMappedStatement("HeartbeatMapper.getAll", false), createParam("app", null), page);
+
+		Assert.assertEquals(RECORD_COUNT, page.getRecordCount());
+		Assert.assertEquals(2, executed.size());
+	}
+
+	private void query(PageInterceptor interceptor, MappedStatement ms, Object param, RowBounds rowBounds)
+			throws Throwable {
+		interceptor.intercept(new Invocation(executor, queryMethod, new Object[] { ms, param, rowBounds, null }));
+	}
+
+	private PageInterceptor createInterceptor(Properties properties) {
+		properties.setProperty("dialectClass", CountingDialect.class.getName());
+
+		PageInterceptor interceptor = new PageInterceptor();
+		interceptor.setProperties(properties);
+
+		return interceptor;
+	}
+
+	private Map<String, Object> createParam(String appName, String ip) {
+		Map<String, Object> param = new HashMap<String, Object>();
+		param.put("appName", appName);
+		if (ip != null) {
+			param.put("ip", ip);
+		}
+
+		return param;
+	}
+
+	/**
+	 * @param dynamic
+	 *           参数中有ip时多一个条件，模拟动态SQL
+	 */
+	private MappedStatement createMappedStatement(String id, final boolean dynamic) {
+		final List<ParameterMapping> appNameMapping = Arrays.asList(new ParameterMapping.Builder(configuration,
+				"appName", String.class).build());
+		final List<ParameterMapping> ipMapping = Arrays.asList(
+				new ParameterMapping.Builder(configuration, "appName", String.class).build(),
+				new ParameterMapping.Builder(configuration, "ip", String.class).build());
+
+		SqlSource sqlSource = new SqlSource() {
+			@Override
+			public BoundSql getBoundSql(Object parameterObject) {
+				if (dynamic && ((Map<?, ?>) parameterObject).get("ip") != null) {
+					return new BoundSql(configuration, "select * from heartbeat where app_name = ? and ip = ?",
+							ipMapping, parameterObject);
+				} else {
+					return new BoundSql(configuration, "select * from heartbeat where app_name = ?", appNameMapping,
+							parameterObject);
+				}
+			}
+		};
+
+		ResultMap resultMap = new ResultMap.Builder(configuration, id + "-Inline", HashMap.class,
+				new ArrayList<ResultMapping>()).build();
+
+		return new MappedStatement.Builder(configuration, id, sqlSource, SqlCommandType.SELECT).resultMaps(
+				Arrays.asList(resultMap)).build();
+	}
+
+	public static class CountingDialect extends MySQLDialect {
+
+		static final AtomicInteger PARSE_COUNT = new AtomicInteger();
+
+		@Override
+		public String getCountSql(String sql) {
+			PARSE_COUNT.incrementAndGet();
+
+			return super.getCountSql(sql);
+		}
+	}
+}
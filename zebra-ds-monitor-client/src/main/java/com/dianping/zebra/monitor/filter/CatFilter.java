@@ -3,6 +3,7 @@ package com.dianping.zebra.monitor.filter;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Random;
 
 import javax.sql.DataSource;
 
@@ -40,6 +41,21 @@ public class CatFilter extends DefaultJdbcFilter {
 
 	private GroupDataSourceMonitor monitor = null;
 
+	private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+		@Override
+		protected Random initialValue() {
+			return new Random();
+		}
+	};
+
+	// 参数只在抽样命中、慢SQL或者执行失败时序列化
+	private volatile double paramSampleRate = Double.parseDouble(System.getProperty("zebra.cat.paramSampleRate",
+			"0.01"));
+
+	private volatile long slowSqlMillis = Long.parseLong(System.getProperty("zebra.cat.slowSqlMillis", "1000"));
+
+	private volatile int maxParamLength = Integer.parseInt(System.getProperty("zebra.cat.maxParamLength", "1024"));
+
 	@Override
 	public void init() {
 		if (!Constants.ZEBRA_VERSION.equals(Version.ZEBRA_VERSION)) {
@@ -78,16 +94,20 @@ public class CatFilter extends DefaultJdbcFilter {
 		Transaction t;
 		if (isBatched) {
 			t = Cat.newTransaction("SQL", "batched");
-			t.addData(Stringizers.forJson().compact().from(batchedSql));
+			t.addData(truncate(Stringizers.forJson().compact().from(batchedSql, getMaxParamLength(),
+					CatConstants.MAX_ITEM_LENGTH)));
 		} else {
 			t = Cat.newTransaction("SQL", SqlAliasManager.getSqlAlias());
 			t.addData(sql);
 		}
 
+		boolean failed = true;
+		long start = System.nanoTime();
 		try {
 			T result = chain.executeSingleStatement(source, conn, sql, batchedSql, isBatched, autoCommit, sqlParams,
 					chain);
 			t.setStatus(Transaction.SUCCESS);
+			failed = false;
 
 			return result;
 		} catch (SQLException exp) {
@@ -97,8 +117,10 @@ public class CatFilter extends DefaultJdbcFilter {
 			throw exp;
 		} finally {
 			try {
-				logSqlMethodEvent(sql, batchedSql, isBatched, sqlParams);
-				logSqlDatabaseEvent(conn);
+				boolean captureParams = failed || System.nanoTime() - start >= slowSqlMillis * 1000000L || isSampled();
+
+				logSqlMethodEvent(sql, batchedSql, isBatched, captureParams ? serializeParams(sqlParams) : "");
+				logSqlDatabaseEvent(source);
 			} catch (Throwable exp) {
 				Cat.logError(exp);
 			}
@@ -144,11 +166,36 @@ public class CatFilter extends DefaultJdbcFilter {
 		return result;
 	}
 
-	private void logSqlDatabaseEvent(Connection conn) throws SQLException {
-		SingleConnection singleConnection = conn instanceof SingleConnection ? (SingleConnection) conn : null;
-		if (singleConnection != null && conn.getMetaData() != null) {
-			Cat.logEvent("SQL.Database", conn.getMetaData().getURL(), Event.SUCCESS,
-					singleConnection.getDataSourceId());
+	private boolean isSampled() {
+		double rate = paramSampleRate;
+
+		return rate >= 1 || (rate > 0 && random.get().nextDouble() < rate);
+	}
+
+	private String serializeParams(Object sqlParams) {
+		if (sqlParams == null) {
+			return "";
+		}
+
+		return truncate(Stringizers.forJson().compact().from(sqlParams, getMaxParamLength(),
+				CatConstants.MAX_ITEM_LENGTH));
+	}
+
+	private String truncate(String text) {
+		int max = getMaxParamLength();
+
+		if (text != null && text.length() > max) {
+			return text.substring(0, max) + "...";
+		}
+
+		return text;
+	}
+
+	// url在SingleDataSource第一次获取连接时缓存，这里不再调用getMetaData()
+	private void logSqlDatabaseEvent(SingleStatement source) {
+		String url = source.getPhysicalUrl();
+		if (url != null) {
+			Cat.logEvent("SQL.Database", url, Event.SUCCESS, source.getDataSourceId());
 		}
 	}
 
@@ -162,9 +209,7 @@ public class CatFilter extends DefaultJdbcFilter {
 		}
 	}
 
-	private void logSqlMethodEvent(String sql, List<String> batchedSql, boolean isBatched, Object sqlParams) {
-		String params = Stringizers.forJson().compact().from(sqlParams, CatConstants.MAX_LENGTH,
-				CatConstants.MAX_ITEM_LENGTH);
+	private void logSqlMethodEvent(String sql, List<String> batchedSql, boolean isBatched, String params) {
 		if (isBatched) {
 			if (batchedSql != null) {
 				for (String bSql : batchedSql) {
@@ -180,6 +225,30 @@ public class CatFilter extends DefaultJdbcFilter {
 		}
 	}
 
+	public int getMaxParamLength() {
+		return maxParamLength > 0 ? maxParamLength : CatConstants.MAX_LENGTH;
+	}
+
+	/**
+	 * @param paramSampleRate
+	 *           成功且不慢的SQL记录参数的比例，0到1之间
+	 */
+	public void setParamSampleRate(double paramSampleRate) {
+		this.paramSampleRate = paramSampleRate;
+	}
+
+	public void setSlowSqlMillis(long slowSqlMillis) {
+		this.slowSqlMillis = slowSqlMillis;
+	}
+
+	/**
+	 * @param maxParamLength
+	 *           记录的参数和批量SQL的最大长度，小于等于0时使用CAT默认的长度
+	 */
+	public void setMaxParamLength(int maxParamLength) {
+		this.maxParamLength = maxParamLength;
+	}
+
 	@Override
 	public void refreshGroupDataSource(GroupDataSource source, String propertiesName, JdbcFilter chain) {
 		Transaction t = Cat.newTransaction(CAT_TYPE, "DataSource.Refresh-" + source.getJdbcRef());
@@ -2,6 +2,9 @@ package com.dianping.zebra.monitor.inspect;
 
 import com.dianping.phoenix.status.AbstractComponentStatus;
 import com.dianping.zebra.Constants;
+import com.dianping.zebra.filter.slowquery.SlowQueryFilter;
+import com.dianping.zebra.filter.slowquery.SlowQueryMXBean;
+import com.dianping.zebra.filter.slowquery.SlowQuerySummary;
 import com.dianping.zebra.group.config.datasource.entity.Any;
 import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
 import com.dianping.zebra.group.jdbc.GroupDataSource;
@@ -9,9 +12,13 @@ import com.dianping.zebra.group.monitor.GroupDataSourceMBean;
 import com.dianping.zebra.group.monitor.SingleDataSourceMBean;
 import com.dianping.zebra.group.util.DataSourceState;
 
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.ServletContext;
 import javax.sql.DataSource;
 
+import java.lang.management.ManagementFactory;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -20,6 +27,8 @@ public class DataSourceStatus extends AbstractComponentStatus {
 
 	public static final String ID = "dal.datasource";
 
+	private static final int MAX_SLOW_QUERY_ROWS = 50;
+
 	public DataSourceStatus() {
 		super(ID, "Data Source Status");
 	}
@@ -102,6 +111,34 @@ public class DataSourceStatus extends AbstractComponentStatus {
 
 		configTable.build();
 		statusTable.build();
+
+		buildSlowQueryTable();
+	}
+
+	// 使用了slowquery filter时展示累计耗时最多的慢SQL
+	private void buildSlowQueryTable() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(SlowQueryFilter.OBJECT_NAME);
+
+		if (!server.isRegistered(name)) {
+			return;
+		}
+
+		SlowQueryMXBean slowQuery = JMX.newMXBeanProxy(server, name, SlowQueryMXBean.class);
+		TableBuilder slowQueryTable = newTable();
+
+		slowQueryTable.caption("Slow Queries (>= " + slowQuery.getThresholdMillis() + "ms)");
+		slowQueryTable.header("Name", "Fingerprint", "Count", "SumMillis", "MaxMillis", "LastSeen", "Sql");
+
+		List<SlowQuerySummary> summaries = slowQuery.getSummaries();
+		for (int i = 0; i < summaries.size() && i < MAX_SLOW_QUERY_ROWS; i++) {
+			SlowQuerySummary summary = summaries.get(i);
+
+			slowQueryTable.row(summary.getDataSourceId(), summary.getFingerprintId(), summary.getCount(),
+					summary.getSumMillis(), summary.getMaxMillis(), summary.getLastSeen(), summary.getFingerprint());
+		}
+
+		slowQueryTable.build();
 	}
 
 	private String narmalized(String name) {
@@ -72,6 +72,14 @@ public class GroupDataSourceMonitor implements StatusExtension {
 			}
 		}
 
+		Map<String, Long> lags = groupDataSourceBean.getReaderReplicationLag();
+		if (lags != null) {
+			for (Entry<String, Long> entry : lags.entrySet()) {
+				status.put(String.format("[%dr]%s-ReplicationLag", groupDsId, entry.getKey()),
+				      Long.toString(entry.getValue()));
+			}
+		}
+
 		SingleDataSourceMBean bean = groupDataSourceBean.getWriteSingleDataSourceMBean();
 
 		if (bean != null) {
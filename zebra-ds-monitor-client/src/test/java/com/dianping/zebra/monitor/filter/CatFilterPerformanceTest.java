@@ -0,0 +1,119 @@
+package com.dianping.zebra.monitor.filter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.dianping.zebra.Constants;
+import com.dianping.zebra.filter.DefaultJdbcFilter;
+import com.dianping.zebra.filter.JdbcFilter;
+import com.dianping.zebra.group.config.datasource.entity.DataSourceConfig;
+import com.dianping.zebra.single.jdbc.SingleDataSource;
+import com.dianping.zebra.single.jdbc.SingleStatement;
+
+/**
+ * <p>
+ * 比较CatFilter每条SQL的额外耗时，没有配置CAT服务端时CAT客户端不会发送消息，可以看作空实现。
+ * </p>
+ * 改动前的行为用参数全部序列化，再加上每次调用getMetaData().getURL()来模拟。
+ */
+public class CatFilterPerformanceTest {
+
+	private static final int ROUNDS = 100000;
+
+	private static final String SQL = "select ?, ?, ?";
+
+	@Test
+	public void test_overhead_per_statement() throws SQLException {
+		CatFilter eager = new CatFilter();
+		eager.setParamSampleRate(1);
+
+		CatFilter lazy = new CatFilter();
+
+		List<List<JdbcFilter>> cases = new ArrayList<List<JdbcFilter>>();
+		cases.add(new ArrayList<JdbcFilter>());
+		cases.add(Arrays.<JdbcFilter> asList(new MetaDataUrlFilter(), eager));
+		cases.add(Arrays.<JdbcFilter> asList(lazy));
+
+		String[] names = { "no filter", "before: serialize all + getMetaData", "after: sampled + cached url" };
+
+		long baseline = 0;
+		for (int i = 0; i < cases.size(); i++) {
+			SingleDataSource ds = new SingleDataSource(createConfig("cat_perf" + i), cases.get(i));
+
+			try {
+				// 预热
+				run(ds);
+
+				long time = run(ds);
+				if (i == 0) {
+					baseline = time;
+				}
+
+				System.out.println(String.format("%s: %.1f ns/op, overhead %.1f ns/op", names[i], (double) time
+						/ ROUNDS, (double) (time - baseline) / ROUNDS));
+			} finally {
+				ds.close();
+			}
+		}
+	}
+
+	private long run(SingleDataSource ds) throws SQLException {
+		Connection conn = ds.getConnection();
+
+		try {
+			PreparedStatement stmt = conn.prepareStatement(SQL);
+			long start = System.nanoTime();
+
+			for (int i = 0; i < ROUNDS; i++) {
+				stmt.setInt(1, i);
+				stmt.setString(2, "name" + i);
+				stmt.setLong(3, System.currentTimeMillis());
+
+				ResultSet rs = stmt.executeQuery();
+				rs.next();
+				rs.close();
+			}
+
+			long time = System.nanoTime() - start;
+			stmt.close();
+
+			return time;
+		} finally {
+			conn.close();
+		}
+	}
+
+	private DataSourceConfig createConfig(String id) {
+		DataSourceConfig config = new DataSourceConfig();
+		config.setId(id);
+		config.setType(Constants.CONNECTION_POOL_TYPE_C3P0);
+		config.setJdbcUrl("jdbc:h2:mem:" + id + ";DB_CLOSE_DELAY=-1");
+		config.setDriverClass("org.h2.Driver");
+		config.setUsername("sa");
+		config.setPassword("");
+
+		return config;
+	}
+
+	// 模拟改动前每条SQL都通过驱动获取一次url
+	private static class MetaDataUrlFilter extends DefaultJdbcFilter {
+
+		@Override
+		public <T> T executeSingleStatement(SingleStatement source, Connection conn, String sql,
+				List<String> batchedSql, boolean isBatched, boolean autoCommit, Object params, JdbcFilter chain)
+				throws SQLException {
+			try {
+				return chain.executeSingleStatement(source, conn, sql, batchedSql, isBatched, autoCommit, params, chain);
+			} finally {
+				conn.getMetaData().getURL();
+			}
+		}
+	}
+}
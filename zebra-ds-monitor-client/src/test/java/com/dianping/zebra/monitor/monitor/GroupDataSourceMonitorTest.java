@@ -3,6 +3,7 @@ package com.dianping.zebra.monitor.monitor;
 import com.dianping.zebra.group.config.datasource.entity.GroupDataSourceConfig;
 import com.dianping.zebra.group.monitor.GroupDataSourceMBean;
 import com.dianping.zebra.group.monitor.SingleDataSourceMBean;
+import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -24,8 +25,21 @@ public class GroupDataSourceMonitorTest {
 
 		Mockito.when(bean.getReaderSingleDataSourceMBean()).thenReturn(readers);
 
+		Map<String, Long> lags = new HashMap<String, Long>();
+		lags.put("db1", 1200L);
+		Mockito.when(bean.getReaderReplicationLag()).thenReturn(lags);
+
 		GroupDataSourceMonitor monitor = new GroupDataSourceMonitor(bean);
 
 		System.out.println(monitor.getDescription());
+
+		boolean found = false;
+		for (Map.Entry<String, String> entry : monitor.getProperties().entrySet()) {
+			if (entry.getKey().endsWith("db1-ReplicationLag")) {
+				Assert.assertEquals("1200", entry.getValue());
+				found = true;
+			}
+		}
+		Assert.assertTrue(found);
 	}
 }